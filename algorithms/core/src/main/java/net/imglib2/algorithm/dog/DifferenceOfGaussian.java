@@ -32,9 +32,8 @@
  */
 package net.imglib2.algorithm.dog;
 
+import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import net.imglib2.Cursor;
 import net.imglib2.IterableInterval;
@@ -44,6 +43,7 @@ import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.gauss3.Gauss3;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.Img;
+import net.imglib2.multithreading.TaskExecutors;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.NumericType;
 import net.imglib2.util.Util;
@@ -122,18 +122,62 @@ public class DifferenceOfGaussian
 		{
 			e.printStackTrace();
 		}
+		subtract( tmpInterval, dog, TaskExecutors.getDefault(), numThreads );
+	}
+
+	/**
+	 * Compute the difference of Gaussian for the input, running tasks on the
+	 * given {@link ExecutorService}. See
+	 * {@link #DoG(double[], double[], RandomAccessible, RandomAccessible, RandomAccessibleInterval, int)}.
+	 *
+	 * @param sigma1
+	 *            stddev (in every dimension) of smaller Gaussian.
+	 * @param sigma2
+	 *            stddev (in every dimension) of larger Gaussian.
+	 * @param input
+	 *            the input image extended to infinity (or at least covering the
+	 *            same interval as the dog result image, plus borders for
+	 *            convolution).
+	 * @param tmp
+	 *            temporary image, must at least cover the same interval as the
+	 *            dog result image.
+	 * @param dog
+	 *            the Difference-of-Gaussian result image.
+	 * @param service
+	 *            service on which to run the computation.
+	 */
+	public static < T extends NumericType< T > > void DoG( final double[] sigma1, final double[] sigma2, final RandomAccessible< T > input, final RandomAccessible< T > tmp, final RandomAccessibleInterval< T > dog, final ExecutorService service )
+	{
+		final IntervalView< T > tmpInterval = Views.interval( tmp, dog );
+		try
+		{
+			Gauss3.gauss( sigma1, input, tmpInterval, service );
+			Gauss3.gauss( sigma2, input, dog, service );
+		}
+		catch ( final IncompatibleTypeException e )
+		{
+			e.printStackTrace();
+		}
+		subtract( tmpInterval, dog, service, TaskExecutors.getParallelism( service ) );
+	}
+
+	/**
+	 * Subtract tmpInterval from dog.
+	 */
+	private static < T extends NumericType< T > > void subtract( final RandomAccessibleInterval< T > tmpInterval, final RandomAccessibleInterval< T > dog, final ExecutorService service, final int numThreads )
+	{
 		final IterableInterval< T > dogIterable = Views.iterable( dog );
 		final IterableInterval< T > tmpIterable = Views.iterable( tmpInterval );
 		final long size = dogIterable.size();
 		final int numTasks = numThreads <= 1 ? 1 : numThreads * 20;
 		final long taskSize = size / numTasks;
-		final ExecutorService ex = Executors.newFixedThreadPool( numThreads );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( numTasks );
 		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
 		{
 			final long fromIndex = taskNum * taskSize;
 			final long thisTaskSize = ( taskNum == numTasks - 1 ) ? size - fromIndex : taskSize;
 			if ( dogIterable.iterationOrder().equals( tmpIterable.iterationOrder() ) )
-				ex.execute( new Runnable()
+				tasks.add( new Runnable()
 				{
 					@Override
 					public void run()
@@ -147,7 +191,7 @@ public class DifferenceOfGaussian
 					}
 				} );
 			else
-				ex.execute( new Runnable()
+				tasks.add( new Runnable()
 				{
 					@Override
 					public void run()
@@ -164,15 +208,7 @@ public class DifferenceOfGaussian
 					}
 				} );
 		}
-		ex.shutdown();
-		try
-		{
-			ex.awaitTermination( 1000, TimeUnit.DAYS );
-		}
-		catch ( final InterruptedException e )
-		{
-			e.printStackTrace();
-		}
+		TaskExecutors.run( service, tasks, numThreads );
 	}
 
 	/**
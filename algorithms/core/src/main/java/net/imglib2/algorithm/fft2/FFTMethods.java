@@ -32,17 +32,24 @@
  */
 package net.imglib2.algorithm.fft2;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import net.imglib2.Cursor;
 import net.imglib2.Dimensions;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
 import net.imglib2.iterator.LocalizingZeroMinIntervalIterator;
 import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.multithreading.TaskExecutors;
 import net.imglib2.type.numeric.ComplexType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 import edu.mines.jtk.dsp.FftComplex;
 import edu.mines.jtk.dsp.FftReal;
@@ -223,10 +230,13 @@ public class FFTMethods
 			return false;
 		}
 
+		final FFTPlan plan = FFTPlan.real( realSize );
+
 		// perform the complex-to-real fft in a dimension multithreaded if more
 		// than one dimension exisits
 		if ( numDimensions > 1 )
 		{
+			final long numLines = Intervals.numElements( input ) / inputSize[ dim ];
 			final AtomicInteger ai = new AtomicInteger( 0 );
 			final Thread[] threads = SimpleMultiThreading.newThreads( numThreads );
 
@@ -238,41 +248,45 @@ public class FFTMethods
 					{
 						final int myNumber = ai.getAndIncrement();
 
+						// each thread computes a contiguous range of lines
+						final long firstLine = myNumber * numLines / threads.length;
+						final long lastLine = ( myNumber + 1 ) * numLines / threads.length;
+
 						// the temporary 1-d arrays for the inverse fft
-						final float[] tempIn = new float[ complexSize * 2 ];
-						final float[] tempOut = new float[ realSize ];
-
-						final FftReal fft = new FftReal( realSize );
-
-						final RandomAccess< C > randomAccessIn = input.randomAccess();
-						final RandomAccess< R > randomAccessOut = output.randomAccess();
-
-						/**
-						 * Here we use a LocalizingZeroMinIntervalIterator to
-						 * iterate through all dimensions except the one we are
-						 * computing the inverse fft in
-						 */
-						final int[] fakeSize = new int[ numDimensions - 1 ];
-						final int[] cursorInPosition = new int[ numDimensions ];
-						final int[] cursorOutPosition = new int[ numDimensions ];
-
-						// get all dimensions except the one we are doing the
-						// real-to-complex fft on
-						int countDim = 0;
-						for ( int d = 0; d < numDimensions; ++d )
-							if ( d != dim )
-								fakeSize[ countDim++ ] = inputSize[ d ];
-
-						final LocalizingZeroMinIntervalIterator cursorDim = new LocalizingZeroMinIntervalIterator( fakeSize );
-
-						// iterate over all dimensions except the one we are
-						// computing the fft in, which is dim=0 here
-						A: while ( cursorDim.hasNext() )
+						final float[] tempIn = plan.borrow( complexSize * 2 );
+						final float[] tempOut = plan.borrow( realSize );
+						try
 						{
-							cursorDim.fwd();
-
-							if ( cursorDim.getIntPosition( 0 ) % numThreads == myNumber )
+							final FftReal fft = plan.getFftReal();
+
+							final RandomAccess< C > randomAccessIn = input.randomAccess();
+							final RandomAccess< R > randomAccessOut = output.randomAccess();
+
+							/**
+							 * Here we use a LocalizingZeroMinIntervalIterator to
+							 * iterate through all dimensions except the one we are
+							 * computing the inverse fft in
+							 */
+							final int[] fakeSize = new int[ numDimensions - 1 ];
+							final int[] cursorInPosition = new int[ numDimensions ];
+							final int[] cursorOutPosition = new int[ numDimensions ];
+
+							// get all dimensions except the one we are doing the
+							// real-to-complex fft on
+							int countDim = 0;
+							for ( int d = 0; d < numDimensions; ++d )
+								if ( d != dim )
+									fakeSize[ countDim++ ] = inputSize[ d ];
+
+							final LocalizingZeroMinIntervalIterator cursorDim = new LocalizingZeroMinIntervalIterator( fakeSize );
+
+							// iterate over all dimensions except the one we are
+							// computing the fft in, which is dim=0 here
+							cursorDim.jumpFwd( firstLine );
+							A: for ( long line = firstLine; line < lastLine; ++line )
 							{
+								cursorDim.fwd();
+
 								// get all dimensions except the one we are
 								// currently doing the fft on
 								cursorDim.localize( fakeSize );
@@ -319,31 +333,43 @@ public class FFTMethods
 								computeComplexToReal1dFFT( fft, randomAccessIn, randomAccessOut, interval, dim, tempIn, tempOut, scale );
 							}
 						}
+						finally
+						{
+							plan.giveBack( tempIn );
+							plan.giveBack( tempOut );
+						}
 					}
 				} );
 
-			SimpleMultiThreading.startAndJoin( threads );
+			SimpleMultiThreading.runAndJoin( threads );
 		}
 		else
 		{
 			// the temporary 1-d arrays for the fft
-			final float[] tempIn = new float[ complexSize * 2 ];
-			final float[] tempOut = new float[ realSize ];
-
-			final FftReal fft = new FftReal( realSize );
+			final float[] tempIn = plan.borrow( complexSize * 2 );
+			final float[] tempOut = plan.borrow( realSize );
+			try
+			{
+				final FftReal fft = plan.getFftReal();
 
-			final RandomAccess< C > randomAccessIn = input.randomAccess();
-			final RandomAccess< R > randomAccessOut = output.randomAccess();
+				final RandomAccess< C > randomAccessIn = input.randomAccess();
+				final RandomAccess< R > randomAccessOut = output.randomAccess();
 
-			// set the cursor to 0 in the first (and only) dimension
-			randomAccessIn.setPosition( ( int ) input.min( 0 ), 0 );
+				// set the cursor to 0 in the first (and only) dimension
+				randomAccessIn.setPosition( ( int ) input.min( 0 ), 0 );
 
-			// set the cursor in the fft output image to 0 in the first (and
-			// only) dimension
-			randomAccessOut.setPosition( ( int ) output.min( 0 ), 0 );
+				// set the cursor in the fft output image to 0 in the first (and
+				// only) dimension
+				randomAccessOut.setPosition( ( int ) output.min( 0 ), 0 );
 
-			// compute the FFT along the 1d vector and write it into the output
-			computeComplexToReal1dFFT( fft, randomAccessIn, randomAccessOut, interval, 0, tempIn, tempOut, scale );
+				// compute the FFT along the 1d vector and write it into the output
+				computeComplexToReal1dFFT( fft, randomAccessIn, randomAccessOut, interval, 0, tempIn, tempOut, scale );
+			}
+			finally
+			{
+				plan.giveBack( tempIn );
+				plan.giveBack( tempOut );
+			}
 		}
 
 		return true;
@@ -513,10 +539,13 @@ public class FFTMethods
 			return false;
 		}
 
+		final FFTPlan plan = FFTPlan.real( realSize );
+
 		// perform the real-to-complex fft in a dimension multithreaded if more
 		// than one dimension exisits
 		if ( numDimensions > 1 )
 		{
+			final long numLines = Intervals.numElements( input ) / inputSize[ dim ];
 			final AtomicInteger ai = new AtomicInteger( 0 );
 			final Thread[] threads = SimpleMultiThreading.newThreads( numThreads );
 
@@ -528,41 +557,45 @@ public class FFTMethods
 					{
 						final int myNumber = ai.getAndIncrement();
 
+						// each thread computes a contiguous range of lines
+						final long firstLine = myNumber * numLines / threads.length;
+						final long lastLine = ( myNumber + 1 ) * numLines / threads.length;
+
 						// the temporary 1-d arrays for the fft
-						final float[] tempIn = new float[ realSize ];
-						final float[] tempOut = new float[ complexSize * 2 ];
-
-						final FftReal fft = new FftReal( realSize );
-
-						final RandomAccess< R > randomAccessIn = input.randomAccess();
-						final RandomAccess< C > randomAccessOut = output.randomAccess();
-
-						/**
-						 * Here we use a LocalizingZeroMinIntervalIterator to
-						 * iterate through all dimensions except the one we are
-						 * computing the inverse fft in
-						 */
-						final int[] fakeSize = new int[ numDimensions - 1 ];
-						final int[] cursorInPosition = new int[ numDimensions ];
-						final int[] cursorOutPosition = new int[ numDimensions ];
-
-						// get all dimensions except the one we are doing the
-						// real-to-complex fft on
-						int countDim = 0;
-						for ( int d = 0; d < numDimensions; ++d )
-							if ( d != dim )
-								fakeSize[ countDim++ ] = inputSize[ d ];
-
-						final LocalizingZeroMinIntervalIterator cursorDim = new LocalizingZeroMinIntervalIterator( fakeSize );
-
-						// iterate over all dimensions except the one we are
-						// computing the fft in, which is dim=0 here
-						A: while ( cursorDim.hasNext() )
+						final float[] tempIn = plan.borrow( realSize );
+						final float[] tempOut = plan.borrow( complexSize * 2 );
+						try
 						{
-							cursorDim.fwd();
-
-							if ( cursorDim.getIntPosition( 0 ) % numThreads == myNumber )
+							final FftReal fft = plan.getFftReal();
+
+							final RandomAccess< R > randomAccessIn = input.randomAccess();
+							final RandomAccess< C > randomAccessOut = output.randomAccess();
+
+							/**
+							 * Here we use a LocalizingZeroMinIntervalIterator to
+							 * iterate through all dimensions except the one we are
+							 * computing the inverse fft in
+							 */
+							final int[] fakeSize = new int[ numDimensions - 1 ];
+							final int[] cursorInPosition = new int[ numDimensions ];
+							final int[] cursorOutPosition = new int[ numDimensions ];
+
+							// get all dimensions except the one we are doing the
+							// real-to-complex fft on
+							int countDim = 0;
+							for ( int d = 0; d < numDimensions; ++d )
+								if ( d != dim )
+									fakeSize[ countDim++ ] = inputSize[ d ];
+
+							final LocalizingZeroMinIntervalIterator cursorDim = new LocalizingZeroMinIntervalIterator( fakeSize );
+
+							// iterate over all dimensions except the one we are
+							// computing the fft in, which is dim=0 here
+							cursorDim.jumpFwd( firstLine );
+							A: for ( long line = firstLine; line < lastLine; ++line )
 							{
+								cursorDim.fwd();
+
 								// get all dimensions except the one we are
 								// currently doing the fft on
 								cursorDim.localize( fakeSize );
@@ -609,33 +642,45 @@ public class FFTMethods
 								computeRealToComplex1dFFT( fft, randomAccessIn, randomAccessOut, interval, dim, tempIn, tempOut, scale );
 							}
 						}
+						finally
+						{
+							plan.giveBack( tempIn );
+							plan.giveBack( tempOut );
+						}
 					}
 				} );
 
-			SimpleMultiThreading.startAndJoin( threads );
+			SimpleMultiThreading.runAndJoin( threads );
 		}
 		else
 		{
 			// if only one dimension exists, multithreading makes no sense here
 
 			// the temporary 1-d arrays for the fft
-			final float[] tempIn = new float[ realSize ];
-			final float[] tempOut = new float[ complexSize * 2 ];
-
-			final FftReal fft = new FftReal( realSize );
+			final float[] tempIn = plan.borrow( realSize );
+			final float[] tempOut = plan.borrow( complexSize * 2 );
+			try
+			{
+				final FftReal fft = plan.getFftReal();
 
-			final RandomAccess< R > randomAccessIn = input.randomAccess();
-			final RandomAccess< C > randomAccessOut = output.randomAccess();
+				final RandomAccess< R > randomAccessIn = input.randomAccess();
+				final RandomAccess< C > randomAccessOut = output.randomAccess();
 
-			// set the cursor to 0 in the first (and only) dimension
-			randomAccessIn.setPosition( ( int ) input.min( 0 ), 0 );
+				// set the cursor to 0 in the first (and only) dimension
+				randomAccessIn.setPosition( ( int ) input.min( 0 ), 0 );
 
-			// set the cursor in the fft output image to 0 in the first (and
-			// only) dimension
-			randomAccessOut.setPosition( ( int ) output.min( 0 ), 0 );
+				// set the cursor in the fft output image to 0 in the first (and
+				// only) dimension
+				randomAccessOut.setPosition( ( int ) output.min( 0 ), 0 );
 
-			// compute the FFT along the 1d vector and write it into the output
-			computeRealToComplex1dFFT( fft, randomAccessIn, randomAccessOut, interval, 0, tempIn, tempOut, scale );
+				// compute the FFT along the 1d vector and write it into the output
+				computeRealToComplex1dFFT( fft, randomAccessIn, randomAccessOut, interval, 0, tempIn, tempOut, scale );
+			}
+			finally
+			{
+				plan.giveBack( tempIn );
+				plan.giveBack( tempOut );
+			}
 		}
 		return true;
 	}
@@ -727,106 +772,8 @@ public class FFTMethods
 			return false;
 		}
 
-		// perform the real-to-complex fft in a dimension multithreaded if more
-		// than one dimension exisits
-		final int size = dataSize[ dim ];
-
-		if ( numDimensions > 1 )
-		{
-			final AtomicInteger ai = new AtomicInteger( 0 );
-			final Thread[] threads = SimpleMultiThreading.newThreads( numThreads );
-
-			for ( int ithread = 0; ithread < threads.length; ++ithread )
-				threads[ ithread ] = new Thread( new Runnable()
-				{
-					@Override
-					public void run()
-					{
-						final int myNumber = ai.getAndIncrement();
-
-						// the temporary 1-d arrays for the fft
-						final float[] tempIn = new float[ size * 2 ];
-						final float[] tempOut = new float[ size * 2 ];
-
-						final FftComplex fft = new FftComplex( size );
-
-						final RandomAccess< C > randomAccess = data.randomAccess();
-
-						/**
-						 * Here we use a LocalizingZeroMinIntervalIterator to
-						 * iterate through all dimensions except the one we are
-						 * computing the inverse fft in
-						 */
-						final int[] fakeSize = new int[ numDimensions - 1 ];
-						final int[] randomAccessPosition = new int[ numDimensions ];
-
-						// get all dimensions except the one we are currently
-						// doing the fft on
-						int countDim = 0;
-						for ( int d = 0; d < numDimensions; ++d )
-							if ( d != dim )
-								fakeSize[ countDim++ ] = dataSize[ d ];
-
-						final LocalizingZeroMinIntervalIterator cursorDim = new LocalizingZeroMinIntervalIterator( fakeSize );
-
-						// iterate over all dimensions except the one we are
-						// computing the fft in
-						while ( cursorDim.hasNext() )
-						{
-							cursorDim.fwd();
-
-							if ( cursorDim.getIntPosition( 0 ) % numThreads == myNumber )
-							{
-								// get all dimensions except the one we are
-								// currently doing the fft on
-								cursorDim.localize( fakeSize );
-
-								// the location on the one-dimensional vector of
-								// which we compute the fft
-								// is simply the first pixel
-								randomAccessPosition[ dim ] = ( int ) data.min( dim );
-
-								// get the position in all dimensions except the
-								// on we compute the fft in
-								// which we get from the iterator that iterates
-								// n-1 dimensions
-								countDim = 0;
-								for ( int d = 0; d < numDimensions; ++d )
-									if ( d != dim )
-										randomAccessPosition[ d ] = fakeSize[ countDim++ ] + ( int ) data.min( d );
-
-								// set the cursor to the beginning of the
-								// correct line
-								randomAccess.setPosition( randomAccessPosition );
-
-								// compute the FFT along the 1d vector and write
-								// it into the output
-								computeComplexToComplex1dFFT( fft, forward, randomAccess, dim, tempIn, tempOut, scale );
-							}
-						}
-					}
-				} );
-
-			SimpleMultiThreading.startAndJoin( threads );
-		}
-		else
-		{
-			// if only one dimension exists, multithreading makes no sense here
-
-			// the temporary 1-d arrays for the fft
-			final float[] tempIn = new float[ size * 2 ];
-			final float[] tempOut = new float[ size * 2 ];
-
-			final FftComplex fft = new FftComplex( size );
-
-			final RandomAccess< C > randomAccess = data.randomAccess();
-
-			// set the cursor to 0 in the first (and only) dimension
-			randomAccess.setPosition( ( int ) data.min( 0 ), 0 );
-
-			// compute the FFT along the 1d vector and write it into the output
-			computeComplexToComplex1dFFT( fft, forward, randomAccess, dim, tempIn, tempOut, scale );
-		}
+		// transform batches of lines with the cached plan for this size
+		FFTPlan.complexToComplex( dataSize[ dim ] ).complexToComplex( data, dim, forward, scale, TaskExecutors.getDefault(), numThreads );
 
 		return true;
 	}
@@ -953,58 +900,6 @@ public class FFTMethods
 		}
 	}
 
-	final private static < C extends ComplexType< C > > void computeComplexToComplex1dFFT( final FftComplex fft, final boolean forward, final RandomAccess< C > randomAccess, final int dim, final float[] tempIn, final float[] tempOut, final boolean scale )
-	{
-		final int size = tempIn.length / 2;
-		final int max = size - 1;
-		final int max2 = max * 2;
-
-		// get the input line
-		for ( int i = 0; i < max; ++i )
-		{
-			final int j = i * 2;
-
-			tempIn[ j ] = randomAccess.get().getRealFloat();
-			tempIn[ j + 1 ] = randomAccess.get().getImaginaryFloat();
-			randomAccess.fwd( dim );
-		}
-		tempIn[ max2 ] = randomAccess.get().getRealFloat();
-		tempIn[ max2 + 1 ] = randomAccess.get().getImaginaryFloat();
-
-		// compute the fft in dimension dim (complex -> complex)
-		if ( forward )
-			fft.complexToComplex( -1, tempIn, tempOut );
-		else
-			fft.complexToComplex( 1, tempIn, tempOut );
-
-		// move the randomAccess back
-		randomAccess.move( -max, dim );
-
-		// write back result
-		if ( scale )
-		{
-			for ( int i = 0; i < max; ++i )
-			{
-				final int j = i * 2;
-
-				randomAccess.get().setComplexNumber( tempOut[ j ] / size, tempOut[ j + 1 ] / size );
-				randomAccess.fwd( dim );
-			}
-			randomAccess.get().setComplexNumber( tempOut[ max2 ] / size, tempOut[ max2 + 1 ] / size );
-		}
-		else
-		{
-			for ( int i = 0; i < max; ++i )
-			{
-				final int j = i * 2;
-
-				randomAccess.get().setComplexNumber( tempOut[ j ], tempOut[ j + 1 ] );
-				randomAccess.fwd( dim );
-			}
-			randomAccess.get().setComplexNumber( tempOut[ max2 ], tempOut[ max2 + 1 ] );
-		}
-	}
-
 	/**
 	 * Computes the padding interval required to perform an FFT when the padding
 	 * dimensions are known. It will define the padding area around the input.
@@ -1273,4 +1168,100 @@ public class FFTMethods
 		for ( final T type : Views.iterable( complexData ) )
 			type.complexConjugate();
 	}
+
+	/**
+	 * Multiplies two Fourier transforms of the same size pixel-wise, result =
+	 * a * b or result = a * conj(b) (the complex conjugate of b, which avoids a
+	 * separate pass to conjugate b). The result may be a or b. Fourier
+	 * transforms of real-valued data only contain the non-redundant half of
+	 * the spectrum (see {@link #realToComplex}), which is all the
+	 * multiplication touches.
+	 *
+	 * If all three are {@link ArrayImg}s of {@link ComplexFloatType}, the
+	 * product is computed directly on the interleaved float arrays, otherwise
+	 * through the real and imaginary parts as doubles.
+	 *
+	 * @param a
+	 *            - the first factor
+	 * @param b
+	 *            - the second factor
+	 * @param result
+	 *            - the product, can be a or b
+	 * @param conjugate
+	 *            - multiply with the complex conjugate of b
+	 * @param numThreads
+	 *            - the number of threads to use
+	 */
+	final public static < C extends ComplexType< C > > void multiplyComplex( final RandomAccessibleInterval< C > a, final RandomAccessibleInterval< C > b, final RandomAccessibleInterval< C > result, final boolean conjugate, final int numThreads )
+	{
+		if ( !Intervals.equalDimensions( a, b ) || !Intervals.equalDimensions( a, result ) )
+			throw new IllegalArgumentException( "Fourier transforms must have the same size." );
+
+		final float[] arrayA = FFTPlan.directArray( a );
+		final float[] arrayB = FFTPlan.directArray( b );
+		final float[] arrayResult = FFTPlan.directArray( result );
+
+		final long size = Intervals.numElements( a );
+		final int numTasks = ( int ) Math.max( 1, Math.min( numThreads, size / 4096 ) );
+		final List< Runnable > tasks = new ArrayList< Runnable >( numTasks );
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final long from = t * size / numTasks;
+			final long to = ( t + 1 ) * size / numTasks;
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if ( arrayA != null && arrayB != null && arrayResult != null )
+						multiplyComplex( arrayA, arrayB, arrayResult, conjugate, ( int ) from, ( int ) to );
+					else
+						multiplyComplex( a, b, result, conjugate, from, to );
+				}
+			} );
+		}
+		TaskExecutors.run( TaskExecutors.getDefault(), tasks, numTasks );
+	}
+
+	/**
+	 * Multiply the complex numbers [from, to) of interleaved float arrays.
+	 */
+	private static void multiplyComplex( final float[] a, final float[] b, final float[] result, final boolean conjugate, final int from, final int to )
+	{
+		final float sign = conjugate ? -1 : 1;
+		for ( int i = 2 * from; i < 2 * to; i += 2 )
+		{
+			final float reA = a[ i ];
+			final float imA = a[ i + 1 ];
+			final float reB = b[ i ];
+			final float imB = sign * b[ i + 1 ];
+			result[ i ] = reA * reB - imA * imB;
+			result[ i + 1 ] = reA * imB + imA * reB;
+		}
+	}
+
+	/**
+	 * Multiply the complex numbers [from, to) in flat iteration order.
+	 */
+	private static < C extends ComplexType< C > > void multiplyComplex( final RandomAccessibleInterval< C > a, final RandomAccessibleInterval< C > b, final RandomAccessibleInterval< C > result, final boolean conjugate, final long from, final long to )
+	{
+		final Cursor< C > cursorA = Views.flatIterable( a ).cursor();
+		final Cursor< C > cursorB = Views.flatIterable( b ).cursor();
+		final Cursor< C > cursorResult = Views.flatIterable( result ).cursor();
+		cursorA.jumpFwd( from );
+		cursorB.jumpFwd( from );
+		cursorResult.jumpFwd( from );
+
+		final double sign = conjugate ? -1 : 1;
+		for ( long i = from; i < to; ++i )
+		{
+			final C typeA = cursorA.next();
+			final C typeB = cursorB.next();
+			final double reA = typeA.getRealDouble();
+			final double imA = typeA.getImaginaryDouble();
+			final double reB = typeB.getRealDouble();
+			final double imB = sign * typeB.getImaginaryDouble();
+			cursorResult.next().setComplexNumber( reA * reB - imA * imB, reA * imB + imA * reB );
+		}
+	}
 }
@@ -0,0 +1,457 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft2;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.multithreading.TaskExecutors;
+import net.imglib2.type.numeric.ComplexType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import edu.mines.jtk.dsp.FftComplex;
+import edu.mines.jtk.dsp.FftReal;
+
+/**
+ * A reusable one-dimensional FFT of a fixed size. Plans are cached by size
+ * and kind (complex-to-complex or real), so repeated transforms of the same
+ * size neither re-create the mines-jtk FFT objects nor re-allocate the
+ * temporary line arrays, which are kept in a pool. The pool of a plan holds
+ * at most {@link #MAX_POOLED_ARRAYS} arrays, through soft references, so
+ * cached plans do not pin the peak memory of past transforms.
+ *
+ * <p>
+ * {@link #complexToComplex(RandomAccessibleInterval, int, boolean, boolean, ExecutorService, int)}
+ * transforms all lines of an n-dimensional dataset along one dimension. Each
+ * thread gets a contiguous range of lines and processes them in batches of
+ * neighboring lines, so lines along a non-contiguous dimension are read and
+ * written in blocks (a blocked transpose) rather than element by element
+ * with a large stride. An {@link ArrayImg} of {@link ComplexFloatType} is
+ * accessed directly through its float array.
+ * </p>
+ *
+ * @author ImgLib2 developers
+ */
+public class FFTPlan
+{
+	/**
+	 * Number of lines that are transformed per batch.
+	 */
+	private static final int BATCH_SIZE = 16;
+
+	/**
+	 * Maximum number of temporary arrays kept in the pool of a plan, enough
+	 * for one batch of lines per processor.
+	 */
+	static final int MAX_POOLED_ARRAYS = BATCH_SIZE * Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Maximum number of cached plans.
+	 */
+	private static final int MAX_CACHED_PLANS = 32;
+
+	private static final Map< Integer, FFTPlan > plans = new LinkedHashMap< Integer, FFTPlan >( 16, 0.75f, true )
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry( final Map.Entry< Integer, FFTPlan > eldest )
+		{
+			return size() > MAX_CACHED_PLANS;
+		}
+	};
+
+	/**
+	 * @return the number of bytes of the temporary line arrays that one thread
+	 *         uses to transform lines of the given number of complex values.
+	 */
+	public static long lineBufferBytes( final long complexSize )
+	{
+		return BATCH_SIZE * 2 * complexSize * 4;
+	}
+
+	/**
+	 * Get the (cached) plan for complex-to-complex transforms of the given
+	 * size.
+	 *
+	 * @param size
+	 *            - the number of complex values per line, must be supported by
+	 *            {@link FftComplex}
+	 */
+	public static FFTPlan complexToComplex( final int size )
+	{
+		return get( size, false );
+	}
+
+	/**
+	 * Get the (cached) plan for real-to-complex and complex-to-real
+	 * transforms of the given size.
+	 *
+	 * @param realSize
+	 *            - the number of real values per line, must be supported by
+	 *            {@link FftReal}
+	 */
+	public static FFTPlan real( final int realSize )
+	{
+		return get( realSize, true );
+	}
+
+	private static synchronized FFTPlan get( final int size, final boolean real )
+	{
+		final Integer key = real ? -size : size;
+		FFTPlan plan = plans.get( key );
+		if ( plan == null )
+		{
+			plan = new FFTPlan( size, real );
+			plans.put( key, plan );
+		}
+		return plan;
+	}
+
+	final private int size;
+
+	final private FftComplex fftComplex;
+
+	final private FftReal fftReal;
+
+	final private List< SoftReference< float[] > > pool = new ArrayList< SoftReference< float[] > >();
+
+	private FFTPlan( final int size, final boolean real )
+	{
+		this.size = size;
+		if ( real )
+		{
+			fftReal = new FftReal( size );
+			fftComplex = null;
+		}
+		else
+		{
+			fftComplex = new FftComplex( size );
+			fftReal = null;
+		}
+	}
+
+	/**
+	 * @return the size of the transformed lines (real values for a real plan,
+	 *         complex values otherwise).
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the complex FFT of this plan, or null if it is a real plan.
+	 */
+	public FftComplex getFftComplex()
+	{
+		return fftComplex;
+	}
+
+	/**
+	 * @return the real FFT of this plan, or null if it is a complex plan.
+	 */
+	public FftReal getFftReal()
+	{
+		return fftReal;
+	}
+
+	/**
+	 * Take a temporary array of the given length from the pool, or allocate
+	 * it.
+	 */
+	synchronized float[] borrow( final int length )
+	{
+		for ( int i = pool.size() - 1; i >= 0; --i )
+		{
+			final float[] array = pool.get( i ).get();
+			if ( array == null )
+				pool.remove( i );
+			else if ( array.length == length )
+			{
+				pool.remove( i );
+				return array;
+			}
+		}
+		return new float[ length ];
+	}
+
+	/**
+	 * Return a temporary array to the pool. If the pool is full, the array is
+	 * dropped.
+	 */
+	synchronized void giveBack( final float[] array )
+	{
+		if ( pool.size() < MAX_POOLED_ARRAYS )
+			pool.add( new SoftReference< float[] >( array ) );
+	}
+
+	/**
+	 * @return the number of arrays currently kept in the pool.
+	 */
+	synchronized int numPooledArrays()
+	{
+		return pool.size();
+	}
+
+	/**
+	 * Compute the complex-to-complex FFT of all lines of data along dimension
+	 * dim in-place.
+	 *
+	 * @param data
+	 *            - the complex-valued dataset, its size in dim must be the size
+	 *            of this plan
+	 * @param dim
+	 *            - the dimension to compute the FFT in
+	 * @param forward
+	 *            - true for a forward, false for an inverse transform
+	 * @param scale
+	 *            - divide the result by the size of the transform
+	 * @param service
+	 *            - the service that runs the tasks
+	 * @param numThreads
+	 *            - the number of tasks
+	 */
+	public < C extends ComplexType< C > > void complexToComplex( final RandomAccessibleInterval< C > data, final int dim, final boolean forward, final boolean scale, final ExecutorService service, final int numThreads )
+	{
+		if ( fftComplex == null )
+			throw new IllegalStateException( "not a complex-to-complex plan" );
+		if ( data.dimension( dim ) != size )
+			throw new IllegalArgumentException( "size of dimension " + dim + " is " + data.dimension( dim ) + ", plan size is " + size );
+
+		final int n = data.numDimensions();
+		final long[] dimensions = new long[ n ];
+		data.dimensions( dimensions );
+		final long numLines = numLines( dimensions, dim );
+
+		final float[] array = directArray( data );
+
+		final int numTasks = ( int ) Math.max( 1, Math.min( numThreads, numLines / BATCH_SIZE ) );
+		final List< Runnable > tasks = new ArrayList< Runnable >();
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final long firstLine = t * numLines / numTasks;
+			final long lastLine = ( t + 1 ) * numLines / numTasks;
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final float[][] lines = new float[ BATCH_SIZE ][];
+					for ( int b = 0; b < BATCH_SIZE; ++b )
+						lines[ b ] = borrow( size * 2 );
+					try
+					{
+						if ( array != null )
+							transformArray( array, dimensions, dim, firstLine, lastLine, forward, scale, lines );
+						else
+							transformGeneric( data, dimensions, dim, firstLine, lastLine, forward, scale, lines );
+					}
+					finally
+					{
+						for ( int b = 0; b < BATCH_SIZE; ++b )
+							giveBack( lines[ b ] );
+					}
+				}
+			} );
+		}
+		TaskExecutors.run( service, tasks, numThreads );
+	}
+
+	/**
+	 * Transform lines [firstLine, lastLine) of a float array holding
+	 * interleaved complex values. Lines are numbered in flat order of all
+	 * dimensions except dim. Above dimension 0, neighboring lines are
+	 * neighbors in memory, so a batch is gathered by copying blocks of
+	 * adjacent values for each position along the line.
+	 */
+	private void transformArray( final float[] array, final long[] dimensions, final int dim, final long firstLine, final long lastLine, final boolean forward, final boolean scale, final float[][] lines )
+	{
+		// distance of two elements of a line, in complex values
+		long stride = 1;
+		for ( int d = 0; d < dim; ++d )
+			stride *= dimensions[ d ];
+
+		long line = firstLine;
+		while ( line < lastLine )
+		{
+			final long inner = line % stride;
+			final long outer = line / stride;
+			final int batch = ( int ) Math.min( BATCH_SIZE, Math.min( stride - inner, lastLine - line ) );
+			final int start = ( int ) ( 2 * ( inner + outer * stride * size ) );
+			final int step = ( int ) ( 2 * stride );
+
+			if ( stride == 1 )
+				System.arraycopy( array, start, lines[ 0 ], 0, size * 2 );
+			else
+				for ( int k = 0, i = start; k < size; ++k, i += step )
+					for ( int b = 0; b < batch; ++b )
+					{
+						lines[ b ][ 2 * k ] = array[ i + 2 * b ];
+						lines[ b ][ 2 * k + 1 ] = array[ i + 2 * b + 1 ];
+					}
+
+			for ( int b = 0; b < batch; ++b )
+				transformLine( lines[ b ], forward, scale );
+
+			if ( stride == 1 )
+				System.arraycopy( lines[ 0 ], 0, array, start, size * 2 );
+			else
+				for ( int k = 0, i = start; k < size; ++k, i += step )
+					for ( int b = 0; b < batch; ++b )
+					{
+						array[ i + 2 * b ] = lines[ b ][ 2 * k ];
+						array[ i + 2 * b + 1 ] = lines[ b ][ 2 * k + 1 ];
+					}
+
+			line += batch;
+		}
+	}
+
+	/**
+	 * Transform lines [firstLine, lastLine) of any complex-valued dataset.
+	 * The lines of a batch are traversed in lockstep, which keeps the accesses
+	 * local if neighboring lines are neighbors in memory.
+	 */
+	private < C extends ComplexType< C > > void transformGeneric( final RandomAccessibleInterval< C > data, final long[] dimensions, final int dim, final long firstLine, final long lastLine, final boolean forward, final boolean scale, final float[][] lines )
+	{
+		final int n = data.numDimensions();
+		final List< RandomAccess< C > > accesses = new ArrayList< RandomAccess< C > >();
+		for ( int b = 0; b < BATCH_SIZE; ++b )
+			accesses.add( data.randomAccess() );
+		final long[] position = new long[ n ];
+
+		long line = firstLine;
+		while ( line < lastLine )
+		{
+			final int batch = ( int ) Math.min( BATCH_SIZE, lastLine - line );
+			for ( int b = 0; b < batch; ++b )
+			{
+				linePosition( line + b, dimensions, dim, position );
+				for ( int d = 0; d < n; ++d )
+					position[ d ] += data.min( d );
+				accesses.get( b ).setPosition( position );
+			}
+
+			for ( int k = 0; k < size; ++k )
+				for ( int b = 0; b < batch; ++b )
+				{
+					final RandomAccess< C > a = accesses.get( b );
+					final C c = a.get();
+					lines[ b ][ 2 * k ] = c.getRealFloat();
+					lines[ b ][ 2 * k + 1 ] = c.getImaginaryFloat();
+					a.fwd( dim );
+				}
+
+			for ( int b = 0; b < batch; ++b )
+				transformLine( lines[ b ], forward, scale );
+
+			for ( int k = size - 1; k >= 0; --k )
+				for ( int b = 0; b < batch; ++b )
+				{
+					final RandomAccess< C > a = accesses.get( b );
+					a.bck( dim );
+					a.get().setComplexNumber( lines[ b ][ 2 * k ], lines[ b ][ 2 * k + 1 ] );
+				}
+
+			line += batch;
+		}
+	}
+
+	/**
+	 * Transform one line in-place.
+	 */
+	private void transformLine( final float[] line, final boolean forward, final boolean scale )
+	{
+		fftComplex.complexToComplex( forward ? -1 : 1, line, line );
+		if ( scale )
+		{
+			final float s = 1.0f / size;
+			for ( int i = 0; i < size * 2; ++i )
+				line[ i ] *= s;
+		}
+	}
+
+	/**
+	 * Get the float array of data if it is an {@link ArrayImg} of
+	 * {@link ComplexFloatType}, null otherwise.
+	 */
+	static float[] directArray( final RandomAccessibleInterval< ? > data )
+	{
+		if ( !( data instanceof ArrayImg ) )
+			return null;
+		final ArrayImg< ?, ? > img = ( ArrayImg< ?, ? > ) data;
+		if ( !( img.firstElement() instanceof ComplexFloatType ) )
+			return null;
+		final Object access = img.update( null );
+		return access instanceof FloatArray ? ( ( FloatArray ) access ).getCurrentStorageArray() : null;
+	}
+
+	/**
+	 * Get the number of lines along dim.
+	 */
+	static long numLines( final long[] dimensions, final int dim )
+	{
+		long numLines = 1;
+		for ( int d = 0; d < dimensions.length; ++d )
+			if ( d != dim )
+				numLines *= dimensions[ d ];
+		return numLines;
+	}
+
+	/**
+	 * Get the zero-min start position of a line, numbering lines in flat order
+	 * of all dimensions except dim.
+	 */
+	static void linePosition( long line, final long[] dimensions, final int dim, final long[] position )
+	{
+		for ( int d = 0; d < dimensions.length; ++d )
+		{
+			if ( d == dim )
+				position[ d ] = 0;
+			else
+			{
+				position[ d ] = line % dimensions[ d ];
+				line /= dimensions[ d ];
+			}
+		}
+	}
+}
@@ -33,6 +33,8 @@
 
 package net.imglib2.algorithm.gauss3;
 
+import java.util.concurrent.ExecutorService;
+
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.exception.IncompatibleTypeException;
@@ -158,6 +160,29 @@ public final class Gauss3
 		SeparableSymmetricConvolution.convolve( halfkernels, source, target, numthreads );
 	}
 
+	/**
+	 * Apply Gaussian convolution to source and write the result to output,
+	 * running tasks on the given {@link ExecutorService}. See
+	 * {@link #gauss(double[], RandomAccessible, RandomAccessibleInterval, int)}.
+	 *
+	 * @param sigma
+	 *            standard deviation in every dimension.
+	 * @param source
+	 *            source image, must be sufficiently padded.
+	 * @param target
+	 *            target image
+	 * @param service
+	 *            service on which to run the computation.
+	 * @throws IncompatibleTypeException
+	 *             if source and target type are not compatible (they must be
+	 *             either both {@link RealType RealTypes} or the same type).
+	 */
+	public static < S extends NumericType< S >, T extends NumericType< T > > void gauss( final double[] sigma, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service ) throws IncompatibleTypeException
+	{
+		final double[][] halfkernels = halfkernels( sigma );
+		SeparableSymmetricConvolution.convolve( halfkernels, source, target, service );
+	}
+
 	public static double[][] halfkernels( final double[] sigma )
 	{
 		final int n = sigma.length;
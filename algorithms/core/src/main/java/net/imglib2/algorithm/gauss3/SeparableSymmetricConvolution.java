@@ -33,9 +33,8 @@
 
 package net.imglib2.algorithm.gauss3;
 
+import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import net.imglib2.Dimensions;
 import net.imglib2.FinalInterval;
@@ -49,6 +48,7 @@ import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.cell.CellImgFactory;
 import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.multithreading.TaskExecutors;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.NumericType;
 import net.imglib2.type.numeric.RealType;
@@ -97,8 +97,35 @@ public final class SeparableSymmetricConvolution
 	 *             if source and target type are not compatible (they must be
 	 *             either both {@link RealType RealTypes} or the same type).
 	 */
-	@SuppressWarnings( { "rawtypes", "unchecked" } )
 	public static < S extends NumericType< S >, T extends NumericType< T > > void convolve( final double[][] halfkernels, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final int numThreads ) throws IncompatibleTypeException
+	{
+		convolve( halfkernels, source, target, TaskExecutors.getDefault(), numThreads );
+	}
+
+	/**
+	 * Convolve source with a separable symmetric kernel and write the result to
+	 * output, running tasks on the given {@link ExecutorService}. See
+	 * {@link #convolve(double[][], RandomAccessible, RandomAccessibleInterval, int)}.
+	 *
+	 * @param halfkernels
+	 *            an array containing half-kernels for every dimension.
+	 * @param source
+	 *            source image, must be sufficiently padded.
+	 * @param target
+	 *            target image.
+	 * @param service
+	 *            service on which to run the computation.
+	 * @throws IncompatibleTypeException
+	 *             if source and target type are not compatible (they must be
+	 *             either both {@link RealType RealTypes} or the same type).
+	 */
+	public static < S extends NumericType< S >, T extends NumericType< T > > void convolve( final double[][] halfkernels, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service ) throws IncompatibleTypeException
+	{
+		convolve( halfkernels, source, target, service, TaskExecutors.getParallelism( service ) );
+	}
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	private static < S extends NumericType< S >, T extends NumericType< T > > void convolve( final double[][] halfkernels, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service, final int numThreads ) throws IncompatibleTypeException
 	{
 		final T targetType = Util.getTypeFromInterval( target );
 		final S sourceType = getType( source, target );
@@ -111,23 +138,23 @@ public final class SeparableSymmetricConvolution
 			// TODO: remove casting madness as soon as the bug is fixed
 			final Object oTargetType = targetType;
 			if ( oTargetType instanceof DoubleType )
-				convolveRealTypeDouble( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, numThreads );
+				convolveRealTypeDouble( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, service, numThreads );
 			else
-				convolveRealTypeFloat( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, numThreads );
+				convolveRealTypeFloat( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, service, numThreads );
 		}
 		else
 		{
 			if ( ! targetType.getClass().isInstance( sourceType ) )
 				throw new IncompatibleTypeException( sourceType, targetType.getClass().getCanonicalName() + " source required for convolving into a " + targetType.getClass().getCanonicalName() + " target" );
 			if ( targetType instanceof NativeType )
-				convolveNativeType( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, numThreads );
+				convolveNativeType( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, service, numThreads );
 			else
-				convolveNumericType( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, numThreads );
+				convolveNumericType( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, service, numThreads );
 		}
 	}
 
 	private static < S extends RealType< S >, T extends RealType< T > > void convolveRealTypeFloat( final double[][] halfkernels,
-			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final int numThreads )
+			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service, final int numThreads )
 	{
 		final FloatType type = new FloatType();
 		final ImgFactory< FloatType > imgfac = getImgFactory( target, halfkernels, type );
@@ -136,17 +163,17 @@ public final class SeparableSymmetricConvolution
 					FloatConvolverRealTypeBuffered.< S, FloatType >factory(),
 					FloatConvolverRealTypeBuffered.< FloatType, FloatType >factory(),
 					FloatConvolverRealTypeBuffered.< FloatType, T >factory(),
-					FloatConvolverRealTypeBuffered.< S, T >factory(), imgfac, type, numThreads );
+					FloatConvolverRealTypeBuffered.< S, T >factory(), imgfac, type, service, numThreads );
 		else
 			convolve( halfkernels, source, target,
 					FloatConvolverRealType.< S, FloatType >factory(),
 					FloatConvolverRealType.< FloatType, FloatType >factory(),
 					FloatConvolverRealType.< FloatType, T >factory(),
-					FloatConvolverRealType.< S, T >factory(), imgfac, type, numThreads );
+					FloatConvolverRealType.< S, T >factory(), imgfac, type, service, numThreads );
 	}
 
 	private static < S extends RealType< S >, T extends RealType< T > > void convolveRealTypeDouble( final double[][] halfkernels,
-			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final int numThreads )
+			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service, final int numThreads )
 	{
 		final DoubleType type = new DoubleType();
 		final ImgFactory< DoubleType > imgfac = getImgFactory( target, halfkernels, type );
@@ -155,17 +182,17 @@ public final class SeparableSymmetricConvolution
 					DoubleConvolverRealTypeBuffered.< S, DoubleType >factory(),
 					DoubleConvolverRealTypeBuffered.< DoubleType, DoubleType >factory(),
 					DoubleConvolverRealTypeBuffered.< DoubleType, T >factory(),
-					DoubleConvolverRealTypeBuffered.< S, T >factory(), imgfac, type, numThreads );
+					DoubleConvolverRealTypeBuffered.< S, T >factory(), imgfac, type, service, numThreads );
 		else
 			convolve( halfkernels, source, target,
 					DoubleConvolverRealType.< S, DoubleType >factory(),
 					DoubleConvolverRealType.< DoubleType, DoubleType >factory(),
 					DoubleConvolverRealType.< DoubleType, T >factory(),
-					DoubleConvolverRealType.< S, T >factory(), imgfac, type, numThreads );
+					DoubleConvolverRealType.< S, T >factory(), imgfac, type, service, numThreads );
 	}
 
 	private static < T extends NumericType< T > & NativeType< T > > void convolveNativeType( final double[][] halfkernels,
-			final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final int numThreads )
+			final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final ExecutorService service, final int numThreads )
 	{
 		final T type = Util.getTypeFromInterval( target );
 		final ConvolverFactory< T, T > convfac;
@@ -174,15 +201,15 @@ public final class SeparableSymmetricConvolution
 		else
 			convfac = ConvolverNativeType.factory( type );
 		final ImgFactory< T > imgfac = getImgFactory( target, halfkernels, type );
-		convolve( halfkernels, source, target, convfac, convfac, convfac, convfac, imgfac, type, numThreads );
+		convolve( halfkernels, source, target, convfac, convfac, convfac, convfac, imgfac, type, service, numThreads );
 	}
 
 	private static < T extends NumericType< T > > void convolveNumericType( final double[][] halfkernels,
-			final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final int numThreads )
+			final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final ExecutorService service, final int numThreads )
 	{
 		final T type = Util.getTypeFromInterval( target );
 		final ConvolverFactory< T, T > convfac = ConvolverNumericType.factory( type );
-		convolve( halfkernels, source, target, convfac, convfac, convfac, convfac, new ListImgFactory< T >(), type, numThreads );
+		convolve( halfkernels, source, target, convfac, convfac, convfac, convfac, new ListImgFactory< T >(), type, service, numThreads );
 	}
 
 	/**
@@ -205,7 +232,7 @@ public final class SeparableSymmetricConvolution
 			final ConvolverFactory< S, T > convolverFactoryST )
 	{
 	    final long[] sourceOffset = new long[] { 1 - halfkernel.length };
-	    convolveOffset( halfkernel, source, sourceOffset, target, target, 0, convolverFactoryST, 1, 1 );
+	    convolveOffset( halfkernel, source, sourceOffset, target, target, 0, convolverFactoryST, null, 1, 1 );
 	}
 
 	/**
@@ -251,6 +278,28 @@ public final class SeparableSymmetricConvolution
 			final ConvolverFactory< S, T > convolverFactoryST,
 			final ImgFactory< I > imgFactory, final I type,
 			final int numThreads )
+	{
+		convolve( halfkernels, source, target, convolverFactorySI, convolverFactoryII, convolverFactoryIT, convolverFactoryST, imgFactory, type, TaskExecutors.getDefault(), numThreads );
+	}
+
+	/**
+	 * Convolve source with a separable symmetric kernel and write the result to
+	 * output, running tasks on the given {@link ExecutorService}. See
+	 * {@link #convolve(double[][], RandomAccessible, RandomAccessibleInterval, ConvolverFactory, ConvolverFactory, ConvolverFactory, ConvolverFactory, ImgFactory, Object, int)}.
+	 *
+	 * @param service
+	 *            service on which to run the computation.
+	 * @param numThreads
+	 *            maximum number of tasks to run concurrently.
+	 */
+	public static < S, I, T > void convolve( final double[][] halfkernels,
+			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target,
+			final ConvolverFactory< S, I > convolverFactorySI,
+			final ConvolverFactory< I, I > convolverFactoryII,
+			final ConvolverFactory< I, T > convolverFactoryIT,
+			final ConvolverFactory< S, T > convolverFactoryST,
+			final ImgFactory< I > imgFactory, final I type,
+			final ExecutorService service, final int numThreads )
 	{
 		final int n = source.numDimensions();
 		if ( n == 1 )
@@ -273,22 +322,22 @@ public final class SeparableSymmetricConvolution
 			Img< I > tmp1 = imgFactory.create( tmpdims[ 0 ], type );
 		    if ( n == 2 )
 		    {
-			    convolveOffset( halfkernels[ 0 ], source, sourceOffset, tmp1, tmp1, 0, convolverFactorySI, numThreads, numTasks );
-			    convolveOffset( halfkernels[ 1 ], tmp1, targetOffset, target, target, 1, convolverFactoryIT, numThreads, numTasks );
+			    convolveOffset( halfkernels[ 0 ], source, sourceOffset, tmp1, tmp1, 0, convolverFactorySI, service, numThreads, numTasks );
+			    convolveOffset( halfkernels[ 1 ], tmp1, targetOffset, target, target, 1, convolverFactoryIT, service, numThreads, numTasks );
 		    }
 		    else
 		    {
 				Img< I > tmp2 = imgFactory.create( tmpdims[ 1 ], type );
 			    final long[] zeroOffset = new long[ n ];
-			    convolveOffset( halfkernels[ 0 ], source, sourceOffset, tmp1, new FinalInterval( tmpdims[ 0 ] ), 0, convolverFactorySI, numThreads, numTasks );
+			    convolveOffset( halfkernels[ 0 ], source, sourceOffset, tmp1, new FinalInterval( tmpdims[ 0 ] ), 0, convolverFactorySI, service, numThreads, numTasks );
 				for( int d = 1; d < n - 1; ++d )
 				{
-				    convolveOffset( halfkernels[ d ], tmp1, zeroOffset, tmp2, new FinalInterval( tmpdims[ d ] ), d, convolverFactoryII, numThreads, numTasks );
+				    convolveOffset( halfkernels[ d ], tmp1, zeroOffset, tmp2, new FinalInterval( tmpdims[ d ] ), d, convolverFactoryII, service, numThreads, numTasks );
 				    final Img< I > tmp = tmp2;
 				    tmp2 = tmp1;
 				    tmp1 = tmp;
 				}
-			    convolveOffset( halfkernels[ n - 1 ], tmp1, targetOffset, target, target, n - 1, convolverFactoryIT, numThreads, numTasks );
+			    convolveOffset( halfkernels[ n - 1 ], tmp1, targetOffset, target, target, n - 1, convolverFactoryIT, service, numThreads, numTasks );
 		    }
 		}
 	}
@@ -296,7 +345,7 @@ public final class SeparableSymmetricConvolution
 	/**
 	 * 1D convolution in dimension d.
 	 */
-	static < S, T > void convolveOffset( final double[] halfkernel, final RandomAccessible< S > source, final long[] sourceOffset, final RandomAccessible< T > target, final Interval targetInterval, final int d, final ConvolverFactory< S, T > factory, final int numThreads, final int numTasks )
+	static < S, T > void convolveOffset( final double[] halfkernel, final RandomAccessible< S > source, final long[] sourceOffset, final RandomAccessible< T > target, final Interval targetInterval, final int d, final ConvolverFactory< S, T > factory, final ExecutorService service, final int numThreads, final int numTasks )
 	{
 		final int n = source.numDimensions();
 		final int k1 = halfkernel.length - 1;
@@ -323,7 +372,7 @@ public final class SeparableSymmetricConvolution
 		}
 		srcmax[ d ] += 2 * k1;
 
-		final ExecutorService ex = Executors.newFixedThreadPool( numThreads );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( numTasks );
 		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
 		{
 			final long myStartIndex = taskNum * ( ( endIndex + 1 ) / numTasks );
@@ -372,17 +421,9 @@ public final class SeparableSymmetricConvolution
 					}
 				}
 			};
-			ex.execute( r );
-		}
-		ex.shutdown();
-		try
-		{
-			ex.awaitTermination( 1000, TimeUnit.DAYS );
-		}
-		catch ( final InterruptedException e )
-		{
-			e.printStackTrace();
+			tasks.add( r );
 		}
+		TaskExecutors.run( service, tasks, numThreads );
 	}
 
 	static long[][] getTempImageDimensions( final Dimensions targetsize, final double[][] halfkernels )
@@ -36,8 +36,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
@@ -48,6 +46,7 @@ import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.Sampler;
 import net.imglib2.algorithm.region.localneighborhood.Neighborhood;
 import net.imglib2.algorithm.region.localneighborhood.RectangleShape;
+import net.imglib2.multithreading.TaskExecutors;
 import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 
@@ -101,6 +100,26 @@ public class LocalExtrema
 	 * @return
 	 */
 	public static < P, T extends Comparable< T > > ArrayList< P > findLocalExtrema( final RandomAccessibleInterval< T > img, final LocalNeighborhoodCheck< P, T > localNeighborhoodCheck, final int numThreads )
+	{
+		return findLocalExtrema( img, localNeighborhoodCheck, TaskExecutors.getDefault(), numThreads );
+	}
+
+	/**
+	 * Find pixels that are extrema in their local neighborhood, running tasks
+	 * on the given {@link ExecutorService}. See
+	 * {@link #findLocalExtrema(RandomAccessibleInterval, LocalNeighborhoodCheck, int)}.
+	 *
+	 * @param img
+	 * @param localNeighborhoodCheck
+	 * @param service
+	 * @return
+	 */
+	public static < P, T extends Comparable< T > > ArrayList< P > findLocalExtrema( final RandomAccessibleInterval< T > img, final LocalNeighborhoodCheck< P, T > localNeighborhoodCheck, final ExecutorService service )
+	{
+		return findLocalExtrema( img, localNeighborhoodCheck, service, TaskExecutors.getParallelism( service ) );
+	}
+
+	private static < P, T extends Comparable< T > > ArrayList< P > findLocalExtrema( final RandomAccessibleInterval< T > img, final LocalNeighborhoodCheck< P, T > localNeighborhoodCheck, final ExecutorService service, final int numThreads )
 	{
 		final ArrayList< P > allExtrema = new ArrayList< P >();
 
@@ -116,7 +135,7 @@ public class LocalExtrema
 
 		final RectangleShape shape = new RectangleShape( 1, true );
 
-		final ExecutorService ex = Executors.newFixedThreadPool( numThreads );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( numTasks );
 		final List< P > synchronizedAllExtrema = Collections.synchronizedList( allExtrema );
 		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
 		{
@@ -140,17 +159,9 @@ public class LocalExtrema
 					synchronizedAllExtrema.addAll( extrema );
 				}
 			};
-			ex.execute( r );
-		}
-		ex.shutdown();
-		try
-		{
-			ex.awaitTermination( 1000, TimeUnit.DAYS );
-		}
-		catch ( final InterruptedException e )
-		{
-			e.printStackTrace();
+			tasks.add( r );
 		}
+		TaskExecutors.run( service, tasks, numThreads );
 
 		return allExtrema;
 	}
@@ -38,8 +38,6 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import net.imglib2.Interval;
 import net.imglib2.Localizable;
@@ -48,6 +46,7 @@ import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RealPoint;
 import net.imglib2.RealPositionable;
+import net.imglib2.multithreading.TaskExecutors;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.util.Intervals;
 import Jama.LUDecomposition;
@@ -80,6 +79,7 @@ public class SubpixelLocalization< P extends Localizable, T extends RealType<T>
 	protected boolean[] allowedToMoveInDim;
 	protected boolean returnInvalidPeaks = false;
 	protected int numThreads;
+	protected ExecutorService executorService;
 
 	public SubpixelLocalization( final int numDimensions )
 	{
@@ -88,6 +88,7 @@ public class SubpixelLocalization< P extends Localizable, T extends RealType<T>
 		Arrays.fill( allowedToMoveInDim, true );
 
 		numThreads = Runtime.getRuntime().availableProcessors();
+		executorService = null;
 	}
 
 	public void setAllowMaximaTolerance( final boolean allowMaximaTolerance ) { this.allowMaximaTolerance = allowMaximaTolerance; }
@@ -97,6 +98,7 @@ public class SubpixelLocalization< P extends Localizable, T extends RealType<T>
 	public void setAllowedToMoveInDim( final boolean[] allowedToMoveInDim ) { this.allowedToMoveInDim = allowedToMoveInDim.clone(); }
 	public void setReturnInvalidPeaks( final boolean returnInvalidPeaks ) { this.returnInvalidPeaks = returnInvalidPeaks; }
 	public void setNumThreads( final int numThreads ) { this.numThreads = numThreads; }
+	public void setExecutorService( final ExecutorService executorService ) { this.executorService = executorService; }
 
 	public boolean getAllowMaximaTolerance() { return allowMaximaTolerance; }
 	public boolean getCanMoveOutside() { return canMoveOutside; }
@@ -105,6 +107,7 @@ public class SubpixelLocalization< P extends Localizable, T extends RealType<T>
 	public boolean[] getAllowedToMoveInDim() { return allowedToMoveInDim.clone(); }
 	public boolean getReturnInvalidPeaks() { return returnInvalidPeaks; }
 	public int getNumThreads() { return numThreads; }
+	public ExecutorService getExecutorService() { return executorService == null ? TaskExecutors.getDefault() : executorService; }
 
 	/**
 	 * Refine a set of peaks to subpixel coordinates. Calls
@@ -123,7 +126,7 @@ public class SubpixelLocalization< P extends Localizable, T extends RealType<T>
 	 */
 	public ArrayList< RefinedPeak< P > > process( final List< P > peaks, final RandomAccessible< T > img, final Interval validInterval )
 	{
-		return refinePeaks( peaks, img, validInterval, returnInvalidPeaks, maxNumMoves, allowMaximaTolerance, maximaTolerance, allowedToMoveInDim, numThreads );
+		return refinePeaks( peaks, img, validInterval, returnInvalidPeaks, maxNumMoves, allowMaximaTolerance, maximaTolerance, allowedToMoveInDim, getExecutorService(), numThreads );
 	}
 
 	/**
@@ -170,13 +173,32 @@ public class SubpixelLocalization< P extends Localizable, T extends RealType<T>
 			final int maxNumMoves, final boolean allowMaximaTolerance, final float maximaTolerance, final boolean[] allowedToMoveInDim,
 			final int numThreads )
 			{
+		return refinePeaks( peaks, img, validInterval, returnInvalidPeaks, maxNumMoves, allowMaximaTolerance, maximaTolerance, allowedToMoveInDim, TaskExecutors.getDefault(), numThreads );
+			}
+
+	/**
+	 * Refine a set of peaks to subpixel coordinates, running tasks on the
+	 * given {@link ExecutorService}. See
+	 * {@link #refinePeaks(List, RandomAccessible, Interval, boolean, int, boolean, float, boolean[], int)}.
+	 *
+	 * @param service
+	 *            service on which to run the computation.
+	 * @param numThreads
+	 *            maximum number of tasks to run concurrently.
+	 * @return refined list of peaks.
+	 */
+	public static < T extends RealType< T >, P extends Localizable > ArrayList< RefinedPeak< P > > refinePeaks(
+			final List< P > peaks, final RandomAccessible< T > img, final Interval validInterval, final boolean returnInvalidPeaks,
+			final int maxNumMoves, final boolean allowMaximaTolerance, final float maximaTolerance, final boolean[] allowedToMoveInDim,
+			final ExecutorService service, final int numThreads )
+			{
 		final int numPeaks = peaks.size();
 		final ArrayList< RefinedPeak< P > > allRefinedPeaks = new ArrayList< RefinedPeak< P > >( numPeaks );
 
 		final int numTasks = numThreads <= 1 ? 1 : ( int ) Math.min( numPeaks, numThreads * 20 );
 		final int taskSize = numPeaks / numTasks;
 
-		final ExecutorService ex = Executors.newFixedThreadPool( numThreads );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( numTasks );
 		final List< RefinedPeak< P > > synchronizedAllRefinedPeaks = Collections.synchronizedList( allRefinedPeaks );
 		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
 		{
@@ -193,17 +215,9 @@ public class SubpixelLocalization< P extends Localizable, T extends RealType<T>
 					synchronizedAllRefinedPeaks.addAll( refinedPeaks );
 				}
 			};
-			ex.execute( r );
-		}
-		ex.shutdown();
-		try
-		{
-			ex.awaitTermination( 1000, TimeUnit.DAYS );
-		}
-		catch ( final InterruptedException e )
-		{
-			e.printStackTrace();
+			tasks.add( r );
 		}
+		TaskExecutors.run( service, tasks, numThreads );
 
 		return allRefinedPeaks;
 			}
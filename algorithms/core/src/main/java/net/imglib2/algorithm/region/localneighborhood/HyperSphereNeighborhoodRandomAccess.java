@@ -34,9 +34,11 @@
 package net.imglib2.algorithm.region.localneighborhood;
 
 import net.imglib2.AbstractInterval;
+import net.imglib2.Interval;
 import net.imglib2.Localizable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.util.Intervals;
 
 public class HyperSphereNeighborhoodRandomAccess< T > extends AbstractInterval implements RandomAccess< Neighborhood< T > >
 {
@@ -60,6 +62,24 @@ public class HyperSphereNeighborhoodRandomAccess< T > extends AbstractInterval i
 		currentNeighborhood = neighborhoodFactory.create( currentPos, radius, source.randomAccess() );
 	}
 
+	/**
+	 * @param accessInterval
+	 *            the interval in which neighborhoods will be centered. The
+	 *            source is accessed only in this interval, extended by the
+	 *            radius. If that lies inside the source, for example in the
+	 *            interior of an extended image, the source access needs no
+	 *            out-of-bounds handling.
+	 */
+	public HyperSphereNeighborhoodRandomAccess( final RandomAccessibleInterval< T > source, final Interval accessInterval, final long radius, final HyperSphereNeighborhoodFactory< T > factory )
+	{
+		super( source );
+		this.source = source;
+		this.radius = radius;
+		neighborhoodFactory = factory;
+		currentPos = new long[ n ];
+		currentNeighborhood = neighborhoodFactory.create( currentPos, radius, source.randomAccess( Intervals.expand( accessInterval, radius ) ) );
+	}
+
 	protected HyperSphereNeighborhoodRandomAccess( final HyperSphereNeighborhoodRandomAccess< T > c )
 	{
 		super( c.source );
@@ -115,7 +115,7 @@ public class HyperSphereShape implements Shape
 		@Override
 		public RandomAccess< Neighborhood< T >> randomAccess( final Interval interval )
 		{
-			return randomAccess();
+			return new HyperSphereNeighborhoodRandomAccess< T >( source, interval, radius, factory );
 		}
 
 		@Override
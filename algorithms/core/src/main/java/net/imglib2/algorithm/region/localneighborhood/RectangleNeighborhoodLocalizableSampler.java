@@ -34,11 +34,11 @@
 package net.imglib2.algorithm.region.localneighborhood;
 
 import net.imglib2.AbstractInterval;
-import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.Localizable;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.Sampler;
+import net.imglib2.util.Intervals;
 
 public abstract class RectangleNeighborhoodLocalizableSampler< T > extends AbstractInterval implements Localizable, Sampler< Neighborhood< T > >
 {
@@ -57,6 +57,19 @@ public abstract class RectangleNeighborhoodLocalizableSampler< T > extends Abstr
 	protected final long[] currentMax;
 
 	public RectangleNeighborhoodLocalizableSampler( final RandomAccessibleInterval< T > source, final Interval span, final RectangleNeighborhoodFactory< T > factory )
+	{
+		this( source, source, span, factory );
+	}
+
+	/**
+	 * @param accessInterval
+	 *            the interval in which neighborhoods will be centered. The
+	 *            source is accessed only in this interval, extended by the
+	 *            span. If that lies inside the source, for example in the
+	 *            interior of an extended image, the source access needs no
+	 *            out-of-bounds handling.
+	 */
+	public RectangleNeighborhoodLocalizableSampler( final RandomAccessibleInterval< T > source, final Interval accessInterval, final Interval span, final RectangleNeighborhoodFactory< T > factory )
 	{
 		super( source );
 		this.source = source;
@@ -65,16 +78,7 @@ public abstract class RectangleNeighborhoodLocalizableSampler< T > extends Abstr
 		currentPos = new long[ n ];
 		currentMin = new long[ n ];
 		currentMax = new long[ n ];
-		final long[] accessMin = new long[ n ];
-		final long[] accessMax = new long[ n ];
-		source.min( accessMin );
-		source.max( accessMax );
-		for ( int d = 0; d < n; ++d )
-		{
-			accessMin[ d ] += span.min( d );
-			accessMax[ d ] += span.max( d );
-		}
-		currentNeighborhood = neighborhoodFactory.create( currentPos, currentMin, currentMax, span, source.randomAccess( new FinalInterval( accessMin, accessMax ) ) );
+		currentNeighborhood = neighborhoodFactory.create( currentPos, currentMin, currentMax, span, source.randomAccess( Intervals.extendBySpan( accessInterval, span ) ) );
 	}
 
 	protected RectangleNeighborhoodLocalizableSampler( final RectangleNeighborhoodLocalizableSampler< T > c )
@@ -45,6 +45,11 @@ public final class RectangleNeighborhoodRandomAccess< T > extends RectangleNeigh
 		super( source, span, factory );
 	}
 
+	public RectangleNeighborhoodRandomAccess( final RandomAccessibleInterval< T > source, final Interval accessInterval, final Interval span, final RectangleNeighborhoodFactory< T > factory )
+	{
+		super( source, accessInterval, span, factory );
+	}
+
 	private RectangleNeighborhoodRandomAccess( final RectangleNeighborhoodRandomAccess< T > c )
 	{
 		super( c );
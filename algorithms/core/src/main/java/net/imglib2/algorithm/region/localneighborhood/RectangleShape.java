@@ -147,7 +147,7 @@ public class RectangleShape implements Shape
 		@Override
 		public RandomAccess< Neighborhood< T >> randomAccess( final Interval interval )
 		{
-			return randomAccess();
+			return new RectangleNeighborhoodRandomAccess< T >( source, interval, span, factory );
 		}
 
 		@Override
@@ -42,6 +42,19 @@ import net.imglib2.Sampler;
 /**
  * A factory for Accessibles on {@link Neighborhood Neighborhoods}.
  * 
+ * <p>
+ * Neighborhoods read the source through a single {@link RandomAccess} that is
+ * requested for the interval covered by all neighborhoods. If the source is
+ * an extended image, e.g.,
+ * {@code Views.interval( Views.extendMirrorSingle( img ), img )}, that access
+ * pays for out-of-bounds handling on every move. To avoid this, split the
+ * image with
+ * {@link net.imglib2.util.Intervals#splitInteriorAndShell(net.imglib2.Interval, net.imglib2.Interval, net.imglib2.Interval)}
+ * and process the neighborhoods of {@code Views.interval( extended, part )}
+ * for each part. For the interior part, the source access is a plain access
+ * to the image.
+ * </p>
+ * 
  * @author Tobias Pietzsch <tobias.pietzsch@gmail.com>
  */
 public interface Shape
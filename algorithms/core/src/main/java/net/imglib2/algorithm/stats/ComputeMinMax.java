@@ -44,7 +44,10 @@ import net.imglib2.algorithm.Benchmark;
 import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.multithreading.Chunk;
 import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.multithreading.TaskExecutors;
 import net.imglib2.type.Type;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.RealStatistics;
 import net.imglib2.util.Util;
 import net.imglib2.view.Views;
 
@@ -102,10 +105,22 @@ public class ComputeMinMax< T extends Type< T > & Comparable< T >> implements Al
 	}
 
 	@Override
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
 	public boolean process()
 	{
 		final long startTime = System.currentTimeMillis();
 
+		// images of primitive real types are reduced directly on their
+		// storage arrays
+		if ( min instanceof RealType && RealStatistics.isPrimitive( ( IterableInterval ) image ) )
+		{
+			final RealStatistics statistics = RealStatistics.compute( ( IterableInterval ) image, TaskExecutors.getDefault(), numThreads );
+			( ( RealType ) min ).setReal( statistics.getMin() );
+			( ( RealType ) max ).setReal( statistics.getMax() );
+			processingTime = System.currentTimeMillis() - startTime;
+			return true;
+		}
+
 		final long imageSize = image.size();
 
 		final AtomicInteger ai = new AtomicInteger( 0 );
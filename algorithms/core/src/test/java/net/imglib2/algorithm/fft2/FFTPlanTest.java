@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.multithreading.TaskExecutors;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Compares the line transforms of {@link FFTPlan} to a direct evaluation of
+ * the discrete Fourier transform.
+ *
+ * @author ImgLib2 developers
+ */
+public class FFTPlanTest
+{
+	final long[] dims = new long[] { 6, 10, 7 };
+
+	private Img< ComplexFloatType > createInput( final Img< ComplexFloatType > img )
+	{
+		final Random random = new Random( 42 );
+		for ( final ComplexFloatType t : img )
+			t.setComplexNumber( random.nextFloat() - 0.5f, random.nextFloat() - 0.5f );
+		return img;
+	}
+
+	/**
+	 * Check that output is the DFT of input along dimension dim.
+	 */
+	private void checkDFT( final Img< ComplexFloatType > input, final Img< ComplexFloatType > output, final int dim, final boolean forward )
+	{
+		final int size = ( int ) input.dimension( dim );
+		final RandomAccess< ComplexFloatType > in = input.randomAccess();
+		final Cursor< ComplexFloatType > c = output.localizingCursor();
+		final double sign = forward ? -1 : 1;
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			in.setPosition( c );
+			final long k = c.getLongPosition( dim );
+			double re = 0, im = 0;
+			for ( int j = 0; j < size; ++j )
+			{
+				in.setPosition( j, dim );
+				final double a = sign * 2 * Math.PI * j * k / size;
+				final double r = in.get().getRealDouble();
+				final double i = in.get().getImaginaryDouble();
+				re += r * Math.cos( a ) - i * Math.sin( a );
+				im += r * Math.sin( a ) + i * Math.cos( a );
+			}
+			assertEquals( re, c.get().getRealDouble(), 1e-4 );
+			assertEquals( im, c.get().getImaginaryDouble(), 1e-4 );
+		}
+	}
+
+	private void checkAllDimensions( final Img< ComplexFloatType > img, final ExecutorService service, final int numThreads )
+	{
+		for ( int d = 0; d < img.numDimensions(); ++d )
+		{
+			final Img< ComplexFloatType > expected = img.copy();
+			for ( final boolean forward : new boolean[] { true, false } )
+			{
+				final Img< ComplexFloatType > data = img.copy();
+				FFTPlan.complexToComplex( ( int ) dims[ d ] ).complexToComplex( data, d, forward, false, service, numThreads );
+				checkDFT( expected, data, d, forward );
+			}
+		}
+	}
+
+	@Test
+	public void testArrayImg()
+	{
+		// direct access to the float array, including batches of lines
+		final Img< ComplexFloatType > img = createInput( new ArrayImgFactory< ComplexFloatType >().create( dims, new ComplexFloatType() ) );
+		final ExecutorService service = TaskExecutors.newThreadPool( 2 );
+		checkAllDimensions( img, service, 1 );
+		checkAllDimensions( img, service, 3 );
+		service.shutdown();
+	}
+
+	@Test
+	public void testCellImg()
+	{
+		// lines read through RandomAccesses
+		final Img< ComplexFloatType > img = createInput( new CellImgFactory< ComplexFloatType >( 4 ).create( dims, new ComplexFloatType() ) );
+		final ExecutorService service = TaskExecutors.newThreadPool( 2 );
+		checkAllDimensions( img, service, 1 );
+		checkAllDimensions( img, service, 3 );
+		service.shutdown();
+	}
+
+	@Test
+	public void testInverseScaled()
+	{
+		final Img< ComplexFloatType > img = createInput( new ArrayImgFactory< ComplexFloatType >().create( dims, new ComplexFloatType() ) );
+		final Img< ComplexFloatType > data = img.copy();
+		FFT.complexToComplexForward( data, 2 );
+		FFT.complexToComplexInverse( data, 2 );
+		final Cursor< ComplexFloatType > a = img.cursor();
+		final Cursor< ComplexFloatType > b = data.cursor();
+		while ( a.hasNext() )
+		{
+			a.fwd();
+			b.fwd();
+			assertEquals( a.get().getRealDouble(), b.get().getRealDouble(), 1e-5 );
+			assertEquals( a.get().getImaginaryDouble(), b.get().getImaginaryDouble(), 1e-5 );
+		}
+	}
+
+	@Test
+	public void testRealRoundTrip()
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( new long[] { 16, 9, 5 }, new FloatType() );
+		final Random random = new Random( 7 );
+		for ( final FloatType t : img )
+			t.set( random.nextFloat() );
+		final Img< ComplexFloatType > fft = FFT.realToComplex( img, new ArrayImgFactory< ComplexFloatType >(), 3 );
+		final Img< FloatType > back = FFT.complexToReal( fft, new ArrayImgFactory< FloatType >(), new FloatType(), 3 );
+		final Cursor< FloatType > a = img.cursor();
+		final Cursor< FloatType > b = back.cursor();
+		while ( a.hasNext() )
+			assertEquals( a.next().get(), b.next().get(), 1e-5 );
+	}
+
+	@Test
+	public void testPlanCache()
+	{
+		assertSame( FFTPlan.complexToComplex( 10 ), FFTPlan.complexToComplex( 10 ) );
+		assertSame( FFTPlan.real( 10 ), FFTPlan.real( 10 ) );
+		assertEquals( 10, FFTPlan.real( 10 ).size() );
+	}
+
+	@Test
+	public void testPoolIsBounded()
+	{
+		final FFTPlan plan = FFTPlan.complexToComplex( 60 );
+		final float[][] arrays = new float[ 2 * FFTPlan.MAX_POOLED_ARRAYS ][];
+		for ( int i = 0; i < arrays.length; ++i )
+			arrays[ i ] = plan.borrow( 120 );
+		for ( final float[] array : arrays )
+			plan.giveBack( array );
+		assertTrue( plan.numPooledArrays() <= FFTPlan.MAX_POOLED_ARRAYS );
+
+		// pooled arrays are reused
+		final float[] array = plan.borrow( 120 );
+		boolean pooled = false;
+		for ( final float[] a : arrays )
+			pooled |= a == array;
+		assertTrue( pooled );
+		plan.giveBack( array );
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package net.imglib2.algorithm.fft2;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.complex.ComplexDoubleType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link FFTMethods#multiplyComplex} on arrays and generic images to
+ * the multiplication of {@link ComplexFloatType}.
+ *
+ * @author ImgLib2 developers
+ */
+public class MultiplyComplexTest
+{
+	final long[] dims = new long[] { 33, 40, 7 };
+
+	private Img< ComplexFloatType > random( final ImgFactory< ComplexFloatType > factory, final int seed )
+	{
+		final Img< ComplexFloatType > img = factory.create( dims, new ComplexFloatType() );
+		final Random random = new Random( seed );
+		for ( final ComplexFloatType t : img )
+			t.set( random.nextFloat() - 0.5f, random.nextFloat() - 0.5f );
+		return img;
+	}
+
+	private void assertProduct( final Img< ComplexFloatType > a, final Img< ComplexFloatType > b, final Img< ComplexFloatType > result, final boolean conjugate )
+	{
+		final Cursor< ComplexFloatType > c = a.localizingCursor();
+		final RandomAccess< ComplexFloatType > rb = b.randomAccess();
+		final RandomAccess< ComplexFloatType > rr = result.randomAccess();
+		final ComplexFloatType expected = new ComplexFloatType();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			rb.setPosition( c );
+			rr.setPosition( c );
+			expected.set( rb.get() );
+			if ( conjugate )
+				expected.complexConjugate();
+			expected.mul( c.get() );
+			assertEquals( expected.getRealFloat(), rr.get().getRealFloat(), 1e-6 );
+			assertEquals( expected.getImaginaryFloat(), rr.get().getImaginaryFloat(), 1e-6 );
+		}
+	}
+
+	@Test
+	public void testArrays()
+	{
+		final ArrayImgFactory< ComplexFloatType > factory = new ArrayImgFactory< ComplexFloatType >();
+		final Img< ComplexFloatType > a = random( factory, 1 );
+		final Img< ComplexFloatType > b = random( factory, 2 );
+
+		for ( final boolean conjugate : new boolean[] { false, true } )
+		{
+			final Img< ComplexFloatType > result = factory.create( dims, new ComplexFloatType() );
+			FFTMethods.multiplyComplex( a, b, result, conjugate, 3 );
+			assertProduct( a, b, result, conjugate );
+		}
+
+		// in place
+		final Img< ComplexFloatType > copy = a.copy();
+		FFTMethods.multiplyComplex( copy, b, copy, true, 2 );
+		assertProduct( a, b, copy, true );
+	}
+
+	@Test
+	public void testGeneric()
+	{
+		final Img< ComplexFloatType > a = random( new CellImgFactory< ComplexFloatType >( 8 ), 3 );
+		final Img< ComplexFloatType > b = random( new ArrayImgFactory< ComplexFloatType >(), 4 );
+
+		for ( final boolean conjugate : new boolean[] { false, true } )
+		{
+			final Img< ComplexFloatType > result = new CellImgFactory< ComplexFloatType >( 5 ).create( dims, new ComplexFloatType() );
+			FFTMethods.multiplyComplex( a, b, result, conjugate, 3 );
+			assertProduct( a, b, result, conjugate );
+		}
+	}
+
+	@Test
+	public void testDoublePrecision()
+	{
+		final ArrayImgFactory< ComplexDoubleType > factory = new ArrayImgFactory< ComplexDoubleType >();
+		final Img< ComplexDoubleType > a = factory.create( dims, new ComplexDoubleType() );
+		final Img< ComplexDoubleType > b = factory.create( dims, new ComplexDoubleType() );
+		final Random random = new Random( 6 );
+		for ( final ComplexDoubleType t : a )
+			t.set( 1 + random.nextDouble() * 1e-9, random.nextDouble() * 1e-9 );
+		for ( final ComplexDoubleType t : b )
+			t.set( 1 + random.nextDouble() * 1e-9, random.nextDouble() * 1e-9 );
+
+		for ( final boolean conjugate : new boolean[] { false, true } )
+		{
+			final Img< ComplexDoubleType > result = factory.create( dims, new ComplexDoubleType() );
+			FFTMethods.multiplyComplex( a, b, result, conjugate, 3 );
+
+			final Cursor< ComplexDoubleType > ca = a.cursor();
+			final Cursor< ComplexDoubleType > cb = b.cursor();
+			final ComplexDoubleType expected = new ComplexDoubleType();
+			for ( final ComplexDoubleType r : result )
+			{
+				expected.set( cb.next() );
+				if ( conjugate )
+					expected.complexConjugate();
+				expected.mul( ca.next() );
+				assertEquals( expected.getRealDouble(), r.getRealDouble(), 1e-15 );
+				assertEquals( expected.getImaginaryDouble(), r.getImaginaryDouble(), 1e-15 );
+			}
+		}
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testSizeMismatch()
+	{
+		final ArrayImgFactory< ComplexFloatType > factory = new ArrayImgFactory< ComplexFloatType >();
+		final Img< ComplexFloatType > a = random( factory, 5 );
+		final Img< ComplexFloatType > b = factory.create( new long[] { 33, 40, 6 }, new ComplexFloatType() );
+		FFTMethods.multiplyComplex( a, b, a, false, 1 );
+	}
+}
@@ -0,0 +1,417 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Dimensions;
+import net.imglib2.FinalDimensions;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.MultiThreaded;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.multithreading.TaskExecutors;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Convolves one image with a bank of kernels, or a series of images with one
+ * kernel, sharing the Fourier transforms between the convolutions. All images
+ * have the same size and all kernels are at most as large as a given maximal
+ * kernel size, so every Fourier transform has the same padded size and the
+ * Fourier transform of the image (or the kernel) is computed only once. The
+ * results are the same as computed by {@link FFTConvolution}: images are
+ * extended by mirroring with single boundary, kernels are zero-padded.
+ *
+ * The Fourier transforms of kernels or images that are used repeatedly can be
+ * precomputed with {@link #kernelFFT(RandomAccessibleInterval)} and
+ * {@link #imgFFT(RandomAccessibleInterval)}. The convolutions of a batch are
+ * computed in parallel, each thread reuses one complex-valued workspace for
+ * the product of the transforms and its inverse transform, so no memory is
+ * allocated per convolution.
+ *
+ * @author ImgLib2 developers
+ */
+public class BatchFFTConvolution< R extends RealType< R > > implements MultiThreaded
+{
+	final long[] imgDimensions, kernelDimensions;
+
+	final long[] paddedDimensions, fftDimensions;
+
+	final ImgFactory< ComplexFloatType > fftFactory;
+
+	// by default we use the complex conjugate of the kernel
+	boolean complexConjugate = true;
+
+	private int numThreads;
+
+	/**
+	 * Prepare batch convolutions of images of size imgDimensions with kernels
+	 * of at most size maxKernelDimensions. The Fourier transforms are stored
+	 * in {@link ArrayImgFactory} images.
+	 *
+	 * @param imgDimensions
+	 *            - the size of all images and outputs
+	 * @param maxKernelDimensions
+	 *            - the maximal size of the kernels
+	 */
+	public BatchFFTConvolution( final Dimensions imgDimensions, final Dimensions maxKernelDimensions )
+	{
+		this( imgDimensions, maxKernelDimensions, new ArrayImgFactory< ComplexFloatType >() );
+	}
+
+	/**
+	 * Prepare batch convolutions of images of size imgDimensions with kernels
+	 * of at most size maxKernelDimensions.
+	 *
+	 * @param imgDimensions
+	 *            - the size of all images and outputs
+	 * @param maxKernelDimensions
+	 *            - the maximal size of the kernels
+	 * @param factory
+	 *            - the {@link ImgFactory} to create the fourier transforms
+	 */
+	public BatchFFTConvolution( final Dimensions imgDimensions, final Dimensions maxKernelDimensions, final ImgFactory< ComplexFloatType > factory )
+	{
+		final int numDimensions = imgDimensions.numDimensions();
+		if ( maxKernelDimensions.numDimensions() != numDimensions )
+			throw new IllegalArgumentException( "Image and kernel must have the same number of dimensions." );
+
+		this.imgDimensions = new long[ numDimensions ];
+		this.kernelDimensions = new long[ numDimensions ];
+		imgDimensions.dimensions( this.imgDimensions );
+		maxKernelDimensions.dimensions( this.kernelDimensions );
+
+		// the image has to be extended by the maximal kernel size so that
+		// every kernel of the batch can use the same padded size
+		final long[] newDimensions = new long[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+			newDimensions[ d ] = this.imgDimensions[ d ] + this.kernelDimensions[ d ] - 1;
+
+		this.paddedDimensions = new long[ numDimensions ];
+		this.fftDimensions = new long[ numDimensions ];
+		FFTMethods.dimensionsRealToComplexFast( FinalDimensions.wrap( newDimensions ), paddedDimensions, fftDimensions );
+
+		this.fftFactory = factory;
+		setNumThreads();
+	}
+
+	/**
+	 * @param complexConjugate
+	 *            - whether the complex conjugate of the Fourier transform of
+	 *            the kernels is used (convolution, default) or not
+	 *            (correlation). Only affects kernel transforms computed
+	 *            afterwards.
+	 */
+	public void setComputeComplexConjugate( final boolean complexConjugate )
+	{
+		this.complexConjugate = complexConjugate;
+	}
+
+	public boolean getComplexConjugate()
+	{
+		return complexConjugate;
+	}
+
+	/**
+	 * @return the size of the padded real-valued images that are transformed
+	 */
+	public long[] getPaddedDimensions()
+	{
+		return paddedDimensions.clone();
+	}
+
+	/**
+	 * @return the size of the Fourier transforms
+	 */
+	public long[] getFFTDimensions()
+	{
+		return fftDimensions.clone();
+	}
+
+	/**
+	 * Compute the Fourier transform of an image, extended by mirroring with
+	 * single boundary.
+	 */
+	public Img< ComplexFloatType > imgFFT( final RandomAccessibleInterval< R > img )
+	{
+		return imgFFT( Views.extendMirrorSingle( img ), img );
+	}
+
+	/**
+	 * Compute the Fourier transform of the imgInterval of an image.
+	 */
+	public Img< ComplexFloatType > imgFFT( final RandomAccessible< R > img, final Interval imgInterval )
+	{
+		final Img< ComplexFloatType > fft = fftFactory.create( fftDimensions, new ComplexFloatType() );
+		imgFFT( img, imgInterval, fft, numThreads );
+		return fft;
+	}
+
+	/**
+	 * Compute the Fourier transform of a kernel, zero-padded.
+	 */
+	public Img< ComplexFloatType > kernelFFT( final RandomAccessibleInterval< R > kernel )
+	{
+		return kernelFFT( Views.extendValue( kernel, Util.getTypeFromInterval( kernel ).createVariable() ), kernel );
+	}
+
+	/**
+	 * Compute the Fourier transform of the kernelInterval of a kernel.
+	 */
+	public Img< ComplexFloatType > kernelFFT( final RandomAccessible< R > kernel, final Interval kernelInterval )
+	{
+		final Img< ComplexFloatType > fft = fftFactory.create( fftDimensions, new ComplexFloatType() );
+		kernelFFT( kernel, kernelInterval, fft, numThreads );
+		return fft;
+	}
+
+	/**
+	 * Compute the Fourier transforms of a list of kernels in parallel.
+	 */
+	public List< Img< ComplexFloatType > > kernelFFTs( final List< ? extends RandomAccessibleInterval< R > > kernels )
+	{
+		final int numKernels = kernels.size();
+		final List< Img< ComplexFloatType > > ffts = new ArrayList< Img< ComplexFloatType > >( numKernels );
+		for ( int i = 0; i < numKernels; ++i )
+			ffts.add( fftFactory.create( fftDimensions, new ComplexFloatType() ) );
+
+		final int threadsPerItem = threadsPerItem( numKernels );
+		final List< Runnable > tasks = new ArrayList< Runnable >( numKernels );
+		for ( int i = 0; i < numKernels; ++i )
+		{
+			final RandomAccessibleInterval< R > kernel = kernels.get( i );
+			final Img< ComplexFloatType > fft = ffts.get( i );
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					kernelFFT( Views.extendValue( kernel, Util.getTypeFromInterval( kernel ).createVariable() ), kernel, fft, threadsPerItem );
+				}
+			} );
+		}
+		TaskExecutors.run( TaskExecutors.getDefault(), tasks, numThreads );
+
+		return ffts;
+	}
+
+	/**
+	 * Convolve one image with several kernels, the Fourier transform of the
+	 * image is computed once.
+	 *
+	 * @param img
+	 *            - the image
+	 * @param kernels
+	 *            - the kernels, at most as large as the maximal kernel size
+	 * @param outputs
+	 *            - one output per kernel, of the same size as the image
+	 */
+	public void convolve( final RandomAccessibleInterval< R > img, final List< ? extends RandomAccessibleInterval< R > > kernels, final List< ? extends RandomAccessibleInterval< R > > outputs )
+	{
+		final Img< ComplexFloatType > imgFFT = imgFFT( img );
+		batch( kernels.size(), imgFFT, outputs, new Spectrum()
+		{
+			@Override
+			public Img< ComplexFloatType > compute( final int i, final Img< ComplexFloatType > workspace, final int threads )
+			{
+				final RandomAccessibleInterval< R > kernel = kernels.get( i );
+				kernelFFT( Views.extendValue( kernel, Util.getTypeFromInterval( kernel ).createVariable() ), kernel, workspace, threads );
+				return workspace;
+			}
+		} );
+	}
+
+	/**
+	 * Convolve an image, given by its Fourier transform, with several kernels,
+	 * given by their Fourier transforms.
+	 *
+	 * @param imgFFT
+	 *            - the Fourier transform of the image, see
+	 *            {@link #imgFFT(RandomAccessibleInterval)}
+	 * @param kernelFFTs
+	 *            - the Fourier transforms of the kernels, see
+	 *            {@link #kernelFFT(RandomAccessibleInterval)}
+	 * @param outputs
+	 *            - one output per kernel, of the same size as the image
+	 */
+	public void convolve( final Img< ComplexFloatType > imgFFT, final List< Img< ComplexFloatType > > kernelFFTs, final List< ? extends RandomAccessibleInterval< R > > outputs )
+	{
+		batch( kernelFFTs.size(), imgFFT, outputs, new Spectrum()
+		{
+			@Override
+			public Img< ComplexFloatType > compute( final int i, final Img< ComplexFloatType > workspace, final int threads )
+			{
+				return kernelFFTs.get( i );
+			}
+		} );
+	}
+
+	/**
+	 * Convolve several images with one kernel, the Fourier transform of the
+	 * kernel is computed once.
+	 *
+	 * @param imgs
+	 *            - the images
+	 * @param kernel
+	 *            - the kernel, at most as large as the maximal kernel size
+	 * @param outputs
+	 *            - one output per image, of the same size as the image
+	 */
+	public void convolve( final List< ? extends RandomAccessibleInterval< R > > imgs, final RandomAccessibleInterval< R > kernel, final List< ? extends RandomAccessibleInterval< R > > outputs )
+	{
+		convolve( imgs, kernelFFT( kernel ), outputs );
+	}
+
+	/**
+	 * Convolve several images with one kernel, given by its Fourier transform.
+	 *
+	 * @param imgs
+	 *            - the images
+	 * @param kernelFFT
+	 *            - the Fourier transform of the kernel, see
+	 *            {@link #kernelFFT(RandomAccessibleInterval)}
+	 * @param outputs
+	 *            - one output per image, of the same size as the image
+	 */
+	public void convolve( final List< ? extends RandomAccessibleInterval< R > > imgs, final Img< ComplexFloatType > kernelFFT, final List< ? extends RandomAccessibleInterval< R > > outputs )
+	{
+		batch( imgs.size(), kernelFFT, outputs, new Spectrum()
+		{
+			@Override
+			public Img< ComplexFloatType > compute( final int i, final Img< ComplexFloatType > workspace, final int threads )
+			{
+				final RandomAccessibleInterval< R > img = imgs.get( i );
+				imgFFT( Views.extendMirrorSingle( img ), img, workspace, threads );
+				return workspace;
+			}
+		} );
+	}
+
+	/**
+	 * Provides the Fourier transform of the i-th item of a batch, either
+	 * precomputed or computed into the workspace.
+	 */
+	private interface Spectrum
+	{
+		public Img< ComplexFloatType > compute( int i, Img< ComplexFloatType > workspace, int threads );
+	}
+
+	/**
+	 * Multiply the Fourier transform of each item with the shared Fourier
+	 * transform and write the inverse transform into the output of the item.
+	 * Each thread processes items until none are left, using one workspace for
+	 * all of them.
+	 */
+	private void batch( final int numItems, final Img< ComplexFloatType > shared, final List< ? extends RandomAccessibleInterval< R > > outputs, final Spectrum spectrum )
+	{
+		if ( outputs.size() != numItems )
+			throw new IllegalArgumentException( "Expected " + numItems + " outputs, but got " + outputs.size() + "." );
+		for ( final RandomAccessibleInterval< R > output : outputs )
+			checkDimensions( output, imgDimensions, "Output" );
+
+		final int numWorkers = Math.min( numThreads, numItems );
+		final int threadsPerItem = threadsPerItem( numItems );
+		final AtomicInteger next = new AtomicInteger();
+
+		final List< Runnable > tasks = new ArrayList< Runnable >( numWorkers );
+		for ( int t = 0; t < numWorkers; ++t )
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final Img< ComplexFloatType > workspace = fftFactory.create( fftDimensions, new ComplexFloatType() );
+					for ( int i = next.getAndIncrement(); i < numItems; i = next.getAndIncrement() )
+					{
+						FFTMethods.multiplyComplex( spectrum.compute( i, workspace, threadsPerItem ), shared, workspace, false, threadsPerItem );
+						FFT.complexToRealUnpad( workspace, outputs.get( i ), threadsPerItem );
+					}
+				}
+			} );
+		TaskExecutors.run( TaskExecutors.getDefault(), tasks, numWorkers );
+	}
+
+	private void imgFFT( final RandomAccessible< R > img, final Interval imgInterval, final Img< ComplexFloatType > fft, final int threads )
+	{
+		checkDimensions( imgInterval, imgDimensions, "Image" );
+		final Interval imgConvolutionInterval = FFTMethods.paddingIntervalCentered( imgInterval, FinalDimensions.wrap( paddedDimensions ) );
+		FFT.realToComplex( Views.interval( img, imgConvolutionInterval ), fft, threads );
+	}
+
+	private void kernelFFT( final RandomAccessible< R > kernel, final Interval kernelInterval, final Img< ComplexFloatType > fft, final int threads )
+	{
+		for ( int d = 0; d < kernelDimensions.length; ++d )
+			if ( kernelInterval.dimension( d ) > kernelDimensions[ d ] )
+				throw new IllegalArgumentException( "Kernel of size " + Util.printInterval( kernelInterval ) + " exceeds the maximal kernel size " + Util.printCoordinates( kernelDimensions ) + "." );
+
+		FFT.realToComplex( FFTConvolution.kernelInput( kernel, kernelInterval, paddedDimensions ), fft, threads );
+
+		// compute the complex conjugate of the FFT of the kernel (same as
+		// mirroring the input image)
+		// otherwise it corresponds to correlation and not convolution
+		if ( complexConjugate )
+			FFTMethods.complexConjugate( fft );
+	}
+
+	private int threadsPerItem( final int numItems )
+	{
+		return Math.max( 1, numThreads / Math.max( 1, numItems ) );
+	}
+
+	private static void checkDimensions( final Dimensions dimensions, final long[] expected, final String name )
+	{
+		for ( int d = 0; d < expected.length; ++d )
+			if ( dimensions.dimension( d ) != expected[ d ] )
+				throw new IllegalArgumentException( name + " must be of size " + Util.printCoordinates( expected ) + "." );
+	}
+
+	@Override
+	public void setNumThreads()
+	{
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+}
@@ -26,7 +26,6 @@
 
 package net.imglib2.algorithm.fft2;
 
-import net.imglib2.Cursor;
 import net.imglib2.FinalDimensions;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
@@ -329,24 +328,6 @@ public class FFTConvolution< R extends RealType< R > > implements Runnable, Mult
 		// compute the new interval for the input image
 		final Interval imgConvolutionInterval = FFTMethods.paddingIntervalCentered( imgInterval, FinalDimensions.wrap( paddedDimensions ) );
 
-		// compute the new interval for the kernel image
-		final Interval kernelConvolutionInterval = FFTMethods.paddingIntervalCentered( kernelInterval, FinalDimensions.wrap( paddedDimensions ) );
-
-		// compute where to place the final Interval for the kernel so that the
-		// coordinate in the center
-		// of the kernel is at position (0,0)
-		final long[] min = new long[ numDimensions ];
-		final long[] max = new long[ numDimensions ];
-
-		for ( int d = 0; d < numDimensions; ++d )
-		{
-			min[ d ] = kernelInterval.min( d ) + kernelInterval.dimension( d ) / 2;
-			max[ d ] = min[ d ] + kernelConvolutionInterval.dimension( d ) - 1;
-		}
-
-		// assemble the correct kernel (size of the input + extended periodic +
-		// top left at center of input kernel)
-		final RandomAccessibleInterval< R > kernelInput = Views.interval( Views.extendPeriodic( Views.interval( kernel, kernelConvolutionInterval ) ), new FinalInterval( min, max ) );
 		final RandomAccessibleInterval< R > imgInput = Views.interval( img, imgConvolutionInterval );
 
 		// compute the FFT's if they do not exist yet
@@ -354,25 +335,17 @@ public class FFTConvolution< R extends RealType< R > > implements Runnable, Mult
 			fftImg = FFT.realToComplex( imgInput, fftFactory, numThreads );
 
 		if ( fftKernel == null )
-		{
-			fftKernel = FFT.realToComplex( kernelInput, fftFactory, numThreads );
-
-			// compute the complex conjugate of the FFT of the kernel (same as
-			// mirroring the input image)
-			// otherwise it corresponds to correlation and not convolution
-			if ( complexConjugate )
-				FFTMethods.complexConjugate( fftKernel );
-		}
+			fftKernel = computeKernelFFT( kernel, kernelInterval, paddedDimensions, fftFactory, complexConjugate, numThreads );
 
 		final Img< ComplexFloatType > fftconvolved;
 
+		// multiply in place, or into a new image if the image FFT is kept
 		if ( keepImgFFT )
-			fftconvolved = fftImg.copy();
+			fftconvolved = fftFactory.create( fftImg, new ComplexFloatType() );
 		else
 			fftconvolved = fftImg;
 
-		// multiply in place
-		multiplyComplex( fftconvolved, fftKernel );
+		FFTMethods.multiplyComplex( fftImg, fftKernel, fftconvolved, false, numThreads );
 
 		// inverse FFT in place
 		FFT.complexToRealUnpad( fftconvolved, output, numThreads );
@@ -401,6 +374,57 @@ public class FFTConvolution< R extends RealType< R > > implements Runnable, Mult
 		// compute the new interval for the input image
 		final Interval imgConvolutionInterval = FFTMethods.paddingIntervalCentered( imgInterval, FinalDimensions.wrap( paddedDimensions ) );
 
+		final RandomAccessibleInterval< R > imgInput = Views.interval( img, imgConvolutionInterval );
+
+		// compute the FFT's
+		final Img< ComplexFloatType > fftImg = FFT.realToComplex( imgInput, factory, numThreads );
+		final Img< ComplexFloatType > fftKernel = computeKernelFFT( kernel, kernelInterval, paddedDimensions, factory, false, numThreads );
+
+		// multiply in place
+		multiplyComplex( fftImg, fftKernel, numThreads );
+
+		// inverse FFT in place
+		FFT.complexToRealUnpad( fftImg, output, numThreads );
+	}
+
+	/**
+	 * Compute the Fourier transform of a kernel that is zero-padded to
+	 * paddedDimensions, with the center of the kernel at position (0,0).
+	 *
+	 * @param kernel
+	 *            - the kernel, extended with zeros
+	 * @param kernelInterval
+	 *            - the kernel interval
+	 * @param paddedDimensions
+	 *            - the padded size of the convolved image
+	 * @param factory
+	 *            - the {@link ImgFactory} to create the fourier transform
+	 * @param complexConjugate
+	 *            - whether to return the complex conjugate
+	 * @param numThreads
+	 *            - the number of threads
+	 */
+	final static < R extends RealType< R > > Img< ComplexFloatType > computeKernelFFT( final RandomAccessible< R > kernel, final Interval kernelInterval, final long[] paddedDimensions, final ImgFactory< ComplexFloatType > factory, final boolean complexConjugate, final int numThreads )
+	{
+		final Img< ComplexFloatType > fftKernel = FFT.realToComplex( kernelInput( kernel, kernelInterval, paddedDimensions ), factory, numThreads );
+
+		// compute the complex conjugate of the FFT of the kernel (same as
+		// mirroring the input image)
+		// otherwise it corresponds to correlation and not convolution
+		if ( complexConjugate )
+			FFTMethods.complexConjugate( fftKernel );
+
+		return fftKernel;
+	}
+
+	/**
+	 * Place a kernel into an interval of size paddedDimensions so that the
+	 * center of the kernel is at position (0,0).
+	 */
+	final static < R extends RealType< R > > RandomAccessibleInterval< R > kernelInput( final RandomAccessible< R > kernel, final Interval kernelInterval, final long[] paddedDimensions )
+	{
+		final int numDimensions = kernelInterval.numDimensions();
+
 		// compute the new interval for the kernel image
 		final Interval kernelConvolutionInterval = FFTMethods.paddingIntervalCentered( kernelInterval, FinalDimensions.wrap( paddedDimensions ) );
 
@@ -418,27 +442,17 @@ public class FFTConvolution< R extends RealType< R > > implements Runnable, Mult
 
 		// assemble the correct kernel (size of the input + extended periodic +
 		// top left at center of input kernel)
-		final RandomAccessibleInterval< R > kernelInput = Views.interval( Views.extendPeriodic( Views.interval( kernel, kernelConvolutionInterval ) ), new FinalInterval( min, max ) );
-		final RandomAccessibleInterval< R > imgInput = Views.interval( img, imgConvolutionInterval );
-
-		// compute the FFT's
-		final Img< ComplexFloatType > fftImg = FFT.realToComplex( imgInput, factory, numThreads );
-		final Img< ComplexFloatType > fftKernel = FFT.realToComplex( kernelInput, factory, numThreads );
-
-		// multiply in place
-		multiplyComplex( fftImg, fftKernel );
-
-		// inverse FFT in place
-		FFT.complexToRealUnpad( fftImg, output, numThreads );
+		return Views.interval( Views.extendPeriodic( Views.interval( kernel, kernelConvolutionInterval ) ), new FinalInterval( min, max ) );
 	}
 
 	final public static void multiplyComplex( final Img< ComplexFloatType > img, final Img< ComplexFloatType > kernel )
 	{
-		final Cursor< ComplexFloatType > cursorA = img.cursor();
-		final Cursor< ComplexFloatType > cursorB = kernel.cursor();
+		multiplyComplex( img, kernel, Runtime.getRuntime().availableProcessors() );
+	}
 
-		while ( cursorA.hasNext() )
-			cursorA.next().mul( cursorB.next() );
+	final public static void multiplyComplex( final Img< ComplexFloatType > img, final Img< ComplexFloatType > kernel, final int numThreads )
+	{
+		FFTMethods.multiplyComplex( img, kernel, img, false, numThreads );
 	}
 
 	protected static ImgFactory< ComplexFloatType > getFFTFactory( final Img< ? extends RealType< ? > > img )
@@ -0,0 +1,768 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalDimensions;
+import net.imglib2.ExtendedRandomAccessibleInterval;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.MultiThreaded;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.iterator.LocalizingZeroMinIntervalIterator;
+import net.imglib2.multithreading.TaskExecutors;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Richardson-Lucy deconvolution of an image with a known point spread
+ * function (PSF). Every iteration blurs the current estimate with the PSF,
+ * divides the image by the blurred estimate and multiplies the estimate with
+ * this ratio correlated with the PSF (i.e. convolved with the flipped PSF):
+ *
+ * u(k+1) = u(k) * ( ( d / ( u(k) * h ) ) * h' )
+ *
+ * Optionally the estimate is regularized by total variation (Dey et al.,
+ * 2006), dividing each update by 1 - lambda * div( grad u / |grad u| )
+ * wherever that is positive, and
+ * accelerated by vector extrapolation (Biggs and Andrews, 1997). The
+ * iterations stop early once the relative change of the estimate drops below
+ * a tolerance.
+ *
+ * The image is extended by mirroring with single boundary and padded like in
+ * {@link FFTConvolution}. The Fourier transform of the PSF is computed once
+ * and stays resident for all iterations (the flipped PSF is applied by
+ * multiplying with its complex conjugate), and is reused
+ * by subsequent runs of the same size. All pointwise operations are computed
+ * in-place on float arrays, in parallel. To bound the memory, the output can
+ * be deconvolved in tiles that overlap by a margin; all tiles have the same
+ * size, so they share the Fourier transforms of the PSF. Tiles read their
+ * input including the overlap, so a tiled deconvolution cannot be computed in
+ * place (output is img).
+ *
+ * @author ImgLib2 developers
+ */
+public class RichardsonLucyDeconvolution< R extends RealType< R > > implements Runnable, MultiThreaded
+{
+	/**
+	 * Blurred values below EPSILON do not contribute to the ratio.
+	 */
+	final static float EPSILON = 1e-6f;
+
+	RandomAccessible< R > img, psf;
+
+	Interval psfInterval;
+
+	RandomAccessibleInterval< R > output;
+
+	int numIterations = 20;
+
+	double tolerance = 0;
+
+	double regularization = 0;
+
+	boolean accelerate = false;
+
+	long[] tileDimensions, tileOverlap;
+
+	// the Fourier transform of the PSF for the padded size
+	// spectraDimensions, its complex conjugate is the Fourier transform of the
+	// flipped PSF
+	Img< ComplexFloatType > psfFFT;
+
+	long[] spectraDimensions;
+
+	int iterationsPerformed;
+
+	double change;
+
+	private int numThreads;
+
+	/**
+	 * Deconvolve an image with a PSF. The image will be extended by mirroring
+	 * with single boundary, the PSF will be zero-padded and normalized to a
+	 * sum of one.
+	 *
+	 * @param img
+	 *            - the image
+	 * @param psf
+	 *            - the point spread function
+	 * @param output
+	 *            - the deconvolved image, may be img unless the output is
+	 *            deconvolved in more than one tile (see
+	 *            {@link #setTileDimensions(long[], long[])})
+	 */
+	public RichardsonLucyDeconvolution( final RandomAccessibleInterval< R > img, final RandomAccessibleInterval< R > psf, final RandomAccessibleInterval< R > output )
+	{
+		this( Views.extendMirrorSingle( img ), Views.extendValue( psf, Util.getTypeFromInterval( psf ).createVariable() ), psf, output );
+	}
+
+	/**
+	 * Deconvolve the output interval of an image with a PSF. The input as well
+	 * as the PSF need to be extended or infinite already.
+	 *
+	 * @param img
+	 *            - the input
+	 * @param psf
+	 *            - the point spread function
+	 * @param psfInterval
+	 *            - the interval of the point spread function
+	 * @param output
+	 *            - the output data+interval, this is the area that is
+	 *            deconvolved
+	 */
+	public RichardsonLucyDeconvolution( final RandomAccessible< R > img, final RandomAccessible< R > psf, final Interval psfInterval, final RandomAccessibleInterval< R > output )
+	{
+		this.img = img;
+		this.psf = psf;
+		this.psfInterval = psfInterval;
+		this.output = output;
+		setNumThreads();
+	}
+
+	public void setImg( final RandomAccessibleInterval< R > img )
+	{
+		this.img = Views.extendMirrorSingle( img );
+	}
+
+	public void setImg( final RandomAccessible< R > img )
+	{
+		this.img = img;
+	}
+
+	public void setPSF( final RandomAccessibleInterval< R > psf )
+	{
+		setPSF( Views.extendValue( psf, Util.getTypeFromInterval( psf ).createVariable() ), psf );
+	}
+
+	public void setPSF( final RandomAccessible< R > psf, final Interval psfInterval )
+	{
+		this.psf = psf;
+		this.psfInterval = psfInterval;
+		this.spectraDimensions = null;
+	}
+
+	public void setOutput( final RandomAccessibleInterval< R > output )
+	{
+		this.output = output;
+	}
+
+	/**
+	 * @param numIterations
+	 *            - the maximal number of iterations
+	 */
+	public void setNumIterations( final int numIterations )
+	{
+		this.numIterations = numIterations;
+	}
+
+	public int getNumIterations()
+	{
+		return numIterations;
+	}
+
+	/**
+	 * @param tolerance
+	 *            - stop once the relative change |u(k+1) - u(k)| / |u(k)| of
+	 *            the estimate is below tolerance, 0 runs all iterations
+	 */
+	public void setTolerance( final double tolerance )
+	{
+		this.tolerance = tolerance;
+	}
+
+	public double getTolerance()
+	{
+		return tolerance;
+	}
+
+	/**
+	 * @param lambda
+	 *            - the weight of the total variation regularization, 0
+	 *            disables it (typical values are around 0.002)
+	 */
+	public void setRegularization( final double lambda )
+	{
+		this.regularization = lambda;
+	}
+
+	public double getRegularization()
+	{
+		return regularization;
+	}
+
+	/**
+	 * @param accelerate
+	 *            - whether to accelerate the iterations by vector
+	 *            extrapolation
+	 */
+	public void setAccelerate( final boolean accelerate )
+	{
+		this.accelerate = accelerate;
+	}
+
+	public boolean getAccelerate()
+	{
+		return accelerate;
+	}
+
+	/**
+	 * Deconvolve the output in tiles of size tile, each deconvolved with an
+	 * additional margin of overlap pixels on every side. The overlap should
+	 * be at least as large as the PSF. If this splits the output into more
+	 * than one tile, the output must not be the input.
+	 *
+	 * @param tile
+	 *            - the tile size, or null to deconvolve the output at once
+	 * @param overlap
+	 *            - the margin around each tile
+	 */
+	public void setTileDimensions( final long[] tile, final long[] overlap )
+	{
+		this.tileDimensions = tile == null ? null : tile.clone();
+		this.tileOverlap = overlap == null ? null : overlap.clone();
+	}
+
+	/**
+	 * @return the number of iterations of the last run (the maximum over all
+	 *         tiles)
+	 */
+	public int getIterationsPerformed()
+	{
+		return iterationsPerformed;
+	}
+
+	/**
+	 * @return the relative change of the estimate in the last iteration of
+	 *         the last run (the maximum over all tiles)
+	 */
+	public double getChange()
+	{
+		return change;
+	}
+
+	@Override
+	public void run()
+	{
+		final int n = output.numDimensions();
+
+		final long[] tile = new long[ n ];
+		final long[] overlap = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			tile[ d ] = tileDimensions == null ? output.dimension( d ) : Math.min( tileDimensions[ d ], output.dimension( d ) );
+			overlap[ d ] = tileDimensions == null || tileOverlap == null ? 0 : tileOverlap[ d ];
+		}
+
+		// the padded size of a tile including its overlap and the halo of
+		// the PSF
+		final long[] newDimensions = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			newDimensions[ d ] = tile[ d ] + 2 * overlap[ d ] + psfInterval.dimension( d ) - 1;
+		final long[] paddedDimensions = new long[ n ];
+		final long[] fftDimensions = new long[ n ];
+		FFTMethods.dimensionsRealToComplexFast( FinalDimensions.wrap( newDimensions ), paddedDimensions, fftDimensions );
+
+		if ( Intervals.numElements( FinalDimensions.wrap( fftDimensions ) ) * 2 > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Padded size " + Util.printCoordinates( paddedDimensions ) + " is too large, use smaller tiles." );
+
+		// tiles of the output grid, the last tile in each dimension is shifted
+		// back into the output
+		final long[] numTiles = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			numTiles[ d ] = ( output.dimension( d ) + tile[ d ] - 1 ) / tile[ d ];
+		final long totalTiles = Intervals.numElements( FinalDimensions.wrap( numTiles ) );
+
+		// later tiles would read the deconvolved values of earlier ones
+		if ( totalTiles > 1 && readsOutput() )
+			throw new IllegalArgumentException( "The deconvolution cannot be computed in place if it is split into tiles of size " + Util.printCoordinates( tile ) + "." );
+
+		computeSpectra( paddedDimensions );
+		final int threadsPerTile = ( int ) Math.max( 1, numThreads / totalTiles );
+
+		final List< Interval > regions = new ArrayList< Interval >();
+		final List< Interval > owned = new ArrayList< Interval >();
+		final LocalizingZeroMinIntervalIterator grid = new LocalizingZeroMinIntervalIterator( numTiles );
+		while ( grid.hasNext() )
+		{
+			grid.fwd();
+			final long[] ownedMin = new long[ n ];
+			final long[] ownedMax = new long[ n ];
+			final long[] regionMin = new long[ n ];
+			final long[] regionMax = new long[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				ownedMin[ d ] = output.min( d ) + grid.getLongPosition( d ) * tile[ d ];
+				ownedMax[ d ] = Math.min( ownedMin[ d ] + tile[ d ] - 1, output.max( d ) );
+				regionMin[ d ] = Math.min( ownedMin[ d ], output.max( d ) - tile[ d ] + 1 ) - overlap[ d ];
+				regionMax[ d ] = regionMin[ d ] + tile[ d ] + 2 * overlap[ d ] - 1;
+			}
+			regions.add( new FinalInterval( regionMin, regionMax ) );
+			owned.add( new FinalInterval( ownedMin, ownedMax ) );
+		}
+
+		// each worker allocates the arrays for one tile and reuses them for
+		// all tiles it processes
+		final int numWorkers = ( int ) Math.min( numThreads, totalTiles );
+		final AtomicInteger nextTile = new AtomicInteger();
+		final List< Engine > engines = new ArrayList< Engine >( numWorkers );
+		for ( int t = 0; t < numWorkers; ++t )
+			engines.add( new Engine( paddedDimensions, fftDimensions, threadsPerTile )
+			{
+				@Override
+				public void run()
+				{
+					for ( int i = nextTile.getAndIncrement(); i < regions.size(); i = nextTile.getAndIncrement() )
+						deconvolve( regions.get( i ), owned.get( i ) );
+				}
+			} );
+		TaskExecutors.run( TaskExecutors.getDefault(), engines, numWorkers );
+
+		iterationsPerformed = 0;
+		change = 0;
+		for ( final Engine engine : engines )
+		{
+			iterationsPerformed = Math.max( iterationsPerformed, engine.maxIterations );
+			change = Math.max( change, engine.maxChange );
+		}
+	}
+
+	/**
+	 * @return whether the input is the output, possibly extended.
+	 */
+	private boolean readsOutput()
+	{
+		if ( img instanceof ExtendedRandomAccessibleInterval )
+			return ( ( ExtendedRandomAccessibleInterval< ?, ? > ) img ).getSource() == output;
+		return img == output;
+	}
+
+	/**
+	 * Compute the Fourier transform of the PSF, normalized so that the PSF
+	 * sums up to one.
+	 */
+	private void computeSpectra( final long[] paddedDimensions )
+	{
+		if ( Arrays.equals( spectraDimensions, paddedDimensions ) )
+			return;
+
+		double sum = 0;
+		for ( final R t : Views.flatIterable( Views.interval( psf, psfInterval ) ) )
+			sum += t.getRealDouble();
+		if ( sum == 0 )
+			throw new IllegalArgumentException( "The PSF sums up to zero." );
+
+		psfFFT = FFTConvolution.computeKernelFFT( psf, psfInterval, paddedDimensions, new ArrayImgFactory< ComplexFloatType >(), true, numThreads );
+
+		final float scale = ( float ) ( 1.0 / sum );
+		for ( final ComplexFloatType t : psfFFT )
+			t.mul( scale );
+
+		spectraDimensions = paddedDimensions.clone();
+	}
+
+	/**
+	 * Partial pointwise operation on the range [from, to) of the arrays of a
+	 * tile, adding up reductions into sums.
+	 */
+	private interface Chunk
+	{
+		public void compute( int from, int to, double[] sums );
+	}
+
+	/**
+	 * Deconvolves tiles of one padded size: the region of a tile (including
+	 * its overlap) is padded and deconvolved, and the owned part is written
+	 * into the output. The arrays are allocated once and reused for all tiles.
+	 */
+	private abstract class Engine implements Runnable
+	{
+		final long[] paddedDimensions;
+
+		final int[] dims;
+
+		final int size, threads;
+
+		final float[] observed, estimate, ratio;
+
+		final ArrayImg< FloatType, FloatArray > estimateImg, ratioImg;
+
+		final ArrayImg< ComplexFloatType, FloatArray > spectrumImg;
+
+		// for acceleration: the previous estimate and the previous update
+		final float[] previous, update;
+
+		// for regularization: the magnitude of the gradient and the factor
+		// 1 / ( 1 - lambda * div( grad u / |grad u| ) ) of the update
+		final float[] gradient, regularizer;
+
+		int iterations, maxIterations;
+
+		double maxChange;
+
+		Engine( final long[] paddedDimensions, final long[] fftDimensions, final int threads )
+		{
+			this.paddedDimensions = paddedDimensions;
+			this.threads = threads;
+
+			final int n = paddedDimensions.length;
+			dims = new int[ n ];
+			for ( int d = 0; d < n; ++d )
+				dims[ d ] = ( int ) paddedDimensions[ d ];
+			size = ( int ) Intervals.numElements( FinalDimensions.wrap( paddedDimensions ) );
+
+			observed = new float[ size ];
+			estimate = new float[ size ];
+			ratio = new float[ size ];
+			estimateImg = ArrayImgs.floats( estimate, paddedDimensions );
+			ratioImg = ArrayImgs.floats( ratio, paddedDimensions );
+			spectrumImg = ArrayImgs.complexFloats( fftDimensions );
+
+			previous = accelerate ? new float[ size ] : null;
+			update = accelerate ? new float[ size ] : null;
+			gradient = regularization > 0 ? new float[ size ] : null;
+			regularizer = regularization > 0 ? new float[ size ] : null;
+		}
+
+		void deconvolve( final Interval region, final Interval owned )
+		{
+			final Interval paddedInterval = FFTMethods.paddingIntervalCentered( region, FinalDimensions.wrap( paddedDimensions ) );
+
+			// the padded image, also the first estimate
+			int i = 0;
+			for ( final R t : Views.flatIterable( Views.interval( img, paddedInterval ) ) )
+				observed[ i++ ] = t.getRealFloat();
+			System.arraycopy( observed, 0, estimate, 0, size );
+
+			double alpha = 0;
+			double change = 0;
+			for ( iterations = 0; iterations < numIterations; )
+			{
+				if ( accelerate )
+					extrapolate( alpha );
+				if ( regularization > 0 )
+				{
+					gradientMagnitude();
+					regularizer();
+				}
+
+				// blur the estimate with the PSF
+				FFT.realToComplex( estimateImg, spectrumImg, threads );
+				FFTMethods.multiplyComplex( spectrumImg, psfFFT, spectrumImg, false, threads );
+				FFT.complexToReal( spectrumImg, ratioImg, threads );
+
+				divide();
+
+				// correlate the ratio with the PSF
+				FFT.realToComplex( ratioImg, spectrumImg, threads );
+				FFTMethods.multiplyComplex( spectrumImg, psfFFT, spectrumImg, true, threads );
+				FFT.complexToReal( spectrumImg, ratioImg, threads );
+
+				final double[] sums = correct();
+				++iterations;
+
+				change = sums[ 1 ] > 0 ? Math.sqrt( sums[ 0 ] / sums[ 1 ] ) : 0;
+				if ( accelerate )
+					alpha = iterations > 1 && sums[ 3 ] > 0 ? Math.max( 0, Math.min( 1, sums[ 2 ] / sums[ 3 ] ) ) : 0;
+				if ( change < tolerance )
+					break;
+			}
+
+			maxIterations = Math.max( maxIterations, iterations );
+			maxChange = Math.max( maxChange, change );
+
+			write( paddedInterval, owned );
+		}
+
+		/**
+		 * Run a chunk over all pixels of the padded tile in parallel, and
+		 * return the sums of its reductions.
+		 */
+		private double[] parallel( final int length, final int numSums, final Chunk chunk )
+		{
+			final int numTasks = Math.max( 1, Math.min( threads, length / 4096 ) );
+			final double[][] partial = new double[ numTasks ][ numSums ];
+			final List< Runnable > tasks = new ArrayList< Runnable >( numTasks );
+			for ( int t = 0; t < numTasks; ++t )
+			{
+				final int from = ( int ) ( ( long ) length * t / numTasks );
+				final int to = ( int ) ( ( long ) length * ( t + 1 ) / numTasks );
+				final double[] sums = partial[ t ];
+				tasks.add( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						chunk.compute( from, to, sums );
+					}
+				} );
+			}
+			TaskExecutors.run( TaskExecutors.getDefault(), tasks, numTasks );
+
+			final double[] sums = new double[ numSums ];
+			for ( final double[] p : partial )
+				for ( int s = 0; s < numSums; ++s )
+					sums[ s ] += p[ s ];
+			return sums;
+		}
+
+		/**
+		 * ratio = observed / ratio
+		 */
+		private void divide()
+		{
+			parallel( size, 0, new Chunk()
+			{
+				@Override
+				public void compute( final int from, final int to, final double[] sums )
+				{
+					for ( int i = from; i < to; ++i )
+					{
+						final float blurred = ratio[ i ];
+						ratio[ i ] = blurred > EPSILON ? observed[ i ] / blurred : 0;
+					}
+				}
+			} );
+		}
+
+		/**
+		 * estimate = max( 0, estimate + alpha * ( estimate - previous ) ),
+		 * previous = estimate
+		 */
+		private void extrapolate( final double alpha )
+		{
+			final float a = ( float ) alpha;
+			parallel( size, 0, new Chunk()
+			{
+				@Override
+				public void compute( final int from, final int to, final double[] sums )
+				{
+					for ( int i = from; i < to; ++i )
+					{
+						final float current = estimate[ i ];
+						final float y = iterations == 0 ? current : current + a * ( current - previous[ i ] );
+						previous[ i ] = current;
+						estimate[ i ] = Math.max( 0, y );
+					}
+				}
+			} );
+		}
+
+		/**
+		 * gradient = |grad estimate| with forward differences and Neumann
+		 * boundaries
+		 */
+		private void gradientMagnitude()
+		{
+			parallel( size, 0, new Chunk()
+			{
+				@Override
+				public void compute( final int from, final int to, final double[] sums )
+				{
+					final int[] position = position( from );
+					for ( int i = from; i < to; ++i )
+					{
+						final float u = estimate[ i ];
+						float sumSq = EPSILON;
+						for ( int d = 0, stride = 1; d < dims.length; stride *= dims[ d ], ++d )
+						{
+							final float forward = position[ d ] < dims[ d ] - 1 ? estimate[ i + stride ] - u : 0;
+							sumSq += forward * forward;
+						}
+						gradient[ i ] = ( float ) Math.sqrt( sumSq );
+						next( position );
+					}
+				}
+			} );
+		}
+
+		/**
+		 * regularizer = 1 / ( 1 - lambda * div( grad estimate / gradient ) ),
+		 * computed from the estimate before it is updated, or 1 where the
+		 * denominator is not positive
+		 */
+		private void regularizer()
+		{
+			final double lambda = regularization;
+			parallel( size, 0, new Chunk()
+			{
+				@Override
+				public void compute( final int from, final int to, final double[] sums )
+				{
+					final int[] position = position( from );
+					for ( int i = from; i < to; ++i )
+					{
+						final float u = estimate[ i ];
+
+						// divergence of the normalized gradient
+						float div = 0;
+						for ( int d = 0, stride = 1; d < dims.length; stride *= dims[ d ], ++d )
+						{
+							if ( position[ d ] < dims[ d ] - 1 )
+								div += ( estimate[ i + stride ] - u ) / gradient[ i ];
+							if ( position[ d ] > 0 )
+								div -= ( u - estimate[ i - stride ] ) / gradient[ i - stride ];
+						}
+						// a factor of 0 would zero the pixel for good, leave
+						// it unregularized instead
+						final double denominator = 1 - lambda * div;
+						regularizer[ i ] = denominator > EPSILON ? ( float ) ( 1 / denominator ) : 1;
+						next( position );
+					}
+				}
+			} );
+		}
+
+		/**
+		 * estimate *= ratio (times the regularization factor), returns the
+		 * squared change, the squared previous estimate and for acceleration
+		 * the products of the update with the previous update
+		 */
+		private double[] correct()
+		{
+			final boolean regularize = regularization > 0;
+			final double[] sums = parallel( size, 4, new Chunk()
+			{
+				@Override
+				public void compute( final int from, final int to, final double[] sums )
+				{
+					double sumChange = 0, sumOld = 0, sumUpdates = 0, sumPrevious = 0;
+					for ( int i = from; i < to; ++i )
+					{
+						final float u = estimate[ i ];
+						final float factor = regularize ? ratio[ i ] * regularizer[ i ] : ratio[ i ];
+
+						final float value = Math.max( 0, u * factor );
+						estimate[ i ] = value;
+
+						final float old = accelerate ? previous[ i ] : u;
+						sumChange += ( value - old ) * ( value - old );
+						sumOld += old * old;
+
+						if ( accelerate )
+						{
+							final float g = value - u;
+							sumUpdates += g * update[ i ];
+							sumPrevious += update[ i ] * update[ i ];
+							update[ i ] = g;
+						}
+					}
+					sums[ 0 ] += sumChange;
+					sums[ 1 ] += sumOld;
+					sums[ 2 ] += sumUpdates;
+					sums[ 3 ] += sumPrevious;
+				}
+			} );
+			return sums;
+		}
+
+		private int[] position( final int index )
+		{
+			final int[] position = new int[ dims.length ];
+			int i = index;
+			for ( int d = 0; d < dims.length; ++d )
+			{
+				position[ d ] = i % dims[ d ];
+				i /= dims[ d ];
+			}
+			return position;
+		}
+
+		private void next( final int[] position )
+		{
+			for ( int d = 0; d < dims.length; ++d )
+			{
+				if ( ++position[ d ] < dims[ d ] )
+					return;
+				position[ d ] = 0;
+			}
+		}
+
+		/**
+		 * Write the owned part of the estimate into the output.
+		 */
+		private void write( final Interval paddedInterval, final Interval owned )
+		{
+			final int n = dims.length;
+			final Cursor< R > out = Views.flatIterable( Views.interval( output, owned ) ).localizingCursor();
+			while ( out.hasNext() )
+			{
+				out.fwd();
+				int index = 0;
+				for ( int d = n - 1; d >= 0; --d )
+					index = index * dims[ d ] + ( int ) ( out.getLongPosition( d ) - paddedInterval.min( d ) );
+				out.get().setReal( estimate[ index ] );
+			}
+		}
+	}
+
+	/**
+	 * Deconvolve img with psf by numIterations Richardson-Lucy iterations. The
+	 * image will be extended by mirroring with single boundary, the PSF will
+	 * be zero-padded.
+	 */
+	final public static < R extends RealType< R > > void deconvolve( final RandomAccessibleInterval< R > img, final RandomAccessibleInterval< R > psf, final RandomAccessibleInterval< R > output, final int numIterations, final int numThreads )
+	{
+		final RichardsonLucyDeconvolution< R > deconvolution = new RichardsonLucyDeconvolution< R >( img, psf, output );
+		deconvolution.setNumIterations( numIterations );
+		deconvolution.setNumThreads( numThreads );
+		deconvolution.run();
+	}
+
+	@Override
+	public void setNumThreads()
+	{
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+}
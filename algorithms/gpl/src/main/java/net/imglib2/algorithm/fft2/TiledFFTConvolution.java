@@ -0,0 +1,400 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalDimensions;
+import net.imglib2.ExtendedRandomAccessibleInterval;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.MultiThreaded;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.iterator.LocalizingZeroMinIntervalIterator;
+import net.imglib2.multithreading.TaskExecutors;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Computes the same convolution as {@link FFTConvolution}, but block-wise
+ * (overlap-save) so that the Fourier transforms never exceed a given memory
+ * budget. The output is split into tiles that are convolved independently:
+ * each tile reads its input with a halo of the kernel size, is transformed,
+ * multiplied with the Fourier transform of the kernel and transformed back,
+ * and only the part of the result that belongs to the tile is written.
+ *
+ * All tiles have the same size (tiles at the upper border are shifted back to
+ * fit into the output), so the Fourier transform of the kernel is computed
+ * once and shared by all tiles. Tiles are processed in parallel. If the output
+ * is a cell image, tiles consist of whole cells, so every cell is written by
+ * exactly one tile.
+ *
+ * Because tiles read their input with a halo that overlaps neighbouring
+ * tiles, the convolution can only be computed in place (output is img) if the
+ * whole output fits into a single tile; otherwise {@link #run()} throws an
+ * {@link IllegalArgumentException}.
+ *
+ * @author ImgLib2 developers
+ */
+public class TiledFFTConvolution< R extends RealType< R > > implements Runnable, MultiThreaded
+{
+	Img< ComplexFloatType > fftKernel;
+
+	ImgFactory< ComplexFloatType > fftFactory;
+
+	RandomAccessible< R > img, kernel;
+
+	Interval kernelInterval;
+
+	RandomAccessibleInterval< R > output;
+
+	final long maxBytes;
+
+	// by default we use the complex conjugate of the kernel
+	boolean complexConjugate = true;
+
+	long[] tileDimensions;
+
+	private int numThreads;
+
+	/**
+	 * Compute a tiled Fourier space based convolution. The image will be
+	 * extended by mirroring with single boundary, the kernel will be
+	 * zero-padded.
+	 *
+	 * @param img
+	 *            - the image
+	 * @param kernel
+	 *            - the convolution kernel
+	 * @param output
+	 *            - the result of the convolution, may be img only if the
+	 *            whole output fits into one tile (see
+	 *            {@link #getTileDimensions()})
+	 * @param maxBytes
+	 *            - memory budget for the Fourier transforms and temporary
+	 *            tiles of all threads
+	 */
+	public TiledFFTConvolution( final RandomAccessibleInterval< R > img, final RandomAccessibleInterval< R > kernel, final RandomAccessibleInterval< R > output, final long maxBytes )
+	{
+		this( Views.extendMirrorSingle( img ), Views.extendValue( kernel, Util.getTypeFromInterval( kernel ).createVariable() ), kernel, output, new ArrayImgFactory< ComplexFloatType >(), maxBytes );
+	}
+
+	/**
+	 * Compute a tiled Fourier space based convolution of the output interval.
+	 * The input as well as the kernel need to be extended or infinite already,
+	 * as each tile reads a region that is bigger than the tile.
+	 *
+	 * @param img
+	 *            - the input
+	 * @param kernel
+	 *            - the kernel
+	 * @param kernelInterval
+	 *            - the kernel interval
+	 * @param output
+	 *            - the output data+interval, this is the area that is
+	 *            convolved
+	 * @param factory
+	 *            - the {@link ImgFactory} to create the Fourier transforms of
+	 *            a tile
+	 * @param maxBytes
+	 *            - memory budget for the Fourier transforms and temporary
+	 *            tiles of all threads
+	 */
+	public TiledFFTConvolution( final RandomAccessible< R > img, final RandomAccessible< R > kernel, final Interval kernelInterval, final RandomAccessibleInterval< R > output, final ImgFactory< ComplexFloatType > factory, final long maxBytes )
+	{
+		this.img = img;
+		this.kernel = kernel;
+		this.kernelInterval = kernelInterval;
+		this.output = output;
+		this.fftFactory = factory;
+		this.maxBytes = maxBytes;
+		setNumThreads();
+	}
+
+	public void setImg( final RandomAccessibleInterval< R > img )
+	{
+		this.img = Views.extendMirrorSingle( img );
+	}
+
+	public void setImg( final RandomAccessible< R > img )
+	{
+		this.img = img;
+	}
+
+	public void setKernel( final RandomAccessibleInterval< R > kernel )
+	{
+		this.kernel = Views.extendValue( kernel, Util.getTypeFromInterval( kernel ).createVariable() );
+		this.kernelInterval = kernel;
+		this.fftKernel = null;
+		this.tileDimensions = null;
+	}
+
+	public void setOutput( final RandomAccessibleInterval< R > output )
+	{
+		this.output = output;
+		this.fftKernel = null;
+		this.tileDimensions = null;
+	}
+
+	/**
+	 * @param complexConjugate
+	 *            - If the complex conjugate of the FFT of the kernel should be
+	 *            used.
+	 */
+	public void setComputeComplexConjugate( final boolean complexConjugate )
+	{
+		this.complexConjugate = complexConjugate;
+		this.fftKernel = null;
+	}
+
+	public boolean getComplexConjugate()
+	{
+		return complexConjugate;
+	}
+
+	/**
+	 * @return the Fourier transform of the kernel at the padded tile size, or
+	 *         null before the first run.
+	 */
+	public Img< ComplexFloatType > kernelFFT()
+	{
+		return fftKernel;
+	}
+
+	/**
+	 * @return the dimensions of the tiles that fit into the memory budget.
+	 */
+	public long[] getTileDimensions()
+	{
+		if ( tileDimensions == null )
+			tileDimensions = computeTileDimensions();
+		return tileDimensions.clone();
+	}
+
+	@Override
+	public void run()
+	{
+		final int n = output.numDimensions();
+		final long[] tile = getTileDimensions();
+
+		// the padded size of a tile including the halo of the kernel
+		final long[] paddedDimensions = new long[ n ];
+		final long[] fftDimensions = new long[ n ];
+		paddedDimensions( tile, paddedDimensions, fftDimensions );
+
+		if ( fftKernel == null )
+			fftKernel = FFTConvolution.computeKernelFFT( kernel, kernelInterval, paddedDimensions, fftFactory, complexConjugate, numThreads );
+
+		// tiles of the output grid, the last tile in each dimension is shifted
+		// back into the output
+		final long[] numTiles = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			numTiles[ d ] = ( output.dimension( d ) + tile[ d ] - 1 ) / tile[ d ];
+		final long totalTiles = Intervals.numElements( FinalDimensions.wrap( numTiles ) );
+		final int threadsPerTile = ( int ) Math.max( 1, numThreads / totalTiles );
+
+		// later tiles would read the convolved values of earlier ones
+		if ( totalTiles > 1 && readsOutput() )
+			throw new IllegalArgumentException( "The convolution cannot be computed in place if it is split into tiles of size " + Util.printCoordinates( tile ) + "." );
+
+		final List< Runnable > tasks = new ArrayList< Runnable >();
+		final LocalizingZeroMinIntervalIterator grid = new LocalizingZeroMinIntervalIterator( numTiles );
+		while ( grid.hasNext() )
+		{
+			grid.fwd();
+			final long[] ownedMin = new long[ n ];
+			final long[] ownedMax = new long[ n ];
+			final long[] tileMin = new long[ n ];
+			final long[] tileMax = new long[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				ownedMin[ d ] = output.min( d ) + grid.getLongPosition( d ) * tile[ d ];
+				ownedMax[ d ] = Math.min( ownedMin[ d ] + tile[ d ] - 1, output.max( d ) );
+				tileMin[ d ] = Math.min( ownedMin[ d ], output.max( d ) - tile[ d ] + 1 );
+				tileMax[ d ] = tileMin[ d ] + tile[ d ] - 1;
+			}
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					convolveTile( new FinalInterval( tileMin, tileMax ), new FinalInterval( ownedMin, ownedMax ), paddedDimensions, threadsPerTile );
+				}
+			} );
+		}
+		TaskExecutors.run( TaskExecutors.getDefault(), tasks, numThreads );
+	}
+
+	/**
+	 * @return whether the input is the output, possibly extended.
+	 */
+	private boolean readsOutput()
+	{
+		if ( img instanceof ExtendedRandomAccessibleInterval )
+			return ( ( ExtendedRandomAccessibleInterval< ?, ? > ) img ).getSource() == output;
+		return img == output;
+	}
+
+	/**
+	 * Convolve one tile and write the part of it that is owned by the tile
+	 * into the output.
+	 */
+	private void convolveTile( final Interval tile, final Interval owned, final long[] paddedDimensions, final int threads )
+	{
+		final Interval imgConvolutionInterval = FFTMethods.paddingIntervalCentered( tile, FinalDimensions.wrap( paddedDimensions ) );
+		final Img< ComplexFloatType > fftImg = FFT.realToComplex( Views.interval( img, imgConvolutionInterval ), fftFactory, threads );
+
+		FFTConvolution.multiplyComplex( fftImg, fftKernel, threads );
+
+		final long[] tileDims = new long[ tile.numDimensions() ];
+		tile.dimensions( tileDims );
+		final Img< FloatType > result = new ArrayImgFactory< FloatType >().create( tileDims, new FloatType() );
+		FFT.complexToRealUnpad( fftImg, result, threads );
+
+		final long[] tileMin = new long[ tile.numDimensions() ];
+		tile.min( tileMin );
+		final RandomAccessibleInterval< FloatType > resultTile = Views.translate( result, tileMin );
+		final Cursor< R > out = Views.flatIterable( Views.interval( output, owned ) ).localizingCursor();
+		final RandomAccess< FloatType > in = resultTile.randomAccess();
+		while ( out.hasNext() )
+		{
+			out.fwd();
+			in.setPosition( out );
+			out.get().setReal( in.get().getRealFloat() );
+		}
+	}
+
+	private void paddedDimensions( final long[] tile, final long[] paddedDimensions, final long[] fftDimensions )
+	{
+		final long[] newDimensions = new long[ tile.length ];
+		for ( int d = 0; d < tile.length; ++d )
+			newDimensions[ d ] = tile[ d ] + kernelInterval.dimension( d ) - 1;
+		FFTMethods.dimensionsRealToComplexFast( FinalDimensions.wrap( newDimensions ), paddedDimensions, fftDimensions );
+	}
+
+	/**
+	 * Estimate the memory needed for the given tile size: per thread the
+	 * Fourier transform of a tile, the real-valued result tile and the line
+	 * arrays of the transforms (see {@link FFTPlan#lineBufferBytes(long)}),
+	 * plus the shared Fourier transform of the kernel.
+	 */
+	private long bytes( final long[] tile )
+	{
+		final long[] paddedDimensions = new long[ tile.length ];
+		final long[] fftDimensions = new long[ tile.length ];
+		paddedDimensions( tile, paddedDimensions, fftDimensions );
+		final long fftBytes = 8 * Intervals.numElements( FinalDimensions.wrap( fftDimensions ) );
+		final long tileBytes = 4 * Intervals.numElements( FinalDimensions.wrap( tile ) );
+		long lineBytes = 0;
+		for ( int d = 0; d < tile.length; ++d )
+			lineBytes = Math.max( lineBytes, FFTPlan.lineBufferBytes( Math.max( fftDimensions[ d ], paddedDimensions[ d ] ) ) );
+		return numThreads * ( fftBytes + tileBytes + lineBytes ) + fftBytes;
+	}
+
+	/**
+	 * Start with the whole output and halve the largest tile dimension until
+	 * the tiles fit into the memory budget. For cell images tile dimensions
+	 * stay multiples of the cell dimensions.
+	 */
+	private long[] computeTileDimensions()
+	{
+		final int n = output.numDimensions();
+		final long[] step = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			step[ d ] = 1;
+		if ( output instanceof AbstractCellImg )
+		{
+			final int[] cellDims = new int[ n ];
+			( ( AbstractCellImg< ?, ?, ?, ? > ) output ).getCells().cellDimensions( cellDims );
+			for ( int d = 0; d < n; ++d )
+				step[ d ] = Math.min( cellDims[ d ], output.dimension( d ) );
+		}
+
+		final long[] tile = new long[ n ];
+		output.dimensions( tile );
+		while ( bytes( tile ) > maxBytes )
+		{
+			// shrink the largest dimension that can still shrink
+			int largest = -1;
+			for ( int d = 0; d < n; ++d )
+				if ( tile[ d ] > step[ d ] && ( largest < 0 || tile[ d ] > tile[ largest ] ) )
+					largest = d;
+			if ( largest < 0 )
+				throw new IllegalArgumentException( "A memory budget of " + maxBytes + " bytes is too small for tiles of size " + Util.printCoordinates( tile ) + "." );
+			final long half = ( tile[ largest ] + 1 ) / 2;
+			tile[ largest ] = ( ( half + step[ largest ] - 1 ) / step[ largest ] ) * step[ largest ];
+		}
+		return tile;
+	}
+
+	/**
+	 * Convolve the output interval of img with kernel tile by tile. The image
+	 * will be extended by mirroring with single boundary, the kernel will be
+	 * zero-padded.
+	 */
+	final public static < R extends RealType< R > > void convolve( final RandomAccessibleInterval< R > img, final RandomAccessibleInterval< R > kernel, final RandomAccessibleInterval< R > output, final long maxBytes, final int numThreads )
+	{
+		final TiledFFTConvolution< R > convolution = new TiledFFTConvolution< R >( img, kernel, output, maxBytes );
+		convolution.setNumThreads( numThreads );
+		convolution.run();
+	}
+
+	@Override
+	public void setNumThreads()
+	{
+		setNumThreads( Runtime.getRuntime().availableProcessors() );
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+
+		// the tile size, and with it the kernel FFT, depends on the number of
+		// threads
+		this.tileDimensions = null;
+		this.fftKernel = null;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+}
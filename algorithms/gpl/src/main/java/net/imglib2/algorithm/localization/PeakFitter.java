@@ -26,12 +26,11 @@
 
 package net.imglib2.algorithm.localization;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import net.imglib2.Localizable;
 import net.imglib2.RandomAccessibleInterval;
@@ -39,6 +38,7 @@ import net.imglib2.algorithm.Benchmark;
 import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.algorithm.OutputAlgorithm;
 import net.imglib2.img.Img;
+import net.imglib2.multithreading.TaskExecutors;
 import net.imglib2.type.numeric.RealType;
 
 /**
@@ -55,6 +55,7 @@ public class PeakFitter <T extends RealType<T>> implements MultiThreaded, Output
 	private final StartPointEstimator estimator;
 	private ConcurrentHashMap<Localizable, double[]> results;
 	private int numThreads;
+	private ExecutorService executorService;
 	private final StringBuffer errorHolder = new StringBuffer();
 
 	private long processingTime;
@@ -117,7 +118,7 @@ public class PeakFitter <T extends RealType<T>> implements MultiThreaded, Output
 		results = new ConcurrentHashMap<Localizable, double[]>(peaks.size());
 		final long[] padSize = estimator.getDomainSpan();
 
-		ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+		ArrayList<Runnable> tasks = new ArrayList<Runnable>(peaks.size());
 		for (final Localizable peak : peaks) {
 			Runnable task = new Runnable() {
 
@@ -138,24 +139,16 @@ public class PeakFitter <T extends RealType<T>> implements MultiThreaded, Output
 				}
 
 			};
-			workers.execute(task);
+			tasks.add(task);
 		}
 
-		workers.shutdown();
-		boolean ok = true;
-		try {
-			ok = workers.awaitTermination(1, TimeUnit.HOURS);
-			if (!ok) {
-				System.err.println("Timeout reached while processing.");
-			}
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}		
+		ExecutorService service = (executorService == null) ? TaskExecutors.getDefault() : executorService;
+		TaskExecutors.run(service, tasks, numThreads);
 		
 		long end = System.currentTimeMillis();
 		processingTime = end - start;
 		
-		return ok;
+		return true;
 	}
 
 	@Override
@@ -178,6 +171,15 @@ public class PeakFitter <T extends RealType<T>> implements MultiThreaded, Output
 		return numThreads;
 	}
 
+	/**
+	 * Sets the {@link ExecutorService} on which the peaks are fitted. If not
+	 * set, the shared default service of {@link TaskExecutors} is used.
+	 * At most {@link #getNumThreads()} peaks are fitted concurrently.
+	 */
+	public void setExecutorService(ExecutorService executorService) {
+		this.executorService = executorService;
+	}
+
 	@Override
 	public long getProcessingTime() {
 		return processingTime;
@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.imglib2.algorithm.fft2;
+
+import static net.imglib2.algorithm.fft2.FFTConvolutionTestUtil.assertImagesEqual;
+import static net.imglib2.algorithm.fft2.FFTConvolutionTestUtil.random;
+import static net.imglib2.algorithm.fft2.FFTConvolutionTestUtil.reference;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalDimensions;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link BatchFFTConvolution} to individual {@link FFTConvolution}s.
+ *
+ * @author ImgLib2 developers
+ */
+public class BatchFFTConvolutionTest
+{
+	final long[] dims = new long[] { 37, 26, 9 };
+
+	final long[] maxKernel = new long[] { 7, 7, 5 };
+
+	private List< Img< FloatType > > kernels()
+	{
+		final List< Img< FloatType > > kernels = new ArrayList< Img< FloatType > >();
+		kernels.add( random( new long[] { 7, 7, 5 }, 10 ) );
+		kernels.add( random( new long[] { 3, 5, 1 }, 11 ) );
+		kernels.add( random( new long[] { 5, 7, 3 }, 12 ) );
+		kernels.add( random( new long[] { 1, 1, 1 }, 13 ) );
+		kernels.add( random( new long[] { 5, 3, 5 }, 14 ) );
+		return kernels;
+	}
+
+	private List< Img< FloatType > > outputs( final int n )
+	{
+		final List< Img< FloatType > > outputs = new ArrayList< Img< FloatType > >();
+		for ( int i = 0; i < n; ++i )
+			outputs.add( new ArrayImgFactory< FloatType >().create( dims, new FloatType() ) );
+		return outputs;
+	}
+
+	@Test
+	public void testKernelBank()
+	{
+		final Img< FloatType > img = random( dims, 1 );
+		final List< Img< FloatType > > kernels = kernels();
+		final BatchFFTConvolution< FloatType > batch = new BatchFFTConvolution< FloatType >( FinalDimensions.wrap( dims ), FinalDimensions.wrap( maxKernel ) );
+		batch.setNumThreads( 3 );
+
+		final List< Img< FloatType > > outputs = outputs( kernels.size() );
+		batch.convolve( img, kernels, outputs );
+		for ( int i = 0; i < kernels.size(); ++i )
+			assertImagesEqual( reference( img, kernels.get( i ) ), outputs.get( i ) );
+
+		// precomputed spectra give the same result and are not modified
+		final Img< ComplexFloatType > imgFFT = batch.imgFFT( img );
+		final List< Img< ComplexFloatType > > kernelFFTs = batch.kernelFFTs( kernels );
+		final Img< ComplexFloatType > imgFFTCopy = imgFFT.copy();
+		final List< Img< FloatType > > outputs2 = outputs( kernels.size() );
+		batch.convolve( imgFFT, kernelFFTs, outputs2 );
+		batch.convolve( imgFFT, kernelFFTs, outputs2 );
+		for ( int i = 0; i < kernels.size(); ++i )
+			assertImagesEqual( outputs.get( i ), outputs2.get( i ) );
+
+		final Cursor< ComplexFloatType > c = imgFFT.cursor();
+		final Cursor< ComplexFloatType > cCopy = imgFFTCopy.cursor();
+		while ( c.hasNext() )
+		{
+			assertEquals( cCopy.next().getRealFloat(), c.next().getRealFloat(), 0 );
+			assertEquals( cCopy.get().getImaginaryFloat(), c.get().getImaginaryFloat(), 0 );
+		}
+	}
+
+	@Test
+	public void testImageSeries()
+	{
+		final List< Img< FloatType > > imgs = new ArrayList< Img< FloatType > >();
+		for ( int i = 0; i < 6; ++i )
+			imgs.add( random( dims, 20 + i ) );
+		final Img< FloatType > kernel = random( new long[] { 5, 3, 3 }, 2 );
+
+		final BatchFFTConvolution< FloatType > batch = new BatchFFTConvolution< FloatType >( FinalDimensions.wrap( dims ), kernel );
+		batch.setNumThreads( 4 );
+		final List< Img< FloatType > > outputs = outputs( imgs.size() );
+		batch.convolve( imgs, kernel, outputs );
+		for ( int i = 0; i < imgs.size(); ++i )
+			assertImagesEqual( reference( imgs.get( i ), kernel ), outputs.get( i ) );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testKernelTooLarge()
+	{
+		final BatchFFTConvolution< FloatType > batch = new BatchFFTConvolution< FloatType >( FinalDimensions.wrap( dims ), FinalDimensions.wrap( new long[] { 3, 3, 3 } ) );
+		batch.kernelFFT( random( new long[] { 5, 3, 3 }, 3 ) );
+	}
+}
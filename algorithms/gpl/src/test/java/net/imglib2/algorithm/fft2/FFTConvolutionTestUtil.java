@@ -0,0 +1,82 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.imglib2.algorithm.fft2;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Helpers shared by the tests of the FFT convolutions.
+ *
+ * @author ImgLib2 developers
+ */
+class FFTConvolutionTestUtil
+{
+	private FFTConvolutionTestUtil()
+	{}
+
+	/**
+	 * @return an image of uniformly distributed values in [0, 1).
+	 */
+	static Img< FloatType > random( final long[] size, final int seed )
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( size, new FloatType() );
+		final Random random = new Random( seed );
+		for ( final FloatType t : img )
+			t.set( random.nextFloat() );
+		return img;
+	}
+
+	/**
+	 * @return the {@link FFTConvolution} of the whole image with the kernel.
+	 */
+	static Img< FloatType > reference( final Img< FloatType > img, final Img< FloatType > kernel )
+	{
+		final Img< FloatType > expected = img.factory().create( img, new FloatType() );
+		new FFTConvolution< FloatType >( img, kernel, expected, new ArrayImgFactory< ComplexFloatType >() ).run();
+		return expected;
+	}
+
+	static void assertImagesEqual( final Img< FloatType > expected, final Img< FloatType > actual )
+	{
+		final Cursor< FloatType > c = expected.localizingCursor();
+		final RandomAccess< FloatType > a = actual.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( c.get().get(), a.get().get(), 1e-3 );
+		}
+	}
+}
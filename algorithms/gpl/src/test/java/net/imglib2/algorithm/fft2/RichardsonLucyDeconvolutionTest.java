@@ -0,0 +1,332 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.imglib2.algorithm.fft2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link RichardsonLucyDeconvolution} on blurred synthetic images.
+ *
+ * @author ImgLib2 developers
+ */
+public class RichardsonLucyDeconvolutionTest
+{
+	final long[] dims = new long[] { 48, 40, 12 };
+
+	/**
+	 * A few bright spots on a dim background.
+	 */
+	private Img< FloatType > spots( final int seed )
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( dims, new FloatType() );
+		for ( final FloatType t : img )
+			t.set( 1 );
+		final Random random = new Random( seed );
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		for ( int i = 0; i < 20; ++i )
+		{
+			for ( int d = 0; d < dims.length; ++d )
+				ra.setPosition( 2 + random.nextInt( ( int ) dims[ d ] - 4 ), d );
+			ra.get().set( 100 );
+		}
+		return img;
+	}
+
+	private Img< FloatType > gaussian( final long[] size, final double sigma )
+	{
+		final Img< FloatType > psf = new ArrayImgFactory< FloatType >().create( size, new FloatType() );
+		final Cursor< FloatType > c = psf.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			double r2 = 0;
+			for ( int d = 0; d < size.length; ++d )
+			{
+				final double x = c.getDoublePosition( d ) - size[ d ] / 2;
+				r2 += x * x;
+			}
+			c.get().setReal( Math.exp( -r2 / ( 2 * sigma * sigma ) ) );
+		}
+		double sum = 0;
+		for ( final FloatType t : psf )
+			sum += t.get();
+		for ( final FloatType t : psf )
+			t.setReal( t.get() / sum );
+		return psf;
+	}
+
+	private Img< FloatType > blur( final Img< FloatType > img, final Img< FloatType > psf )
+	{
+		final Img< FloatType > blurred = img.factory().create( img, new FloatType() );
+		new FFTConvolution< FloatType >( img, psf, blurred, new ArrayImgFactory< ComplexFloatType >() ).run();
+		return blurred;
+	}
+
+	private double distance( final Img< FloatType > a, final Img< FloatType > b )
+	{
+		final Cursor< FloatType > ca = a.cursor();
+		final Cursor< FloatType > cb = b.cursor();
+		double sum = 0;
+		while ( ca.hasNext() )
+		{
+			final double diff = ca.next().get() - cb.next().get();
+			sum += diff * diff;
+		}
+		return Math.sqrt( sum );
+	}
+
+	private double totalVariation( final Img< FloatType > img )
+	{
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		final Cursor< FloatType > c = img.localizingCursor();
+		double sum = 0;
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			ra.setPosition( c );
+			for ( int d = 0; d < dims.length; ++d )
+				if ( c.getLongPosition( d ) < dims[ d ] - 1 )
+				{
+					ra.fwd( d );
+					sum += Math.abs( ra.get().get() - c.get().get() );
+					ra.bck( d );
+				}
+		}
+		return sum;
+	}
+
+	private Img< FloatType > deconvolve( final Img< FloatType > img, final Img< FloatType > psf, final int numIterations, final boolean accelerate, final double lambda )
+	{
+		final Img< FloatType > output = img.factory().create( img, new FloatType() );
+		final RichardsonLucyDeconvolution< FloatType > rl = new RichardsonLucyDeconvolution< FloatType >( img, psf, output );
+		rl.setNumIterations( numIterations );
+		rl.setAccelerate( accelerate );
+		rl.setRegularization( lambda );
+		rl.setNumThreads( 2 );
+		rl.run();
+		assertEquals( numIterations, rl.getIterationsPerformed() );
+		return output;
+	}
+
+	@Test
+	public void testDeblur()
+	{
+		final Img< FloatType > truth = spots( 1 );
+		final Img< FloatType > psf = gaussian( new long[] { 9, 9, 5 }, 1.5 );
+		final Img< FloatType > blurred = blur( truth, psf );
+
+		final Img< FloatType > plain = deconvolve( blurred, psf, 20, false, 0 );
+		final Img< FloatType > accelerated = deconvolve( blurred, psf, 20, true, 0 );
+
+		final double blurredError = distance( truth, blurred );
+		final double plainError = distance( truth, plain );
+		final double acceleratedError = distance( truth, accelerated );
+		assertTrue( plainError < blurredError );
+		assertTrue( acceleratedError < plainError );
+	}
+
+	@Test
+	public void testRegularization()
+	{
+		final Img< FloatType > truth = spots( 2 );
+		final Img< FloatType > psf = gaussian( new long[] { 7, 7, 5 }, 1.2 );
+		final Img< FloatType > blurred = blur( truth, psf );
+		final Random random = new Random( 3 );
+		for ( final FloatType t : blurred )
+			t.set( Math.max( 0, t.get() + ( float ) random.nextGaussian() * 0.5f ) );
+
+		final Img< FloatType > plain = deconvolve( blurred, psf, 15, false, 0 );
+		final Img< FloatType > regularized = deconvolve( blurred, psf, 15, false, 0.01 );
+		assertTrue( totalVariation( regularized ) < totalVariation( plain ) );
+	}
+
+	@Test
+	public void testRegularizationAtEdges()
+	{
+		// a high-contrast checkerboard of cubes, the divergence of the
+		// normalized gradient at the dark corners exceeds 1 / lambda
+		final Img< FloatType > truth = new ArrayImgFactory< FloatType >().create( dims, new FloatType() );
+		final Cursor< FloatType > c = truth.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final long cube = c.getLongPosition( 0 ) / 6 + c.getLongPosition( 1 ) / 6 + c.getLongPosition( 2 ) / 4;
+			c.get().set( cube % 2 == 0 ? 1 : 100 );
+		}
+		final Img< FloatType > psf = gaussian( new long[] { 5, 5, 3 }, 0.8 );
+		final Img< FloatType > blurred = blur( truth, psf );
+
+		final Img< FloatType > regularized = deconvolve( blurred, psf, 10, false, 0.5 );
+		for ( final FloatType t : regularized )
+			assertTrue( t.get() > 0 );
+	}
+
+	@Test
+	public void testRegularizationThreads()
+	{
+		final Img< FloatType > truth = spots( 8 );
+		final Img< FloatType > psf = gaussian( new long[] { 7, 7, 5 }, 1.2 );
+		final Img< FloatType > blurred = blur( truth, psf );
+
+		final Img< FloatType > single = blurred.factory().create( blurred, new FloatType() );
+		final Img< FloatType > multi = blurred.factory().create( blurred, new FloatType() );
+		for ( final int numThreads : new int[] { 1, 4 } )
+		{
+			final RichardsonLucyDeconvolution< FloatType > rl = new RichardsonLucyDeconvolution< FloatType >( blurred, psf, numThreads == 1 ? single : multi );
+			rl.setNumIterations( 10 );
+			rl.setRegularization( 0.01 );
+			rl.setNumThreads( numThreads );
+			rl.run();
+		}
+
+		final Cursor< FloatType > c1 = single.cursor();
+		final Cursor< FloatType > c2 = multi.cursor();
+		while ( c1.hasNext() )
+			assertEquals( c1.next().get(), c2.next().get(), 0 );
+	}
+
+	@Test
+	public void testIdentity()
+	{
+		final Img< FloatType > img = spots( 4 );
+		final Img< FloatType > psf = new ArrayImgFactory< FloatType >().create( new long[] { 1, 1, 1 }, new FloatType() );
+		psf.firstElement().set( 3 );
+		final Img< FloatType > output = deconvolve( img, psf, 5, false, 0 );
+		assertEquals( 0, distance( img, output ), 1e-2 );
+	}
+
+	@Test
+	public void testShift()
+	{
+		// a PSF that shifts by two pixels is inverted by a single iteration
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( dims, new FloatType() );
+		final Random random = new Random( 7 );
+		for ( final FloatType t : img )
+			t.set( 1 + random.nextFloat() );
+		final Img< FloatType > psf = new ArrayImgFactory< FloatType >().create( new long[] { 5, 1, 1 }, new FloatType() );
+		final RandomAccess< FloatType > p = psf.randomAccess();
+		p.setPosition( 4, 0 );
+		p.get().set( 1 );
+
+		final Img< FloatType > blurred = blur( img, psf );
+		final Img< FloatType > output = deconvolve( blurred, psf, 1, false, 0 );
+
+		final Cursor< FloatType > c = img.localizingCursor();
+		final RandomAccess< FloatType > o = output.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			if ( c.getLongPosition( 0 ) < 4 || c.getLongPosition( 0 ) >= dims[ 0 ] - 4 )
+				continue;
+			o.setPosition( c );
+			assertEquals( c.get().get(), o.get().get(), 1e-3 );
+		}
+	}
+
+	@Test
+	public void testTiles()
+	{
+		final Img< FloatType > truth = spots( 5 );
+		final Img< FloatType > psf = gaussian( new long[] { 5, 5, 1 }, 1 );
+		final Img< FloatType > blurred = blur( truth, psf );
+		final Img< FloatType > whole = deconvolve( blurred, psf, 2, false, 0 );
+
+		final Img< FloatType > tiled = blurred.factory().create( blurred, new FloatType() );
+		final RichardsonLucyDeconvolution< FloatType > rl = new RichardsonLucyDeconvolution< FloatType >( blurred, psf, tiled );
+		rl.setNumIterations( 2 );
+		rl.setTileDimensions( new long[] { 20, 16, 5 }, new long[] { 10, 10, 0 } );
+		rl.setNumThreads( 3 );
+		rl.run();
+
+		// each iteration reaches two PSF radii further, pixels closer to the
+		// image border are affected by the periodic boundary of the whole
+		// image
+		final long margin = 2 * 2 * 2;
+		final Cursor< FloatType > c = whole.localizingCursor();
+		final RandomAccess< FloatType > t = tiled.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			if ( c.getLongPosition( 0 ) < margin || c.getLongPosition( 0 ) >= dims[ 0 ] - margin || c.getLongPosition( 1 ) < margin || c.getLongPosition( 1 ) >= dims[ 1 ] - margin )
+				continue;
+			t.setPosition( c );
+			assertEquals( c.get().get(), t.get().get(), 1e-3 * Math.max( 1, c.get().get() ) );
+		}
+	}
+
+	@Test
+	public void testInPlace()
+	{
+		final Img< FloatType > psf = gaussian( new long[] { 5, 5, 3 }, 1 );
+		final Img< FloatType > blurred = blur( spots( 7 ), psf );
+		final Img< FloatType > expected = deconvolve( blurred, psf, 3, false, 0 );
+
+		final RichardsonLucyDeconvolution< FloatType > rl = new RichardsonLucyDeconvolution< FloatType >( blurred, psf, blurred );
+		rl.setNumIterations( 3 );
+		rl.setNumThreads( 2 );
+		rl.run();
+		assertEquals( 0, distance( expected, blurred ), 0 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testInPlaceTiles()
+	{
+		final Img< FloatType > psf = gaussian( new long[] { 5, 5, 1 }, 1 );
+		final Img< FloatType > blurred = blur( spots( 8 ), psf );
+		final RichardsonLucyDeconvolution< FloatType > rl = new RichardsonLucyDeconvolution< FloatType >( blurred, psf, blurred );
+		rl.setNumIterations( 2 );
+		rl.setTileDimensions( new long[] { 20, 16, 5 }, new long[] { 10, 10, 0 } );
+		rl.run();
+	}
+
+	@Test
+	public void testEarlyStopping()
+	{
+		final Img< FloatType > truth = spots( 6 );
+		final Img< FloatType > psf = gaussian( new long[] { 5, 5, 3 }, 1 );
+		final Img< FloatType > blurred = blur( truth, psf );
+		final Img< FloatType > output = blurred.factory().create( blurred, new FloatType() );
+
+		final RichardsonLucyDeconvolution< FloatType > rl = new RichardsonLucyDeconvolution< FloatType >( blurred, psf, output );
+		rl.setNumIterations( 1000 );
+		rl.setTolerance( 0.01 );
+		rl.run();
+		assertTrue( rl.getIterationsPerformed() < 1000 );
+		assertTrue( rl.getChange() < 0.01 );
+	}
+}
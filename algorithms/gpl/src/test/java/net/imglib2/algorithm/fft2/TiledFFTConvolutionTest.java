@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft2;
+
+import static net.imglib2.algorithm.fft2.FFTConvolutionTestUtil.assertImagesEqual;
+import static net.imglib2.algorithm.fft2.FFTConvolutionTestUtil.random;
+import static net.imglib2.algorithm.fft2.FFTConvolutionTestUtil.reference;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link TiledFFTConvolution} to {@link FFTConvolution} of the whole
+ * image.
+ *
+ * @author ImgLib2 developers
+ */
+public class TiledFFTConvolutionTest
+{
+	final long[] dims = new long[] { 45, 38, 11 };
+
+	@Test
+	public void testTiles()
+	{
+		final Img< FloatType > img = random( dims, 1 );
+		final Img< FloatType > kernel = random( new long[] { 5, 7, 3 }, 2 );
+		final Img< FloatType > expected = reference( img, kernel );
+
+		final Img< FloatType > output = img.factory().create( img, new FloatType() );
+		final TiledFFTConvolution< FloatType > convolution = new TiledFFTConvolution< FloatType >( img, kernel, output, 200000 );
+		convolution.setNumThreads( 3 );
+		final long[] tile = convolution.getTileDimensions();
+		assertTrue( tile[ 0 ] * tile[ 1 ] * tile[ 2 ] < img.size() );
+		convolution.run();
+		assertImagesEqual( expected, output );
+
+		// the kernel FFT is reused for another image
+		final Img< ComplexFloatType > kernelFFT = convolution.kernelFFT();
+		final Img< FloatType > img2 = random( dims, 3 );
+		convolution.setImg( img2 );
+		convolution.run();
+		assertImagesEqual( reference( img2, kernel ), output );
+		assertSame( kernelFFT, convolution.kernelFFT() );
+	}
+
+	@Test
+	public void testCellOutput()
+	{
+		final Img< FloatType > img = random( dims, 4 );
+		final Img< FloatType > kernel = random( new long[] { 3, 3, 3 }, 5 );
+		final Img< FloatType > expected = reference( img, kernel );
+
+		final Img< FloatType > output = new CellImgFactory< FloatType >( new int[] { 10, 8, 4 } ).create( dims, new FloatType() );
+		final TiledFFTConvolution< FloatType > convolution = new TiledFFTConvolution< FloatType >( img, kernel, output, 100000 );
+		convolution.setNumThreads( 2 );
+		final long[] tile = convolution.getTileDimensions();
+		final int[] cellDims = new int[] { 10, 8, 4 };
+		for ( int d = 0; d < dims.length; ++d )
+			assertTrue( tile[ d ] == dims[ d ] || tile[ d ] % cellDims[ d ] == 0 );
+		assertTrue( tile[ 0 ] * tile[ 1 ] * tile[ 2 ] < img.size() );
+		convolution.run();
+		assertImagesEqual( expected, output );
+	}
+
+	@Test
+	public void testWholeImage()
+	{
+		final Img< FloatType > img = random( dims, 6 );
+		final Img< FloatType > kernel = random( new long[] { 3, 5, 3 }, 7 );
+		final Img< FloatType > output = img.factory().create( img, new FloatType() );
+		final TiledFFTConvolution< FloatType > convolution = new TiledFFTConvolution< FloatType >( img, kernel, output, Long.MAX_VALUE );
+		assertArrayEquals( dims, convolution.getTileDimensions() );
+		convolution.run();
+		assertImagesEqual( reference( img, kernel ), output );
+	}
+
+	@Test
+	public void testInPlaceSingleTile()
+	{
+		final Img< FloatType > img = random( dims, 10 );
+		final Img< FloatType > kernel = random( new long[] { 3, 5, 3 }, 11 );
+		final Img< FloatType > expected = reference( img, kernel );
+		new TiledFFTConvolution< FloatType >( img, kernel, img, Long.MAX_VALUE ).run();
+		assertImagesEqual( expected, img );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testInPlaceMultipleTiles()
+	{
+		final Img< FloatType > img = random( dims, 12 );
+		final Img< FloatType > kernel = random( new long[] { 5, 7, 3 }, 13 );
+		final TiledFFTConvolution< FloatType > convolution = new TiledFFTConvolution< FloatType >( img, kernel, img, 200000 );
+		convolution.setNumThreads( 3 );
+		final long[] tile = convolution.getTileDimensions();
+		assertTrue( tile[ 0 ] * tile[ 1 ] * tile[ 2 ] < img.size() );
+		convolution.run();
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testBudgetTooSmall()
+	{
+		final Img< FloatType > img = random( dims, 8 );
+		final Img< FloatType > kernel = random( new long[] { 3, 3, 3 }, 9 );
+		new TiledFFTConvolution< FloatType >( img, kernel, img, 100 ).run();
+	}
+}
@@ -47,6 +47,7 @@ import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.view.Views;
 
 /**
  * This class represents an n-dimensional set of counters. Histogram
@@ -156,6 +157,67 @@ public class DiscreteFrequencyDistribution implements Img<LongType> {
 		totalValues--;
 	}
 
+	/**
+	 * Adds the frequency counts of another distribution with the same bin
+	 * dimensions to this distribution. Use this to merge partial distributions
+	 * that were counted independently, e.g. by different threads.
+	 */
+	public void add(DiscreteFrequencyDistribution other) {
+		for (int i = 0; i < numDimensions(); i++) {
+			if (dimension(i) != other.dimension(i)) {
+				throw new IllegalArgumentException(
+					"cannot add distributions of differing dimensions");
+			}
+		}
+		Cursor<LongType> cursor = Views.flatIterable(counts).cursor();
+		Cursor<LongType> otherCursor =
+			Views.flatIterable(other.counts).cursor();
+		while (cursor.hasNext()) {
+			LongType count = cursor.next();
+			count.set(count.get() + otherCursor.next().get());
+		}
+		totalValues += other.totalValues;
+	}
+
+	/**
+	 * Subtracts the frequency counts of another distribution with the same bin
+	 * dimensions from this distribution.
+	 */
+	public void subtract(DiscreteFrequencyDistribution other) {
+		for (int i = 0; i < numDimensions(); i++) {
+			if (dimension(i) != other.dimension(i)) {
+				throw new IllegalArgumentException(
+					"cannot subtract distributions of differing dimensions");
+			}
+		}
+		Cursor<LongType> cursor = Views.flatIterable(counts).cursor();
+		Cursor<LongType> otherCursor =
+			Views.flatIterable(other.counts).cursor();
+		while (cursor.hasNext()) {
+			LongType count = cursor.next();
+			count.set(count.get() - otherCursor.next().get());
+		}
+		totalValues -= other.totalValues;
+	}
+
+	/**
+	 * Adds frequency counts to all bins. The counts are given in flat order,
+	 * i.e. for a 1-d distribution frequencies[i] is added to bin i. Negative
+	 * counts remove values from the distribution.
+	 */
+	public void addFrequencies(long[] frequencies) {
+		if (frequencies.length != size()) {
+			throw new IllegalArgumentException(
+				"number of frequencies does not match number of bins");
+		}
+		Cursor<LongType> cursor = Views.flatIterable(counts).cursor();
+		for (int i = 0; i < frequencies.length; i++) {
+			LongType count = cursor.next();
+			count.set(count.get() + frequencies[i]);
+			totalValues += frequencies[i];
+		}
+	}
+
 	/**
 	 * Returns the total number of values counted by this distribution.
 	 */
@@ -33,16 +33,21 @@
 
 package net.imglib2.histogram;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.IterableRealInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.multithreading.TaskExecutors;
 import net.imglib2.type.numeric.integer.LongType;
 
 /**
@@ -58,6 +63,18 @@ import net.imglib2.type.numeric.integer.LongType;
  */
 public class Histogram1d<T> implements Img<LongType> {
 
+	// -- constants --
+
+	/**
+	 * Minimum number of values that are counted in parallel.
+	 */
+	private static final long MIN_PARALLEL_SIZE = 1 << 16;
+
+	/**
+	 * Maximum number of bins for which partial counters are allocated.
+	 */
+	private static final long MAX_PARTIAL_BINS = 1 << 24;
+
 	// -- instance variables --
 
 	private BinMapper1d<T> mapper;
@@ -356,6 +373,24 @@ public class Histogram1d<T> implements Img<LongType> {
 		init(data);
 	}
 
+	/**
+	 * Counts the data contained in the given data source using the underlying bin
+	 * distribution. Images of 8-bit and 16-bit integer types are counted directly
+	 * on their storage arrays when the histogram uses an
+	 * {@link Integer1dBinMapper}. Other large {@link IterableInterval}s are
+	 * counted in parallel chunks, each with its own copy of the bin mapper.
+	 * 
+	 * @param data The total data to count
+	 * @param service The service on which to run the counting
+	 * @param numThreads The maximum number of chunks to count concurrently
+	 */
+	public void countData(Iterable<T> data, ExecutorService service,
+		int numThreads)
+	{
+		reset();
+		count(data, 1, service, numThreads);
+	}
+
 	/**
 	 * Counts additional data contained in a given iterable collection. One can
 	 * use this to update an existing histogram with a subset of values.
@@ -366,6 +401,20 @@ public class Histogram1d<T> implements Img<LongType> {
 		add(data);
 	}
 
+	/**
+	 * Counts additional data contained in a given iterable collection, see
+	 * {@link #countData(Iterable, ExecutorService, int)}.
+	 * 
+	 * @param data The new data to count
+	 * @param service The service on which to run the counting
+	 * @param numThreads The maximum number of chunks to count concurrently
+	 */
+	public void addData(Iterable<T> data, ExecutorService service,
+		int numThreads)
+	{
+		count(data, 1, service, numThreads);
+	}
+
 	/**
 	 * Uncounts some original data contained in a given iterable collection. One
 	 * can use this to update an existing histogram with a subset of values.
@@ -376,6 +425,22 @@ public class Histogram1d<T> implements Img<LongType> {
 		subtract(data);
 	}
 
+	/**
+	 * Uncounts some original data contained in a given iterable collection, see
+	 * {@link #countData(Iterable, ExecutorService, int)}. Together with
+	 * {@link #addData(Iterable, ExecutorService, int)} this updates a histogram
+	 * of a sliding window without recounting the whole window.
+	 * 
+	 * @param data The old data to uncount
+	 * @param service The service on which to run the counting
+	 * @param numThreads The maximum number of chunks to count concurrently
+	 */
+	public void subtractData(Iterable<T> data, ExecutorService service,
+		int numThreads)
+	{
+		count(data, -1, service, numThreads);
+	}
+
 	/**
 	 * Directly increment a bin by position.
 	 * 
@@ -622,15 +687,128 @@ public class Histogram1d<T> implements Img<LongType> {
 	}
 
 	private void add(Iterable<T> data) {
-		for (T value : data) {
-			increment(value);
-		}
+		count(data, 1, null, 1);
 	}
 
 	private void subtract(Iterable<T> data) {
-		for (T value : data) {
-			decrement(value);
+		count(data, -1, null, 1);
+	}
+
+	/**
+	 * Adds (sign = 1) or removes (sign = -1) the values of data.
+	 */
+	private void count(Iterable<T> data, final int sign,
+		ExecutorService service, int numThreads)
+	{
+		final long binCount = getBinCount();
+
+		// 8-bit and 16-bit images: count every value on the storage arrays,
+		// then map the values to bins. This costs O(bins + values) on top of
+		// the pixels, so small inputs (e.g. neighbourhoods) are counted
+		// element by element.
+		if (mapper instanceof Integer1dBinMapper &&
+			binCount <= MAX_PARTIAL_BINS && data instanceof IterableInterval &&
+			((IterableInterval<T>) data).size() >= binCount)
+		{
+			long size = ((IterableInterval<T>) data).size();
+			PrimitiveValueCounter.Counts counts =
+				PrimitiveValueCounter.count(data, service,
+					size < MIN_PARALLEL_SIZE ? 1 : numThreads);
+			if (counts != null) {
+				Integer1dBinMapper<?> integerMapper =
+					(Integer1dBinMapper<?>) mapper;
+				long[] frequencies = new long[(int) binCount];
+				for (int i = 0; i < counts.counts.length; i++) {
+					long c = counts.counts[i];
+					if (c == 0) continue;
+					long bin = integerMapper.map(counts.minValue + i);
+					if (bin == Long.MIN_VALUE || bin == Long.MAX_VALUE) {
+						ignoredCount += sign * c;
+					}
+					else {
+						frequencies[(int) bin] += sign * c;
+					}
+				}
+				distrib.addFrequencies(frequencies);
+				return;
+			}
+		}
+
+		// large intervals: count chunks in parallel into partial counters. Each
+		// chunk has at least as many values as there are bins, so that
+		// allocating and merging the partial counters does not dominate.
+		final int numTasks = numParallelTasks(data, binCount, numThreads);
+		if (numTasks > 1) {
+			final IterableInterval<T> interval = (IterableInterval<T>) data;
+			final long size = interval.size();
+			final long[][] partials = new long[numTasks][];
+			final long[] ignored = new long[numTasks];
+			List<Runnable> tasks = new ArrayList<Runnable>();
+			for (int t = 0; t < numTasks; t++) {
+				final int task = t;
+				final long first = t * size / numTasks;
+				final long last = (t + 1) * size / numTasks;
+				tasks.add(new Runnable() {
+
+					@Override
+					public void run() {
+						BinMapper1d<T> m = mapper.copy();
+						long[] frequencies = new long[(int) binCount];
+						Cursor<T> cursor = interval.cursor();
+						cursor.jumpFwd(first);
+						for (long i = first; i < last; i++) {
+							long bin = m.map(cursor.next());
+							if (bin == Long.MIN_VALUE || bin == Long.MAX_VALUE) {
+								ignored[task] += sign;
+							}
+							else {
+								frequencies[(int) bin] += sign;
+							}
+						}
+						partials[task] = frequencies;
+					}
+				});
+			}
+			TaskExecutors.run(service, tasks, numTasks);
+			long[] frequencies = partials[0];
+			ignoredCount += ignored[0];
+			for (int t = 1; t < numTasks; t++) {
+				for (int i = 0; i < frequencies.length; i++) {
+					frequencies[i] += partials[t][i];
+				}
+				ignoredCount += ignored[t];
+			}
+			distrib.addFrequencies(frequencies);
+			return;
+		}
+
+		if (sign > 0) {
+			for (T value : data) {
+				increment(value);
+			}
+		}
+		else {
+			for (T value : data) {
+				decrement(value);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of chunks in which data is counted in parallel, or 1 if
+	 * it is counted serially.
+	 */
+	private static int numParallelTasks(Iterable<?> data, long binCount,
+		int numThreads)
+	{
+		if (numThreads <= 1 || !(data instanceof IterableInterval) ||
+			binCount > MAX_PARTIAL_BINS)
+		{
+			return 1;
 		}
+		long size = ((IterableInterval<?>) data).size();
+		if (size < MIN_PARALLEL_SIZE) return 1;
+		return (int) Math.min(numThreads, size / Math.max(1, binCount));
 	}
 
 }
@@ -36,15 +36,18 @@ package net.imglib2.histogram;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.IterableRealInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.multithreading.TaskExecutors;
 import net.imglib2.type.numeric.integer.LongType;
 
 // TODO - calculate lazily but should be able to count upper/lower/middle in
@@ -63,6 +66,18 @@ import net.imglib2.type.numeric.integer.LongType;
  */
 public class HistogramNd<T> implements Img<LongType> {
 
+	// -- constants --
+
+	/**
+	 * Minimum number of values that are counted in parallel.
+	 */
+	private static final long MIN_PARALLEL_SIZE = 1 << 16;
+
+	/**
+	 * Maximum number of bins for which partial distributions are allocated.
+	 */
+	private static final long MAX_PARTIAL_BINS = 1 << 24;
+
 	// -- instance variables --
 
 	private List<BinMapper1d<T>> mappers;
@@ -101,7 +116,7 @@ public class HistogramNd<T> implements Img<LongType> {
 	 */
 	public HistogramNd(HistogramNd<T> other) {
 		List<BinMapper1d<T>> mappersCopy = new ArrayList<BinMapper1d<T>>();
-		for (BinMapper1d<T> m : mappers) {
+		for (BinMapper1d<T> m : other.mappers) {
 			mappersCopy.add(m.copy());
 		}
 		mappers = mappersCopy;
@@ -648,6 +663,24 @@ public class HistogramNd<T> implements Img<LongType> {
 		init(data);
 	}
 
+	/**
+	 * Counts the data contained in the given data sources using the underlying
+	 * bin distribution. If all sources are large {@link IterableInterval}s of
+	 * the same iteration order, they are counted in parallel chunks into partial
+	 * distributions that are merged at the end. Each chunk uses its own copies of
+	 * the bin mappers.
+	 * 
+	 * @param data The total data to count
+	 * @param service The service on which to run the counting
+	 * @param numThreads The maximum number of chunks to count concurrently
+	 */
+	public void countData(List<Iterable<T>> data, ExecutorService service,
+		int numThreads)
+	{
+		reset();
+		modifyCounts(data, true, service, numThreads);
+	}
+
 	/**
 	 * Counts additional data contained in a given iterable collection. One can
 	 * use this to update an existing histogram with a subset of values.
@@ -668,6 +701,20 @@ public class HistogramNd<T> implements Img<LongType> {
 		add(data);
 	}
 
+	/**
+	 * Counts additional data contained in the given data sources, see
+	 * {@link #countData(List, ExecutorService, int)}.
+	 * 
+	 * @param data The new data to count
+	 * @param service The service on which to run the counting
+	 * @param numThreads The maximum number of chunks to count concurrently
+	 */
+	public void addData(List<Iterable<T>> data, ExecutorService service,
+		int numThreads)
+	{
+		modifyCounts(data, true, service, numThreads);
+	}
+
 	/**
 	 * Uncounts some original data contained in a given iterable collection. One
 	 * can use this to update an existing histogram with a subset of values.
@@ -688,6 +735,20 @@ public class HistogramNd<T> implements Img<LongType> {
 		subtract(data);
 	}
 
+	/**
+	 * Uncounts some original data contained in the given data sources, see
+	 * {@link #countData(List, ExecutorService, int)}.
+	 * 
+	 * @param data The old data to uncount
+	 * @param service The service on which to run the counting
+	 * @param numThreads The maximum number of chunks to count concurrently
+	 */
+	public void subtractData(List<Iterable<T>> data, ExecutorService service,
+		int numThreads)
+	{
+		modifyCounts(data, false, service, numThreads);
+	}
+
 	/**
 	 * Directly increment a bin by position.
 	 * 
@@ -916,6 +977,105 @@ public class HistogramNd<T> implements Img<LongType> {
 		}
 	}
 
+	private void modifyCounts(final List<Iterable<T>> data, boolean add,
+		ExecutorService service, final int numThreads)
+	{
+		if (numThreads <= 1 || !isChunkable(data) ||
+			distrib.size() > MAX_PARTIAL_BINS)
+		{
+			modifyCounts(data, add ? incrementer : decrementer);
+			return;
+		}
+
+		// count chunks in parallel into partial distributions. Each chunk has at
+		// least as many values as there are bins, so that allocating and merging
+		// the partial distributions does not dominate.
+		final long size = ((IterableInterval<?>) data.get(0)).size();
+		final int numTasks =
+			(int) Math.min(numThreads, size / Math.max(1, distrib.size()));
+		if (numTasks <= 1) {
+			modifyCounts(data, add ? incrementer : decrementer);
+			return;
+		}
+		final long[] dims = new long[mappers.size()];
+		distrib.dimensions(dims);
+		final DiscreteFrequencyDistribution[] partials =
+			new DiscreteFrequencyDistribution[numTasks];
+		final long[] ignored = new long[numTasks];
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		for (int t = 0; t < numTasks; t++) {
+			final int task = t;
+			final long first = t * size / numTasks;
+			final long last = (t + 1) * size / numTasks;
+			tasks.add(new Runnable() {
+
+				@Override
+				public void run() {
+					List<BinMapper1d<T>> m = new ArrayList<BinMapper1d<T>>();
+					List<Cursor<T>> cursors = new ArrayList<Cursor<T>>();
+					for (int i = 0; i < data.size(); i++) {
+						m.add(mappers.get(i).copy());
+						Cursor<T> cursor =
+							((IterableInterval<T>) data.get(i)).cursor();
+						cursor.jumpFwd(first);
+						cursors.add(cursor);
+					}
+					DiscreteFrequencyDistribution partial =
+						new DiscreteFrequencyDistribution(dims);
+					long[] binPos = new long[dims.length];
+					for (long j = first; j < last; j++) {
+						boolean isIgnored = false;
+						for (int i = 0; i < binPos.length; i++) {
+							binPos[i] = m.get(i).map(cursors.get(i).next());
+							if (binPos[i] == Long.MIN_VALUE ||
+								binPos[i] == Long.MAX_VALUE)
+							{
+								isIgnored = true;
+							}
+						}
+						if (isIgnored) ignored[task]++;
+						else partial.increment(binPos);
+					}
+					partials[task] = partial;
+				}
+			});
+		}
+		TaskExecutors.run(service, tasks, numTasks);
+		for (int t = 0; t < numTasks; t++) {
+			if (add) {
+				distrib.add(partials[t]);
+				ignoredCount += ignored[t];
+			}
+			else {
+				distrib.subtract(partials[t]);
+				ignoredCount -= ignored[t];
+			}
+		}
+	}
+
+	/**
+	 * Returns true if data consists of one large {@link IterableInterval} per
+	 * bin mapper, all in the same iteration order, that can be split into
+	 * chunks.
+	 */
+	private boolean isChunkable(List<Iterable<T>> data) {
+		if (data.size() != mappers.size()) return false;
+		for (Iterable<T> d : data) {
+			if (!(d instanceof IterableInterval)) return false;
+		}
+		IterableInterval<?> first = (IterableInterval<?>) data.get(0);
+		if (first.size() < MIN_PARALLEL_SIZE) return false;
+		for (Iterable<T> d : data) {
+			IterableInterval<?> interval = (IterableInterval<?>) d;
+			if (interval.size() != first.size() ||
+				!interval.iterationOrder().equals(first.iterationOrder()))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private void modifyCounts(List<Iterable<T>> data, Counter counter) {
 		List<T> vals = new ArrayList<T>(mappers.size());
 		List<Iterator<T>> iters = new ArrayList<Iterator<T>>();
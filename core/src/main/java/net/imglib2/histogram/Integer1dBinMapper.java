@@ -91,7 +91,13 @@ public class Integer1dBinMapper<T extends IntegerType<T>> implements
 
 	@Override
 	public long map(T value) {
-		long val = value.getIntegerLong();
+		return map(value.getIntegerLong());
+	}
+
+	/**
+	 * Maps an integer value to a bin position, like {@link #map(IntegerType)}.
+	 */
+	long map(long val) {
 		long pos;
 		if (val >= minVal && val <= maxVal) {
 			pos = val - minVal;
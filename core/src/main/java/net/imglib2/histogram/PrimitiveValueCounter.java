@@ -0,0 +1,264 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.IterableInterval;
+import net.imglib2.img.StorageBlock;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.multithreading.TaskExecutors;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.PrimitiveStorage;
+
+/**
+ * Counts the values of 8-bit and 16-bit integer images directly on their
+ * storage arrays. Every possible value has its own counter, so that counting
+ * is a plain array increment per pixel. The images are split into segments
+ * that are counted in parallel into partial counters, which are summed at
+ * the end.
+ * 
+ * @author ImgLib2 developers
+ */
+final class PrimitiveValueCounter {
+
+	private PrimitiveValueCounter() {}
+
+	/**
+	 * Returns the number of possible values of storage, or 0 if values of
+	 * this kind are not counted directly.
+	 */
+	private static int numValues(PrimitiveStorage storage) {
+		if (storage == null) return 0;
+		switch (storage) {
+			case BYTE:
+			case UNSIGNED_BYTE:
+				return 256;
+			case SHORT:
+			case UNSIGNED_SHORT:
+				return 65536;
+			default:
+				return 0;
+		}
+	}
+
+	/**
+	 * Returns the smallest possible value of storage.
+	 */
+	private static long minValue(PrimitiveStorage storage) {
+		switch (storage) {
+			case BYTE:
+				return -128;
+			case SHORT:
+				return -32768;
+			default:
+				return 0;
+		}
+	}
+
+	/**
+	 * Counts of all possible values of an image: counts[i] is the number of
+	 * pixels with value minValue + i.
+	 */
+	static final class Counts {
+
+		final long[] counts;
+		final long minValue;
+
+		Counts(long[] counts, long minValue) {
+			this.counts = counts;
+			this.minValue = minValue;
+		}
+	}
+
+	/**
+	 * A range of one storage array. The array of a cell is obtained only when
+	 * it is counted, so that cells of cached images are loaded on demand.
+	 */
+	private static final class Segment {
+
+		final AbstractCellImg<?, ?, ?, ?> img;
+		final long cellIndex;
+		Object array;
+		int from, to;
+
+		Segment(Object data, int from, int to) {
+			img = null;
+			cellIndex = 0;
+			array = ((ArrayDataAccess<?>) data).getCurrentStorageArray();
+			this.from = from;
+			this.to = to;
+		}
+
+		Segment(AbstractCellImg<?, ?, ?, ?> img, long cellIndex) {
+			this.img = img;
+			this.cellIndex = cellIndex;
+		}
+
+		void load() {
+			if (img == null) return;
+			StorageBlock<?, ?> cell = img.getCellBlock(cellIndex);
+			array = ((ArrayDataAccess<?>) cell.getData()).getCurrentStorageArray();
+			from = 0;
+			to = (int) cell.size();
+		}
+	}
+
+	/**
+	 * Returns true if the values of data can be counted directly on storage
+	 * arrays.
+	 */
+	static boolean isSupported(Iterable<?> data) {
+		return numValues(PrimitiveStorage.of(data)) != 0;
+	}
+
+	/**
+	 * Counts all values of data, or returns null if data is not an
+	 * {@link ArrayImg}, {@link PlanarImg} or {@link AbstractCellImg} of
+	 * {@link ByteType}, {@link UnsignedByteType}, {@link ShortType} or
+	 * {@link UnsignedShortType} whose data is held in primitive arrays (images
+	 * backed by {@link java.nio.ByteBuffer}s are counted generically), or if
+	 * data has fewer pixels than possible values, so that allocating and
+	 * scanning a counter per value would dominate.
+	 */
+	static Counts count(Iterable<?> data, ExecutorService service,
+		int numThreads)
+	{
+		final PrimitiveStorage storage = PrimitiveStorage.of(data);
+		final int numValues = numValues(storage);
+		if (numValues == 0) return null;
+		if (((IterableInterval<?>) data).size() < numValues) return null;
+
+		final List<Segment> segments = new ArrayList<Segment>();
+		if (data instanceof ArrayImg) {
+			final long size = ((ArrayImg<?, ?>) data).size();
+			final Object array = ((ArrayImg<?, ?>) data).update(null);
+			final long step = (size + numThreads - 1) / numThreads;
+			for (long from = 0; from < size; from += step) {
+				segments.add(new Segment(array, (int) from, (int) Math.min(size,
+					from + step)));
+			}
+		}
+		else if (data instanceof PlanarImg) {
+			final PlanarImg<?, ?> img = (PlanarImg<?, ?>) data;
+			for (int i = 0; i < img.numSlices(); i++) {
+				final StorageBlock<?, ?> plane = img.getPlaneBlock(i);
+				segments.add(new Segment(plane.getData(), 0, (int) plane.size()));
+			}
+		}
+		else {
+			final AbstractCellImg<?, ?, ?, ?> img =
+				(AbstractCellImg<?, ?, ?, ?>) data;
+			for (long i = 0; i < img.numCells(); i++) {
+				segments.add(new Segment(img, i));
+			}
+		}
+
+		// one partial counter per task, each task counts a contiguous run of
+		// segments with at least as many pixels as possible values
+		final long size = ((IterableInterval<?>) data).size();
+		final int numTasks = (int) Math.max(1, Math.min(Math.min(numThreads,
+			segments.size()), size / numValues));
+		final long[][] partials = new long[numTasks][];
+		final List<Runnable> tasks = new ArrayList<Runnable>();
+		for (int t = 0; t < numTasks; t++) {
+			final int task = t;
+			final int first = t * segments.size() / numTasks;
+			final int last = (t + 1) * segments.size() / numTasks;
+			tasks.add(new Runnable() {
+
+				@Override
+				public void run() {
+					final long[] counts = new long[numValues];
+					for (int i = first; i < last; i++) {
+						final Segment segment = segments.get(i);
+						segment.load();
+						count(segment, storage, counts);
+					}
+					partials[task] = counts;
+				}
+			});
+		}
+		TaskExecutors.run(service, tasks, numThreads);
+
+		final long[] counts = partials[0];
+		for (int t = 1; t < numTasks; t++) {
+			final long[] partial = partials[t];
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] += partial[i];
+			}
+		}
+		return new Counts(counts, minValue(storage));
+	}
+
+	private static void count(Segment segment, PrimitiveStorage storage,
+		long[] counts)
+	{
+		final int from = segment.from;
+		final int to = segment.to;
+		switch (storage) {
+			case BYTE: {
+				final byte[] a = (byte[]) segment.array;
+				for (int i = from; i < to; i++)
+					counts[a[i] + 128]++;
+				break;
+			}
+			case UNSIGNED_BYTE: {
+				final byte[] a = (byte[]) segment.array;
+				for (int i = from; i < to; i++)
+					counts[a[i] & 0xff]++;
+				break;
+			}
+			case SHORT: {
+				final short[] a = (short[]) segment.array;
+				for (int i = from; i < to; i++)
+					counts[a[i] + 32768]++;
+				break;
+			}
+			default: {
+				final short[] a = (short[]) segment.array;
+				for (int i = from; i < to; i++)
+					counts[a[i] & 0xffff]++;
+			}
+		}
+	}
+}
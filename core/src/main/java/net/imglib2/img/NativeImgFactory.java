@@ -78,6 +78,28 @@ public abstract class NativeImgFactory< T extends NativeType< T > > extends ImgF
 
 	public abstract NativeImg< T, ? extends LongAccess > createLongInstance( long[] dimensions, int entitiesPerPixel );
 
+	/**
+	 * Create a container for types that pack pixels of fewer than 64 bits
+	 * into longs. Each pixel occupies bitsPerPixel consecutive bits, starting
+	 * at bit index * bitsPerPixel of the container's storage arrays, and a
+	 * pixel may straddle two longs. The entities of the container are bits.
+	 *
+	 * <p>
+	 * The default implementation creates one long per pixel. This suits
+	 * storage that holds one value per pixel and ignores the index, such as
+	 * {@link net.imglib2.img.sparse.NtreeImg}. Factories of dense storage
+	 * override it to allocate ceil(n * bitsPerPixel / 64) longs for n pixels.
+	 * </p>
+	 *
+	 * @param dimensions
+	 * @param bitsPerPixel
+	 *            number of bits per pixel, at most 64.
+	 */
+	public NativeImg< T, ? extends LongAccess > createPackedLongInstance( final long[] dimensions, final int bitsPerPixel )
+	{
+		return createLongInstance( dimensions, 1 );
+	}
+
 	public abstract NativeImg< T, ? extends FloatAccess > createFloatInstance( long[] dimensions, int entitiesPerPixel );
 
 	public abstract NativeImg< T, ? extends DoubleAccess > createDoubleInstance( long[] dimensions, int entitiesPerPixel );
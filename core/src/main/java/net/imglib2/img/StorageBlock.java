@@ -0,0 +1,274 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img;
+
+import java.util.Iterator;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.AbstractInterval;
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.IterableInterval;
+import net.imglib2.IterableRealInterval;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * An {@link IterableInterval} over the pixels stored in one storage array of a
+ * {@link NativeImg}, for example a single cell of a
+ * {@link net.imglib2.img.cell.CellImg} or a single plane of a
+ * {@link net.imglib2.img.planar.PlanarImg}.
+ *
+ * <p>
+ * The block is located at its position in image coordinates. Its pixels are
+ * iterated in flat order, which is the order in which they are stored in the
+ * array returned by {@link #getData()}. Blocks of the same image are disjoint,
+ * so different blocks may be processed concurrently.
+ * </p>
+ *
+ * @author ImgLib2 developers
+ */
+public class StorageBlock< T extends NativeType< T >, A > extends AbstractInterval implements IterableInterval< T >
+{
+	/**
+	 * An operation that is applied to every {@link StorageBlock} of an image.
+	 * It may be applied to several blocks concurrently and must therefore be
+	 * thread-safe.
+	 */
+	public interface BlockOperation< T extends NativeType< T >, A >
+	{
+		public void apply( StorageBlock< T, A > block );
+	}
+
+	protected final NativeImg< T, A > img;
+
+	protected final Object sampler;
+
+	protected final long index;
+
+	protected final long[] dimensions;
+
+	protected final long[] steps;
+
+	protected final int numPixels;
+
+	/**
+	 * @param img
+	 *            the image that contains the block.
+	 * @param sampler
+	 *            the object passed to {@link NativeImg#update(Object)} to
+	 *            obtain the storage array of the block.
+	 * @param index
+	 *            the index of the block within the image.
+	 * @param min
+	 *            the minimum of the block in image coordinates.
+	 * @param dimensions
+	 *            the dimensions of the block.
+	 */
+	public StorageBlock( final NativeImg< T, A > img, final Object sampler, final long index, final long[] min, final long[] dimensions )
+	{
+		super( min.length );
+		this.img = img;
+		this.sampler = sampler;
+		this.index = index;
+		this.dimensions = dimensions.clone();
+
+		steps = new long[ n ];
+		long size = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			this.min[ d ] = min[ d ];
+			this.max[ d ] = min[ d ] + dimensions[ d ] - 1;
+			steps[ d ] = size;
+			size *= dimensions[ d ];
+		}
+		if ( size > Integer.MAX_VALUE )
+			throw new RuntimeException( "StorageBlock cannot contain more than " + Integer.MAX_VALUE + " pixels." );
+		numPixels = ( int ) size;
+	}
+
+	/**
+	 * @return the storage array of the block.
+	 */
+	public A getData()
+	{
+		return img.update( sampler );
+	}
+
+	/**
+	 * @return the index of the block within the image, e.g., the flat index
+	 *         of a cell in the cell grid or the index of a plane.
+	 */
+	public long getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * @return the image that contains the block.
+	 */
+	public NativeImg< T, A > getImg()
+	{
+		return img;
+	}
+
+	@Override
+	public StorageBlockCursor cursor()
+	{
+		return new StorageBlockCursor();
+	}
+
+	@Override
+	public StorageBlockCursor localizingCursor()
+	{
+		return cursor();
+	}
+
+	@Override
+	public long size()
+	{
+		return numPixels;
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return cursor().next();
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+
+	@Override
+	public boolean equalIterationOrder( final IterableRealInterval< ? > f )
+	{
+		return iterationOrder().equals( f.iterationOrder() );
+	}
+
+	@Override
+	public Iterator< T > iterator()
+	{
+		return cursor();
+	}
+
+	/**
+	 * Iterates the pixels of the block in flat order, directly on the storage
+	 * array of the block.
+	 */
+	public class StorageBlockCursor extends AbstractCursor< T >
+	{
+		protected final T type;
+
+		protected final int lastIndex;
+
+		protected int i;
+
+		protected StorageBlockCursor( final StorageBlockCursor cursor )
+		{
+			super( cursor.numDimensions() );
+			type = cursor.type.duplicateTypeOnSameNativeImg();
+			lastIndex = cursor.lastIndex;
+			i = cursor.i;
+			type.updateContainer( sampler );
+			type.updateIndex( i );
+		}
+
+		protected StorageBlockCursor()
+		{
+			super( StorageBlock.this.numDimensions() );
+			type = img.createLinkedType();
+			lastIndex = numPixels - 1;
+			type.updateContainer( sampler );
+			reset();
+		}
+
+		@Override
+		public T get()
+		{
+			return type;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return i < lastIndex;
+		}
+
+		@Override
+		public void fwd()
+		{
+			type.updateIndex( ++i );
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			i += ( int ) steps;
+			type.updateIndex( i );
+		}
+
+		@Override
+		public void reset()
+		{
+			i = -1;
+			type.updateIndex( i );
+		}
+
+		@Override
+		public void localize( final long[] position )
+		{
+			IntervalIndexer.indexToPositionWithOffset( i, dimensions, min, position );
+		}
+
+		@Override
+		public long getLongPosition( final int d )
+		{
+			return IntervalIndexer.indexToPositionWithOffset( i, dimensions, steps, min, d );
+		}
+
+		@Override
+		public StorageBlockCursor copy()
+		{
+			return new StorageBlockCursor( this );
+		}
+
+		@Override
+		public StorageBlockCursor copyCursor()
+		{
+			return copy();
+		}
+	}
+}
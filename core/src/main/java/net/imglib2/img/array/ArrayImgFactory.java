@@ -44,6 +44,7 @@ import net.imglib2.img.basictypeaccess.array.DoubleArray;
 import net.imglib2.img.basictypeaccess.array.FloatArray;
 import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.PackedLongArray;
 import net.imglib2.img.basictypeaccess.array.ShortArray;
 import net.imglib2.type.NativeType;
 
@@ -128,6 +129,33 @@ public class ArrayImgFactory< T extends NativeType<T> > extends NativeImgFactory
 		return new ArrayImg< T, LongArray >( new LongArray( numEntities ), dimensions, entitiesPerPixel );
 	}
 
+	@Override
+	public ArrayImg< T, LongArray > createPackedLongInstance( final long[] dimensions, final int bitsPerPixel )
+	{
+		final int numLongs = numLongsRangeCheck( dimensions, bitsPerPixel );
+
+		return new ArrayImg< T, LongArray >( new PackedLongArray( new long[ numLongs ] ), dimensions, bitsPerPixel );
+	}
+
+	/**
+	 * @return the number of longs required to store the pixels of an image of
+	 *         the given dimensions with bitsPerPixel bits each.
+	 */
+	public static int numLongsRangeCheck( final long[] dimensions, final int bitsPerPixel )
+	{
+		final long numPixels = AbstractImg.numElements( dimensions );
+
+		if ( numPixels > Integer.MAX_VALUE )
+			throw new RuntimeException( "Number of elements in Container too big, use for example CellContainer instead: " + numPixels + " > " + Integer.MAX_VALUE );
+
+		final long numLongs = ( numPixels * bitsPerPixel + 63 ) / 64;
+
+		if ( numLongs > Integer.MAX_VALUE )
+			throw new RuntimeException( "Number of elements in Container too big, use for example CellContainer instead: " + numLongs + " > " + Integer.MAX_VALUE );
+
+		return ( int ) numLongs;
+	}
+
 	@Override
 	public ArrayImg< T, ShortArray > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
 	{
@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.array;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel.MapMode;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.buffer.AbstractBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.BitBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.PackedLongBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for {@link ArrayImg ArrayImgs} whose data is a memory-mapped region
+ * of a raw file. The pixels are expected in flat iteration order starting at
+ * a given byte offset in the file. Creating an image maps the file, which
+ * takes constant time. Pages are loaded lazily by the operating system and
+ * are shared with its file cache.
+ *
+ * Every image created by this factory maps the same file region.
+ *
+ * @author ImgLib2 developers
+ */
+public class MappedArrayImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	private final File file;
+
+	private final long offset;
+
+	private final ByteOrder order;
+
+	private final MapMode mode;
+
+	/**
+	 * Map a big-endian raw file without header for reading and writing.
+	 */
+	public MappedArrayImgFactory( final File file )
+	{
+		this( file, 0, ByteOrder.BIG_ENDIAN, MapMode.READ_WRITE );
+	}
+
+	/**
+	 * @param file
+	 *            the raw file.
+	 * @param offset
+	 *            offset of the first pixel in the file (i.e., the header size).
+	 * @param order
+	 *            byte order of the pixel data.
+	 * @param mode
+	 *            {@link MapMode#READ_ONLY}, {@link MapMode#READ_WRITE} (the
+	 *            file is enlarged if necessary), or {@link MapMode#PRIVATE}
+	 *            (copy-on-write).
+	 */
+	public MappedArrayImgFactory( final File file, final long offset, final ByteOrder order, final MapMode mode )
+	{
+		this.file = file;
+		this.offset = offset;
+		this.order = order;
+		this.mode = mode;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public ArrayImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( ArrayImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public ArrayImg< T, BitBufferAccess > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, BitBufferAccess >( new BitBufferAccess( map( BitBufferAccess.numBytes( numEntities ) ), numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, ByteBufferAccess >( new ByteBufferAccess( map( numEntities ), numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, CharBufferAccess >( new CharBufferAccess( map( 2l * numEntities ), numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, DoubleBufferAccess >( new DoubleBufferAccess( map( 8l * numEntities ), numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, FloatBufferAccess >( new FloatBufferAccess( map( 4l * numEntities ), numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, IntBufferAccess >( new IntBufferAccess( map( 4l * numEntities ), numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, LongBufferAccess >( new LongBufferAccess( map( 8l * numEntities ), numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, LongBufferAccess > createPackedLongInstance( final long[] dimensions, final int bitsPerPixel )
+	{
+		final int numLongs = ArrayImgFactory.numLongsRangeCheck( dimensions, bitsPerPixel );
+
+		return new ArrayImg< T, LongBufferAccess >( new PackedLongBufferAccess( map( 8l * numLongs ), numLongs ), dimensions, bitsPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, ShortBufferAccess >( new ShortBufferAccess( map( 2l * numEntities ), numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	/**
+	 * Images of other types cannot share the mapped file, therefore they are
+	 * created by a plain {@link ArrayImgFactory}.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) ) return new ArrayImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	private ByteBuffer[] map( final long numBytes )
+	{
+		return AbstractBufferAccess.map( file, offset, numBytes, order, mode );
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.buffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * Base class for basic type accesses that store their data in
+ * {@link ByteBuffer}s instead of Java arrays. The buffers may be heap buffers,
+ * direct (off-heap) buffers, or memory-mapped regions of a file.
+ *
+ * A single {@link ByteBuffer} can hold at most {@link Integer#MAX_VALUE}
+ * bytes, therefore the data is split into chunks of
+ * 2<sup>{@link #CHUNK_BYTES_LOG2}</sup> bytes (only the last chunk may be
+ * smaller). Entity <em>i</em> is found in chunk <em>i &gt;&gt;&gt; shift</em>
+ * at index <em>i &amp; mask</em>.
+ *
+ * Although {@link ArrayDataAccess} is {@link java.io.Serializable}, buffer
+ * accesses throw a {@link NotSerializableException} when they are serialized.
+ *
+ * @author ImgLib2 developers
+ */
+public abstract class AbstractBufferAccess< A > implements ArrayDataAccess< A >
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * log<sub>2</sub> of the maximum number of bytes in a chunk.
+	 */
+	public static final int CHUNK_BYTES_LOG2 = 30;
+
+	protected final transient ByteBuffer[] chunks;
+
+	protected final int numEntities;
+
+	protected final int shift;
+
+	protected final int mask;
+
+	/**
+	 * @param chunks
+	 *            buffers holding the data. There must be at least one chunk
+	 *            and all but the last chunk must hold exactly 2<sup>
+	 *            {@link #CHUNK_BYTES_LOG2}</sup> bytes.
+	 * @param numEntities
+	 *            number of entities stored in the chunks.
+	 * @param bytesPerEntityLog2
+	 *            log<sub>2</sub> of the size of one entity in bytes.
+	 */
+	protected AbstractBufferAccess( final ByteBuffer[] chunks, final int numEntities, final int bytesPerEntityLog2 )
+	{
+		this.chunks = chunks;
+		this.numEntities = numEntities;
+		shift = CHUNK_BYTES_LOG2 - bytesPerEntityLog2;
+		mask = ( 1 << shift ) - 1;
+	}
+
+	/**
+	 * @return the buffers holding the data.
+	 */
+	@Override
+	public ByteBuffer[] getCurrentStorageArray()
+	{
+		return chunks;
+	}
+
+	/**
+	 * @return number of entities stored.
+	 */
+	public int getNumEntities()
+	{
+		return numEntities;
+	}
+
+	/**
+	 * @return whether the data is stored outside the Java heap.
+	 */
+	public boolean isDirect()
+	{
+		return chunks[ 0 ].isDirect();
+	}
+
+	/**
+	 * @return the byte order of the data.
+	 */
+	public ByteOrder order()
+	{
+		return chunks[ 0 ].order();
+	}
+
+	/**
+	 * Allocate chunked buffers of the same kind (direct or heap) and byte
+	 * order as the buffers of this access.
+	 */
+	protected ByteBuffer[] allocateLike( final long numBytes )
+	{
+		return allocate( numBytes, isDirect(), order() );
+	}
+
+	/**
+	 * Allocate chunked buffers with a total capacity of numBytes.
+	 *
+	 * @param numBytes
+	 *            total size in bytes.
+	 * @param direct
+	 *            whether to allocate direct (off-heap) buffers.
+	 * @param order
+	 *            byte order of the buffers.
+	 */
+	public static ByteBuffer[] allocate( final long numBytes, final boolean direct, final ByteOrder order )
+	{
+		final ByteBuffer[] chunks = new ByteBuffer[ numChunks( numBytes ) ];
+		for ( int i = 0; i < chunks.length; ++i )
+		{
+			final int size = chunkSize( numBytes, i );
+			chunks[ i ] = direct ? ByteBuffer.allocateDirect( size ) : ByteBuffer.allocate( size );
+			chunks[ i ].order( order );
+		}
+		return chunks;
+	}
+
+	/**
+	 * Map a region of a file into chunked buffers. In
+	 * {@link MapMode#READ_WRITE} mode, the file is created or enlarged if
+	 * necessary.
+	 *
+	 * @param file
+	 *            the file to map.
+	 * @param offset
+	 *            offset in bytes of the region in the file.
+	 * @param numBytes
+	 *            size in bytes of the region.
+	 * @param order
+	 *            byte order of the data in the file.
+	 * @param mode
+	 *            {@link MapMode#READ_ONLY}, {@link MapMode#READ_WRITE}, or
+	 *            {@link MapMode#PRIVATE}.
+	 */
+	public static ByteBuffer[] map( final File file, final long offset, final long numBytes, final ByteOrder order, final MapMode mode )
+	{
+		return map( file, offset, numBytes, 1, order, mode )[ 0 ];
+	}
+
+	/**
+	 * Map numParts consecutive regions of numBytesPerPart bytes each of a file
+	 * into chunked buffers, one array of chunks per part. The file is opened
+	 * only once. Parts that fit into a chunk are not mapped separately:
+	 * consecutive parts are mapped together in regions of at most
+	 * 2<sup>{@link #CHUNK_BYTES_LOG2}</sup> bytes, which are then sliced into
+	 * the parts.
+	 *
+	 * @param file
+	 *            the file to map.
+	 * @param offset
+	 *            offset in bytes of the first part in the file.
+	 * @param numBytesPerPart
+	 *            size in bytes of each part.
+	 * @param numParts
+	 *            number of parts.
+	 * @param order
+	 *            byte order of the data in the file.
+	 * @param mode
+	 *            {@link MapMode#READ_ONLY}, {@link MapMode#READ_WRITE}, or
+	 *            {@link MapMode#PRIVATE}.
+	 */
+	public static ByteBuffer[][] map( final File file, final long offset, final long numBytesPerPart, final int numParts, final ByteOrder order, final MapMode mode )
+	{
+		final ByteBuffer[][] parts = new ByteBuffer[ numParts ][];
+		try
+		{
+			final RandomAccessFile raf = new RandomAccessFile( file, mode == MapMode.READ_WRITE ? "rw" : "r" );
+			try
+			{
+				final FileChannel channel = raf.getChannel();
+				final long numBytes = numParts * numBytesPerPart;
+				if ( mode != MapMode.READ_WRITE && channel.size() < offset + numBytes )
+					throw new RuntimeException( "File " + file + " is too small: " + channel.size() + " < " + ( offset + numBytes ) + " bytes." );
+				if ( numBytesPerPart > ( 1l << CHUNK_BYTES_LOG2 ) )
+				{
+					for ( int i = 0; i < numParts; ++i )
+						parts[ i ] = map( channel, offset + i * numBytesPerPart, numBytesPerPart, order, mode );
+				}
+				else
+				{
+					final int partsPerRegion = numBytesPerPart == 0 ? Math.max( 1, numParts ) : ( int ) Math.min( numParts, ( 1l << CHUNK_BYTES_LOG2 ) / numBytesPerPart );
+					for ( int first = 0; first < numParts; first += partsPerRegion )
+					{
+						final int n = Math.min( partsPerRegion, numParts - first );
+						final ByteBuffer region = channel.map( mode, offset + first * numBytesPerPart, n * numBytesPerPart );
+						for ( int i = 0; i < n; ++i )
+						{
+							region.limit( ( int ) ( ( i + 1 ) * numBytesPerPart ) );
+							region.position( ( int ) ( i * numBytesPerPart ) );
+							parts[ first + i ] = new ByteBuffer[] { region.slice().order( order ) };
+						}
+					}
+				}
+			}
+			finally
+			{
+				// mapped buffers remain valid after the channel is closed
+				raf.close();
+			}
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( "Could not map " + file, e );
+		}
+		return parts;
+	}
+
+	private static ByteBuffer[] map( final FileChannel channel, final long offset, final long numBytes, final ByteOrder order, final MapMode mode ) throws IOException
+	{
+		final ByteBuffer[] chunks = new ByteBuffer[ numChunks( numBytes ) ];
+		for ( int i = 0; i < chunks.length; ++i )
+		{
+			final long position = offset + ( ( long ) i << CHUNK_BYTES_LOG2 );
+			chunks[ i ] = channel.map( mode, position, chunkSize( numBytes, i ) );
+			chunks[ i ].order( order );
+		}
+		return chunks;
+	}
+
+	/**
+	 * Buffer accesses cannot be serialized: their buffers may be direct or
+	 * memory-mapped, and would be lost in a deserialized copy.
+	 */
+	private void writeObject( final ObjectOutputStream out ) throws IOException
+	{
+		throw new NotSerializableException( getClass().getName() + " holds its data in ByteBuffers and cannot be serialized." );
+	}
+
+	/**
+	 * There is always at least one (possibly empty) chunk, so that empty
+	 * accesses still know whether they are direct and their byte order.
+	 */
+	private static int numChunks( final long numBytes )
+	{
+		return ( int ) Math.max( 1, ( numBytes + ( 1l << CHUNK_BYTES_LOG2 ) - 1 ) >>> CHUNK_BYTES_LOG2 );
+	}
+
+	private static int chunkSize( final long numBytes, final int chunk )
+	{
+		return ( int ) Math.min( 1l << CHUNK_BYTES_LOG2, numBytes - ( ( long ) chunk << CHUNK_BYTES_LOG2 ) );
+	}
+}
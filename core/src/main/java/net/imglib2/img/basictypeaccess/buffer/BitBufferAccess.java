@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import net.imglib2.img.basictypeaccess.BitAccess;
+
+/**
+ * {@link BitAccess} storing its data in (possibly direct or memory-mapped)
+ * {@link ByteBuffer}s. As in {@link net.imglib2.img.basictypeaccess.array.BitArray},
+ * bits are packed into ints.
+ *
+ * @author ImgLib2 developers
+ */
+public class BitBufferAccess extends AbstractBufferAccess< BitBufferAccess > implements BitAccess
+{
+	private static final long serialVersionUID = 1L;
+
+	final static protected int bitsPerEntity = Integer.SIZE;
+
+	private final transient IntBuffer[] data;
+
+	/**
+	 * @param chunks
+	 *            buffers holding the data, see {@link AbstractBufferAccess}.
+	 * @param numEntities
+	 *            number of bits stored in the chunks.
+	 */
+	public BitBufferAccess( final ByteBuffer[] chunks, final int numEntities )
+	{
+		super( chunks, numEntities, 2 );
+		data = new IntBuffer[ chunks.length ];
+		for ( int i = 0; i < chunks.length; ++i )
+			data[ i ] = chunks[ i ].asIntBuffer();
+	}
+
+	/**
+	 * Allocate a new access holding numEntities bits.
+	 *
+	 * @param numEntities
+	 *            number of bits.
+	 * @param direct
+	 *            whether to allocate direct (off-heap) buffers.
+	 */
+	public BitBufferAccess( final int numEntities, final boolean direct )
+	{
+		this( allocate( numBytes( numEntities ), direct, ByteOrder.nativeOrder() ), numEntities );
+	}
+
+	/**
+	 * @return number of bytes required to store numEntities bits.
+	 */
+	public static long numBytes( final int numEntities )
+	{
+		return 4l * ( ( numEntities + bitsPerEntity - 1 ) / bitsPerEntity );
+	}
+
+	@Override
+	public boolean getValue( final int index )
+	{
+		final int arrayIndex = index / bitsPerEntity;
+		final int arrayOffset = index % bitsPerEntity;
+
+		final int entry = data[ arrayIndex >>> shift ].get( arrayIndex & mask );
+		return ( entry & ( 1 << arrayOffset ) ) != 0;
+	}
+
+	@Override
+	public void setValue( final int index, final boolean value )
+	{
+		final int arrayIndex = index / bitsPerEntity;
+		final int arrayOffset = index % bitsPerEntity;
+		final IntBuffer buffer = data[ arrayIndex >>> shift ];
+		final int i = arrayIndex & mask;
+
+		synchronized ( buffer )
+		{
+			if ( value )
+				buffer.put( i, buffer.get( i ) | ( 1 << arrayOffset ) );
+			else
+				buffer.put( i, buffer.get( i ) & ~( 1 << arrayOffset ) );
+		}
+	}
+
+	/**
+	 * Create a new access of the same kind (direct or heap) and byte order.
+	 * Note, that the new access is never memory-mapped.
+	 */
+	@Override
+	public BitBufferAccess createArray( final int numEntities )
+	{
+		return new BitBufferAccess( allocateLike( numBytes( numEntities ) ), numEntities );
+	}
+}
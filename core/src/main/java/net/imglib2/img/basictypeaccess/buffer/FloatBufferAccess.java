@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import net.imglib2.img.basictypeaccess.FloatAccess;
+
+/**
+ * {@link FloatAccess} storing its data in (possibly direct or memory-mapped)
+ * {@link ByteBuffer}s.
+ *
+ * @author ImgLib2 developers
+ */
+public class FloatBufferAccess extends AbstractBufferAccess< FloatBufferAccess > implements FloatAccess
+{
+	private static final long serialVersionUID = 1L;
+
+	private final transient FloatBuffer[] data;
+
+	/**
+	 * @param chunks
+	 *            buffers holding the data, see {@link AbstractBufferAccess}.
+	 * @param numEntities
+	 *            number of float entities stored in the chunks.
+	 */
+	public FloatBufferAccess( final ByteBuffer[] chunks, final int numEntities )
+	{
+		super( chunks, numEntities, 2 );
+		data = new FloatBuffer[ chunks.length ];
+		for ( int i = 0; i < chunks.length; ++i )
+			data[ i ] = chunks[ i ].asFloatBuffer();
+	}
+
+	/**
+	 * Allocate a new access holding numEntities float entities in native byte
+	 * order.
+	 *
+	 * @param numEntities
+	 *            number of entities.
+	 * @param direct
+	 *            whether to allocate direct (off-heap) buffers.
+	 */
+	public FloatBufferAccess( final int numEntities, final boolean direct )
+	{
+		this( allocate( 4l * numEntities, direct, ByteOrder.nativeOrder() ), numEntities );
+	}
+
+	@Override
+	public float getValue( final int index )
+	{
+		return data[ index >>> shift ].get( index & mask );
+	}
+
+	@Override
+	public void setValue( final int index, final float value )
+	{
+		data[ index >>> shift ].put( index & mask, value );
+	}
+
+	/**
+	 * Create a new access of the same kind (direct or heap) and byte order.
+	 * Note, that the new access is never memory-mapped.
+	 */
+	@Override
+	public FloatBufferAccess createArray( final int numEntities )
+	{
+		return new FloatBufferAccess( allocateLike( 4l * numEntities ), numEntities );
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.buffer;
+
+import java.nio.ByteBuffer;
+
+import net.imglib2.img.basictypeaccess.array.PackedLongArray;
+
+/**
+ * A {@link LongBufferAccess} that creates accesses for bit entities: an
+ * access for n entities holds ceil(n / 64) longs. It is the buffer-backed
+ * counterpart of {@link PackedLongArray}, used as the creator of storage for
+ * types that pack pixels of fewer than 64 bits into longs.
+ *
+ * @author ImgLib2 developers
+ */
+public class PackedLongBufferAccess extends LongBufferAccess
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param chunks
+	 *            buffers holding the data, see {@link AbstractBufferAccess}.
+	 * @param numLongs
+	 *            number of longs stored in the chunks.
+	 */
+	public PackedLongBufferAccess( final ByteBuffer[] chunks, final int numLongs )
+	{
+		super( chunks, numLongs );
+	}
+
+	/**
+	 * Allocate a new access holding numBits bits in native byte order.
+	 *
+	 * @param numBits
+	 *            number of bits.
+	 * @param direct
+	 *            whether to allocate direct (off-heap) buffers.
+	 */
+	public PackedLongBufferAccess( final int numBits, final boolean direct )
+	{
+		super( PackedLongArray.numLongs( numBits ), direct );
+	}
+
+	/**
+	 * Create a new access of the same kind (direct or heap) and byte order
+	 * holding numBits bits.
+	 */
+	@Override
+	public PackedLongBufferAccess createArray( final int numBits )
+	{
+		final int numLongs = PackedLongArray.numLongs( numBits );
+		return new PackedLongBufferAccess( allocateLike( 8l * numLongs ), numLongs );
+	}
+}
@@ -33,9 +33,17 @@
 
 package net.imglib2.img.cell;
 
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.RandomAccess;
 import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.Img;
+import net.imglib2.img.StorageBlock;
+import net.imglib2.img.StorageBlock.BlockOperation;
+import net.imglib2.multithreading.TaskExecutors;
 import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
 
 /**
  * Abstract superclass for {@link Img} types that divide their underlying data
@@ -147,6 +155,98 @@ public abstract class AbstractCellImg< T extends NativeType< T >, A, C extends A
 		return cells;
 	}
 
+	/**
+	 * @return the number of cells in the cell grid.
+	 */
+	public long numCells()
+	{
+		long numCells = 1;
+		for ( int d = 0; d < n; ++d )
+			numCells *= ( dimension( d ) + cellDims[ d ] - 1 ) / cellDims[ d ];
+		return numCells;
+	}
+
+	/**
+	 * Get the cell with the given flat index in the cell grid as a
+	 * {@link StorageBlock}, i.e., as an {@link net.imglib2.IterableInterval}
+	 * located at the position of the cell, that iterates directly over the
+	 * cell's data array.
+	 *
+	 * @param cellIndex
+	 *            flat index of the cell in the cell grid, in
+	 *            {@code [0, numCells())}.
+	 */
+	public StorageBlock< T, A > getCellBlock( final long cellIndex )
+	{
+		final long[] gridDims = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			gridDims[ d ] = ( dimension( d ) + cellDims[ d ] - 1 ) / cellDims[ d ];
+		final long[] gridPosition = new long[ n ];
+		IntervalIndexer.indexToPosition( cellIndex, gridDims, gridPosition );
+		final RandomAccess< C > access = cells.randomAccess();
+		access.setPosition( gridPosition );
+		final C cell = access.get();
+
+		final long[] min = new long[ n ];
+		final long[] dims = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = cell.min( d );
+			dims[ d ] = cell.dimension( d );
+		}
+		final CellContainerSampler< T, A, C > sampler = new CellContainerSampler< T, A, C >()
+		{
+			@Override
+			public C getCell()
+			{
+				return cell;
+			}
+		};
+		return new StorageBlock< T, A >( this, sampler, cellIndex, min, dims );
+	}
+
+	/**
+	 * Apply operation to every cell, using the shared
+	 * {@link TaskExecutors#getDefault() thread pool}.
+	 */
+	public void forEachCell( final BlockOperation< T, A > operation )
+	{
+		final ExecutorService service = TaskExecutors.getDefault();
+		forEachCell( operation, service, TaskExecutors.getParallelism( service ) );
+	}
+
+	/**
+	 * Apply operation to every cell (see {@link #getCellBlock(long)}). Cells
+	 * are processed in parallel, in no particular order. Each cell is obtained
+	 * only when it is processed, so cells of cached images are loaded on
+	 * demand.
+	 *
+	 * @param operation
+	 *            the operation to apply to every cell.
+	 * @param service
+	 *            service on which to run the computation.
+	 * @param numThreads
+	 *            maximum number of cells to process concurrently.
+	 */
+	public void forEachCell( final BlockOperation< T, A > operation, final ExecutorService service, final int numThreads )
+	{
+		final long numCells = numCells();
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( ( int ) numCells );
+		for ( long i = 0; i < numCells; ++i )
+		{
+			final long cellIndex = i;
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					operation.apply( getCellBlock( cellIndex ) );
+				}
+			} );
+		}
+		TaskExecutors.run( service, tasks, numThreads );
+	}
+
 	protected void copyDataTo( final AbstractCellImg< T, ?, ?, ? > copy )
 	{
 		final CellCursor< T, A, C > source = this.cursor();
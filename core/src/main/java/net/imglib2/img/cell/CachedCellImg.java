@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Interval;
+import net.imglib2.img.Img;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.multithreading.TaskExecutors;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * A {@link CellImg}-like {@link Img} whose cells are loaded on demand by a
+ * {@link CellLoader} and kept in a bounded cache (see {@link CachedCells}).
+ * Images much larger than the available memory can be represented this way.
+ *
+ * @author ImgLib2 developers
+ */
+final public class CachedCellImg< T extends NativeType< T >, A extends ArrayDataAccess< A > > extends AbstractCellImg< T, A, CachedCell< A >, CachedCellImgFactory< T > >
+{
+	public CachedCellImg( final CachedCellImgFactory< T > factory, final CachedCells< A > cells )
+	{
+		super( factory, cells );
+	}
+
+	@Override
+	public CachedCells< A > getCells()
+	{
+		return ( CachedCells< A > ) cells;
+	}
+
+	/**
+	 * Write back all cells that are in memory. See
+	 * {@link CachedCells#flush()}.
+	 */
+	public void flush()
+	{
+		getCells().flush();
+	}
+
+	/**
+	 * Discard all cells without writing them back, e.g., because the source
+	 * of a {@link RandomAccessibleCellLoader} changed. See
+	 * {@link CachedCells#invalidateAll()}.
+	 */
+	public void invalidate()
+	{
+		getCells().invalidateAll();
+	}
+
+	/**
+	 * Discard all cells that intersect interval without writing them back.
+	 * See {@link CachedCells#invalidate(long)}.
+	 */
+	public void invalidate( final Interval interval )
+	{
+		final CachedCells< A > cachedCells = getCells();
+		final GridBox box = new GridBox( interval );
+		final long[] gridPosition = new long[ n ];
+		for ( long i = 0; i < box.numCells; ++i )
+			cachedCells.invalidate( box.cellIndex( i, gridPosition ) );
+	}
+
+	/**
+	 * Load all cells that intersect interval, using the shared
+	 * {@link TaskExecutors#getDefault() thread pool}.
+	 */
+	public void prefetch( final Interval interval )
+	{
+		final ExecutorService service = TaskExecutors.getDefault();
+		prefetch( interval, service, TaskExecutors.getParallelism( service ) );
+	}
+
+	/**
+	 * Load all cells that intersect interval. Cells are loaded in parallel, in
+	 * no particular order. Note, that cells may be evicted again if they do
+	 * not all fit into the cache.
+	 *
+	 * @param interval
+	 *            the cells intersecting this interval are loaded.
+	 * @param service
+	 *            service on which to run the computation.
+	 * @param numThreads
+	 *            maximum number of cells to load concurrently.
+	 */
+	public void prefetch( final Interval interval, final ExecutorService service, final int numThreads )
+	{
+		final CachedCells< A > cachedCells = getCells();
+		final GridBox box = new GridBox( interval );
+		// several ranges of cells per thread to balance different loading
+		// times
+		final int numTasks = ( int ) Math.min( box.numCells, 16l * Math.max( 1, numThreads ) );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final long first = t * box.numCells / numTasks;
+			final long last = ( t + 1 ) * box.numCells / numTasks;
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final long[] gridPosition = new long[ n ];
+					for ( long i = first; i < last; ++i )
+						cachedCells.get( box.cellIndex( i, gridPosition ) );
+				}
+			} );
+		}
+		TaskExecutors.run( service, tasks, numThreads );
+	}
+
+	/**
+	 * The cells that intersect an interval, i.e., a box in the cell grid.
+	 * The cells of the box are numbered from 0 to numCells - 1 in flat
+	 * iteration order.
+	 */
+	private final class GridBox
+	{
+		final long[] gridDims = new long[ n ];
+
+		final long[] boxMin = new long[ n ];
+
+		final long[] boxDims = new long[ n ];
+
+		final long numCells;
+
+		GridBox( final Interval interval )
+		{
+			long size = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				gridDims[ d ] = ( dimension( d ) + cellDims[ d ] - 1 ) / cellDims[ d ];
+				boxMin[ d ] = Math.max( 0, interval.min( d ) ) / cellDims[ d ];
+				final long boxMax = Math.min( dimension( d ) - 1, interval.max( d ) ) / cellDims[ d ];
+				boxDims[ d ] = interval.max( d ) < 0 ? 0 : Math.max( 0, boxMax - boxMin[ d ] + 1 );
+				size *= boxDims[ d ];
+			}
+			numCells = size;
+		}
+
+		/**
+		 * @return the flat index in the cell grid of cell i of the box.
+		 */
+		long cellIndex( final long i, final long[] gridPosition )
+		{
+			IntervalIndexer.indexToPositionWithOffset( i, boxDims, boxMin, gridPosition );
+			return IntervalIndexer.positionToIndex( gridPosition, gridDims );
+		}
+	}
+
+	/**
+	 * Create a copy of this image in memory. Note, that the copy is a
+	 * {@link CellImg} which is not backed by the {@link CellLoader} of this
+	 * image.
+	 */
+	@Override
+	public CellImg< T, ?, ? > copy()
+	{
+		final CellImg< T, ?, ? > copy = new CellImgFactory< T >( cellDims.clone() ).create( dimension, firstElement().createVariable() );
+		copyDataTo( copy );
+		return copy;
+	}
+}
@@ -0,0 +1,631 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.list.AbstractListImg;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Implementation of {@link Cells} that creates {@link CachedCell}s on demand
+ * and keeps only a bounded number of them in memory.
+ *
+ * When a cell is accessed for the first time, its data array is created and
+ * filled by a {@link CellLoader}. Loaded cells are kept in a least recently
+ * used cache. When the total size of the data arrays in the cache exceeds
+ * {@link #getMaxCacheBytes()}, the least recently used cells are evicted and
+ * handed back to {@link CellLoader#save(long, long[], int[], ArrayDataAccess)}.
+ * Accessors write directly into the data arrays, therefore every evicted cell
+ * is considered dirty.
+ *
+ * Accessors may still hold on to the data of a cell after it was evicted. As
+ * long as the data is reachable, it is re-used if the cell is requested again,
+ * so that there is never more than one copy of a cell in memory. The storage
+ * array of an evicted cell is kept until no accessor holds on to the cell
+ * anymore, and is then written back once more the next time a cell is
+ * missing from the cache, so that modifications made after the eviction are
+ * not lost. Modifications of an evicted cell are also written back when the
+ * cell is evicted again or when {@link #flush()} is called. Therefore the
+ * memory in use may temporarily exceed
+ * {@link #getMaxCacheBytes()} by the cells that were evicted but are still
+ * held by accessors.
+ *
+ * The loader is never called while holding the lock of this
+ * {@link CachedCells}, so that cells in memory can be accessed while other
+ * cells are loaded or saved.
+ *
+ * @author ImgLib2 developers
+ */
+public class CachedCells< A extends ArrayDataAccess< A > > extends AbstractCells< A, CachedCell< A >, CachedCells.CellGrid< A > >
+{
+	private final A creator;
+
+	private final CellLoader< A > loader;
+
+	private final long maxCacheBytes;
+
+	private final CellGrid< A > cells;
+
+	/**
+	 * Cells that are currently in the cache, in access order.
+	 */
+	private final LinkedHashMap< Long, CachedCell< A > > cache;
+
+	/**
+	 * Data of cells that were evicted but might still be in use, or that are
+	 * being written back after they were released.
+	 */
+	private final HashMap< Long, EvictedData< A > > evicted;
+
+	private final ReferenceQueue< A > evictedQueue;
+
+	/**
+	 * Indices of cells that are currently being loaded.
+	 */
+	private final HashSet< Long > loading;
+
+	/**
+	 * Indices of cells that were invalidated while they were loading.
+	 */
+	private final HashSet< Long > invalidatedWhileLoading;
+
+	/**
+	 * Loading and saving of a cell is serialized by locking one of these.
+	 */
+	private final Object[] ioLocks;
+
+	private long cachedBytes;
+
+	/**
+	 * @param creator
+	 *            used to create the data arrays of the cells.
+	 * @param loader
+	 *            loads and saves cell data.
+	 * @param maxCacheBytes
+	 *            maximum total size in bytes of the cell data kept in memory.
+	 *            At least one cell is always kept, regardless of its size.
+	 * @param entitiesPerPixel
+	 * @param dimensions
+	 * @param cellDimensions
+	 */
+	public CachedCells( final A creator, final CellLoader< A > loader, final long maxCacheBytes, final int entitiesPerPixel, final long[] dimensions, final int[] cellDimensions )
+	{
+		super( entitiesPerPixel, dimensions, cellDimensions );
+		this.creator = creator;
+		this.loader = loader;
+		this.maxCacheBytes = maxCacheBytes;
+		cells = new CellGrid< A >( this, numCells );
+		cache = new LinkedHashMap< Long, CachedCell< A > >( 16, 0.75f, true );
+		evicted = new HashMap< Long, EvictedData< A > >();
+		evictedQueue = new ReferenceQueue< A >();
+		loading = new HashSet< Long >();
+		invalidatedWhileLoading = new HashSet< Long >();
+		ioLocks = new Object[ 64 ];
+		for ( int i = 0; i < ioLocks.length; ++i )
+			ioLocks[ i ] = new Object();
+		cachedBytes = 0;
+	}
+
+	@Override
+	protected CellGrid< A > cells()
+	{
+		return cells;
+	}
+
+	/**
+	 * @return the loader that loads and saves cell data.
+	 */
+	public CellLoader< A > getLoader()
+	{
+		return loader;
+	}
+
+	/**
+	 * @return maximum total size in bytes of the cell data kept in memory.
+	 */
+	public long getMaxCacheBytes()
+	{
+		return maxCacheBytes;
+	}
+
+	/**
+	 * @return total size in bytes of the cell data currently in the cache.
+	 */
+	public synchronized long getCachedBytes()
+	{
+		return cachedBytes;
+	}
+
+	/**
+	 * @return number of cells currently in the cache.
+	 */
+	public synchronized int getNumCachedCells()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * Get the cell with the given flat index in the cell grid, loading it if
+	 * necessary. The loader is called without holding the lock of this
+	 * {@link CachedCells}, so that other cells can be accessed while a cell is
+	 * loading. Threads requesting a cell that is currently loading, or that
+	 * is written back after it was released, wait for this to complete.
+	 *
+	 * @param index
+	 *            flat index of the cell in the cell grid.
+	 * @return the cell.
+	 */
+	public CachedCell< A > get( final long index )
+	{
+		final Long key = index;
+		synchronized ( this )
+		{
+			final CachedCell< A > cell = cache.get( key );
+			if ( cell != null )
+				return cell;
+		}
+
+		// released cells are written back whenever a cell is missing from
+		// the cache, rather than on every access
+		saveReleased( pollReleased() );
+
+		final long[] cellGridPosition = new long[ n ];
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		IntervalIndexer.indexToPosition( index, numCells, cellGridPosition );
+		getCellDimensions( cellGridPosition, cellMin, cellDims );
+
+		final List< CachedCell< A > > toSave = new ArrayList< CachedCell< A > >();
+		CachedCell< A > result = null;
+		synchronized ( this )
+		{
+			while ( result == null )
+			{
+				final CachedCell< A > cell = cache.get( key );
+				if ( cell != null )
+					return cell;
+
+				final EvictedData< A > ref = evicted.get( key );
+				if ( loading.contains( key ) || ( ref != null && ref.released ) )
+				{
+					try
+					{
+						wait();
+					}
+					catch ( final InterruptedException e )
+					{
+						Thread.currentThread().interrupt();
+						throw new RuntimeException( "interrupted while waiting for cell " + index + " to load" );
+					}
+					continue;
+				}
+				if ( ref == null )
+					break;
+
+				// re-use the data of an evicted cell, or its storage array if
+				// nobody holds on to the data anymore
+				A data = ref.get();
+				if ( data == null )
+					data = copyOf( ref.storage, numEntities( cellDims ) );
+				evicted.remove( key );
+				result = insert( key, new CachedCell< A >( index, cellDims, cellMin, data ), toSave );
+			}
+			if ( result == null )
+				loading.add( key );
+		}
+
+		if ( result != null )
+		{
+			save( toSave );
+			return result;
+		}
+
+		boolean loaded = false;
+		try
+		{
+			final A data = creator.createArray( numEntities( cellDims ) );
+			synchronized ( ioLock( index ) )
+			{
+				loader.load( index, cellMin, cellDims, data );
+			}
+			final CachedCell< A > cell = new CachedCell< A >( index, cellDims, cellMin, data );
+			loaded = true;
+			synchronized ( this )
+			{
+				loading.remove( key );
+				notifyAll();
+				if ( invalidatedWhileLoading.remove( key ) )
+					return cell;
+				result = insert( key, cell, toSave );
+			}
+			save( toSave );
+			return result;
+		}
+		finally
+		{
+			if ( !loaded )
+			{
+				synchronized ( this )
+				{
+					loading.remove( key );
+					invalidatedWhileLoading.remove( key );
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the cell with the given flat index in the cell grid if it is in the
+	 * cache. This never loads a cell.
+	 *
+	 * @param index
+	 *            flat index of the cell in the cell grid.
+	 * @return the cell, or {@code null} if it is not in the cache.
+	 */
+	public synchronized CachedCell< A > getIfCached( final long index )
+	{
+		return cache.get( index );
+	}
+
+	/**
+	 * Put a cell into the cache and evict other cells if necessary. The
+	 * evicted cells are added to toSave, to be written back after releasing
+	 * the lock.
+	 */
+	private CachedCell< A > insert( final Long key, final CachedCell< A > cell, final List< CachedCell< A > > toSave )
+	{
+		cache.put( key, cell );
+		cachedBytes += sizeInBytes( cell.getData() );
+		evict( toSave );
+		return cell;
+	}
+
+	/**
+	 * Write back all cells that are in the cache or still in use by
+	 * accessors. The cells remain in memory.
+	 */
+	public void flush()
+	{
+		saveReleased( pollReleased() );
+
+		final List< CachedCell< A > > toSave = new ArrayList< CachedCell< A > >();
+		final List< EvictedData< A > > released = new ArrayList< EvictedData< A > >();
+		synchronized ( this )
+		{
+			toSave.addAll( cache.values() );
+			final long[] cellGridPosition = new long[ n ];
+			final long[] cellMin = new long[ n ];
+			final int[] cellDims = new int[ n ];
+			for ( final EvictedData< A > ref : evicted.values() )
+			{
+				if ( ref.released )
+					continue;
+				final A data = ref.get();
+				if ( data == null )
+				{
+					// nobody holds on to the data anymore
+					ref.released = true;
+					released.add( ref );
+				}
+				else
+				{
+					IntervalIndexer.indexToPosition( ref.index, numCells, cellGridPosition );
+					getCellDimensions( cellGridPosition, cellMin, cellDims );
+					toSave.add( new CachedCell< A >( ref.index, cellDims.clone(), cellMin.clone(), data ) );
+				}
+			}
+		}
+		save( toSave );
+		saveReleased( released );
+	}
+
+	/**
+	 * Write back and evict all cells. Data of cells that are still in use by
+	 * accessors is written back once more when it is released.
+	 */
+	public void clear()
+	{
+		flush();
+		synchronized ( this )
+		{
+			for ( final CachedCell< A > cell : cache.values() )
+				evicted.put( cell.getIndex(), new EvictedData< A >( cell.getIndex(), cell.getData(), evictedQueue ) );
+			cache.clear();
+			cachedBytes = 0;
+		}
+	}
+
+	/**
+	 * Discard the cell with the given flat index in the cell grid without
+	 * writing it back. The next access loads the cell again. Accessors that
+	 * currently hold on to the cell continue to see its old data until they
+	 * move to another cell. If the cell is currently loading, the loaded data
+	 * is handed to the requesting threads but not put into the cache.
+	 *
+	 * @param index
+	 *            flat index of the cell in the cell grid.
+	 */
+	public synchronized void invalidate( final long index )
+	{
+		final Long key = index;
+		final CachedCell< A > cell = cache.remove( key );
+		if ( cell != null )
+			cachedBytes -= sizeInBytes( cell.getData() );
+		evicted.remove( key );
+		if ( loading.contains( key ) )
+			invalidatedWhileLoading.add( key );
+	}
+
+	/**
+	 * Discard all cells without writing them back. See
+	 * {@link #invalidate(long)}.
+	 */
+	public synchronized void invalidateAll()
+	{
+		cache.clear();
+		evicted.clear();
+		invalidatedWhileLoading.addAll( loading );
+		cachedBytes = 0;
+	}
+
+	/**
+	 * Evict least recently used cells until the cache size is below the
+	 * bound. The most recently used cell is never evicted. The evicted cells
+	 * are added to toSave, which keeps their data reachable until they are
+	 * written back.
+	 */
+	private void evict( final List< CachedCell< A > > toSave )
+	{
+		final Iterator< Entry< Long, CachedCell< A > > > it = cache.entrySet().iterator();
+		while ( cachedBytes > maxCacheBytes && cache.size() > 1 )
+		{
+			final Entry< Long, CachedCell< A > > entry = it.next();
+			final CachedCell< A > cell = entry.getValue();
+			it.remove();
+			final A data = cell.getData();
+			cachedBytes -= sizeInBytes( data );
+			toSave.add( cell );
+			evicted.put( entry.getKey(), new EvictedData< A >( cell.getIndex(), data, evictedQueue ) );
+		}
+	}
+
+	/**
+	 * Collect the evicted cells whose data is not held by any accessor
+	 * anymore, and mark them as released. Requests for these cells wait until
+	 * they are written back by {@link #saveReleased(List)}.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private List< EvictedData< A > > pollReleased()
+	{
+		List< EvictedData< A > > released = null;
+		EvictedData< A > ref;
+		while ( ( ref = ( EvictedData< A > ) evictedQueue.poll() ) != null )
+		{
+			synchronized ( this )
+			{
+				if ( evicted.get( ref.index ) != ref || ref.released )
+					continue;
+				ref.released = true;
+			}
+			if ( released == null )
+				released = new ArrayList< EvictedData< A > >();
+			released.add( ref );
+		}
+		return released;
+	}
+
+	/**
+	 * Write back the storage arrays of released cells and forget them.
+	 */
+	private void saveReleased( final List< EvictedData< A > > released )
+	{
+		if ( released == null )
+			return;
+
+		final long[] cellGridPosition = new long[ n ];
+		for ( final EvictedData< A > ref : released )
+		{
+			try
+			{
+				final long[] cellMin = new long[ n ];
+				final int[] cellDims = new int[ n ];
+				IntervalIndexer.indexToPosition( ref.index, numCells, cellGridPosition );
+				getCellDimensions( cellGridPosition, cellMin, cellDims );
+				final A data = copyOf( ref.storage, numEntities( cellDims ) );
+				synchronized ( ioLock( ref.index ) )
+				{
+					loader.save( ref.index, cellMin, cellDims, data );
+				}
+			}
+			finally
+			{
+				synchronized ( this )
+				{
+					if ( evicted.get( ref.index ) == ref )
+						evicted.remove( ref.index );
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write back cells, without holding the lock of this {@link CachedCells}.
+	 */
+	private void save( final List< CachedCell< A > > cells )
+	{
+		for ( final CachedCell< A > cell : cells )
+			synchronized ( ioLock( cell.getIndex() ) )
+			{
+				loader.save( cell.getIndex(), cell.getMin(), cell.getDimensions(), cell.getData() );
+			}
+	}
+
+	private Object ioLock( final long index )
+	{
+		return ioLocks[ ( int ) ( index % ioLocks.length ) ];
+	}
+
+	private int numEntities( final int[] cellDims )
+	{
+		int numEntities = entitiesPerPixel;
+		for ( int d = 0; d < n; ++d )
+			numEntities *= cellDims[ d ];
+		return numEntities;
+	}
+
+	/**
+	 * Create a data array containing a copy of the given storage array.
+	 */
+	private A copyOf( final Object storage, final int numEntities )
+	{
+		final A data = creator.createArray( numEntities );
+		final Object target = data.getCurrentStorageArray();
+		if ( storage instanceof ByteBuffer[] )
+		{
+			final ByteBuffer[] source = ( ByteBuffer[] ) storage;
+			final ByteBuffer[] dest = ( ByteBuffer[] ) target;
+			for ( int i = 0; i < source.length; ++i )
+			{
+				final ByteBuffer d = dest[ i ].duplicate();
+				d.clear();
+				final ByteBuffer s = source[ i ].duplicate();
+				s.clear();
+				d.put( s );
+			}
+		}
+		else
+			System.arraycopy( storage, 0, target, 0, Array.getLength( storage ) );
+		return data;
+	}
+
+	/**
+	 * Estimate the memory occupied by the storage array of a basic type
+	 * array. Storage arrays of {@link ByteBuffer}s are also supported.
+	 *
+	 * @return size of the storage array in bytes.
+	 */
+	public static long sizeInBytes( final ArrayDataAccess< ? > data )
+	{
+		final Object array = data.getCurrentStorageArray();
+		if ( array instanceof Buffer[] )
+		{
+			long size = 0;
+			for ( final Buffer buffer : ( Buffer[] ) array )
+				size += buffer.capacity();
+			return size;
+		}
+		final Class< ? > type = array.getClass().getComponentType();
+		final long length = Array.getLength( array );
+		if ( type == byte.class || type == boolean.class )
+			return length;
+		else if ( type == short.class || type == char.class )
+			return 2 * length;
+		else if ( type == int.class || type == float.class )
+			return 4 * length;
+		else
+			return 8 * length;
+	}
+
+	/**
+	 * Refers weakly to the data of an evicted cell, to find out when no
+	 * accessor holds on to it anymore, and strongly to its storage array, to
+	 * write it back then.
+	 */
+	private static final class EvictedData< A extends ArrayDataAccess< A > > extends WeakReference< A >
+	{
+		final long index;
+
+		final Object storage;
+
+		/**
+		 * Whether the data was released and is being written back.
+		 */
+		boolean released;
+
+		EvictedData( final long index, final A data, final ReferenceQueue< A > queue )
+		{
+			super( data, queue );
+			this.index = index;
+			this.storage = data.getCurrentStorageArray();
+		}
+	}
+
+	/**
+	 * The grid of cells, loading cells through the {@link CachedCells} when
+	 * they are accessed.
+	 */
+	public static final class CellGrid< A extends ArrayDataAccess< A > > extends AbstractListImg< CachedCell< A > >
+	{
+		private final CachedCells< A > cachedCells;
+
+		CellGrid( final CachedCells< A > cachedCells, final long[] dim )
+		{
+			super( dim );
+			this.cachedCells = cachedCells;
+		}
+
+		@Override
+		protected CachedCell< A > get( final int index )
+		{
+			return cachedCells.get( index );
+		}
+
+		@Override
+		protected void set( final int index, final CachedCell< A > value )
+		{
+			throw new UnsupportedOperationException( "cells of a " + CachedCells.class.getSimpleName() + " cannot be replaced" );
+		}
+
+		@Override
+		public CellGrid< A > copy()
+		{
+			throw new UnsupportedOperationException( "cell grid of a " + CachedCells.class.getSimpleName() + " cannot be copied" );
+		}
+	}
+}
@@ -43,6 +43,7 @@ import net.imglib2.img.basictypeaccess.array.DoubleArray;
 import net.imglib2.img.basictypeaccess.array.FloatArray;
 import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.PackedLongArray;
 import net.imglib2.img.basictypeaccess.array.ShortArray;
 import net.imglib2.type.NativeType;
 
@@ -113,6 +114,12 @@ public final class CellImgFactory< T extends NativeType< T > > extends AbstractC
 		return createInstance( new LongArray( 1 ), dimensions, entitiesPerPixel );
 	}
 
+	@Override
+	public CellImg< T, LongArray, DefaultCell< LongArray > > createPackedLongInstance( final long[] dimensions, final int bitsPerPixel )
+	{
+		return createInstance( new PackedLongArray( 1 ), dimensions, bitsPerPixel );
+	}
+
 	@Override
 	public CellImg< T, FloatArray, DefaultCell< FloatArray > > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
 	{
@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * Provides the data of the cells of a {@link CachedCellImg}. Cells are loaded
+ * when they are accessed for the first time (or for the first time after they
+ * were evicted from the cache) and are handed back to the loader when they are
+ * evicted from the cache.
+ *
+ * Implementations must be thread-safe: the {@link CachedCells} holding the
+ * loader may be accessed by several threads concurrently, although it will
+ * never load or save the same cell concurrently.
+ *
+ * @param <A>
+ *            the basic type array in which cell data is stored.
+ *
+ * @author ImgLib2 developers
+ */
+public interface CellLoader< A extends ArrayDataAccess< A > >
+{
+	/**
+	 * Fill the (zero-initialized) data array of a cell.
+	 *
+	 * @param index
+	 *            flat index of the cell in the cell grid.
+	 * @param min
+	 *            offset of the cell in image coordinates.
+	 * @param dimensions
+	 *            dimensions of the cell.
+	 * @param data
+	 *            the array to fill.
+	 */
+	public void load( long index, long[] min, int[] dimensions, A data );
+
+	/**
+	 * Write back the data array of a cell that is evicted from the cache.
+	 * Read-only loaders may ignore this.
+	 *
+	 * @param index
+	 *            flat index of the cell in the cell grid.
+	 * @param min
+	 *            offset of the cell in image coordinates.
+	 * @param dimensions
+	 *            dimensions of the cell.
+	 * @param data
+	 *            the data to store.
+	 */
+	public void save( long index, long[] min, int[] dimensions, A data );
+}
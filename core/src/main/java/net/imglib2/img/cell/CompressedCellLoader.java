@@ -0,0 +1,314 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * {@link CellLoader} that keeps the data of evicted cells compressed in
+ * memory. Used with a {@link CachedCellImg}, only the cells in the cache are
+ * held as expanded primitive arrays. All other cells are stored compressed and
+ * are expanded again when they are accessed.
+ *
+ * The data is compressed by first grouping the bytes of all pixels by
+ * significance (the first bytes of all pixels, then the second bytes, etc.)
+ * and then run-length encoding the result. This is very effective for the
+ * (mostly) constant cells of masks and label images. Cells that contain only
+ * zeros take no memory at all.
+ *
+ * Every image needs its own {@link CompressedCellLoader}, see
+ * {@link CachedCellImgFactory#CachedCellImgFactory(long, int)}.
+ *
+ * @author ImgLib2 developers
+ */
+public class CompressedCellLoader< A extends ArrayDataAccess< A > > implements CellLoader< A >
+{
+	/**
+	 * Runs of identical bytes shorter than this are stored as literals.
+	 */
+	private static final int MIN_RUN_LENGTH = 4;
+
+	private final ConcurrentHashMap< Long, byte[] > cells;
+
+	public CompressedCellLoader()
+	{
+		cells = new ConcurrentHashMap< Long, byte[] >();
+	}
+
+	@Override
+	public void load( final long index, final long[] min, final int[] dimensions, final A data )
+	{
+		final byte[] compressed = cells.get( index );
+		if ( compressed == null )
+			return;
+
+		final int elementBytes = elementBytes( data.getCurrentStorageArray() );
+		final byte[] shuffled = new byte[ ( int ) CachedCells.sizeInBytes( data ) ];
+		decode( compressed, shuffled );
+		FileCellLoader.fromBytes( ByteBuffer.wrap( unshuffle( shuffled, elementBytes ) ), data );
+	}
+
+	@Override
+	public void save( final long index, final long[] min, final int[] dimensions, final A data )
+	{
+		final byte[] bytes = FileCellLoader.toBytes( data ).array();
+		if ( isZero( bytes ) )
+			cells.remove( index );
+		else
+		{
+			final int elementBytes = elementBytes( data.getCurrentStorageArray() );
+			cells.put( index, encode( shuffle( bytes, elementBytes ) ) );
+		}
+	}
+
+	/**
+	 * @return the number of cells that are stored compressed.
+	 */
+	public int getNumCompressedCells()
+	{
+		return cells.size();
+	}
+
+	/**
+	 * @return the total size in bytes of the compressed cells.
+	 */
+	public long getCompressedBytes()
+	{
+		long bytes = 0;
+		for ( final byte[] compressed : cells.values() )
+			bytes += compressed.length;
+		return bytes;
+	}
+
+	private static int elementBytes( final Object array )
+	{
+		if ( array instanceof byte[] )
+			return 1;
+		else if ( array instanceof short[] || array instanceof char[] )
+			return 2;
+		else if ( array instanceof int[] || array instanceof float[] )
+			return 4;
+		else if ( array instanceof long[] || array instanceof double[] )
+			return 8;
+		else
+			throw new RuntimeException( "Unsupported storage array " + array.getClass().getSimpleName() );
+	}
+
+	private static boolean isZero( final byte[] bytes )
+	{
+		for ( int i = 0; i < bytes.length; ++i )
+			if ( bytes[ i ] != 0 )
+				return false;
+		return true;
+	}
+
+	/**
+	 * Reorder bytes such that the k-th bytes of all elements are stored
+	 * consecutively.
+	 */
+	static byte[] shuffle( final byte[] bytes, final int elementBytes )
+	{
+		if ( elementBytes == 1 )
+			return bytes;
+		final int numElements = bytes.length / elementBytes;
+		final byte[] shuffled = new byte[ bytes.length ];
+		for ( int k = 0; k < elementBytes; ++k )
+		{
+			final int offset = k * numElements;
+			for ( int i = 0; i < numElements; ++i )
+				shuffled[ offset + i ] = bytes[ i * elementBytes + k ];
+		}
+		return shuffled;
+	}
+
+	/**
+	 * Inverse of {@link #shuffle(byte[], int)}.
+	 */
+	static byte[] unshuffle( final byte[] shuffled, final int elementBytes )
+	{
+		if ( elementBytes == 1 )
+			return shuffled;
+		final int numElements = shuffled.length / elementBytes;
+		final byte[] bytes = new byte[ shuffled.length ];
+		for ( int k = 0; k < elementBytes; ++k )
+		{
+			final int offset = k * numElements;
+			for ( int i = 0; i < numElements; ++i )
+				bytes[ i * elementBytes + k ] = shuffled[ offset + i ];
+		}
+		return bytes;
+	}
+
+	/**
+	 * Run-length encode bytes. The output is a sequence of blocks, each
+	 * starting with a variable-length header <em>h</em>. If <em>h</em> is odd,
+	 * the next byte is repeated <em>h/2</em> times. If <em>h</em> is even, it
+	 * is followed by <em>h/2</em> literal bytes.
+	 */
+	static byte[] encode( final byte[] bytes )
+	{
+		final ByteSink out = new ByteSink( 64 );
+		final int n = bytes.length;
+		int literalStart = 0;
+		int i = 0;
+		while ( i < n )
+		{
+			final byte b = bytes[ i ];
+			int runEnd = i + 1;
+			while ( runEnd < n && bytes[ runEnd ] == b )
+				++runEnd;
+			if ( runEnd - i >= MIN_RUN_LENGTH )
+			{
+				if ( literalStart < i )
+				{
+					out.putHeader( i - literalStart, false );
+					out.put( bytes, literalStart, i - literalStart );
+				}
+				out.putHeader( runEnd - i, true );
+				out.put( b );
+				literalStart = runEnd;
+			}
+			i = runEnd;
+		}
+		if ( literalStart < n )
+		{
+			out.putHeader( n - literalStart, false );
+			out.put( bytes, literalStart, n - literalStart );
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Inverse of {@link #encode(byte[])}.
+	 * 
+	 * @param compressed
+	 *            encoded bytes.
+	 * @param bytes
+	 *            array to decode into. Its length must match the decoded
+	 *            length.
+	 */
+	static void decode( final byte[] compressed, final byte[] bytes )
+	{
+		int i = 0;
+		int o = 0;
+		while ( i < compressed.length )
+		{
+			long header = 0;
+			int shift = 0;
+			byte b;
+			do
+			{
+				b = compressed[ i++ ];
+				header |= ( long ) ( b & 0x7f ) << shift;
+				shift += 7;
+			}
+			while ( b < 0 );
+
+			final int length = ( int ) ( header >>> 1 );
+			if ( ( header & 1 ) != 0 )
+			{
+				final byte value = compressed[ i++ ];
+				for ( int k = 0; k < length; ++k )
+					bytes[ o + k ] = value;
+			}
+			else
+			{
+				System.arraycopy( compressed, i, bytes, o, length );
+				i += length;
+			}
+			o += length;
+		}
+		if ( o != bytes.length )
+			throw new RuntimeException( "Decoded " + o + " bytes, expected " + bytes.length );
+	}
+
+	/**
+	 * Growable byte array for {@link CompressedCellLoader#encode(byte[])}.
+	 */
+	private static final class ByteSink
+	{
+		private byte[] data;
+
+		private int size;
+
+		ByteSink( final int capacity )
+		{
+			data = new byte[ capacity ];
+			size = 0;
+		}
+
+		private void ensureCapacity( final int capacity )
+		{
+			if ( capacity > data.length )
+			{
+				final byte[] newData = new byte[ Math.max( capacity, 2 * data.length ) ];
+				System.arraycopy( data, 0, newData, 0, size );
+				data = newData;
+			}
+		}
+
+		void put( final byte b )
+		{
+			ensureCapacity( size + 1 );
+			data[ size++ ] = b;
+		}
+
+		void put( final byte[] bytes, final int offset, final int length )
+		{
+			ensureCapacity( size + length );
+			System.arraycopy( bytes, offset, data, size, length );
+			size += length;
+		}
+
+		void putHeader( final int length, final boolean run )
+		{
+			long header = ( ( long ) length << 1 ) | ( run ? 1 : 0 );
+			while ( header >= 0x80 )
+			{
+				put( ( byte ) ( header | 0x80 ) );
+				header >>>= 7;
+			}
+			put( ( byte ) header );
+		}
+
+		byte[] toByteArray()
+		{
+			final byte[] bytes = new byte[ size ];
+			System.arraycopy( data, 0, bytes, 0, size );
+			return bytes;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.buffer.BitBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.PackedLongBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for creating {@link DirectCellImg DirectCellImgs}, cell images whose
+ * data lives outside the Java heap in direct {@link java.nio.ByteBuffer}s.
+ *
+ * Pixel types address their storage with int indices, therefore a single
+ * basic type access (as used by {@link ArrayImgFactory}) can never hold more
+ * than 2<sup>31</sup> entities. Here, every cell has its own access and
+ * pixels are addressed by long positions, so a single image can be much
+ * larger. Because the data is off-heap, it neither counts against the heap
+ * size nor is it copied or scanned by the garbage collector.
+ *
+ * If no cell dimensions are given, the factory creates cells of size
+ * <em>64 x 64 x ... x 64</em>.
+ *
+ * @author ImgLib2 developers
+ */
+public final class DirectCellImgFactory< T extends NativeType< T > > extends AbstractCellImgFactory< T >
+{
+	public DirectCellImgFactory()
+	{
+		super( 64 );
+	}
+
+	public DirectCellImgFactory( final int cellSize )
+	{
+		super( cellSize );
+	}
+
+	public DirectCellImgFactory( final int[] cellDimensions )
+	{
+		super( cellDimensions );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public DirectCellImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( DirectCellImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public DirectCellImg< T, BitBufferAccess > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new BitBufferAccess( 0, true ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public DirectCellImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new ByteBufferAccess( 0, true ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public DirectCellImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new CharBufferAccess( 0, true ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public DirectCellImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new ShortBufferAccess( 0, true ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public DirectCellImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new IntBufferAccess( 0, true ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public DirectCellImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new LongBufferAccess( 0, true ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public DirectCellImg< T, LongBufferAccess > createPackedLongInstance( final long[] dimensions, final int bitsPerPixel )
+	{
+		return createInstance( new PackedLongBufferAccess( 0, true ), dimensions, bitsPerPixel );
+	}
+
+	@Override
+	public DirectCellImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new FloatBufferAccess( 0, true ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public DirectCellImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return createInstance( new DoubleBufferAccess( 0, true ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new DirectCellImgFactory( defaultCellDimensions );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	private < A extends ArrayDataAccess< A > > DirectCellImg< T, A > createInstance( final A creator, long[] dimensions, final int entitiesPerPixel )
+	{
+		dimensions = checkDimensions( dimensions );
+		final int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+		return new DirectCellImg< T, A >( this, new ListImgCells< A >( creator, entitiesPerPixel, dimensions, cellSize ) );
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * {@link CellLoader} that stores each cell as a raw (big-endian) file in a
+ * directory. Cells for which no file exists yet are left zero-initialized.
+ *
+ * @author ImgLib2 developers
+ */
+public class FileCellLoader< A extends ArrayDataAccess< A > > implements CellLoader< A >
+{
+	private final File directory;
+
+	/**
+	 * @param directory
+	 *            the directory containing the cell files. It is created if it
+	 *            does not exist.
+	 */
+	public FileCellLoader( final File directory )
+	{
+		if ( !directory.isDirectory() && !directory.mkdirs() )
+			throw new RuntimeException( "Could not create directory " + directory );
+		this.directory = directory;
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	/**
+	 * @return the file in which the cell with the given flat index is stored.
+	 */
+	public File getCellFile( final long index )
+	{
+		return new File( directory, "cell-" + index + ".raw" );
+	}
+
+	@Override
+	public void load( final long index, final long[] min, final int[] dimensions, final A data )
+	{
+		final File file = getCellFile( index );
+		if ( !file.exists() )
+			return;
+
+		final ByteBuffer buffer = ByteBuffer.allocate( ( int ) CachedCells.sizeInBytes( data ) );
+		try
+		{
+			final RandomAccessFile raf = new RandomAccessFile( file, "r" );
+			try
+			{
+				final FileChannel channel = raf.getChannel();
+				while ( buffer.hasRemaining() && channel.read( buffer ) >= 0 )
+				{}
+			}
+			finally
+			{
+				raf.close();
+			}
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( "Could not read cell " + index + " from " + file, e );
+		}
+		buffer.rewind();
+		fromBytes( buffer, data );
+	}
+
+	@Override
+	public void save( final long index, final long[] min, final int[] dimensions, final A data )
+	{
+		final ByteBuffer buffer = toBytes( data );
+
+		final File file = getCellFile( index );
+		try
+		{
+			final RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+			try
+			{
+				final FileChannel channel = raf.getChannel();
+				while ( buffer.hasRemaining() )
+					channel.write( buffer );
+				raf.setLength( buffer.capacity() );
+			}
+			finally
+			{
+				raf.close();
+			}
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( "Could not write cell " + index + " to " + file, e );
+		}
+	}
+
+	/**
+	 * Write the storage array of data into a new (big-endian) buffer.
+	 */
+	static ByteBuffer toBytes( final ArrayDataAccess< ? > data )
+	{
+		final Object array = data.getCurrentStorageArray();
+		final ByteBuffer buffer = ByteBuffer.allocate( ( int ) CachedCells.sizeInBytes( data ) );
+
+		if ( array instanceof byte[] )
+			buffer.put( ( byte[] ) array );
+		else if ( array instanceof short[] )
+			buffer.asShortBuffer().put( ( short[] ) array );
+		else if ( array instanceof char[] )
+			buffer.asCharBuffer().put( ( char[] ) array );
+		else if ( array instanceof int[] )
+			buffer.asIntBuffer().put( ( int[] ) array );
+		else if ( array instanceof long[] )
+			buffer.asLongBuffer().put( ( long[] ) array );
+		else if ( array instanceof float[] )
+			buffer.asFloatBuffer().put( ( float[] ) array );
+		else if ( array instanceof double[] )
+			buffer.asDoubleBuffer().put( ( double[] ) array );
+		else
+			throw new RuntimeException( "Unsupported storage array " + array.getClass().getSimpleName() );
+		buffer.rewind();
+		return buffer;
+	}
+
+	/**
+	 * Fill the storage array of data from a (big-endian) buffer.
+	 */
+	static void fromBytes( final ByteBuffer buffer, final ArrayDataAccess< ? > data )
+	{
+		final Object array = data.getCurrentStorageArray();
+
+		if ( array instanceof byte[] )
+			buffer.get( ( byte[] ) array );
+		else if ( array instanceof short[] )
+			buffer.asShortBuffer().get( ( short[] ) array );
+		else if ( array instanceof char[] )
+			buffer.asCharBuffer().get( ( char[] ) array );
+		else if ( array instanceof int[] )
+			buffer.asIntBuffer().get( ( int[] ) array );
+		else if ( array instanceof long[] )
+			buffer.asLongBuffer().get( ( long[] ) array );
+		else if ( array instanceof float[] )
+			buffer.asFloatBuffer().get( ( float[] ) array );
+		else if ( array instanceof double[] )
+			buffer.asDoubleBuffer().get( ( double[] ) array );
+		else
+			throw new RuntimeException( "Unsupported storage array " + array.getClass().getSimpleName() );
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCellImg.CellContainerSampler;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Util;
+
+/**
+ * {@link CellLoader} that computes cell data by reading a
+ * {@link RandomAccessibleInterval}. Used to memoize expensive lazy views (see
+ * {@link net.imglib2.view.Views#cache(RandomAccessibleInterval, int[], long)}):
+ * each cell is computed when it is accessed for the first time and recomputed
+ * only after it was evicted from the cache or invalidated.
+ *
+ * The cached image is zero-min, pixel 0 of the image corresponds to the min of
+ * the source interval. Evicted cells are not written back anywhere, since they
+ * can always be recomputed.
+ *
+ * @author ImgLib2 developers
+ */
+public class RandomAccessibleCellLoader< T extends NativeType< T >, A extends ArrayDataAccess< A > > implements CellLoader< A >
+{
+	private final RandomAccessibleInterval< T > source;
+
+	private final long[] sourceMin;
+
+	private NativeImg< T, A > img;
+
+	protected RandomAccessibleCellLoader( final RandomAccessibleInterval< T > source )
+	{
+		this.source = source;
+		sourceMin = new long[ source.numDimensions() ];
+		source.min( sourceMin );
+	}
+
+	/**
+	 * Create a {@link CachedCellImg} whose cells are computed from source on
+	 * demand.
+	 *
+	 * @param source
+	 *            the (expensive) source.
+	 * @param cellDimensions
+	 *            dimensions of a cell.
+	 * @param maxCacheBytes
+	 *            maximum total size in bytes of the cells kept in memory.
+	 * @return a zero-min {@link CachedCellImg} of the dimensions of source.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public static < T extends NativeType< T > > CachedCellImg< T, ? > createImg( final RandomAccessibleInterval< T > source, final int[] cellDimensions, final long maxCacheBytes )
+	{
+		final long[] dimensions = new long[ source.numDimensions() ];
+		source.dimensions( dimensions );
+		final RandomAccessibleCellLoader loader = new RandomAccessibleCellLoader( source );
+		final CachedCellImg< T, ? > img = new CachedCellImgFactory< T >( loader, maxCacheBytes, cellDimensions ).create( dimensions, Util.getTypeFromInterval( source ).createVariable() );
+		loader.img = img;
+		return img;
+	}
+
+	/**
+	 * @return the source from which cells are computed.
+	 */
+	public RandomAccessibleInterval< T > getSource()
+	{
+		return source;
+	}
+
+	@Override
+	public void load( final long index, final long[] min, final int[] dimensions, final A data )
+	{
+		final int n = min.length;
+		final CachedCell< A > cell = new CachedCell< A >( index, dimensions, min, data );
+		final CellContainerSampler< T, A, CachedCell< A > > sampler = new CellContainerSampler< T, A, CachedCell< A > >()
+		{
+			@Override
+			public CachedCell< A > getCell()
+			{
+				return cell;
+			}
+		};
+		final T t = img.createLinkedType();
+		t.updateContainer( sampler );
+
+		final long[] position = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] = min[ d ] + sourceMin[ d ];
+			max[ d ] = position[ d ] + dimensions[ d ] - 1;
+		}
+		final RandomAccess< T > in = source.randomAccess( new FinalInterval( position, max ) );
+		in.setPosition( position );
+
+		// iterate the cell in flat order, advancing the source access line by line
+		final int[] pos = new int[ n ];
+		final int lineLength = dimensions[ 0 ];
+		int numLines = 1;
+		for ( int d = 1; d < n; ++d )
+			numLines *= dimensions[ d ];
+		int i = 0;
+		for ( int line = 0; line < numLines; ++line )
+		{
+			for ( int x = 0; x < lineLength; ++x )
+			{
+				t.updateIndex( i++ );
+				t.set( in.get() );
+				in.fwd( 0 );
+			}
+			in.move( -lineLength, 0 );
+			for ( int d = 1; d < n; ++d )
+			{
+				in.fwd( d );
+				if ( ++pos[ d ] < dimensions[ d ] )
+					break;
+				pos[ d ] = 0;
+				in.move( -dimensions[ d ], d );
+			}
+		}
+	}
+
+	/**
+	 * Computed cells need not be stored, they are recomputed when needed.
+	 */
+	@Override
+	public void save( final long index, final long[] min, final int[] dimensions, final A data )
+	{}
+}
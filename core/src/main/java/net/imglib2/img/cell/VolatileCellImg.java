@@ -0,0 +1,395 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.volatiles.VolatileRealType;
+
+/**
+ * A non-blocking, {@link VolatileRealType volatile} view of a
+ * {@link CachedCellImg}.
+ *
+ * <p>
+ * Accessing a pixel whose cell is in the cache of the {@link CachedCellImg}
+ * yields a {@link VolatileRealType#isValid() valid} sample backed by the cell
+ * data. Accessing a pixel whose cell is not in the cache never blocks on
+ * loading. Instead, a request for the cell is put into a priority queue and an
+ * invalid placeholder sample with value zero is returned. The queue is
+ * processed by background loader threads, highest priority first and, among
+ * requests of equal priority, most recent first. Registered
+ * {@link LoadListener LoadListeners} are notified whenever a cell has been
+ * loaded, so that renderers can paint immediately and refine the image as the
+ * cells arrive (see
+ * {@link net.imglib2.display.projector.volatiles.Volatile2DRandomAccessibleProjector}).
+ * </p>
+ *
+ * @author ImgLib2 developers
+ */
+public class VolatileCellImg< T extends NativeType< T > & RealType< T >, A extends ArrayDataAccess< A > > extends AbstractInterval implements RandomAccessibleInterval< VolatileRealType< T > >
+{
+	/**
+	 * Is notified by the loader threads whenever a requested cell has been
+	 * loaded.
+	 */
+	public interface LoadListener
+	{
+		/**
+		 * @param index
+		 *            flat index of the loaded cell in the cell grid.
+		 */
+		public void cellLoaded( long index );
+	}
+
+	protected final CachedCellImg< T, A > img;
+
+	protected final CachedCells< A > cells;
+
+	protected final int[] cellDims;
+
+	protected final long[] gridDims;
+
+	/**
+	 * The most recent pending request for each cell.
+	 */
+	private final ConcurrentHashMap< Long, Request > pending;
+
+	private final AtomicLong requestCount;
+
+	private final ThreadPoolExecutor loaders;
+
+	private final CopyOnWriteArrayList< LoadListener > listeners;
+
+	/**
+	 * Create a volatile view with one loader thread per available processor.
+	 */
+	public VolatileCellImg( final CachedCellImg< T, A > img )
+	{
+		this( img, Runtime.getRuntime().availableProcessors() );
+	}
+
+	/**
+	 * @param img
+	 *            the image from which cells are loaded.
+	 * @param numLoaderThreads
+	 *            number of background threads loading cells.
+	 */
+	public VolatileCellImg( final CachedCellImg< T, A > img, final int numLoaderThreads )
+	{
+		super( img );
+		this.img = img;
+		cells = img.getCells();
+		cellDims = new int[ n ];
+		cells.cellDimensions( cellDims );
+		gridDims = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			gridDims[ d ] = ( img.dimension( d ) + cellDims[ d ] - 1 ) / cellDims[ d ];
+
+		pending = new ConcurrentHashMap< Long, Request >();
+		requestCount = new AtomicLong();
+		listeners = new CopyOnWriteArrayList< LoadListener >();
+
+		final AtomicInteger threadCount = new AtomicInteger();
+		final ThreadFactory threadFactory = new ThreadFactory()
+		{
+			@Override
+			public Thread newThread( final Runnable r )
+			{
+				final Thread thread = new Thread( r, "imglib2-cell-loader-" + threadCount.incrementAndGet() );
+				thread.setDaemon( true );
+				return thread;
+			}
+		};
+		// the executor hands a request directly to a new thread while there
+		// are fewer than core threads, bypassing the priority queue. The
+		// threads are therefore started upfront and kept alive (they are
+		// daemons and stopped by shutdown()), so that every request goes
+		// through the queue.
+		loaders = new ThreadPoolExecutor( numLoaderThreads, numLoaderThreads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue< Runnable >(), threadFactory );
+		loaders.prestartAllCoreThreads();
+	}
+
+	/**
+	 * @return the image from which cells are loaded.
+	 */
+	public CachedCellImg< T, A > getSource()
+	{
+		return img;
+	}
+
+	public void addLoadListener( final LoadListener listener )
+	{
+		listeners.add( listener );
+	}
+
+	public void removeLoadListener( final LoadListener listener )
+	{
+		listeners.remove( listener );
+	}
+
+	/**
+	 * Request that a cell is loaded in the background. If the cell is already
+	 * requested with the same or higher priority, nothing happens. After
+	 * {@link #shutdown()}, requests are ignored and the cell is never loaded.
+	 *
+	 * @param index
+	 *            flat index of the cell in the cell grid.
+	 * @param priority
+	 *            requests with higher priority are processed first.
+	 */
+	public void requestCell( final long index, final int priority )
+	{
+		if ( loaders.isShutdown() )
+			return;
+		final Long key = index;
+		final Request request = new Request( index, priority, requestCount.incrementAndGet() );
+		while ( true )
+		{
+			final Request previous = pending.putIfAbsent( key, request );
+			if ( previous == null )
+				break;
+			if ( previous.priority >= priority )
+				return;
+			if ( pending.replace( key, previous, request ) )
+				break;
+		}
+		try
+		{
+			loaders.execute( request );
+		}
+		catch ( final RejectedExecutionException e )
+		{
+			// shut down concurrently
+			pending.remove( key, request );
+		}
+	}
+
+	/**
+	 * Discard all requests that have not started loading yet, for example
+	 * because the region that is displayed has changed.
+	 */
+	public void cancelPendingRequests()
+	{
+		loaders.getQueue().clear();
+		pending.clear();
+	}
+
+	/**
+	 * @return number of requested cells that have not been loaded yet.
+	 */
+	public int getNumPendingRequests()
+	{
+		return pending.size();
+	}
+
+	/**
+	 * Stop the loader threads. Requests that have not started loading yet are
+	 * discarded, and later requests are ignored, so that accessing pixels of
+	 * cells that are not cached yields invalid samples from then on.
+	 */
+	public void shutdown()
+	{
+		loaders.shutdownNow();
+		pending.clear();
+	}
+
+	@Override
+	public VolatileCellRandomAccess randomAccess()
+	{
+		return new VolatileCellRandomAccess();
+	}
+
+	@Override
+	public VolatileCellRandomAccess randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+
+	/**
+	 * A request to load a cell, ordered by descending priority and then by
+	 * descending sequence number.
+	 */
+	private final class Request implements Runnable, Comparable< Request >
+	{
+		final long index;
+
+		final int priority;
+
+		final long sequence;
+
+		Request( final long index, final int priority, final long sequence )
+		{
+			this.index = index;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo( final Request o )
+		{
+			if ( priority != o.priority )
+				return priority > o.priority ? -1 : 1;
+			return sequence > o.sequence ? -1 : ( sequence < o.sequence ? 1 : 0 );
+		}
+
+		@Override
+		public void run()
+		{
+			// skip requests that were superseded or cancelled
+			if ( pending.get( index ) != this )
+				return;
+			try
+			{
+				cells.get( index );
+			}
+			finally
+			{
+				pending.remove( index, this );
+			}
+			for ( final LoadListener listener : listeners )
+				listener.cellLoaded( index );
+		}
+	}
+
+	/**
+	 * {@link RandomAccess} on a {@link VolatileCellImg}. Cells that are not in
+	 * the cache are requested with the priority of the access (see
+	 * {@link #setPriority(int)}).
+	 */
+	public class VolatileCellRandomAccess extends Point implements RandomAccess< VolatileRealType< T > >, AbstractCellImg.CellContainerSampler< T, A, CachedCell< A > >
+	{
+		protected final T type;
+
+		protected final VolatileRealType< T > valid;
+
+		protected final VolatileRealType< T > invalid;
+
+		protected int priority;
+
+		protected CachedCell< A > cell;
+
+		protected VolatileCellRandomAccess()
+		{
+			super( VolatileCellImg.this.numDimensions() );
+			type = img.createLinkedType();
+			valid = new VolatileRealType< T >( type, true );
+			final T zero = type.createVariable();
+			zero.setZero();
+			invalid = new VolatileRealType< T >( zero, false );
+			priority = 0;
+			cell = null;
+		}
+
+		protected VolatileCellRandomAccess( final VolatileCellRandomAccess access )
+		{
+			this();
+			setPosition( access );
+			priority = access.priority;
+		}
+
+		/**
+		 * Set the priority with which cells that are not in the cache are
+		 * requested.
+		 */
+		public void setPriority( final int priority )
+		{
+			this.priority = priority;
+		}
+
+		public int getPriority()
+		{
+			return priority;
+		}
+
+		@Override
+		public CachedCell< A > getCell()
+		{
+			return cell;
+		}
+
+		@Override
+		public VolatileRealType< T > get()
+		{
+			long index = 0;
+			for ( int d = n - 1; d >= 0; --d )
+				index = index * gridDims[ d ] + position[ d ] / cellDims[ d ];
+
+			if ( cell == null || cell.getIndex() != index )
+			{
+				final CachedCell< A > c = cells.getIfCached( index );
+				if ( c == null )
+				{
+					requestCell( index, priority );
+					return invalid;
+				}
+				cell = c;
+				type.updateContainer( this );
+			}
+
+			int i = 0;
+			for ( int d = n - 1; d >= 0; --d )
+				i = i * cell.dimension( d ) + ( int ) ( position[ d ] - cell.min( d ) );
+			type.updateIndex( i );
+			return valid;
+		}
+
+		@Override
+		public VolatileCellRandomAccess copy()
+		{
+			return new VolatileCellRandomAccess( this );
+		}
+
+		@Override
+		public VolatileCellRandomAccess copyRandomAccess()
+		{
+			return copy();
+		}
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.planar;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel.MapMode;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.buffer.AbstractBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.BitBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.PackedLongBufferAccess;
+import net.imglib2.img.basictypeaccess.buffer.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for {@link PlanarImg PlanarImgs} whose planes are memory-mapped
+ * regions of a raw file. The planes are expected one after the other (i.e., in
+ * flat iteration order) starting at a given byte offset in the file. The file
+ * is opened once per image, and consecutive planes are mapped together in
+ * regions of up to 2<sup>{@link AbstractBufferAccess#CHUNK_BYTES_LOG2}</sup>
+ * bytes that are sliced into planes, so a stack of many small planes needs
+ * only a few mappings.
+ *
+ * Every image created by this factory maps the same file region.
+ *
+ * @author ImgLib2 developers
+ */
+public class MappedPlanarImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	private final File file;
+
+	private final long offset;
+
+	private final ByteOrder order;
+
+	private final MapMode mode;
+
+	/**
+	 * Map a big-endian raw file without header for reading and writing.
+	 */
+	public MappedPlanarImgFactory( final File file )
+	{
+		this( file, 0, ByteOrder.BIG_ENDIAN, MapMode.READ_WRITE );
+	}
+
+	/**
+	 * @param file
+	 *            the raw file.
+	 * @param offset
+	 *            offset of the first plane in the file (i.e., the header size).
+	 * @param order
+	 *            byte order of the pixel data.
+	 * @param mode
+	 *            {@link MapMode#READ_ONLY}, {@link MapMode#READ_WRITE} (the
+	 *            file is enlarged if necessary), or {@link MapMode#PRIVATE}
+	 *            (copy-on-write).
+	 */
+	public MappedPlanarImgFactory( final File file, final long offset, final ByteOrder order, final MapMode mode )
+	{
+		this.file = file;
+		this.offset = offset;
+		this.order = order;
+		this.mode = mode;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public PlanarImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( PlanarImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public PlanarImg< T, BitBufferAccess > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, BitBufferAccess > img = new PlanarImg< T, BitBufferAccess >( dimensions, entitiesPerPixel );
+		final int entitiesPerPlane = entitiesPerPlane( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = BitBufferAccess.numBytes( entitiesPerPlane );
+		final ByteBuffer[][] planes = mapPlanes( img.numSlices(), bytesPerPlane );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new BitBufferAccess( planes[ i ], entitiesPerPlane ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, ByteBufferAccess > img = new PlanarImg< T, ByteBufferAccess >( dimensions, entitiesPerPixel );
+		final int entitiesPerPlane = entitiesPerPlane( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = entitiesPerPlane;
+		final ByteBuffer[][] planes = mapPlanes( img.numSlices(), bytesPerPlane );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new ByteBufferAccess( planes[ i ], entitiesPerPlane ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, CharBufferAccess > img = new PlanarImg< T, CharBufferAccess >( dimensions, entitiesPerPixel );
+		final int entitiesPerPlane = entitiesPerPlane( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = 2l * entitiesPerPlane;
+		final ByteBuffer[][] planes = mapPlanes( img.numSlices(), bytesPerPlane );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new CharBufferAccess( planes[ i ], entitiesPerPlane ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, DoubleBufferAccess > img = new PlanarImg< T, DoubleBufferAccess >( dimensions, entitiesPerPixel );
+		final int entitiesPerPlane = entitiesPerPlane( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = 8l * entitiesPerPlane;
+		final ByteBuffer[][] planes = mapPlanes( img.numSlices(), bytesPerPlane );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new DoubleBufferAccess( planes[ i ], entitiesPerPlane ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, FloatBufferAccess > img = new PlanarImg< T, FloatBufferAccess >( dimensions, entitiesPerPixel );
+		final int entitiesPerPlane = entitiesPerPlane( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = 4l * entitiesPerPlane;
+		final ByteBuffer[][] planes = mapPlanes( img.numSlices(), bytesPerPlane );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new FloatBufferAccess( planes[ i ], entitiesPerPlane ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, IntBufferAccess > img = new PlanarImg< T, IntBufferAccess >( dimensions, entitiesPerPixel );
+		final int entitiesPerPlane = entitiesPerPlane( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = 4l * entitiesPerPlane;
+		final ByteBuffer[][] planes = mapPlanes( img.numSlices(), bytesPerPlane );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new IntBufferAccess( planes[ i ], entitiesPerPlane ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, LongBufferAccess > img = new PlanarImg< T, LongBufferAccess >( dimensions, entitiesPerPixel );
+		final int entitiesPerPlane = entitiesPerPlane( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = 8l * entitiesPerPlane;
+		final ByteBuffer[][] planes = mapPlanes( img.numSlices(), bytesPerPlane );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new LongBufferAccess( planes[ i ], entitiesPerPlane ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, LongBufferAccess > createPackedLongInstance( final long[] dimensions, final int bitsPerPixel )
+	{
+		final PlanarImg< T, LongBufferAccess > img = new PlanarImg< T, LongBufferAccess >( dimensions, bitsPerPixel );
+		final int longsPerPlane = longsPerPlane( dimensions, bitsPerPixel );
+		final long bytesPerPlane = 8l * longsPerPlane;
+		final ByteBuffer[][] planes = mapPlanes( img.numSlices(), bytesPerPlane );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new PackedLongBufferAccess( planes[ i ], longsPerPlane ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, ShortBufferAccess > img = new PlanarImg< T, ShortBufferAccess >( dimensions, entitiesPerPixel );
+		final int entitiesPerPlane = entitiesPerPlane( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = 2l * entitiesPerPlane;
+		final ByteBuffer[][] planes = mapPlanes( img.numSlices(), bytesPerPlane );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new ShortBufferAccess( planes[ i ], entitiesPerPlane ) );
+		return img;
+	}
+
+	/**
+	 * Images of other types cannot share the mapped file, therefore they are
+	 * created by a plain {@link PlanarImgFactory}.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new PlanarImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	/**
+	 * @return the number of entities of one plane, which must be addressable
+	 *         by an int.
+	 */
+	private static int entitiesPerPlane( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final long entitiesPerPlane = ( ( dimensions.length > 1 ) ? dimensions[ 1 ] : 1 ) * dimensions[ 0 ] * entitiesPerPixel;
+		if ( entitiesPerPlane > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Number of elements in a plane too big, use for example DirectCellImgFactory instead: " + entitiesPerPlane + " > " + Integer.MAX_VALUE );
+		return ( int ) entitiesPerPlane;
+	}
+
+	private static int longsPerPlane( final long[] dimensions, final int bitsPerPixel )
+	{
+		final long pixelsPerPlane = ( ( dimensions.length > 1 ) ? dimensions[ 1 ] : 1 ) * dimensions[ 0 ];
+		final long longsPerPlane = ( pixelsPerPlane * bitsPerPixel + 63 ) / 64;
+		if ( pixelsPerPlane > Integer.MAX_VALUE || longsPerPlane > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Number of elements in a plane too big, use for example DirectCellImgFactory instead: " + pixelsPerPlane + " > " + Integer.MAX_VALUE );
+		return ( int ) longsPerPlane;
+	}
+
+	private ByteBuffer[][] mapPlanes( final int numPlanes, final long bytesPerPlane )
+	{
+		return AbstractBufferAccess.map( file, offset, bytesPerPlane, numPlanes, order, mode );
+	}
+}
@@ -34,12 +34,16 @@
 package net.imglib2.img.planar;
 
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.FlatIterationOrder;
 import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.NativeImg;
+import net.imglib2.img.StorageBlock;
+import net.imglib2.img.StorageBlock.BlockOperation;
 import net.imglib2.img.basictypeaccess.PlanarAccess;
 import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.multithreading.TaskExecutors;
 import net.imglib2.type.NativeType;
 
 /**
@@ -254,6 +258,75 @@ public class PlanarImg< T extends NativeType< T >, A extends ArrayDataAccess<A>
 	@Override
 	public void setPlane( final int no, final A plane ) { mirror.set( no, plane ); }
 
+	/**
+	 * Get the plane with the given index as a {@link StorageBlock}, i.e., as an
+	 * {@link net.imglib2.IterableInterval} located at the position of the
+	 * plane, that iterates directly over the plane's data array.
+	 *
+	 * @param no
+	 *            index of the plane, in {@code [0, numSlices())}.
+	 */
+	public StorageBlock< T, A > getPlaneBlock( final int no )
+	{
+		final int[] position = new int[ n ];
+		indexToGlobalPosition( no, 0, position );
+		final long[] min = new long[ n ];
+		final long[] dims = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = position[ d ];
+			dims[ d ] = d < 2 ? dimensions[ d ] : 1;
+		}
+		final PlanarContainerSampler sampler = new PlanarContainerSampler()
+		{
+			@Override
+			public int getCurrentSliceIndex()
+			{
+				return no;
+			}
+		};
+		return new StorageBlock< T, A >( this, sampler, no, min, dims );
+	}
+
+	/**
+	 * Apply operation to every plane, using the shared
+	 * {@link TaskExecutors#getDefault() thread pool}.
+	 */
+	public void forEachPlane( final BlockOperation< T, A > operation )
+	{
+		final ExecutorService service = TaskExecutors.getDefault();
+		forEachPlane( operation, service, TaskExecutors.getParallelism( service ) );
+	}
+
+	/**
+	 * Apply operation to every plane (see {@link #getPlaneBlock(int)}). Planes
+	 * are processed in parallel, in no particular order.
+	 *
+	 * @param operation
+	 *            the operation to apply to every plane.
+	 * @param service
+	 *            service on which to run the computation.
+	 * @param numThreads
+	 *            maximum number of planes to process concurrently.
+	 */
+	public void forEachPlane( final BlockOperation< T, A > operation, final ExecutorService service, final int numThreads )
+	{
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( numSlices );
+		for ( int i = 0; i < numSlices; ++i )
+		{
+			final int no = i;
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					operation.apply( getPlaneBlock( no ) );
+				}
+			} );
+		}
+		TaskExecutors.run( service, tasks, numThreads );
+	}
+
 	@Override
 	public PlanarImgFactory< T > factory() { return new PlanarImgFactory<T>(); }
 
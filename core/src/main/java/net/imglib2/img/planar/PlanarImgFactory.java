@@ -44,6 +44,7 @@ import net.imglib2.img.basictypeaccess.array.DoubleArray;
 import net.imglib2.img.basictypeaccess.array.FloatArray;
 import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.PackedLongArray;
 import net.imglib2.img.basictypeaccess.array.ShortArray;
 import net.imglib2.type.NativeType;
 
@@ -109,6 +110,12 @@ public class PlanarImgFactory< T extends NativeType<T> > extends NativeImgFactor
 		return new PlanarImg< T, LongArray >( new LongArray( 1 ), dimensions, entitiesPerPixel );
 	}
 
+	@Override
+	public NativeImg< T, LongArray > createPackedLongInstance( final long[] dimensions, final int bitsPerPixel )
+	{
+		return new PlanarImg< T, LongArray >( new PackedLongArray( 1 ), dimensions, bitsPerPixel );
+	}
+
 	@Override
 	public NativeImg< T, ShortArray > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
 	{
@@ -33,9 +33,21 @@
 
 package net.imglib2.img.sparse;
 
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * N-dimensional equivalent of a quad/oct-tree.
  * 
+ * The tree can be read and written concurrently. Reads ({@link #getNode(long[])})
+ * take no locks. Child arrays are fully initialized before they are published
+ * by compare-and-set, and values are volatile, so readers always see a
+ * consistent tree. Writes are serialized per subtree of the root node: each
+ * of the 2<sup>n</sup> children of the root has its own lock, so threads
+ * writing to different regions of the image do not block each other. Nodes
+ * whose children all have the same value are still merged, up to and
+ * including the root.
+ * 
  * @author Tobias Pietzsch
  */
 public final class Ntree< T extends Comparable< T >>
@@ -43,12 +55,14 @@ public final class Ntree< T extends Comparable< T >>
 
 	public static final class NtreeNode< T >
 	{
+		@SuppressWarnings( "rawtypes" )
+		private static final AtomicReferenceFieldUpdater< NtreeNode, NtreeNode[] > childrenUpdater = AtomicReferenceFieldUpdater.newUpdater( NtreeNode.class, NtreeNode[].class, "children" );
 
-		private T value;
+		private volatile T value;
 
 		private final NtreeNode< T > parent;
 
-		private NtreeNode< T >[] children;
+		private volatile NtreeNode< T >[] children;
 
 		public NtreeNode( final NtreeNode< T > parent, final T value )
 		{
@@ -81,6 +95,16 @@ public final class Ntree< T extends Comparable< T >>
 			this.children = children;
 		}
 
+		/**
+		 * Atomically set the children if this node currently has none.
+		 * 
+		 * @return true if successful.
+		 */
+		boolean setChildrenIfAbsent( final NtreeNode< T >[] children )
+		{
+			return childrenUpdater.compareAndSet( this, null, children );
+		}
+
 	}
 
 	/**
@@ -101,13 +125,20 @@ public final class Ntree< T extends Comparable< T >>
 	/**
 	 * Root of the tree
 	 */
-	NtreeNode< T > root;
+	final NtreeNode< T > root;
 
 	/**
 	 * dimensions of tree
 	 */
 	final long[] dimensions;
 
+	/**
+	 * One lock for each child of the root, guarding all modifications of the
+	 * subtree below that child. Merging the children of the root requires all
+	 * locks. Trees consisting of a single pixel only use the first lock.
+	 */
+	private final ReentrantLock[] locks;
+
 	// /**
 	// * KNIME requirements, empty constructor for fast serialization
 	// */
@@ -141,6 +172,16 @@ public final class Ntree< T extends Comparable< T >>
 		this.numChildren = 1 << n;
 
 		this.root = new NtreeNode< T >( null, value );
+
+		this.locks = createLocks( numChildren );
+	}
+
+	private static ReentrantLock[] createLocks( final int numChildren )
+	{
+		final ReentrantLock[] locks = new ReentrantLock[ numChildren ];
+		for ( int i = 0; i < numChildren; ++i )
+			locks[ i ] = new ReentrantLock();
+		return locks;
 	}
 
 	/**
@@ -151,19 +192,22 @@ public final class Ntree< T extends Comparable< T >>
 	private NtreeNode< T > copyRecursively( final NtreeNode< T > node, final NtreeNode< T > newParent )
 	{
 		final NtreeNode< T > copy = new NtreeNode< T >( newParent, node.getValue() );
-		if ( node.hasChildren() )
+		final NtreeNode< T >[] children = node.children;
+		if ( children != null )
 		{
-			copy.children = new NtreeNode[ numChildren ];
+			final NtreeNode< T >[] copyChildren = new NtreeNode[ numChildren ];
 			for ( int i = 0; i < numChildren; ++i )
 			{
-				copy.children[ i ] = copyRecursively( node.children[ i ], copy );
+				copyChildren[ i ] = copyRecursively( children[ i ], copy );
 			}
+			copy.children = copyChildren;
 		}
 		return copy;
 	}
 
 	/**
-	 * Copy constructor. Create a deep copy of ntree.
+	 * Copy constructor. Create a deep copy of ntree. The copy is only a
+	 * consistent snapshot if ntree is not modified concurrently.
 	 */
 	Ntree( final Ntree< T > ntree )
 	{
@@ -172,6 +216,47 @@ public final class Ntree< T extends Comparable< T >>
 		numTreeLevels = ntree.numTreeLevels;
 		numChildren = ntree.numChildren;
 		root = copyRecursively( ntree.root, null );
+		locks = createLocks( numChildren );
+	}
+
+	/**
+	 * Compute the index of the child containing position at the given level.
+	 */
+	private int childIndex( final long[] position, final int level )
+	{
+		final long bitmask = 1l << level;
+		int childindex = 0;
+		for ( int d = 0; d < n; ++d )
+			if ( ( position[ d ] & bitmask ) != 0 )
+				childindex |= 1 << d;
+		return childindex;
+	}
+
+	/**
+	 * Get the lock guarding the subtree of the root child containing position.
+	 */
+	private ReentrantLock lockFor( final long[] position )
+	{
+		return numTreeLevels < 2 ? locks[ 0 ] : locks[ childIndex( position, numTreeLevels - 2 ) ];
+	}
+
+	/**
+	 * Split a leaf node into children that all have the value of the node, and
+	 * publish the children by compare-and-set.
+	 * 
+	 * @return the children of node (either the new children, or those that
+	 *         were published concurrently by another thread).
+	 */
+	@SuppressWarnings( "unchecked" )
+	private NtreeNode< T >[] split( final NtreeNode< T > node )
+	{
+		final NtreeNode< T >[] newChildren = new NtreeNode[ numChildren ];
+		final T value = node.getValue();
+		for ( int i = 0; i < numChildren; ++i )
+			newChildren[ i ] = new NtreeNode< T >( node, value );
+		if ( node.setChildrenIfAbsent( newChildren ) )
+			return newChildren;
+		return node.children;
 	}
 
 	/**
@@ -183,20 +268,15 @@ public final class Ntree< T extends Comparable< T >>
 	 *            a position inside the image.
 	 * @return the lowest-level node containing position.
 	 */
-	synchronized NtreeNode< T > getNode( final long[] position )
+	NtreeNode< T > getNode( final long[] position )
 	{
 		NtreeNode< T > current = root;
 		for ( int l = numTreeLevels - 2; l >= 0; --l )
 		{
-			if ( !current.hasChildren() )
+			final NtreeNode< T >[] children = current.children;
+			if ( children == null )
 				break;
-
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			current = children[ childIndex( position, l ) ];
 		}
 		return current;
 	}
@@ -209,27 +289,26 @@ public final class Ntree< T extends Comparable< T >>
 	 *            a position inside the image.
 	 * @return node containing exactly position.
 	 */
-	@SuppressWarnings( "unchecked" )
-	synchronized NtreeNode< T > createNode( final long[] position )
+	NtreeNode< T > createNode( final long[] position )
 	{
-		NtreeNode< T > current = root;
-		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		final ReentrantLock lock = lockFor( position );
+		lock.lock();
+		try
 		{
-			if ( !current.hasChildren() )
+			NtreeNode< T > current = root;
+			for ( int l = numTreeLevels - 2; l >= 0; --l )
 			{
-				current.children = new NtreeNode[ numChildren ];
-				for ( int i = 0; i < numChildren; ++i )
-					current.children[ i ] = new NtreeNode< T >( current, current.getValue() );
+				NtreeNode< T >[] children = current.children;
+				if ( children == null )
+					children = split( current );
+				current = children[ childIndex( position, l ) ];
 			}
-
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			return current;
+		}
+		finally
+		{
+			lock.unlock();
 		}
-		return current;
 	}
 
 	/**
@@ -244,33 +323,103 @@ public final class Ntree< T extends Comparable< T >>
 	 *            value to store at position.
 	 * @return node containing position.
 	 */
-	@SuppressWarnings( "unchecked" )
-	synchronized NtreeNode< T > createNodeWithValue( final long[] position, final T value )
+	NtreeNode< T > createNodeWithValue( final long[] position, final T value )
 	{
-		NtreeNode< T > current = root;
-		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		// nothing to do if the value is already there
+		final NtreeNode< T > existing = getNode( position );
+		if ( existing.getValue().compareTo( value ) == 0 )
+			return existing;
+
+		if ( numTreeLevels < 2 )
+			return setRootValue( value );
+
+		final int rootChildIndex = childIndex( position, numTreeLevels - 2 );
+		final ReentrantLock lock = locks[ rootChildIndex ];
+		final NtreeNode< T > node;
+		lock.lock();
+		try
+		{
+			// while we hold the lock, the root children cannot be merged
+			NtreeNode< T >[] children = root.children;
+			if ( children == null )
+			{
+				if ( root.getValue().compareTo( value ) == 0 )
+					return root;
+				children = split( root );
+			}
+			final NtreeNode< T > rootChild = children[ rootChildIndex ];
+			node = setValue( rootChild, position, value );
+			if ( node != rootChild )
+				return node;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		return mergeRoot( node );
+	}
+
+	/**
+	 * Set the value at position in the subtree below rootChild. Nodes are
+	 * merged up to rootChild.
+	 * 
+	 * @return node containing position.
+	 */
+	private NtreeNode< T > setValue( final NtreeNode< T > rootChild, final long[] position, final T value )
+	{
+		NtreeNode< T > current = rootChild;
+		for ( int l = numTreeLevels - 3; l >= 0; --l )
 		{
-			if ( !current.hasChildren() )
+			NtreeNode< T >[] children = current.children;
+			if ( children == null )
 			{
 				if ( current.getValue().compareTo( value ) == 0 )
 					return current;
-					
-				current.children = new NtreeNode[ numChildren ];
-					for ( int i = 0; i < numChildren; ++i )
-						current.children[ i ] = new NtreeNode< T >( current, current.getValue() );
+				children = split( current );
 			}
-
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			current = children[ childIndex( position, l ) ];
 		}
 		if ( current.getValue().compareTo( value ) == 0 )
 			return current;
 		current.setValue( value );
-		return mergeUpwards( current );
+		return mergeUpwards( current, rootChild );
+	}
+
+	private NtreeNode< T > setRootValue( final T value )
+	{
+		locks[ 0 ].lock();
+		try
+		{
+			root.setValue( value );
+			return root;
+		}
+		finally
+		{
+			locks[ 0 ].unlock();
+		}
+	}
+
+	/**
+	 * Try to merge the children of the root (one of which is rootChild). This
+	 * requires all locks, which are acquired in a fixed order.
+	 * 
+	 * @return node that rootChild was ultimately merged into.
+	 */
+	private NtreeNode< T > mergeRoot( final NtreeNode< T > rootChild )
+	{
+		for ( int i = 0; i < numChildren; ++i )
+			locks[ i ].lock();
+		try
+		{
+			if ( root.children == null )
+				return root;
+			return mergeUpwards( rootChild, null );
+		}
+		finally
+		{
+			for ( int i = numChildren - 1; i >= 0; --i )
+				locks[ i ].unlock();
+		}
 	}
 
 	/**
@@ -284,21 +433,35 @@ public final class Ntree< T extends Comparable< T >>
 	 */
 	NtreeNode< T > mergeUpwards( final NtreeNode< T > node )
 	{
+		return mergeUpwards( node, null );
+	}
+
+	/**
+	 * If all the children of our parent have the same value remove them all.
+	 * Call recursively for parent, until node stop is reached.
+	 */
+	private NtreeNode< T > mergeUpwards( final NtreeNode< T > node, final NtreeNode< T > stop )
+	{
+		if ( node == stop )
+			return node;
 		final NtreeNode< T > parent = node.parent;
 		if ( parent == null )
 			return node;
-		final NtreeNode< T > child0 = parent.children[ 0 ];
+		final NtreeNode< T >[] children = parent.children;
+		final NtreeNode< T > child0 = children[ 0 ];
 		if ( child0.hasChildren() )
 			return node;
 		for ( int i = 1; i < numChildren; ++i )
 		{
-			final NtreeNode< T > child = parent.children[ i ];
+			final NtreeNode< T > child = children[ i ];
 			if ( child.hasChildren() || child0.getValue().compareTo( child.getValue() ) != 0 )
 				return node;
 		}
+		// set the value before removing the children, so that concurrent
+		// readers see the correct value either way
 		parent.setValue( child0.getValue() );
 		parent.children = null;
-		return mergeUpwards( parent );
+		return mergeUpwards( parent, stop );
 	}
 
 	/**
@@ -33,9 +33,16 @@
 
 package net.imglib2.img.sparse;
 
+import java.util.Vector;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.NativeImgFactory;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.SimpleMultiThreading;
 import net.imglib2.type.NativeType;
 
 /**
@@ -50,6 +57,57 @@ public class NtreeImgFactory< T extends NativeType< T >> extends NativeImgFactor
 		return ( NtreeImg< T, ? > ) type.createSuitableNativeImg( this, dim );
 	}
 
+	/**
+	 * Create a {@link NtreeImg} with the dimensions of source and fill it with
+	 * the values of source. The pixels of source are divided into chunks that
+	 * are written concurrently by numThreads threads.
+	 * 
+	 * @param source
+	 *            the values to store in the new image.
+	 * @param numThreads
+	 *            how many threads to use.
+	 * @return a new {@link NtreeImg} containing the values of source.
+	 */
+	public NtreeImg< T, ? > create( final IterableInterval< T > source, final int numThreads )
+	{
+		final int n = source.numDimensions();
+		final long[] dim = new long[ n ];
+		source.dimensions( dim );
+		final long[] min = new long[ n ];
+		source.min( min );
+		final NtreeImg< T, ? > img = create( dim, source.firstElement().createVariable() );
+
+		final Vector< Chunk > chunks = SimpleMultiThreading.divideIntoChunks( source.size(), numThreads );
+		final Thread[] threads = SimpleMultiThreading.newThreads( numThreads );
+		for ( int i = 0; i < threads.length; ++i )
+		{
+			final Chunk chunk = chunks.get( i );
+			threads[ i ] = new Thread( "NtreeImgFactory thread " + i )
+			{
+				@Override
+				public void run()
+				{
+					final Cursor< T > cursor = source.localizingCursor();
+					final RandomAccess< T > access = img.randomAccess();
+					final long[] position = new long[ n ];
+					cursor.jumpFwd( chunk.getStartPosition() );
+					for ( long j = 0; j < chunk.getLoopSize(); ++j )
+					{
+						cursor.fwd();
+						cursor.localize( position );
+						for ( int d = 0; d < n; ++d )
+							position[ d ] -= min[ d ];
+						access.setPosition( position );
+						access.get().set( cursor.get() );
+					}
+				}
+			};
+		}
+		SimpleMultiThreading.startAndJoin( threads );
+
+		return img;
+	}
+
 	@Override
 	public NtreeImg< T, BooleanNtree > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
 	{
@@ -73,4 +73,20 @@ final public class Interpolant< T, F extends EuclideanSpace > implements RealRan
 	{
 		return factory.create( source, interval );
 	}
+
+	/**
+	 * @return the interpolated source
+	 */
+	public F getSource()
+	{
+		return source;
+	}
+
+	/**
+	 * @return the factory creating the interpolators
+	 */
+	public InterpolatorFactory< T, F > getInterpolatorFactory()
+	{
+		return factory;
+	}
 }
@@ -0,0 +1,93 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Table-driven, separable cubic interpolation (see {@link CubicKernel} and
+ * {@link SeparableKernelInterpolator}) with a 4<sup>n</sup> sample
+ * neighborhood.
+ *
+ * @author ImgLib2 developers
+ */
+public class CubicInterpolatorFactory< T extends RealType< T > > extends SeparableKernelInterpolatorFactory< T >
+{
+	public static enum Kernel
+	{
+		/**
+		 * interpolating Catmull-Rom spline
+		 */
+		CATMULL_ROM,
+
+		/**
+		 * smoothing cubic B-spline, which does not reproduce the sample
+		 * values (there is no prefiltering)
+		 */
+		B_SPLINE
+	}
+
+	final static private CubicKernel createKernel( final Kernel kernel )
+	{
+		switch ( kernel )
+		{
+		case B_SPLINE:
+			return CubicKernel.bSpline();
+		case CATMULL_ROM:
+		default:
+			return CubicKernel.catmullRom();
+		}
+	}
+
+	/**
+	 * @param kernel
+	 *            which cubic kernel to use
+	 * @param clipping
+	 *            the Catmull-Rom interpolation can create values that are
+	 *            bigger or smaller than the original values, so they can be
+	 *            clipped to the range of the {@link RealType} if wanted
+	 */
+	public CubicInterpolatorFactory( final Kernel kernel, final boolean clipping )
+	{
+		super( createKernel( kernel ), clipping );
+	}
+
+	/**
+	 * Creates a Catmull-Rom interpolator factory that does clipping.
+	 */
+	public CubicInterpolatorFactory()
+	{
+		this( Kernel.CATMULL_ROM, true );
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+/**
+ * The family of cubic kernels with radius 2 described by Mitchell and
+ * Netravali (Reconstruction filters in computer graphics, SIGGRAPH 1988),
+ * parameterized by B and C:
+ *
+ * <pre>
+ *        | (12 - 9B - 6C)|x|^3 + (-18 + 12B + 6C)|x|^2 + (6 - 2B)                  for |x| < 1
+ * k(x) = | (-B - 6C)|x|^3 + (6B + 30C)|x|^2 + (-12B - 48C)|x| + (8B + 24C)         for 1 <= |x| < 2
+ *        | 0                                                                       otherwise
+ * </pre>
+ *
+ * (all divided by 6). B=0, C=1/2 is the interpolating Catmull-Rom spline,
+ * B=1, C=0 is the smoothing cubic B-spline. Note that the B-spline kernel is
+ * not interpolating, i.e., it does not reproduce sample values at integer
+ * positions, unless the samples are prefiltered.
+ *
+ * @author ImgLib2 developers
+ */
+public class CubicKernel implements InterpolationKernel
+{
+	/**
+	 * @return the Catmull-Rom kernel (B=0, C=1/2).
+	 */
+	public static CubicKernel catmullRom()
+	{
+		return new CubicKernel( 0, 0.5 );
+	}
+
+	/**
+	 * @return the cubic B-spline kernel (B=1, C=0).
+	 */
+	public static CubicKernel bSpline()
+	{
+		return new CubicKernel( 1, 0 );
+	}
+
+	final protected double b, c;
+
+	final protected double p0, p2, p3, q0, q1, q2, q3;
+
+	public CubicKernel( final double b, final double c )
+	{
+		this.b = b;
+		this.c = c;
+		p0 = ( 6 - 2 * b ) / 6;
+		p2 = ( -18 + 12 * b + 6 * c ) / 6;
+		p3 = ( 12 - 9 * b - 6 * c ) / 6;
+		q0 = ( 8 * b + 24 * c ) / 6;
+		q1 = ( -12 * b - 48 * c ) / 6;
+		q2 = ( 6 * b + 30 * c ) / 6;
+		q3 = ( -b - 6 * c ) / 6;
+	}
+
+	@Override
+	public int getRadius()
+	{
+		return 2;
+	}
+
+	@Override
+	public double weight( final double x )
+	{
+		final double ax = x < 0 ? -x : x;
+		if ( ax < 1 )
+			return ( p3 * ax + p2 ) * ax * ax + p0;
+		if ( ax < 2 )
+			return ( ( q3 * ax + q2 ) * ax + q1 ) * ax + q0;
+		return 0;
+	}
+}
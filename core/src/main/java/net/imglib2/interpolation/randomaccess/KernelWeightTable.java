@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+/**
+ * Precomputed weights of an {@link InterpolationKernel} for the 2*radius
+ * samples around a position, tabulated for fractional offsets of the
+ * position in [0,1] and linearly interpolated between table rows. This
+ * replaces evaluating the kernel (e.g., two sin calls for Lanczos) for every
+ * tap with a table lookup.
+ *
+ * The weights in each row are normalized to sum to 1, so that interpolating
+ * a constant image yields that constant.
+ *
+ * Instances are immutable and can be shared between interpolators.
+ *
+ * @author ImgLib2 developers
+ */
+public final class KernelWeightTable
+{
+	final static public int DEFAULT_RESOLUTION = 1024;
+
+	final private int radius;
+
+	final private int taps;
+
+	final private int resolution;
+
+	/**
+	 * (resolution + 2) rows of taps weights. The last row repeats the
+	 * second to last, so that interpolation at fraction 1 needs no special
+	 * case.
+	 */
+	final private double[] table;
+
+	public KernelWeightTable( final InterpolationKernel kernel )
+	{
+		this( kernel, DEFAULT_RESOLUTION );
+	}
+
+	/**
+	 * @param kernel
+	 *            the kernel.
+	 * @param resolution
+	 *            number of table rows per unit distance.
+	 */
+	public KernelWeightTable( final InterpolationKernel kernel, final int resolution )
+	{
+		radius = kernel.getRadius();
+		taps = 2 * radius;
+		this.resolution = resolution;
+		table = new double[ ( resolution + 2 ) * taps ];
+		for ( int i = 0; i <= resolution; ++i )
+		{
+			final double fraction = ( double ) i / resolution;
+			final int o = i * taps;
+			double sum = 0;
+			for ( int j = 0; j < taps; ++j )
+			{
+				// sample j is at distance fraction - ( j - radius + 1 ) from the position
+				final double w = kernel.weight( fraction + radius - 1 - j );
+				table[ o + j ] = w;
+				sum += w;
+			}
+			if ( sum != 0 )
+				for ( int j = 0; j < taps; ++j )
+					table[ o + j ] /= sum;
+		}
+		System.arraycopy( table, resolution * taps, table, ( resolution + 1 ) * taps, taps );
+	}
+
+	/**
+	 * @return the radius of the kernel.
+	 */
+	public int getRadius()
+	{
+		return radius;
+	}
+
+	/**
+	 * @return the number of weights per position, 2*radius.
+	 */
+	public int getNumTaps()
+	{
+		return taps;
+	}
+
+	/**
+	 * Get the weights of the samples at floor(x) - radius + 1, ...,
+	 * floor(x) + radius for a position x.
+	 *
+	 * @param fraction
+	 *            x - floor(x), in [0,1].
+	 * @param weights
+	 *            receives the getNumTaps() weights.
+	 */
+	public void weights( final double fraction, final double[] weights )
+	{
+		final double y = fraction * resolution;
+		final int i = ( int ) y;
+		final double t = y - i;
+		final int o0 = i * taps;
+		final int o1 = o0 + taps;
+		for ( int j = 0; j < taps; ++j )
+		{
+			final double w0 = table[ o0 + j ];
+			weights[ j ] = w0 + t * ( table[ o1 + j ] - w0 );
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * n-linear interpolation of many positions on a straight line at once,
+ * i.e., at start, start + step, start + 2 * step, ... This produces the same
+ * values as {@link NLinearInterpolator}, but processes the line in passes
+ * over primitive arrays: first the floor positions and fractions of all
+ * samples are computed dimension by dimension, then the 2<sup>n</sup> corner
+ * values of each sample are gathered with unit moves of one
+ * {@link RandomAccess}, and finally they are combined by successive linear
+ * interpolation along dimension 0, 1, ...
+ *
+ * @author ImgLib2 developers
+ */
+public class NLinearLineInterpolator< T extends RealType< T > >
+{
+	final protected int n;
+
+	final protected RandomAccess< T > access;
+
+	/**
+	 * corner values of the current sample, later partial results.
+	 */
+	final protected double[] corners;
+
+	/**
+	 * floor[ d ][ k ] is the floor of sample k in dimension d.
+	 */
+	protected long[][] floor;
+
+	/**
+	 * fraction[ d ][ k ] is the distance of sample k from its floor in
+	 * dimension d.
+	 */
+	protected double[][] fraction;
+
+	public NLinearLineInterpolator( final RandomAccessible< T > source )
+	{
+		n = source.numDimensions();
+		access = source.randomAccess();
+		corners = new double[ 1 << n ];
+		floor = new long[ n ][ 0 ];
+		fraction = new double[ n ][ 0 ];
+	}
+
+	/**
+	 * Interpolate values.length samples.
+	 *
+	 * @param start
+	 *            position of the first sample
+	 * @param step
+	 *            distance between successive samples
+	 * @param values
+	 *            receives the interpolated values
+	 */
+	public void interpolate( final double[] start, final double[] step, final double[] values )
+	{
+		final int length = values.length;
+		if ( floor[ 0 ].length < length )
+		{
+			floor = new long[ n ][ length ];
+			fraction = new double[ n ][ length ];
+		}
+
+		for ( int d = 0; d < n; ++d )
+		{
+			final long[] fl = floor[ d ];
+			final double[] fr = fraction[ d ];
+			final double s = start[ d ];
+			final double ds = step[ d ];
+			for ( int k = 0; k < length; ++k )
+			{
+				final double x = s + k * ds;
+				final long f = x < 0 ? ( long ) x - 1 : ( long ) x;
+				fl[ k ] = f;
+				fr[ k ] = x - f;
+			}
+		}
+
+		for ( int d = 0; d < n; ++d )
+			access.setPosition( floor[ d ][ 0 ], d );
+		final int numCorners = corners.length;
+		for ( int k = 0; k < length; ++k )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				final long distance = floor[ d ][ k ] - access.getLongPosition( d );
+				if ( distance != 0 )
+					access.move( distance, d );
+			}
+
+			// visit the corners in Gray code order, one unit move per corner
+			corners[ 0 ] = access.get().getRealDouble();
+			int code = 0;
+			for ( int i = 1; i < numCorners; ++i )
+			{
+				final int next = i ^ ( i >> 1 );
+				final int d = Integer.numberOfTrailingZeros( code ^ next );
+				if ( ( next & ( 1 << d ) ) != 0 )
+					access.fwd( d );
+				else
+					access.bck( d );
+				code = next;
+				corners[ code ] = access.get().getRealDouble();
+			}
+			if ( n > 0 )
+				access.bck( n - 1 );
+
+			int size = numCorners;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double w = fraction[ d ][ k ];
+				size >>= 1;
+				for ( int i = 0; i < size; ++i )
+				{
+					final double a = corners[ 2 * i ];
+					corners[ i ] = a + w * ( corners[ 2 * i + 1 ] - a );
+				}
+			}
+			values[ k ] = corners[ 0 ];
+		}
+	}
+}
@@ -0,0 +1,386 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.position.transform.FloorOffset;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * n-dimensional interpolation with a separable {@link InterpolationKernel},
+ * using a precomputed {@link KernelWeightTable}.
+ *
+ * The weights for each dimension are looked up once per position. The
+ * (2*radius)<sup>n</sup> samples around the position are then reduced by
+ * successive 1-dimensional passes, first along dimension 0, then along
+ * dimension 1, and so on.
+ *
+ * {@link #getLine(double[], int, double)} interpolates a whole line of
+ * positions along one dimension per call. Because the weights in all other
+ * dimensions are the same for all positions on the line, the samples are
+ * reduced to one partial sum per source coordinate along the line once, and
+ * each interpolated value only costs a 1-dimensional pass over those.
+ *
+ * @author ImgLib2 developers
+ */
+public class SeparableKernelInterpolator< T extends RealType< T > > extends FloorOffset< RandomAccess< T > > implements RealRandomAccess< T >
+{
+	final protected KernelWeightTable table;
+
+	final protected int taps;
+
+	/**
+	 * weights[ d ] are the weights of the samples in dimension d.
+	 */
+	final protected double[][] weights;
+
+	/**
+	 * samples around the current position, then partial sums.
+	 */
+	final protected double[] block;
+
+	/**
+	 * position in the block for each dimension, used while fetching.
+	 */
+	final protected int[] counter;
+
+	/**
+	 * partial sums along the line in {@link #getLine(double[], int, double)}.
+	 */
+	protected double[] columns;
+
+	final protected T interpolatedValue;
+
+	final protected boolean clip;
+
+	final protected double minValue, maxValue;
+
+	final static private long[] createOffset( final int radius, final int n )
+	{
+		final long[] offset = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			offset[ d ] = 1 - radius;
+		return offset;
+	}
+
+	/**
+	 * Creates a new interpolator.
+	 *
+	 * @param randomAccessible
+	 *            the {@link RandomAccessible} to work on
+	 * @param table
+	 *            the weights of the kernel
+	 * @param clip
+	 *            clips the value to a range, i.e., tests if the interpolated
+	 *            value is out of range
+	 * @param min
+	 *            range for clipping (range of the {@link RealType} if
+	 *            min==max)
+	 * @param max
+	 *            range for clipping (range of the {@link RealType} if
+	 *            min==max)
+	 */
+	public SeparableKernelInterpolator( final RandomAccessible< T > randomAccessible, final KernelWeightTable table, final boolean clip, final double min, final double max )
+	{
+		super( randomAccessible.randomAccess(), createOffset( table.getRadius(), randomAccessible.numDimensions() ) );
+
+		this.table = table;
+		taps = table.getNumTaps();
+		weights = new double[ n ][ taps ];
+		int size = 1;
+		for ( int d = 0; d < n; ++d )
+			size *= taps;
+		block = new double[ size ];
+		counter = new int[ n ];
+		columns = new double[ 0 ];
+
+		this.clip = clip;
+		interpolatedValue = target.get().createVariable();
+		if ( min == max )
+		{
+			minValue = interpolatedValue.getMinValue();
+			maxValue = interpolatedValue.getMaxValue();
+		}
+		else
+		{
+			minValue = min;
+			maxValue = max;
+		}
+	}
+
+	public SeparableKernelInterpolator( final SeparableKernelInterpolator< T > interpolator )
+	{
+		super( interpolator, interpolator.target.copyRandomAccess(), interpolator.offset );
+
+		table = interpolator.table;
+		taps = interpolator.taps;
+		weights = new double[ n ][ taps ];
+		block = new double[ interpolator.block.length ];
+		counter = new int[ n ];
+		columns = new double[ 0 ];
+
+		clip = interpolator.clip;
+		interpolatedValue = interpolator.interpolatedValue.copy();
+		minValue = interpolator.minValue;
+		maxValue = interpolator.maxValue;
+	}
+
+	/**
+	 * Look up the weights in dimension d for real coordinate x.
+	 */
+	final protected void updateWeights( final double x, final int d )
+	{
+		// x - floor( x )
+		table.weights( x - f( x, offset[ d ] ) + offset[ d ], weights[ d ] );
+	}
+
+	/**
+	 * Read the block of samples in all dimensions except skip (which may be
+	 * -1), starting at the current target position, into {@link #block}, in
+	 * flat order. The target is at its initial position afterwards.
+	 *
+	 * @return the number of samples.
+	 */
+	final protected int fetch( final int skip )
+	{
+		final int first = skip == 0 ? 1 : 0;
+		if ( first == n )
+		{
+			block[ 0 ] = target.get().getRealDouble();
+			return 1;
+		}
+		int i = 0;
+		while ( true )
+		{
+			for ( int j = 1; j < taps; ++j )
+			{
+				block[ i++ ] = target.get().getRealDouble();
+				target.fwd( first );
+			}
+			block[ i++ ] = target.get().getRealDouble();
+			target.move( 1 - taps, first );
+
+			int d = first + 1;
+			for ( ; d < n; ++d )
+			{
+				if ( d == skip )
+					continue;
+				if ( ++counter[ d ] < taps )
+				{
+					target.fwd( d );
+					break;
+				}
+				counter[ d ] = 0;
+				target.move( 1 - taps, d );
+			}
+			if ( d == n )
+				return i;
+		}
+	}
+
+	/**
+	 * Reduce the first length samples of {@link #block}, as read by
+	 * {@link #fetch(int)}, by 1-dimensional passes in all dimensions except
+	 * skip.
+	 *
+	 * @return the weighted sum.
+	 */
+	final protected double reduce( int length, final int skip )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( d == skip )
+				continue;
+			final double[] w = weights[ d ];
+			length /= taps;
+			for ( int i = 0, k = 0; i < length; ++i )
+			{
+				double sum = 0;
+				for ( int j = 0; j < taps; ++j )
+					sum += w[ j ] * block[ k++ ];
+				block[ i ] = sum;
+			}
+		}
+		return block[ 0 ];
+	}
+
+	final protected double clamp( final double value )
+	{
+		if ( clip )
+		{
+			if ( value < minValue )
+				return minValue;
+			else if ( value > maxValue )
+				return maxValue;
+		}
+		return value;
+	}
+
+	/**
+	 * @return the interpolated value at the current position.
+	 */
+	public double interpolate()
+	{
+		for ( int d = 0; d < n; ++d )
+			updateWeights( position[ d ], d );
+		return clamp( reduce( fetch( -1 ), -1 ) );
+	}
+
+	@Override
+	public T get()
+	{
+		interpolatedValue.setReal( interpolate() );
+		return interpolatedValue;
+	}
+
+	/**
+	 * Interpolate values.length values at the current position and the
+	 * positions reached by moving step, 2*step, ... along dimension d. The
+	 * position of the interpolator does not change.
+	 *
+	 * @param values
+	 *            receives the interpolated values.
+	 * @param d
+	 *            dimension along which the line runs.
+	 * @param step
+	 *            distance between positions on the line.
+	 */
+	public void getLine( final double[] values, final int d, final double step )
+	{
+		final int length = values.length;
+		if ( length == 0 )
+			return;
+
+		final double start = position[ d ];
+		final double end = start + ( length - 1 ) * step;
+		final long lo = f( Math.min( start, end ), offset[ d ] );
+		final long hi = f( Math.max( start, end ), offset[ d ] ) + taps - 1;
+		final long numColumns = hi - lo + 1;
+
+		if ( numColumns > ( long ) length * taps )
+		{
+			// positions are too far apart for partial sums to be shared
+			for ( int k = 0; k < length; ++k )
+			{
+				setPosition( start + k * step, d );
+				values[ k ] = interpolate();
+			}
+			setPosition( start, d );
+			return;
+		}
+
+		for ( int e = 0; e < n; ++e )
+			if ( e != d )
+				updateWeights( position[ e ], e );
+
+		if ( columns.length < numColumns )
+			columns = new double[ ( int ) numColumns ];
+		final long first = target.getLongPosition( d );
+		target.setPosition( lo, d );
+		for ( int c = 0; c < numColumns; ++c )
+		{
+			columns[ c ] = reduce( fetch( d ), d );
+			target.fwd( d );
+		}
+		target.setPosition( first, d );
+
+		final double[] w = weights[ d ];
+		for ( int k = 0; k < length; ++k )
+		{
+			final double x = start + k * step;
+			updateWeights( x, d );
+			final int c = ( int ) ( f( x, offset[ d ] ) - lo );
+			double sum = 0;
+			for ( int j = 0; j < taps; ++j )
+				sum += w[ j ] * columns[ c + j ];
+			values[ k ] = clamp( sum );
+		}
+	}
+
+	/* Positionable */
+
+	/*
+	 * Integer positions are set like real positions, i.e., the target is
+	 * placed at the first sample of the kernel support rather than at the
+	 * position itself.
+	 */
+
+	@Override
+	public void setPosition( final Localizable localizable )
+	{
+		for ( int d = 0; d < n; ++d )
+			setPosition( ( double ) localizable.getLongPosition( d ), d );
+	}
+
+	@Override
+	public void setPosition( final int[] pos )
+	{
+		for ( int d = 0; d < n; ++d )
+			setPosition( ( double ) pos[ d ], d );
+	}
+
+	@Override
+	public void setPosition( final long[] pos )
+	{
+		for ( int d = 0; d < n; ++d )
+			setPosition( ( double ) pos[ d ], d );
+	}
+
+	@Override
+	public void setPosition( final int pos, final int d )
+	{
+		setPosition( ( double ) pos, d );
+	}
+
+	@Override
+	public void setPosition( final long pos, final int d )
+	{
+		setPosition( ( double ) pos, d );
+	}
+
+	@Override
+	public SeparableKernelInterpolator< T > copy()
+	{
+		return new SeparableKernelInterpolator< T >( this );
+	}
+
+	@Override
+	public SeparableKernelInterpolator< T > copyRealRandomAccess()
+	{
+		return copy();
+	}
+}
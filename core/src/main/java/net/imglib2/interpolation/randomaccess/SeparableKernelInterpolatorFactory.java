@@ -0,0 +1,121 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealInterval;
+import net.imglib2.interpolation.InterpolatorFactory;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Creates {@link SeparableKernelInterpolator SeparableKernelInterpolators}
+ * for an {@link InterpolationKernel}. The {@link KernelWeightTable} is
+ * computed once and shared by all created interpolators.
+ *
+ * @author ImgLib2 developers
+ */
+public class SeparableKernelInterpolatorFactory< T extends RealType< T > > implements InterpolatorFactory< T, RandomAccessible< T > >
+{
+	final protected KernelWeightTable table;
+
+	final protected boolean clipping;
+
+	final protected double min, max;
+
+	/**
+	 * @param kernel
+	 *            the interpolation kernel
+	 * @param clipping
+	 *            the interpolation can create values that are bigger or
+	 *            smaller than the original values, so they can be clipped to
+	 *            the range of the {@link RealType} if wanted
+	 */
+	public SeparableKernelInterpolatorFactory( final InterpolationKernel kernel, final boolean clipping )
+	{
+		this( new KernelWeightTable( kernel ), clipping, 0, 0 );
+	}
+
+	/**
+	 * @param kernel
+	 *            the interpolation kernel
+	 * @param min
+	 *            interpolated values are clipped to [min, max]
+	 * @param max
+	 *            interpolated values are clipped to [min, max]
+	 */
+	public SeparableKernelInterpolatorFactory( final InterpolationKernel kernel, final double min, final double max )
+	{
+		this( new KernelWeightTable( kernel ), true, min, max );
+	}
+
+	public SeparableKernelInterpolatorFactory( final KernelWeightTable table, final boolean clipping, final double min, final double max )
+	{
+		this.table = table;
+		this.clipping = clipping;
+		this.min = min;
+		this.max = max;
+	}
+
+	@Override
+	public SeparableKernelInterpolator< T > create( final RandomAccessible< T > randomAccessible )
+	{
+		return new SeparableKernelInterpolator< T >( randomAccessible, table, clipping, min, max );
+	}
+
+	/**
+	 * For now, ignore the {@link RealInterval} and return
+	 * {@link #create(RandomAccessible)}.
+	 */
+	@Override
+	public SeparableKernelInterpolator< T > create( final RandomAccessible< T > randomAccessible, final RealInterval interval )
+	{
+		return create( randomAccessible );
+	}
+
+	/**
+	 * @return the precomputed kernel weights
+	 */
+	public KernelWeightTable getTable()
+	{
+		return table;
+	}
+
+	/**
+	 * @return if clipping will be performed
+	 */
+	public boolean getClipping()
+	{
+		return clipping;
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Table-driven, separable Lanczos interpolation (see {@link LanczosKernel}
+ * and {@link SeparableKernelInterpolator}). Produces the same values as
+ * {@link LanczosInterpolatorFactory}, up to table precision and
+ * normalization of the weights, without evaluating or looking up the kernel
+ * for every sample.
+ *
+ * @author ImgLib2 developers
+ */
+public class SeparableLanczosInterpolatorFactory< T extends RealType< T > > extends SeparableKernelInterpolatorFactory< T >
+{
+	/**
+	 * @param alpha
+	 *            the rectangular radius of the window for performing the
+	 *            lanczos interpolation
+	 * @param clipping
+	 *            the lanczos-interpolation can create values that are bigger
+	 *            or smaller than the original values, so they can be clipped
+	 *            to the range of the {@link RealType} if wanted
+	 */
+	public SeparableLanczosInterpolatorFactory( final int alpha, final boolean clipping )
+	{
+		super( new LanczosKernel( alpha ), clipping );
+	}
+
+	/**
+	 * @param alpha
+	 *            the rectangular radius of the window for performing the
+	 *            lanczos interpolation
+	 * @param min
+	 *            interpolated values are clipped to [min, max]
+	 * @param max
+	 *            interpolated values are clipped to [min, max]
+	 */
+	public SeparableLanczosInterpolatorFactory( final int alpha, final double min, final double max )
+	{
+		super( new LanczosKernel( alpha ), min, max );
+	}
+
+	/**
+	 * Creates a factory with standard parameters (do clipping, alpha=3)
+	 */
+	public SeparableLanczosInterpolatorFactory()
+	{
+		this( 3, true );
+	}
+
+	/**
+	 * @return rectangular radius of the window for performing the lanczos
+	 *         interpolation
+	 */
+	public int getAlpha()
+	{
+		return table.getRadius();
+	}
+}
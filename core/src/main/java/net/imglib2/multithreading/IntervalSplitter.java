@@ -0,0 +1,423 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.multithreading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.AbstractBit64Type;
+import net.imglib2.type.numeric.integer.Unsigned12BitType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Splits intervals into parts for parallel processing, and processes the
+ * elements of {@link IterableInterval IterableIntervals} in parallel.
+ *
+ * <p>
+ * Intervals are split recursively in halves along the outermost dimension that
+ * can be split. Wherever possible, parts of {@link AbstractCellImg cell
+ * images} are aligned to cell boundaries and parts of {@link PlanarImg planar
+ * images} to rows, so that each part touches as few storage arrays as
+ * possible. Parts are disjoint boxes, but not necessarily contiguous ranges in
+ * flat iteration order: if no aligned cut exists in an outer dimension, an
+ * inner dimension is cut, and each part then spans the whole extent of the
+ * outer dimension. Without alignment, only the outermost dimension whose size
+ * is larger than one is cut, so parts are contiguous.
+ *
+ * <p>
+ * Types such as {@link BitType} or {@link AbstractBit64Type} pack several
+ * pixels into one storage word, and writing a pixel modifies the whole word.
+ * Images of these types are split only at pixels that start a new word, so
+ * that parts never share a word; a part that cannot be split this way is not
+ * split at all. Other intervals of packed types (e.g. views) are not split,
+ * because their storage layout is unknown.
+ *
+ * <p>
+ * Intervals are split into more parts than there are threads, and the parts
+ * are processed by {@link TaskExecutors#run(ExecutorService, List, int)},
+ * which balances the load dynamically.
+ *
+ * @author ImgLib2 developers
+ */
+public final class IntervalSplitter
+{
+	/**
+	 * How many parts to create per thread.
+	 */
+	public static final int PARTS_PER_THREAD = 4;
+
+	private IntervalSplitter()
+	{}
+
+	/**
+	 * An operation that is applied to every element of an
+	 * {@link IterableInterval}. It may be applied to several elements
+	 * concurrently and must therefore be thread-safe.
+	 */
+	public interface ElementOperation< T >
+	{
+		public void apply( T element );
+	}
+
+	/**
+	 * An operation that is applied to every part of a split interval. It may be
+	 * applied to several parts concurrently and must therefore be thread-safe.
+	 */
+	public interface IntervalOperation
+	{
+		public void apply( Interval part );
+	}
+
+	/**
+	 * Split interval into (at most) numParts parts.
+	 *
+	 * @param interval
+	 *            the interval to split.
+	 * @param numParts
+	 *            the desired number of parts.
+	 * @return list of disjoint intervals covering interval, each a contiguous
+	 *         range in flat iteration order, in flat iteration order.
+	 */
+	public static List< Interval > split( final Interval interval, final int numParts )
+	{
+		return split( interval, numParts, null );
+	}
+
+	/**
+	 * Split interval into (at most) numParts parts. Wherever possible, parts
+	 * are aligned to a grid of blocks of the given size, starting at
+	 * coordinate 0.
+	 *
+	 * @param interval
+	 *            the interval to split.
+	 * @param numParts
+	 *            the desired number of parts.
+	 * @param blockSize
+	 *            size of the blocks in each dimension, or {@code null} if parts
+	 *            need not be aligned.
+	 * @return list of disjoint intervals covering interval. If blockSize is
+	 *         {@code null}, each interval is a contiguous range in flat
+	 *         iteration order and the list is in flat iteration order.
+	 *         Otherwise, neither is guaranteed.
+	 */
+	public static List< Interval > split( final Interval interval, final int numParts, final int[] blockSize )
+	{
+		final int n = interval.numDimensions();
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		interval.min( min );
+		interval.max( max );
+		final ArrayList< Interval > parts = new ArrayList< Interval >( Math.max( numParts, 1 ) );
+		split( min, max, numParts, blockSize, false, parts );
+		return parts;
+	}
+
+	/**
+	 * @param strict
+	 *            if true, only cut at multiples of blockSize, otherwise fall
+	 *            back to any cut if no aligned cut exists.
+	 */
+	private static void split( final long[] min, final long[] max, final int numParts, final int[] blockSize, final boolean strict, final List< Interval > parts )
+	{
+		if ( numParts > 1 )
+		{
+			final int numLeftParts = numParts / 2;
+			final int n = min.length;
+
+			// try aligned cuts first, then any cut
+			for ( int pass = blockSize == null ? 1 : 0; pass < ( strict ? 1 : 2 ); ++pass )
+			{
+				for ( int d = n - 1; d >= 0; --d )
+				{
+					final long block = ( pass == 0 ) ? blockSize[ d ] : 1;
+					final long size = max[ d ] - min[ d ] + 1;
+					long cut = min[ d ] + size * numLeftParts / numParts;
+					cut = Math.round( ( double ) cut / block ) * block;
+					if ( cut <= min[ d ] )
+						cut = ( min[ d ] / block + 1 ) * block;
+					if ( cut > max[ d ] )
+						cut = ( max[ d ] / block ) * block;
+					if ( cut > min[ d ] && cut <= max[ d ] )
+					{
+						final long[] leftMax = max.clone();
+						leftMax[ d ] = cut - 1;
+						final long[] rightMin = min.clone();
+						rightMin[ d ] = cut;
+						split( min, leftMax, numLeftParts, blockSize, strict, parts );
+						split( rightMin, max, numParts - numLeftParts, blockSize, strict, parts );
+						return;
+					}
+				}
+			}
+		}
+		parts.add( new FinalInterval( min, max ) );
+	}
+
+	/**
+	 * Get the size of the blocks that parts of interval should be aligned to.
+	 * For {@link AbstractCellImg} this is the cell size. For {@link PlanarImg}
+	 * this is a single row. For {@link ArrayImg} and {@link PlanarImg} of
+	 * packed types (see {@link #getPixelsPerWord(Object)}), blocks start at
+	 * pixels that start a new storage word.
+	 *
+	 * @return block size, or {@code null} if there is no preferred alignment.
+	 */
+	public static int[] getBlockSize( final Interval interval )
+	{
+		if ( interval instanceof AbstractCellImg )
+		{
+			final int[] blockSize = new int[ interval.numDimensions() ];
+			( ( AbstractCellImg< ?, ?, ?, ? > ) interval ).getCells().cellDimensions( blockSize );
+			return blockSize;
+		}
+		else if ( interval instanceof PlanarImg && interval.numDimensions() > 0 )
+		{
+			final long pixelsPerWord = getPixelsPerWord( ( ( PlanarImg< ?, ? > ) interval ).firstElement() );
+			if ( pixelsPerWord > 1 )
+				return wordAlignedBlockSize( interval, Math.min( 2, interval.numDimensions() ), pixelsPerWord );
+			final int[] blockSize = new int[ interval.numDimensions() ];
+			for ( int d = 0; d < blockSize.length; ++d )
+				blockSize[ d ] = 1;
+			blockSize[ 0 ] = ( int ) interval.dimension( 0 );
+			return blockSize;
+		}
+		else if ( interval instanceof ArrayImg && interval.numDimensions() > 0 )
+		{
+			final long pixelsPerWord = getPixelsPerWord( ( ( ArrayImg< ?, ? > ) interval ).firstElement() );
+			if ( pixelsPerWord > 1 )
+				return wordAlignedBlockSize( interval, interval.numDimensions(), pixelsPerWord );
+		}
+		return null;
+	}
+
+	/**
+	 * Get the number of pixels after which pixel and storage word boundaries
+	 * coincide again, i.e., pixel i starts a new word if i is a multiple of
+	 * this number. Types that pack several pixels into a word are
+	 * {@link BitType} and {@link Unsigned12BitType} (stored in ints) and
+	 * {@link AbstractBit64Type} (stored in longs).
+	 *
+	 * @return the number of pixels, 1 if type does not share words between
+	 *         pixels.
+	 */
+	public static long getPixelsPerWord( final Object type )
+	{
+		final int bitsPerWord;
+		final int bitsPerPixel;
+		if ( type instanceof AbstractBit64Type )
+		{
+			bitsPerWord = Long.SIZE;
+			bitsPerPixel = ( ( AbstractBit64Type< ? > ) type ).getBitsPerPixel();
+		}
+		else if ( type instanceof BitType )
+		{
+			bitsPerWord = Integer.SIZE;
+			bitsPerPixel = 1;
+		}
+		else if ( type instanceof Unsigned12BitType )
+		{
+			bitsPerWord = Integer.SIZE;
+			bitsPerPixel = 12;
+		}
+		else
+			return 1;
+		return bitsPerWord / gcd( bitsPerWord, bitsPerPixel );
+	}
+
+	/**
+	 * Block size for an image whose first numStorageDimensions dimensions
+	 * are stored in one flat array (the whole image for {@link ArrayImg}, a
+	 * plane for {@link PlanarImg}): blocks span all dimensions below some
+	 * dimension e, are cut in e at flat indices that are multiples of
+	 * pixelsPerWord, and have size 1 above e. e is the lowest dimension for
+	 * which all strides above it are multiples of pixelsPerWord, so that
+	 * every contiguous run of a block starts a new word.
+	 */
+	private static int[] wordAlignedBlockSize( final Interval interval, final int numStorageDimensions, final long pixelsPerWord )
+	{
+		final int[] blockSize = new int[ interval.numDimensions() ];
+		for ( int d = 0; d < blockSize.length; ++d )
+			blockSize[ d ] = 1;
+		long stride = 1;
+		int e = 0;
+		while ( e < numStorageDimensions - 1 && ( stride * interval.dimension( e ) ) % pixelsPerWord != 0 )
+		{
+			blockSize[ e ] = ( int ) interval.dimension( e );
+			stride *= interval.dimension( e );
+			++e;
+		}
+		blockSize[ e ] = ( int ) ( pixelsPerWord / gcd( stride, pixelsPerWord ) );
+		return blockSize;
+	}
+
+	private static long gcd( final long a, final long b )
+	{
+		return b == 0 ? a : gcd( b, a % b );
+	}
+
+	/**
+	 * @return whether the elements of interval share storage words, so that
+	 *         it must only be split at word boundaries.
+	 */
+	private static boolean isPacked( final Interval interval )
+	{
+		return interval instanceof IterableInterval && ( ( IterableInterval< ? > ) interval ).size() > 0 && getPixelsPerWord( ( ( IterableInterval< ? > ) interval ).firstElement() ) > 1;
+	}
+
+	/**
+	 * Split interval into parts aligned to its storage (see
+	 * {@link #getBlockSize(Interval)}) and apply operation to every part, using
+	 * the shared {@link TaskExecutors#getDefault() thread pool}.
+	 */
+	public static void forEachPart( final Interval interval, final IntervalOperation operation )
+	{
+		final ExecutorService service = TaskExecutors.getDefault();
+		forEachPart( interval, operation, service, TaskExecutors.getParallelism( service ) );
+	}
+
+	/**
+	 * Split interval into parts aligned to its storage (see
+	 * {@link #getBlockSize(Interval)}) and apply operation to every part.
+	 *
+	 * @param interval
+	 *            the interval to split.
+	 * @param operation
+	 *            the operation to apply to every part.
+	 * @param service
+	 *            service on which to run the computation.
+	 * @param numThreads
+	 *            maximum number of parts to process concurrently.
+	 */
+	public static void forEachPart( final Interval interval, final IntervalOperation operation, final ExecutorService service, final int numThreads )
+	{
+		final int numParts = numThreads <= 1 ? 1 : numThreads * PARTS_PER_THREAD;
+		final int n = interval.numDimensions();
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		interval.min( min );
+		interval.max( max );
+		final ArrayList< Interval > parts = new ArrayList< Interval >( numParts );
+		split( min, max, numParts, getBlockSize( interval ), isPacked( interval ), parts );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( parts.size() );
+		for ( final Interval part : parts )
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					operation.apply( part );
+				}
+			} );
+		TaskExecutors.run( service, tasks, numThreads );
+	}
+
+	/**
+	 * Apply operation to every element of iterable, using the shared
+	 * {@link TaskExecutors#getDefault() thread pool}.
+	 */
+	public static < T > void forEach( final IterableInterval< T > iterable, final ElementOperation< T > operation )
+	{
+		final ExecutorService service = TaskExecutors.getDefault();
+		forEach( iterable, operation, service, TaskExecutors.getParallelism( service ) );
+	}
+
+	/**
+	 * Apply operation to every element of iterable. Elements are processed in
+	 * parallel, in no particular order.
+	 *
+	 * <p>
+	 * If iterable is a {@link RandomAccessibleInterval} containing all pixels
+	 * of its interval, it is split into storage-aligned sub-intervals (see
+	 * {@link #forEachPart(Interval, IntervalOperation, ExecutorService, int)}).
+	 * Otherwise, the flat iteration order is split into ranges, which are
+	 * processed by cursors moved to the start of each range.
+	 *
+	 * @param iterable
+	 *            the elements to process.
+	 * @param operation
+	 *            the operation to apply to every element.
+	 * @param service
+	 *            service on which to run the computation.
+	 * @param numThreads
+	 *            maximum number of parts to process concurrently.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public static < T > void forEach( final IterableInterval< T > iterable, final ElementOperation< T > operation, final ExecutorService service, final int numThreads )
+	{
+		if ( iterable instanceof RandomAccessibleInterval && iterable.size() == Intervals.numElements( iterable ) )
+		{
+			final RandomAccessibleInterval< T > source = ( RandomAccessibleInterval< T > ) iterable;
+			forEachPart( iterable, new IntervalOperation()
+			{
+				@Override
+				public void apply( final Interval part )
+				{
+					final Cursor< T > cursor = Views.flatIterable( Views.interval( source, part ) ).cursor();
+					while ( cursor.hasNext() )
+						operation.apply( cursor.next() );
+				}
+			}, service, numThreads );
+		}
+		else
+		{
+			// the storage layout of packed elements is unknown here
+			final int numParts = numThreads <= 1 || isPacked( iterable ) ? 1 : numThreads * PARTS_PER_THREAD;
+			final long size = iterable.size();
+			final ArrayList< Runnable > tasks = new ArrayList< Runnable >( numParts );
+			for ( final Chunk chunk : SimpleMultiThreading.divideIntoChunks( size, numParts ) )
+				tasks.add( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						final Cursor< T > cursor = iterable.cursor();
+						cursor.jumpFwd( chunk.getStartPosition() );
+						for ( long i = 0; i < chunk.getLoopSize(); ++i )
+							operation.apply( cursor.next() );
+					}
+				} );
+			TaskExecutors.run( service, tasks, numThreads );
+		}
+	}
+}
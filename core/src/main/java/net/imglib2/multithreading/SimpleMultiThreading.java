@@ -128,6 +128,12 @@ public class SimpleMultiThreading
 	  return new Thread[numThreads];
 	}
 
+	/**
+	 * Start the given threads and wait until all of them are done. Each call
+	 * creates new threads, so threads that wait for each other (e.g. on a
+	 * barrier) work. Independent tasks should rather use
+	 * {@link #runAndJoin(Runnable[])}.
+	 */
 	public static void startAndJoin(Thread[] threads)
 	{
 		if ( 1 == threads.length )
@@ -152,6 +158,19 @@ public class SimpleMultiThreading
 		}
 	}
 
+	/**
+	 * Run the given tasks on the shared {@link TaskExecutors#getDefault()
+	 * thread pool} (and the calling thread) and wait until all of them are
+	 * done. No new threads are created, but the tasks may not all run
+	 * concurrently, so they must not wait for each other. Passing the
+	 * {@link Thread}s of {@link #startAndJoin(Thread[])} runs their
+	 * {@link Thread#run()} methods without starting them.
+	 */
+	public static void runAndJoin( final Runnable[] tasks )
+	{
+		TaskExecutors.run( TaskExecutors.getDefault(), tasks, tasks.length );
+	}
+
 	public static void start(Thread[] threads)
 	{
 		for (int ithread = 0; ithread < threads.length; ++ithread)
@@ -0,0 +1,342 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.multithreading;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs groups of tasks on an {@link ExecutorService} and waits for them to
+ * complete. By default, a single shared, bounded thread pool is used for all
+ * multi-threaded algorithms, so that no threads are created per call.
+ *
+ * <p>
+ * Tasks are not submitted to the {@link ExecutorService} individually.
+ * Instead, up to <em>parallelism</em> workers are started that take the next
+ * pending task until all tasks are done. One of these workers is the calling
+ * thread itself. This balances the load if tasks take different amounts of
+ * time, bounds the number of threads working on one group of tasks, and makes
+ * it safe to run tasks that themselves run groups of tasks on the same
+ * {@link ExecutorService}: if no pool thread is available, the calling thread
+ * simply runs all tasks itself.
+ *
+ * @author ImgLib2 developers
+ */
+public final class TaskExecutors
+{
+	private static ExecutorService defaultService = null;
+
+	private TaskExecutors()
+	{}
+
+	/**
+	 * Get the shared {@link ExecutorService} that is used by default. Unless
+	 * it was replaced by {@link #setDefault(ExecutorService)}, this is a pool
+	 * of daemon threads, one per available processor.
+	 *
+	 * @return the shared {@link ExecutorService}.
+	 */
+	public static synchronized ExecutorService getDefault()
+	{
+		if ( defaultService == null )
+			defaultService = newThreadPool( Runtime.getRuntime().availableProcessors() );
+		return defaultService;
+	}
+
+	/**
+	 * Replace the shared {@link ExecutorService}. The previous service is not
+	 * shut down.
+	 *
+	 * @param service
+	 *            the new shared service, or {@code null} to create a new
+	 *            default thread pool when it is next needed.
+	 */
+	public static synchronized void setDefault( final ExecutorService service )
+	{
+		defaultService = service;
+	}
+
+	/**
+	 * Create a fixed-size pool of daemon threads.
+	 *
+	 * @param numThreads
+	 *            number of threads in the pool.
+	 * @return a new {@link ExecutorService}.
+	 */
+	public static ExecutorService newThreadPool( final int numThreads )
+	{
+		final AtomicInteger threadCount = new AtomicInteger();
+		final ThreadFactory threadFactory = new ThreadFactory()
+		{
+			@Override
+			public Thread newThread( final Runnable r )
+			{
+				final Thread thread = new Thread( r, "imglib2-worker-" + threadCount.incrementAndGet() );
+				thread.setDaemon( true );
+				return thread;
+			}
+		};
+		final ThreadPoolExecutor pool = new ThreadPoolExecutor( numThreads, numThreads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue< Runnable >(), threadFactory );
+		pool.allowCoreThreadTimeOut( true );
+		return pool;
+	}
+
+	/**
+	 * Get the number of tasks that service can run concurrently. For a
+	 * {@link ThreadPoolExecutor} this is the maximum pool size plus one (the
+	 * calling thread also runs tasks). For other services, the number of
+	 * available processors is assumed.
+	 *
+	 * @param service
+	 * @return the number of tasks that can run concurrently.
+	 */
+	public static int getParallelism( final ExecutorService service )
+	{
+		if ( service instanceof ThreadPoolExecutor )
+		{
+			final int poolSize = ( ( ThreadPoolExecutor ) service ).getMaximumPoolSize();
+			return poolSize == Integer.MAX_VALUE ? poolSize : poolSize + 1;
+		}
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Run all tasks and wait until they are done. Uses the number of available
+	 * processors as parallelism.
+	 *
+	 * @param service
+	 *            the service on which to run the tasks.
+	 * @param tasks
+	 *            the tasks.
+	 */
+	public static void run( final ExecutorService service, final List< ? extends Runnable > tasks )
+	{
+		run( service, tasks, Runtime.getRuntime().availableProcessors() );
+	}
+
+	/**
+	 * Run all tasks and wait until they are done. At most parallelism tasks run
+	 * concurrently, one of them on the calling thread. If a task throws an
+	 * exception, no further tasks are started and the exception is rethrown
+	 * (wrapped in a {@link RuntimeException} if it is a checked exception).
+	 *
+	 * @param service
+	 *            the service on which to run the tasks.
+	 * @param tasks
+	 *            the tasks.
+	 * @param parallelism
+	 *            maximum number of tasks to run concurrently.
+	 */
+	public static void run( final ExecutorService service, final List< ? extends Runnable > tasks, final int parallelism )
+	{
+		final int numTasks = tasks.size();
+		final int numWorkers = Math.min( parallelism, numTasks );
+		if ( numWorkers <= 1 )
+		{
+			for ( final Runnable task : tasks )
+				task.run();
+			return;
+		}
+
+		final AtomicInteger nextTask = new AtomicInteger();
+		final Runnable worker = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					for ( int i = nextTask.getAndIncrement(); i < numTasks; i = nextTask.getAndIncrement() )
+						tasks.get( i ).run();
+				}
+				catch ( final RuntimeException e )
+				{
+					nextTask.set( numTasks );
+					throw e;
+				}
+				catch ( final Error e )
+				{
+					nextTask.set( numTasks );
+					throw e;
+				}
+			}
+		};
+
+		// each submitted worker is either started by the service or
+		// withdrawn by the calling thread, whichever claims it first
+		final ArrayList< Future< ? > > futures = new ArrayList< Future< ? > >( numWorkers - 1 );
+		final ArrayList< AtomicBoolean > claims = new ArrayList< AtomicBoolean >( numWorkers - 1 );
+		for ( int i = 1; i < numWorkers; ++i )
+		{
+			final AtomicBoolean claimed = new AtomicBoolean();
+			claims.add( claimed );
+			futures.add( service.submit( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if ( claimed.compareAndSet( false, true ) )
+						worker.run();
+				}
+			} ) );
+		}
+
+		Throwable failure = null;
+		try
+		{
+			worker.run();
+		}
+		catch ( final Throwable e )
+		{
+			failure = e;
+		}
+
+		// workers that did not start yet are not needed anymore
+		boolean interrupted = false;
+		for ( int i = 0; i < futures.size(); ++i )
+		{
+			final Future< ? > future = futures.get( i );
+			if ( claims.get( i ).compareAndSet( false, true ) )
+			{
+				future.cancel( false );
+				continue;
+			}
+			while ( true )
+			{
+				try
+				{
+					future.get();
+					break;
+				}
+				catch ( final ExecutionException e )
+				{
+					if ( failure == null )
+						failure = e.getCause();
+					break;
+				}
+				catch ( final InterruptedException e )
+				{
+					interrupted = true;
+				}
+			}
+		}
+		if ( interrupted )
+			Thread.currentThread().interrupt();
+
+		if ( failure instanceof RuntimeException )
+			throw ( RuntimeException ) failure;
+		else if ( failure instanceof Error )
+			throw ( Error ) failure;
+		else if ( failure != null )
+			throw new RuntimeException( failure );
+	}
+
+	/**
+	 * Run all tasks and wait until they are done. See
+	 * {@link #run(ExecutorService, List, int)}.
+	 *
+	 * @param service
+	 *            the service on which to run the tasks.
+	 * @param tasks
+	 *            the tasks.
+	 * @param parallelism
+	 *            maximum number of tasks to run concurrently.
+	 */
+	public static void run( final ExecutorService service, final Runnable[] tasks, final int parallelism )
+	{
+		run( service, Arrays.asList( tasks ), parallelism );
+	}
+
+	/**
+	 * Run all tasks and wait until they are done. See
+	 * {@link #run(ExecutorService, List, int)}.
+	 *
+	 * @param service
+	 *            the service on which to run the tasks.
+	 * @param tasks
+	 *            the tasks.
+	 * @param parallelism
+	 *            maximum number of tasks to run concurrently.
+	 * @return the results of the tasks, in the order of the tasks.
+	 */
+	public static < T > List< T > invokeAll( final ExecutorService service, final List< ? extends Callable< T > > tasks, final int parallelism )
+	{
+		final int numTasks = tasks.size();
+		final Object[] results = new Object[ numTasks ];
+		final ArrayList< Runnable > runnables = new ArrayList< Runnable >( numTasks );
+		for ( int i = 0; i < numTasks; ++i )
+		{
+			final int taskNum = i;
+			runnables.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						results[ taskNum ] = tasks.get( taskNum ).call();
+					}
+					catch ( final RuntimeException e )
+					{
+						throw e;
+					}
+					catch ( final Exception e )
+					{
+						throw new RuntimeException( e );
+					}
+				}
+			} );
+		}
+		run( service, runnables, parallelism );
+
+		final ArrayList< T > list = new ArrayList< T >( numTasks );
+		for ( int i = 0; i < numTasks; ++i )
+		{
+			@SuppressWarnings( "unchecked" )
+			final T result = ( T ) results[ i ];
+			list.add( result );
+		}
+		return list;
+	}
+}
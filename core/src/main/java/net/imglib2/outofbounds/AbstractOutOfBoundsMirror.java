@@ -227,6 +227,18 @@ public abstract class AbstractOutOfBoundsMirror< T > implements OutOfBounds< T >
 	@Override
 	public void move( final long distance, final int d )
 	{
+		if ( !isOutOfBounds )
+		{
+			final long x = zeroMinPos[ d ] + distance;
+			if ( x >= 0 && x < dimension[ d ] )
+			{
+				/* inside before and after the move, nothing is mirrored */
+				zeroMinPos[ d ] = x;
+				inc[ d ] = true;
+				outOfBoundsRandomAccess.move( distance, d );
+				return;
+			}
+		}
 		setPosition( getLongPosition( d ) + distance, d );
 	}
 
@@ -212,6 +212,17 @@ public class OutOfBoundsBorder< T > extends AbstractLocalizable implements OutOf
 	@Override
 	public void move( final long distance, final int d )
 	{
+		if ( !isOutOfBounds )
+		{
+			final long p = position[ d ] + distance;
+			if ( p >= min[ d ] && p <= max[ d ] )
+			{
+				/* inside before and after the move */
+				position[ d ] = p;
+				outOfBoundsRandomAccess.move( distance, d );
+				return;
+			}
+		}
 		setPosition( getLongPosition( d ) + distance, d );
 	}
 
@@ -92,6 +92,13 @@ final public class OutOfBoundsMirrorDoubleBoundary< T > extends AbstractOutOfBou
 	final public void fwd( final int d ) 
 	{
 		final long x = ++zeroMinPos[ d ];
+		if ( !isOutOfBounds && x < dimension[ d ] )
+		{
+			/* inside before and after the move, nothing is mirrored */
+			inc[ d ] = true;
+			outOfBoundsRandomAccess.fwd( d );
+			return;
+		}
 		if ( x == 0 )
 		{
 			dimIsOutOfBounds[ d ] = false;
@@ -121,6 +128,13 @@ final public class OutOfBoundsMirrorDoubleBoundary< T > extends AbstractOutOfBou
 	final public void bck( final int d )
 	{
 		final long x = zeroMinPos[ d ]--;
+		if ( !isOutOfBounds && x > 0 )
+		{
+			/* inside before and after the move, nothing is mirrored */
+			inc[ d ] = true;
+			outOfBoundsRandomAccess.bck( d );
+			return;
+		}
 		if ( x == 0 )
 			dimIsOutOfBounds[ d ] = isOutOfBounds = true;
 		else if ( x == dimension[ d ] )
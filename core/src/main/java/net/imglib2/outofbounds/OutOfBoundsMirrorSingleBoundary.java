@@ -96,6 +96,13 @@ public class OutOfBoundsMirrorSingleBoundary< T > extends AbstractOutOfBoundsMir
 	final public void fwd( final int d ) 
 	{
 		final long x = ++zeroMinPos[ d ];
+		if ( !isOutOfBounds && x < dimension[ d ] )
+		{
+			/* inside before and after the move, nothing is mirrored */
+			inc[ d ] = true;
+			outOfBoundsRandomAccess.fwd( d );
+			return;
+		}
 		if ( x == 0 )
 		{
 			dimIsOutOfBounds[ d ] = false;
@@ -131,6 +138,13 @@ public class OutOfBoundsMirrorSingleBoundary< T > extends AbstractOutOfBoundsMir
 	final public void bck( final int d ) 
 	{
 		final long x = zeroMinPos[ d ]--;
+		if ( !isOutOfBounds && x > 0 )
+		{
+			/* inside before and after the move, nothing is mirrored */
+			inc[ d ] = true;
+			outOfBoundsRandomAccess.bck( d );
+			return;
+		}
 		if ( x == 0 )
 			dimIsOutOfBounds[ d ] = isOutOfBounds = true;
 		else if ( x == dimension[ d ] )
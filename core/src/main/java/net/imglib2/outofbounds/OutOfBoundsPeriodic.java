@@ -178,6 +178,12 @@ public class OutOfBoundsPeriodic< T > extends AbstractLocalizable implements Out
 	final public void fwd( final int d )
 	{
 		final long p = ++position[ d ];
+		if ( !isOutOfBounds && p <= max[ d ] )
+		{
+			/* inside before and after the move */
+			outOfBoundsRandomAccess.fwd( d );
+			return;
+		}
 		if ( p == min[ d ] )
 		{
 			dimIsOutOfBounds[ d ] = false;
@@ -197,6 +203,12 @@ public class OutOfBoundsPeriodic< T > extends AbstractLocalizable implements Out
 	final public void bck( final int d )
 	{
 		final long p = --position[ d ];
+		if ( !isOutOfBounds && p >= min[ d ] )
+		{
+			/* inside before and after the move */
+			outOfBoundsRandomAccess.bck( d );
+			return;
+		}
 		if ( p == beforeMin[ d ] )
 			dimIsOutOfBounds[ d ] = isOutOfBounds = true;
 		else if ( p == max[ d ] )
@@ -242,6 +254,17 @@ public class OutOfBoundsPeriodic< T > extends AbstractLocalizable implements Out
 	@Override
 	public void move( final long distance, final int d )
 	{
+		if ( !isOutOfBounds )
+		{
+			final long p = position[ d ] + distance;
+			if ( p >= min[ d ] && p <= max[ d ] )
+			{
+				/* inside before and after the move */
+				position[ d ] = p;
+				outOfBoundsRandomAccess.move( distance, d );
+				return;
+			}
+		}
 		setPosition( getLongPosition( d ) + distance, d );
 	}
 
@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.type.numeric.integer;
+
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.NativeType;
+
+/**
+ * Base class for unsigned integer types of 1 to 63 bits that are packed
+ * densely into a {@link LongAccess}. Pixel i occupies the bits
+ * [i * nBits, (i + 1) * nBits) of the storage, so a pixel may straddle two
+ * longs. If nBits divides 64, pixels are always aligned within a single long
+ * and every access touches one long only.
+ *
+ * <p>
+ * Writing a pixel modifies the long(s) it shares with its neighbors, so
+ * neighboring pixels must not be written concurrently.
+ * </p>
+ *
+ * @author ImgLib2 developers
+ */
+public abstract class AbstractBit64Type<T extends AbstractBit64Type<T>> extends AbstractIntegerType<T> implements NativeType<T>
+{
+	// the index of the pixel
+	protected int i = 0;
+
+	final protected NativeImg<?, ? extends LongAccess> img;
+
+	// the DataAccess that holds the information
+	protected LongAccess dataAccess;
+
+	// the number of bits per pixel
+	final protected int nBits;
+
+	// the lowest nBits bits set
+	final protected long mask;
+
+	// this is the constructor if you want it to read from an array
+	public AbstractBit64Type( final NativeImg<?, ? extends LongAccess> bitStorage, final int nBits )
+	{
+		checkNumBits( nBits );
+		img = bitStorage;
+		this.nBits = nBits;
+		mask = ( 1l << nBits ) - 1;
+		updateIndex( 0 );
+	}
+
+	// this is the constructor if you want it to be a variable
+	public AbstractBit64Type( final long value, final int nBits )
+	{
+		this( new LongArray( 1 ), nBits );
+		setBits( value );
+	}
+
+	// this is the constructor if you want to specify the dataAccess
+	public AbstractBit64Type( final LongAccess access, final int nBits )
+	{
+		checkNumBits( nBits );
+		img = null;
+		this.nBits = nBits;
+		mask = ( 1l << nBits ) - 1;
+		updateIndex( 0 );
+		dataAccess = access;
+	}
+
+	private static void checkNumBits( final int nBits )
+	{
+		if ( nBits < 1 || nBits > 63 )
+			throw new RuntimeException( "Number of bits per pixel must be in [1, 63], but is " + nBits + "." );
+	}
+
+	/**
+	 * @return the value of the current pixel as an unsigned integer.
+	 */
+	protected long getBits()
+	{
+		final long k = ( long ) i * nBits;
+		final int word = ( int ) ( k >>> 6 );
+		final int shift = ( int ) ( k & 63 );
+		final long value = dataAccess.getValue( word ) >>> shift;
+		final int antiShift = 64 - shift;
+		if ( antiShift >= nBits )
+			return value & mask;
+		return ( value | ( dataAccess.getValue( word + 1 ) << antiShift ) ) & mask;
+	}
+
+	/**
+	 * Set the current pixel to the lowest nBits bits of value.
+	 */
+	protected void setBits( final long value )
+	{
+		final long k = ( long ) i * nBits;
+		final int word = ( int ) ( k >>> 6 );
+		final int shift = ( int ) ( k & 63 );
+		final long v = value & mask;
+		dataAccess.setValue( word, ( dataAccess.getValue( word ) & ~( mask << shift ) ) | ( v << shift ) );
+		final int antiShift = 64 - shift;
+		if ( antiShift < nBits )
+			dataAccess.setValue( word + 1, ( dataAccess.getValue( word + 1 ) & ~( mask >>> antiShift ) ) | ( v >>> antiShift ) );
+	}
+
+	@Override
+	public void updateContainer( final Object c ) { dataAccess = img.update( c ); }
+
+	@Override
+	public int getInteger(){ return ( int ) getBits(); }
+	@Override
+	public long getIntegerLong() { return getBits(); }
+	@Override
+	public void setInteger( final int f ) { setBits( f ); }
+	@Override
+	public void setInteger( final long f ) { setBits( f ); }
+
+	@Override
+	public void set( final T c ) { setBits( c.getBits() ); }
+
+	@Override
+	public void setZero() { setBits( 0 ); }
+	@Override
+	public void setOne() { setBits( 1 ); }
+
+	@Override
+	public double getMaxValue() { return mask; }
+	@Override
+	public double getMinValue()  { return 0; }
+
+	@Override
+	public int getIndex() { return i; }
+
+	@Override
+	public void updateIndex( final int index ) { i = index; }
+
+	@Override
+	public void incIndex() { ++i; }
+	@Override
+	public void incIndex( final int increment ) { i += increment; }
+	@Override
+	public void decIndex() { --i; }
+	@Override
+	public void decIndex( final int decrement ) { i -= decrement; }
+
+	@Override
+	public int getEntitiesPerPixel() { return 1; }
+
+	@Override
+	public int getBitsPerPixel() { return nBits; }
+}
@@ -0,0 +1,85 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.type.numeric.integer;
+
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.LongAccess;
+
+/**
+ * Unsigned 4-bit integer, packed into longs (see {@link AbstractBit64Type}).
+ *
+ * @author ImgLib2 developers
+ */
+public class Unsigned4BitType extends AbstractBit64Type<Unsigned4BitType>
+{
+	// this is the constructor if you want it to read from an array
+	public Unsigned4BitType( final NativeImg<?, ? extends LongAccess> bitStorage ) { super( bitStorage, 4 ); }
+
+	// this is the constructor if you want it to be a variable
+	public Unsigned4BitType( final long value ) { super( value, 4 ); }
+
+	// this is the constructor if you want to specify the dataAccess
+	public Unsigned4BitType( final LongAccess access ) { super( access, 4 ); }
+
+	// this is the constructor if you want it to be a variable
+	public Unsigned4BitType() { this( 0 ); }
+
+	@Override
+	public NativeImg<Unsigned4BitType, ? extends LongAccess> createSuitableNativeImg( final NativeImgFactory<Unsigned4BitType> storageFactory, final long dim[] )
+	{
+		// create the container
+		final NativeImg<Unsigned4BitType, ? extends LongAccess> container = storageFactory.createPackedLongInstance( dim, 4 );
+
+		// create a Type that is linked to the container
+		final Unsigned4BitType linkedType = new Unsigned4BitType( container );
+
+		// pass it to the NativeContainer
+		container.setLinkedType( linkedType );
+
+		return container;
+	}
+
+	@Override
+	public Unsigned4BitType duplicateTypeOnSameNativeImg() { return new Unsigned4BitType( img ); }
+
+	public long get() { return getBits(); }
+	public void set( final long value ) { setBits( value ); }
+
+	@Override
+	public Unsigned4BitType createVariable(){ return new Unsigned4BitType(); }
+
+	@Override
+	public Unsigned4BitType copy(){ return new Unsigned4BitType( get() ); }
+}
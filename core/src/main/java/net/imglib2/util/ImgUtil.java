@@ -34,10 +34,29 @@
 package net.imglib2.util;
 
 import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.BitArray;
+import net.imglib2.img.basictypeaccess.array.PackedLongArray;
+import net.imglib2.img.cell.AbstractCell;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.transform.integer.MixedTransform;
 import net.imglib2.type.BooleanType;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.Type;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.AbstractBit64Type;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.MixedTransformView;
+import net.imglib2.view.Views;
 
 /**
  * This class contains static methods for copying image data to
@@ -235,4 +254,247 @@ public class ImgUtil {
 			dest[this_offset] = t.get();
 		}
 	}
+
+	/**
+	 * Copy source into target. Every pixel of target is set to the value of
+	 * source at the same position.
+	 * 
+	 * @see ImgUtil#copyInterval(RandomAccessible, RandomAccessible, Interval)
+	 */
+	public static <T extends Type<T>> void copy(final RandomAccessible<T> source, final RandomAccessibleInterval<T> target) {
+		copyInterval(source, target, target);
+	}
+
+	/**
+	 * Copy the pixels of source within interval to the same positions in
+	 * target.
+	 * 
+	 * If source and target are {@link ArrayImg}s, {@link PlanarImg}s or
+	 * {@link AbstractCellImg}s of the same {@link NativeType}, or translated
+	 * {@link Views#interval(RandomAccessible, Interval) intervals} of such
+	 * images, the data is transferred with {@link System#arraycopy} in runs
+	 * along dimension 0, each run extending to the end of the line or the
+	 * boundary of the current cell or plane. Otherwise, pixels are copied one
+	 * by one through {@link Type#set(Type)}.
+	 * 
+	 * @param <T> - the type of the image data
+	 * @param source - the source of the data
+	 * @param target - the destination for the copy
+	 * @param interval - the interval to copy
+	 */
+	public static <T extends Type<T>> void copyInterval(final RandomAccessible<T> source, final RandomAccessible<T> target, final Interval interval) {
+		if (Intervals.numElements(interval) == 0)
+			return;
+		final StorageLines src = StorageLines.create(source, interval);
+		final StorageLines dst = src == null ? null : StorageLines.create(target, interval);
+		if (dst != null && src.isCompatible(dst)) {
+			copyLines(src, dst, interval);
+			return;
+		}
+		final Cursor<T> t = Views.flatIterable(Views.interval(target, interval)).localizingCursor();
+		final RandomAccess<T> s = source.randomAccess(interval);
+		while (t.hasNext()) {
+			t.fwd();
+			s.setPosition(t);
+			t.get().set(s.get());
+		}
+	}
+
+	private static void copyLines(final StorageLines src, final StorageLines dst, final Interval interval) {
+		final int n = interval.numDimensions();
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+		interval.min(min);
+		interval.max(max);
+		final long[] position = min.clone();
+		final int epp = src.entitiesPerPixel;
+		while (true) {
+			// copy one line in runs that do not cross storage boundaries
+			for (long x = min[0]; x <= max[0];) {
+				position[0] = x;
+				src.locate(position);
+				dst.locate(position);
+				final int length = (int)Math.min(max[0] - x + 1, Math.min(src.remaining, dst.remaining));
+				System.arraycopy(src.array, src.index * epp, dst.array, dst.index * epp, length * epp);
+				x += length;
+			}
+			// move to the next line
+			int d = 1;
+			for (; d < n; ++d) {
+				if (position[d] < max[d]) {
+					++position[d];
+					break;
+				}
+				position[d] = min[d];
+			}
+			if (d >= n)
+				return;
+		}
+	}
+
+	/**
+	 * Provides direct access to the primitive storage arrays of an
+	 * {@link ArrayImg}, {@link PlanarImg}, or {@link AbstractCellImg},
+	 * possibly seen through translating views.
+	 */
+	private static final class StorageLines {
+		final NativeImg<?, ?> img;
+		final long[] offset;
+		final int entitiesPerPixel;
+		final Class<?> typeClass;
+		final Class<?> componentType;
+		final long[] imgPosition;
+		final RandomAccess<? extends AbstractCell<?>> cellAccess;
+		final long[] cellPosition;
+
+		// the storage array, the index of the pixel in it, and the number of
+		// pixels from there to the end of the line segment stored in the array
+		Object array;
+		int index;
+		long remaining;
+
+		private StorageLines(final NativeImg<?, ?> img, final long[] offset, final NativeType<?> type, final long[] probe) {
+			this.img = img;
+			this.offset = offset;
+			entitiesPerPixel = type.getEntitiesPerPixel();
+			typeClass = type.getClass();
+			imgPosition = new long[offset.length];
+			if (img instanceof AbstractCellImg) {
+				cellAccess = ((AbstractCellImg<?, ?, ?, ?>)img).getCells().randomAccess();
+				cellPosition = new long[offset.length];
+			} else {
+				cellAccess = null;
+				cellPosition = null;
+			}
+			locate(probe);
+			componentType = storageComponentType(array);
+		}
+
+		/**
+		 * Resolve f into an image and a translation, if f is an
+		 * {@link ArrayImg}, {@link PlanarImg}, or {@link AbstractCellImg}
+		 * containing interval, possibly wrapped in views that only
+		 * translate.
+		 * 
+		 * @return the storage lines, or null if f is not of this kind.
+		 */
+		static StorageLines create(final RandomAccessible<?> f, final Interval interval) {
+			final int n = interval.numDimensions();
+			final long[] offset = new long[n];
+			Object source = f;
+			while (true) {
+				if (source instanceof IntervalView) {
+					source = ((IntervalView<?>)source).getSource();
+				} else if (source instanceof MixedTransformView) {
+					final MixedTransformView<?> view = (MixedTransformView<?>)source;
+					final MixedTransform t = view.getTransformToSource();
+					if (t.numSourceDimensions() != n || t.numTargetDimensions() != n)
+						return null;
+					for (int d = 0; d < n; ++d) {
+						if (t.getComponentZero(d) || t.getComponentMapping(d) != d || t.getComponentInversion(d))
+							return null;
+						offset[d] += t.getTranslation(d);
+					}
+					source = view.getSource();
+				} else
+					break;
+			}
+			if (!(source instanceof ArrayImg || source instanceof PlanarImg || source instanceof AbstractCellImg))
+				return null;
+			final NativeImg<?, ?> img = (NativeImg<?, ?>)source;
+			if (img.numDimensions() != n || n == 0)
+				return null;
+			for (int d = 0; d < n; ++d)
+				if (interval.min(d) + offset[d] < img.min(d) || interval.max(d) + offset[d] > img.max(d))
+					return null;
+			final Object type = img.createLinkedType();
+			if (!(type instanceof NativeType) || type instanceof AbstractBit64Type)
+				return null;
+			final long[] probe = new long[n];
+			interval.min(probe);
+			final StorageLines lines = new StorageLines(img, offset, (NativeType<?>)type, probe);
+			if (lines.componentType == null || !holdsWholePixels(type, lines.entitiesPerPixel, lines.componentType))
+				return null;
+			return lines;
+		}
+
+		/**
+		 * @return false if type packs pixels of fewer bits than its
+		 *         entities into the storage array, so that pixels do not
+		 *         map to array elements.
+		 */
+		private static boolean holdsWholePixels(final Object type, final int entitiesPerPixel, final Class<?> componentType) {
+			if (!(type instanceof RealType))
+				return true;
+			final int bitsPerElement;
+			if (componentType == byte.class || componentType == boolean.class)
+				bitsPerElement = 8;
+			else if (componentType == short.class || componentType == char.class)
+				bitsPerElement = 16;
+			else if (componentType == int.class || componentType == float.class)
+				bitsPerElement = 32;
+			else
+				bitsPerElement = 64;
+			return ((RealType<?>)type).getBitsPerPixel() == entitiesPerPixel * bitsPerElement;
+		}
+
+		/**
+		 * @return the primitive component type of the storage array, or null
+		 *         if the storage does not hold whole pixels in array elements.
+		 */
+		private static Class<?> storageComponentType(final Object array) {
+			if (array == null)
+				return null;
+			final Class<?> componentType = array.getClass().getComponentType();
+			return componentType != null && componentType.isPrimitive() ? componentType : null;
+		}
+
+		private static Object storageArray(final Object data) {
+			if (!(data instanceof ArrayDataAccess) || data instanceof BitArray || data instanceof PackedLongArray)
+				return null;
+			return ((ArrayDataAccess<?>)data).getCurrentStorageArray();
+		}
+
+		boolean isCompatible(final StorageLines other) {
+			return typeClass == other.typeClass && entitiesPerPixel == other.entitiesPerPixel && componentType == other.componentType;
+		}
+
+		/**
+		 * Find the storage array containing position (in the coordinates of
+		 * the view) and set array, index, and remaining.
+		 */
+		void locate(final long[] position) {
+			final int n = position.length;
+			for (int d = 0; d < n; ++d)
+				imgPosition[d] = position[d] + offset[d];
+			if (cellAccess != null) {
+				final AbstractCellImg<?, ?, ?, ?> cellImg = (AbstractCellImg<?, ?, ?, ?>)img;
+				for (int d = 0; d < n; ++d)
+					cellPosition[d] = imgPosition[d] / cellImg.getCells().cellDimension(d);
+				cellAccess.setPosition(cellPosition);
+				final AbstractCell<?> cell = cellAccess.get();
+				long i = 0;
+				for (int d = n - 1; d >= 0; --d)
+					i = i * cell.dimension(d) + imgPosition[d] - cell.min(d);
+				array = storageArray(cell.getData());
+				index = (int)i;
+				remaining = cell.min(0) + cell.dimension(0) - imgPosition[0];
+			} else if (img instanceof PlanarImg) {
+				final PlanarImg<?, ?> planarImg = (PlanarImg<?, ?>)img;
+				int plane = 0;
+				for (int d = n - 1; d >= 2; --d)
+					plane = plane * (int)img.dimension(d) + (int)imgPosition[d];
+				array = storageArray(planarImg.getPlane(plane));
+				index = (int)((n > 1 ? imgPosition[1] * img.dimension(0) : 0) + imgPosition[0]);
+				remaining = img.dimension(0) - imgPosition[0];
+			} else {
+				long i = 0;
+				for (int d = n - 1; d >= 0; --d)
+					i = i * img.dimension(d) + imgPosition[d];
+				array = storageArray(img.update(null));
+				index = (int)i;
+				remaining = img.dimension(0) - imgPosition[0];
+			}
+		}
+	}
 }
@@ -33,6 +33,9 @@
 
 package net.imglib2.util;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import net.imglib2.Dimensions;
 import net.imglib2.FinalInterval;
 import net.imglib2.FinalRealInterval;
@@ -222,6 +225,155 @@ public class Intervals
 		return new FinalInterval( min, max );
 	}
 
+	/**
+	 * Compute the interval that is covered by a neighborhood when its center
+	 * visits every position of an interval.
+	 *
+	 * Create a {@link FinalInterval} , which is the input interval with
+	 * span.min added to its min and span.max added to its max.
+	 *
+	 * @param interval
+	 *            the input interval
+	 * @param span
+	 *            the neighborhood, relative to its center (e.g., [-1,1] in
+	 *            every dimension for a 3x3x... neighborhood)
+	 * @return extended interval
+	 */
+	public static FinalInterval extendBySpan( final Interval interval, final Interval span )
+	{
+		assert interval.numDimensions() == span.numDimensions();
+
+		final int n = interval.numDimensions();
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = interval.min( d ) + span.min( d );
+			max[ d ] = interval.max( d ) + span.max( d );
+		}
+		return new FinalInterval( min, max );
+	}
+
+	/**
+	 * Compute the interior of an interval with respect to a neighborhood.
+	 *
+	 * Create a {@link FinalInterval} , which is the largest part of the input
+	 * interval such that a neighborhood centered at any of its positions lies
+	 * completely inside bounds. Neighborhoods in the interior can be accessed
+	 * without out-of-bounds handling. The result may be empty (see
+	 * {@link #isEmpty(Interval)}).
+	 *
+	 * @param interval
+	 *            the input interval
+	 * @param bounds
+	 *            the interval of valid source data
+	 * @param span
+	 *            the neighborhood, relative to its center
+	 * @return interior of the input interval
+	 */
+	public static FinalInterval interior( final Interval interval, final Interval bounds, final Interval span )
+	{
+		assert interval.numDimensions() == bounds.numDimensions();
+		assert interval.numDimensions() == span.numDimensions();
+
+		final int n = interval.numDimensions();
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Math.max( interval.min( d ), bounds.min( d ) - span.min( d ) );
+			max[ d ] = Math.min( interval.max( d ), bounds.max( d ) - span.max( d ) );
+		}
+		return new FinalInterval( min, max );
+	}
+
+	/**
+	 * Split the part of an interval that is not covered by an inner interval
+	 * into disjoint boxes.
+	 *
+	 * The boxes are slabs of decreasing dimensionality: first the slabs before
+	 * and after the inner interval in the last dimension, spanning the full
+	 * interval in all other dimensions, then the slabs in the second to last
+	 * dimension, restricted to the inner interval in the last dimension, and
+	 * so on. The inner interval is clipped to the outer interval first. If it
+	 * is empty, the result is just the outer interval.
+	 *
+	 * @param interval
+	 *            the outer interval
+	 * @param inner
+	 *            the inner interval
+	 * @return disjoint intervals covering interval without inner
+	 */
+	public static List< FinalInterval > shell( final Interval interval, final Interval inner )
+	{
+		assert interval.numDimensions() == inner.numDimensions();
+
+		final int n = interval.numDimensions();
+		final ArrayList< FinalInterval > shell = new ArrayList< FinalInterval >();
+		if ( isEmpty( interval ) )
+			return shell;
+		final FinalInterval clipped = intersect( interval, inner );
+		if ( isEmpty( clipped ) )
+		{
+			shell.add( new FinalInterval( interval ) );
+			return shell;
+		}
+
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		interval.min( min );
+		interval.max( max );
+		for ( int d = n - 1; d >= 0; --d )
+		{
+			final long innerMin = clipped.min( d );
+			final long innerMax = clipped.max( d );
+			if ( innerMin > min[ d ] )
+			{
+				final long[] slabMax = max.clone();
+				slabMax[ d ] = innerMin - 1;
+				shell.add( new FinalInterval( min, slabMax ) );
+			}
+			if ( innerMax < max[ d ] )
+			{
+				final long[] slabMin = min.clone();
+				slabMin[ d ] = innerMax + 1;
+				shell.add( new FinalInterval( slabMin, max ) );
+			}
+			min[ d ] = innerMin;
+			max[ d ] = innerMax;
+		}
+		return shell;
+	}
+
+	/**
+	 * Split an interval into its interior with respect to a neighborhood (see
+	 * {@link #interior(Interval, Interval, Interval)}) and the boundary shell
+	 * around it (see {@link #shell(Interval, Interval)}).
+	 *
+	 * Neighborhood operations can process the interior with plain accesses
+	 * to the source, for example by requesting
+	 * {@code extended.randomAccess( extendBySpan( interior, span ) )} from an
+	 * {@link net.imglib2.ExtendedRandomAccessibleInterval}, and pay for
+	 * out-of-bounds handling only on the shell.
+	 *
+	 * @param interval
+	 *            the input interval
+	 * @param bounds
+	 *            the interval of valid source data
+	 * @param span
+	 *            the neighborhood, relative to its center
+	 * @return disjoint intervals covering interval. The first one is the
+	 *         interior, unless it is empty.
+	 */
+	public static List< FinalInterval > splitInteriorAndShell( final Interval interval, final Interval bounds, final Interval span )
+	{
+		final FinalInterval interior = interior( interval, bounds, span );
+		final List< FinalInterval > parts = shell( interval, interior );
+		if ( !isEmpty( interior ) )
+			parts.add( 0, interior );
+		return parts;
+	}
+
 	/**
 	 * Compute the smallest {@link Interval} containing the specified
 	 * {@link RealInterval}.
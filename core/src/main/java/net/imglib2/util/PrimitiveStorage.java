@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Kinds of primitive storage arrays that hold the values of an
+ * {@link ArrayImg}, {@link PlanarImg} or {@link AbstractCellImg} of a
+ * primitive real type. Algorithms use {@link #of(Iterable)} to decide whether
+ * they can read the values of an image directly from its storage arrays
+ * rather than through a cursor.
+ *
+ * @author ImgLib2 developers
+ */
+public enum PrimitiveStorage
+{
+	BYTE( ByteType.class, byte[].class ),
+	UNSIGNED_BYTE( UnsignedByteType.class, byte[].class ),
+	SHORT( ShortType.class, short[].class ),
+	UNSIGNED_SHORT( UnsignedShortType.class, short[].class ),
+	INT( IntType.class, int[].class ),
+	UNSIGNED_INT( UnsignedIntType.class, int[].class ),
+	FLOAT( FloatType.class, float[].class ),
+	DOUBLE( DoubleType.class, double[].class );
+
+	private final Class< ? > typeClass;
+
+	private final Class< ? > arrayClass;
+
+	private PrimitiveStorage( final Class< ? > typeClass, final Class< ? > arrayClass )
+	{
+		this.typeClass = typeClass;
+		this.arrayClass = arrayClass;
+	}
+
+	/**
+	 * @return the exact class of the storage arrays of this kind.
+	 */
+	public Class< ? > getArrayClass()
+	{
+		return arrayClass;
+	}
+
+	/**
+	 * @return how the values of data are stored, or null if they must be
+	 *         read through a cursor. The latter is the case if data is empty,
+	 *         if it is not an array, planar, or cell image of a supported
+	 *         type, or if its data is not held in primitive arrays of the
+	 *         expected class (e.g., mapped or direct images backed by
+	 *         {@link java.nio.ByteBuffer}s). All blocks of an image use the
+	 *         same kind of access, so only the first one is inspected.
+	 */
+	public static PrimitiveStorage of( final Iterable< ? > data )
+	{
+		if ( !( data instanceof ArrayImg || data instanceof PlanarImg || data instanceof AbstractCellImg ) )
+			return null;
+		final IterableInterval< ? > interval = ( IterableInterval< ? > ) data;
+		if ( interval.size() == 0 )
+			return null;
+		final PrimitiveStorage storage = of( interval.firstElement().getClass() );
+		if ( storage == null )
+			return null;
+		final Object access;
+		if ( data instanceof ArrayImg )
+			access = ( ( ArrayImg< ?, ? > ) data ).update( null );
+		else if ( data instanceof PlanarImg )
+			access = ( ( PlanarImg< ?, ? > ) data ).getPlaneBlock( 0 ).getData();
+		else
+			access = ( ( AbstractCellImg< ?, ?, ?, ? > ) data ).getCellBlock( 0 ).getData();
+		if ( !( access instanceof ArrayDataAccess ) )
+			return null;
+		final Object array = ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray();
+		return array != null && array.getClass() == storage.arrayClass ? storage : null;
+	}
+
+	private static PrimitiveStorage of( final Class< ? > c )
+	{
+		for ( final PrimitiveStorage storage : values() )
+			if ( storage.typeClass == c )
+				return storage;
+		return null;
+	}
+}
@@ -0,0 +1,499 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.img.StorageBlock;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.multithreading.TaskExecutors;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Count, sum, minimum, maximum, mean and variance of the values of an
+ * {@link IterableInterval} of {@link RealType}, computed in a single pass.
+ *
+ * <p>
+ * The values are split into chunks that are processed in parallel. For each
+ * chunk, sums of the values and of their squares are taken relative to the
+ * first value of the chunk (with Kahan compensation for floating point
+ * values), and the chunks are then combined pairwise in a tree. If the
+ * interval is an {@link ArrayImg}, {@link PlanarImg} or
+ * {@link AbstractCellImg} of a primitive real type ({@link ByteType},
+ * {@link UnsignedByteType}, {@link ShortType}, {@link UnsignedShortType},
+ * {@link IntType}, {@link UnsignedIntType}, {@link FloatType} or
+ * {@link DoubleType}), the chunks are read directly from the storage arrays.
+ * All other intervals are read through {@link RealType#getRealDouble()}.
+ * </p>
+ *
+ * @author ImgLib2 developers
+ */
+public class RealStatistics
+{
+	/**
+	 * Maximum number of values in a chunk. Sums of squared differences of
+	 * 16-bit values over a chunk must fit into a long.
+	 */
+	static final int CHUNK_SIZE = 1 << 16;
+
+	private final long count;
+
+	private final double sum;
+
+	private final double mean;
+
+	/**
+	 * Sum of squared differences from the mean.
+	 */
+	private final double m2;
+
+	private final double min;
+
+	private final double max;
+
+	private RealStatistics( final long count, final double sum, final double mean, final double m2, final double min, final double max )
+	{
+		this.count = count;
+		this.sum = sum;
+		this.mean = mean;
+		this.m2 = m2;
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Statistics of a chunk of count values, whose differences from shift
+	 * sum up to s and whose squared differences sum up to q.
+	 */
+	private static RealStatistics ofChunk( final long count, final double shift, final double s, final double q, final double min, final double max )
+	{
+		return new RealStatistics( count, count * shift + s, shift + s / count, Math.max( 0, q - s * s / count ), min, max );
+	}
+
+	/**
+	 * @return statistics of no values.
+	 */
+	public static RealStatistics empty()
+	{
+		return new RealStatistics( 0, 0, Double.NaN, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY );
+	}
+
+	/**
+	 * Combine the statistics of two disjoint sets of values.
+	 *
+	 * @return statistics of the union of both sets.
+	 */
+	public RealStatistics combine( final RealStatistics other )
+	{
+		if ( other.count == 0 )
+			return this;
+		if ( count == 0 )
+			return other;
+		final long n = count + other.count;
+		final double delta = other.mean - mean;
+		final double f = ( double ) other.count / n;
+		return new RealStatistics( n, sum + other.sum, mean + delta * f, m2 + other.m2 + delta * delta * count * f, Math.min( min, other.min ), Math.max( max, other.max ) );
+	}
+
+	/**
+	 * @return the number of values.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	public double getSum()
+	{
+		return sum;
+	}
+
+	public double getMin()
+	{
+		return min;
+	}
+
+	public double getMax()
+	{
+		return max;
+	}
+
+	public double getMean()
+	{
+		return mean;
+	}
+
+	/**
+	 * @return the sample variance, i.e., the sum of squared differences from
+	 *         the mean divided by {@link #getCount()} - 1.
+	 */
+	public double getVariance()
+	{
+		return m2 / ( count - 1 );
+	}
+
+	/**
+	 * @return the square root of the sample variance.
+	 */
+	public double getStdDev()
+	{
+		return Math.sqrt( getVariance() );
+	}
+
+	/**
+	 * Compute the statistics of interval, using the shared
+	 * {@link TaskExecutors#getDefault() thread pool}.
+	 */
+	public static < T extends RealType< T > > RealStatistics compute( final IterableInterval< T > interval )
+	{
+		final ExecutorService service = TaskExecutors.getDefault();
+		return compute( interval, service, TaskExecutors.getParallelism( service ) );
+	}
+
+	/**
+	 * Compute the statistics of interval.
+	 *
+	 * @param interval
+	 *            the values.
+	 * @param service
+	 *            service on which to run the computation.
+	 * @param numThreads
+	 *            maximum number of chunks to process concurrently.
+	 */
+	public static < T extends RealType< T > > RealStatistics compute( final IterableInterval< T > interval, final ExecutorService service, final int numThreads )
+	{
+		if ( interval.size() == 0 )
+			return empty();
+
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		final ArrayList< RealStatistics > results = new ArrayList< RealStatistics >();
+		final PrimitiveStorage storage = PrimitiveStorage.of( interval );
+		if ( storage == null )
+			addCursorTasks( interval, tasks, results );
+		else if ( interval instanceof ArrayImg )
+			addArrayTasks( ( ( ArrayImg< ?, ? > ) interval ).update( null ), 0, interval.size(), storage, tasks, results );
+		else if ( interval instanceof PlanarImg )
+		{
+			final PlanarImg< ?, ? > img = ( PlanarImg< ?, ? > ) interval;
+			for ( int i = 0; i < img.numSlices(); ++i )
+			{
+				final StorageBlock< ?, ? > plane = img.getPlaneBlock( i );
+				addArrayTasks( plane.getData(), 0, plane.size(), storage, tasks, results );
+			}
+		}
+		else
+			addCellTasks( ( AbstractCellImg< ?, ?, ?, ? > ) interval, storage, tasks, results );
+
+		TaskExecutors.run( service, tasks, numThreads );
+		return combineTree( results );
+	}
+
+	/**
+	 * @return whether the values of interval are read directly from primitive
+	 *         storage arrays.
+	 */
+	public static < T extends RealType< T > > boolean isPrimitive( final IterableInterval< T > interval )
+	{
+		return PrimitiveStorage.of( interval ) != null;
+	}
+
+	/**
+	 * Combine results pairwise in a tree.
+	 */
+	private static RealStatistics combineTree( final ArrayList< RealStatistics > results )
+	{
+		final int n = results.size();
+		for ( int step = 1; step < n; step *= 2 )
+			for ( int i = 0; i + step < n; i += 2 * step )
+				results.set( i, results.get( i ).combine( results.get( i + step ) ) );
+		return n == 0 ? empty() : results.get( 0 );
+	}
+
+	private static void addArrayTasks( final Object data, final long from, final long to, final PrimitiveStorage storage, final ArrayList< Runnable > tasks, final ArrayList< RealStatistics > results )
+	{
+		final Object array = ( ( ArrayDataAccess< ? > ) data ).getCurrentStorageArray();
+		for ( long start = from; start < to; start += CHUNK_SIZE )
+		{
+			final int i = results.size();
+			final int chunkFrom = ( int ) start;
+			final int chunkTo = ( int ) Math.min( to, start + CHUNK_SIZE );
+			results.add( null );
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					results.set( i, compute( array, chunkFrom, chunkTo, storage ) );
+				}
+			} );
+		}
+	}
+
+	/**
+	 * Cells are obtained only when they are processed, so that cells of
+	 * cached images are loaded on demand.
+	 */
+	private static void addCellTasks( final AbstractCellImg< ?, ?, ?, ? > img, final PrimitiveStorage storage, final ArrayList< Runnable > tasks, final ArrayList< RealStatistics > results )
+	{
+		final long numCells = img.numCells();
+		for ( long c = 0; c < numCells; ++c )
+		{
+			final int i = results.size();
+			final long cellIndex = c;
+			results.add( null );
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final StorageBlock< ?, ? > cell = img.getCellBlock( cellIndex );
+					final Object array = ( ( ArrayDataAccess< ? > ) cell.getData() ).getCurrentStorageArray();
+					final int size = ( int ) cell.size();
+					RealStatistics s = empty();
+					for ( int start = 0; start < size; start += CHUNK_SIZE )
+						s = s.combine( compute( array, start, Math.min( size, start + CHUNK_SIZE ), storage ) );
+					results.set( i, s );
+				}
+			} );
+		}
+	}
+
+	private static < T extends RealType< T > > void addCursorTasks( final IterableInterval< T > interval, final ArrayList< Runnable > tasks, final ArrayList< RealStatistics > results )
+	{
+		final long size = interval.size();
+		for ( long start = 0; start < size; start += CHUNK_SIZE )
+		{
+			final int i = results.size();
+			final long chunkFrom = start;
+			final int chunkSize = ( int ) Math.min( size - start, CHUNK_SIZE );
+			results.add( null );
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final Cursor< T > cursor = interval.cursor();
+					cursor.jumpFwd( chunkFrom + 1 );
+					final double shift = cursor.get().getRealDouble();
+					final double[] acc = new double[] { 0, 0, 0, 0, shift, shift };
+					for ( int j = 0; j < chunkSize; ++j )
+					{
+						if ( j > 0 )
+							cursor.fwd();
+						add( acc, cursor.get().getRealDouble(), shift );
+					}
+					results.set( i, ofChunk( chunkSize, shift, acc[ 0 ], acc[ 2 ], acc[ 4 ], acc[ 5 ] ) );
+				}
+			} );
+		}
+	}
+
+	/**
+	 * Add x to the accumulators {s, compensation of s, q, compensation of q,
+	 * min, max}.
+	 */
+	private static void add( final double[] acc, final double x, final double shift )
+	{
+		if ( x < acc[ 4 ] )
+			acc[ 4 ] = x;
+		if ( x > acc[ 5 ] )
+			acc[ 5 ] = x;
+		final double d = x - shift;
+		final double y = d - acc[ 1 ];
+		final double t = acc[ 0 ] + y;
+		acc[ 1 ] = ( t - acc[ 0 ] ) - y;
+		acc[ 0 ] = t;
+		final double y2 = d * d - acc[ 3 ];
+		final double t2 = acc[ 2 ] + y2;
+		acc[ 3 ] = ( t2 - acc[ 2 ] ) - y2;
+		acc[ 2 ] = t2;
+	}
+
+	private static RealStatistics compute( final Object array, final int from, final int to, final PrimitiveStorage storage )
+	{
+		switch ( storage )
+		{
+		case BYTE:
+			return bytes( ( byte[] ) array, from, to, -1 );
+		case UNSIGNED_BYTE:
+			return bytes( ( byte[] ) array, from, to, 0xff );
+		case SHORT:
+			return shorts( ( short[] ) array, from, to, -1 );
+		case UNSIGNED_SHORT:
+			return shorts( ( short[] ) array, from, to, 0xffff );
+		case INT:
+			return ints( ( int[] ) array, from, to, -1l );
+		case UNSIGNED_INT:
+			return ints( ( int[] ) array, from, to, 0xffffffffl );
+		case FLOAT:
+			return floats( ( float[] ) array, from, to );
+		default:
+			return doubles( ( double[] ) array, from, to );
+		}
+	}
+
+	private static RealStatistics bytes( final byte[] a, final int from, final int to, final int mask )
+	{
+		final int shift = a[ from ] & mask;
+		int min = shift;
+		int max = shift;
+		long s = 0;
+		long q = 0;
+		for ( int i = from; i < to; ++i )
+		{
+			final int x = a[ i ] & mask;
+			if ( x < min )
+				min = x;
+			if ( x > max )
+				max = x;
+			final int d = x - shift;
+			s += d;
+			q += d * d;
+		}
+		return ofChunk( to - from, shift, s, q, min, max );
+	}
+
+	private static RealStatistics shorts( final short[] a, final int from, final int to, final int mask )
+	{
+		final int shift = a[ from ] & mask;
+		int min = shift;
+		int max = shift;
+		long s = 0;
+		long q = 0;
+		for ( int i = from; i < to; ++i )
+		{
+			final int x = a[ i ] & mask;
+			if ( x < min )
+				min = x;
+			if ( x > max )
+				max = x;
+			final long d = x - shift;
+			s += d;
+			q += d * d;
+		}
+		return ofChunk( to - from, shift, s, q, min, max );
+	}
+
+	private static RealStatistics ints( final int[] a, final int from, final int to, final long mask )
+	{
+		final long shift = a[ from ] & mask;
+		long min = shift;
+		long max = shift;
+		double s = 0, cs = 0, q = 0, cq = 0;
+		for ( int i = from; i < to; ++i )
+		{
+			final long x = a[ i ] & mask;
+			if ( x < min )
+				min = x;
+			if ( x > max )
+				max = x;
+			final double d = x - shift;
+			final double y = d - cs;
+			final double t = s + y;
+			cs = ( t - s ) - y;
+			s = t;
+			final double y2 = d * d - cq;
+			final double t2 = q + y2;
+			cq = ( t2 - q ) - y2;
+			q = t2;
+		}
+		return ofChunk( to - from, shift, s, q, min, max );
+	}
+
+	private static RealStatistics floats( final float[] a, final int from, final int to )
+	{
+		final double shift = a[ from ];
+		double min = shift;
+		double max = shift;
+		double s = 0, cs = 0, q = 0, cq = 0;
+		for ( int i = from; i < to; ++i )
+		{
+			final double x = a[ i ];
+			if ( x < min )
+				min = x;
+			if ( x > max )
+				max = x;
+			final double d = x - shift;
+			final double y = d - cs;
+			final double t = s + y;
+			cs = ( t - s ) - y;
+			s = t;
+			final double y2 = d * d - cq;
+			final double t2 = q + y2;
+			cq = ( t2 - q ) - y2;
+			q = t2;
+		}
+		return ofChunk( to - from, shift, s, q, min, max );
+	}
+
+	private static RealStatistics doubles( final double[] a, final int from, final int to )
+	{
+		final double shift = a[ from ];
+		double min = shift;
+		double max = shift;
+		double s = 0, cs = 0, q = 0, cq = 0;
+		for ( int i = from; i < to; ++i )
+		{
+			final double x = a[ i ];
+			if ( x < min )
+				min = x;
+			if ( x > max )
+				max = x;
+			final double d = x - shift;
+			final double y = d - cs;
+			final double t = s + y;
+			cs = ( t - s ) - y;
+			s = t;
+			final double y2 = d * d - cq;
+			final double t2 = q + y2;
+			cq = ( t2 - q ) - y2;
+			q = t2;
+		}
+		return ofChunk( to - from, shift, s, q, min, max );
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.Cursor;
+
+/**
+ * A {@link Cursor} over a contiguous range of the flat iteration order of an
+ * image, seen through a translation. It moves the image's own cursor, which
+ * for an {@link net.imglib2.img.array.ArrayImg} simply increments the index
+ * into the storage array, and subtracts the translation when localizing.
+ *
+ * @author ImgLib2 developers
+ */
+public final class ContiguousIntervalCursor< T > extends AbstractCursor< T >
+{
+	private final Cursor< T > cursor;
+
+	/**
+	 * position in the image minus position in the view.
+	 */
+	private final long[] offset;
+
+	/**
+	 * index of the first element in the flat iteration order of the image.
+	 */
+	private final long start;
+
+	private final long lastIndex;
+
+	private long index;
+
+	/**
+	 * @param cursor
+	 *            cursor on the image.
+	 * @param start
+	 *            index of the first element in the iteration order of the
+	 *            image.
+	 * @param size
+	 *            number of elements to iterate.
+	 * @param offset
+	 *            position in the image minus position in the view.
+	 */
+	public ContiguousIntervalCursor( final Cursor< T > cursor, final long start, final long size, final long[] offset )
+	{
+		super( cursor.numDimensions() );
+		this.cursor = cursor;
+		this.offset = offset.clone();
+		this.start = start;
+		lastIndex = size - 1;
+		reset();
+	}
+
+	private ContiguousIntervalCursor( final ContiguousIntervalCursor< T > c )
+	{
+		super( c.numDimensions() );
+		cursor = c.cursor.copyCursor();
+		offset = c.offset;
+		start = c.start;
+		lastIndex = c.lastIndex;
+		index = c.index;
+	}
+
+	@Override
+	public T get()
+	{
+		return cursor.get();
+	}
+
+	@Override
+	public void fwd()
+	{
+		cursor.fwd();
+		++index;
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		cursor.jumpFwd( steps );
+		index += steps;
+	}
+
+	@Override
+	public void reset()
+	{
+		cursor.reset();
+		if ( start > 0 )
+			cursor.jumpFwd( start );
+		index = -1;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return index < lastIndex;
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		cursor.localize( position );
+		for ( int d = 0; d < n; ++d )
+			position[ d ] -= offset[ d ];
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return cursor.getLongPosition( d ) - offset[ d ];
+	}
+
+	@Override
+	public ContiguousIntervalCursor< T > copy()
+	{
+		return new ContiguousIntervalCursor< T >( this );
+	}
+
+	@Override
+	public ContiguousIntervalCursor< T > copyCursor()
+	{
+		return copy();
+	}
+}
@@ -42,13 +42,28 @@ import net.imglib2.Interval;
 import net.imglib2.IterableInterval;
 import net.imglib2.IterableRealInterval;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.transform.integer.MixedTransform;
+import net.imglib2.util.IntervalIndexer;
 
 /**
  * Generates {@link Cursor Cursors} that iterate a
  * {@link RandomAccessibleInterval} in flat order, that is: row by row, plane
  * by plane, cube by cube, ...
  *
+ * <p>
+ * If the {@link RandomAccessibleInterval} is a (translated) interval of an
+ * image that is itself iterated in flat order, such as an
+ * {@link net.imglib2.img.array.ArrayImg} or
+ * {@link net.imglib2.img.planar.PlanarImg}, and the interval covers a
+ * contiguous range of the image's iteration order (i.e., it spans the full
+ * image in all dimensions below some dimension d and has size 1 in all
+ * dimensions above d), the {@link Cursor Cursors} move the
+ * image's own cursor instead of a {@link RandomAccess} (see
+ * {@link ContiguousIntervalCursor}).
+ * </p>
+ *
  * @author Stephan Saalfeld
  * @author Stephan Saalfeld <saalfeld@mpi-cbg.de>
  */
@@ -56,6 +71,23 @@ public class IterableRandomAccessibleInterval< T > extends AbstractWrappedInterv
 {
 	final long size;
 
+	/**
+	 * The flat-iterable image of which sourceInterval is a contiguous part,
+	 * or null.
+	 */
+	final IterableInterval< T > contiguousSource;
+
+	/**
+	 * Position in contiguousSource minus position in sourceInterval.
+	 */
+	final long[] contiguousOffset;
+
+	/**
+	 * Index of the first element of sourceInterval in the iteration order of
+	 * contiguousSource.
+	 */
+	final long contiguousStart;
+
 	public static < T > IterableRandomAccessibleInterval< T > create( final RandomAccessibleInterval< T > interval )
 	{
 		return new IterableRandomAccessibleInterval< T >( interval );
@@ -69,6 +101,77 @@ public class IterableRandomAccessibleInterval< T > extends AbstractWrappedInterv
 		for ( int d = 1; d < n; ++d )
 			s *= interval.dimension( d );
 		size = s;
+
+		final long[] offset = new long[ n ];
+		contiguousSource = findContiguousSource( interval, offset );
+		contiguousOffset = offset;
+		if ( contiguousSource != null )
+		{
+			final long[] dimensions = new long[ n ];
+			final long[] start = new long[ n ];
+			contiguousSource.dimensions( dimensions );
+			for ( int d = 0; d < n; ++d )
+				start[ d ] = interval.min( d ) + offset[ d ] - contiguousSource.min( d );
+			contiguousStart = IntervalIndexer.positionToIndex( start, dimensions );
+		}
+		else
+			contiguousStart = 0;
+	}
+
+	/**
+	 * Find the flat-iterable image of which interval is a contiguous part in
+	 * flat iteration order, looking through {@link IntervalView IntervalViews}
+	 * and translating {@link MixedTransformView MixedTransformViews}.
+	 *
+	 * @param interval
+	 * @param offset
+	 *            receives position in the image minus position in interval.
+	 * @return the image, or null if there is none.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private static < T > IterableInterval< T > findContiguousSource( final RandomAccessibleInterval< T > interval, final long[] offset )
+	{
+		final int n = interval.numDimensions();
+		if ( n == 0 )
+			return null;
+		RandomAccessible< T > source = interval;
+		while ( true )
+		{
+			if ( source instanceof IntervalView )
+				source = ( ( IntervalView< T > ) source ).getSource();
+			else if ( source instanceof MixedTransformView )
+			{
+				final MixedTransformView< T > view = ( MixedTransformView< T > ) source;
+				final MixedTransform t = view.getTransformToSource();
+				if ( !TransformBuilder.isTranslation( t ) )
+					return null;
+				for ( int d = 0; d < n; ++d )
+					offset[ d ] += t.getTranslation( d );
+				source = view.getSource();
+			}
+			else
+				break;
+		}
+		if ( !( source instanceof IterableInterval ) || source.numDimensions() != n )
+			return null;
+		final IterableInterval< T > image = ( IterableInterval< T > ) source;
+		if ( !( image.iterationOrder() instanceof FlatIterationOrder ) )
+			return null;
+		// dimensions below the first incomplete one must be complete, those
+		// above it must be singletons
+		boolean complete = true;
+		for ( int d = 0; d < n; ++d )
+		{
+			final long min = interval.min( d ) + offset[ d ];
+			final long max = interval.max( d ) + offset[ d ];
+			if ( min < image.min( d ) || max > image.max( d ) )
+				return null;
+			if ( !complete && min != max )
+				return null;
+			if ( min != image.min( d ) || max != image.max( d ) )
+				complete = false;
+		}
+		return image;
 	}
 
 	@Override
@@ -106,12 +209,16 @@ public class IterableRandomAccessibleInterval< T > extends AbstractWrappedInterv
 	@Override
 	public Cursor< T > cursor()
 	{
+		if ( contiguousSource != null )
+			return new ContiguousIntervalCursor< T >( contiguousSource.cursor(), contiguousStart, size, contiguousOffset );
 		return new RandomAccessibleIntervalCursor< T >( sourceInterval );
 	}
 
 	@Override
 	public Cursor< T > localizingCursor()
 	{
+		if ( contiguousSource != null )
+			return new ContiguousIntervalCursor< T >( contiguousSource.localizingCursor(), contiguousStart, size, contiguousOffset );
 		return cursor();
 	}
 
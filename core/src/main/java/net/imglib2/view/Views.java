@@ -33,6 +33,8 @@
 
 package net.imglib2.view;
 
+import java.util.Arrays;
+
 import net.imglib2.EuclideanSpace;
 import net.imglib2.ExtendedRandomAccessibleInterval;
 import net.imglib2.FlatIterationOrder;
@@ -45,6 +47,8 @@ import net.imglib2.RandomAccessibleOnRealRandomAccessible;
 import net.imglib2.RealRandomAccessible;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.cell.CachedCellImg;
+import net.imglib2.img.cell.RandomAccessibleCellLoader;
 import net.imglib2.interpolation.Interpolant;
 import net.imglib2.interpolation.InterpolatorFactory;
 import net.imglib2.outofbounds.OutOfBoundsBorderFactory;
@@ -54,6 +58,7 @@ import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
 import net.imglib2.outofbounds.OutOfBoundsPeriodicFactory;
 import net.imglib2.outofbounds.OutOfBoundsRandomValueFactory;
 import net.imglib2.transform.integer.MixedTransform;
+import net.imglib2.type.NativeType;
 import net.imglib2.type.Type;
 import net.imglib2.type.numeric.NumericType;
 import net.imglib2.type.numeric.RealType;
@@ -976,4 +981,49 @@ public class Views
 		
 		return new SubsampleView< T >( source, steps );
 	}
+
+	/**
+	 * Memoize an expensive view (e.g., converted, interpolated, or transformed
+	 * through {@code RealViews}) in a
+	 * {@link CachedCellImg}. Cells are computed from source when they are
+	 * accessed for the first time and kept in a cache of at most maxCacheBytes
+	 * bytes. Use {@link CachedCellImg#prefetch(Interval)} to compute cells in
+	 * parallel, and {@link CachedCellImg#invalidate()} to discard them when
+	 * source changes.
+	 *
+	 * Like every {@link Img}, the result is zero-min. Use
+	 * {@link #translate(RandomAccessibleInterval, long...)} to map it back to
+	 * the coordinates of source.
+	 *
+	 * @param source
+	 *            the source
+	 * @param cellDimensions
+	 *            dimensions of a cell
+	 * @param maxCacheBytes
+	 *            maximum total size in bytes of the cells kept in memory
+	 * @return a lazily computed copy of source
+	 */
+	public static < T extends NativeType< T > > CachedCellImg< T, ? > cache( final RandomAccessibleInterval< T > source, final int[] cellDimensions, final long maxCacheBytes )
+	{
+		return RandomAccessibleCellLoader.createImg( source, cellDimensions, maxCacheBytes );
+	}
+
+	/**
+	 * Memoize an expensive view in a {@link CachedCellImg} with cubic cells.
+	 * See {@link #cache(RandomAccessibleInterval, int[], long)}.
+	 *
+	 * @param source
+	 *            the source
+	 * @param cellSize
+	 *            size of a cell in every dimension
+	 * @param maxCacheBytes
+	 *            maximum total size in bytes of the cells kept in memory
+	 * @return a lazily computed copy of source
+	 */
+	public static < T extends NativeType< T > > CachedCellImg< T, ? > cache( final RandomAccessibleInterval< T > source, final int cellSize, final long maxCacheBytes )
+	{
+		final int[] cellDimensions = new int[ source.numDimensions() ];
+		Arrays.fill( cellDimensions, cellSize );
+		return cache( source, cellDimensions, maxCacheBytes );
+	}
 }
@@ -0,0 +1,347 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.MappedArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.DirectCellImgFactory;
+import net.imglib2.img.planar.MappedPlanarImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.multithreading.TaskExecutors;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the parallel and direct counting paths of {@link Histogram1d} and
+ * {@link HistogramNd} against sequential counting of the same values.
+ * 
+ * @author ImgLib2 developers
+ */
+public class HistogramCountingTest {
+
+	private static final long[] DIMS = new long[] { 301, 299 };
+
+	private static ExecutorService service;
+
+	@BeforeClass
+	public static void setUp() {
+		service = TaskExecutors.newThreadPool(3);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		service.shutdown();
+	}
+
+	@Test
+	public void testUnsignedByte() {
+		UnsignedByteType type = new UnsignedByteType();
+		for (ImgFactory<UnsignedByteType> factory : factories(type)) {
+			Img<UnsignedByteType> img = random(factory, type, 0, 255);
+			checkInteger(img, 0, 256, false);
+			checkInteger(img, 20, 100, true);
+			checkInteger(img, 20, 100, false);
+		}
+	}
+
+	@Test
+	public void testByte() {
+		ByteType type = new ByteType();
+		for (ImgFactory<ByteType> factory : factories(type)) {
+			Img<ByteType> img = random(factory, type, -128, 127);
+			checkInteger(img, -128, 256, false);
+			checkInteger(img, -30, 50, true);
+		}
+	}
+
+	@Test
+	public void testUnsignedShort() {
+		UnsignedShortType type = new UnsignedShortType();
+		for (ImgFactory<UnsignedShortType> factory : factories(type)) {
+			Img<UnsignedShortType> img = random(factory, type, 0, 65535);
+			checkInteger(img, 0, 65536, false);
+			checkInteger(img, 1000, 5000, true);
+		}
+	}
+
+	@Test
+	public void testShort() {
+		ShortType type = new ShortType();
+		for (ImgFactory<ShortType> factory : factories(type)) {
+			Img<ShortType> img = random(factory, type, -32768, 32767);
+			checkInteger(img, -32768, 65536, false);
+			checkInteger(img, -100, 300, true);
+		}
+	}
+
+	@Test
+	public void testSmallInput() {
+		// fewer pixels than possible values are counted element by element
+		UnsignedShortType type = new UnsignedShortType();
+		for (ImgFactory<UnsignedShortType> factory : factories(type)) {
+			Img<UnsignedShortType> img =
+				random(factory.create(new long[] { 7, 7 }, type), 0, 65535);
+			checkInteger(img, 0, 65536, false);
+			checkInteger(img, 1000, 5000, true);
+			Integer1dBinMapper<UnsignedShortType> mapper =
+				new Integer1dBinMapper<UnsignedShortType>(0, 65536, false);
+			Histogram1d<UnsignedShortType> hist =
+				new Histogram1d<UnsignedShortType>(img, mapper);
+			hist.subtractData(img, service, 4);
+			assertEquals(0, hist.distributionCount());
+		}
+	}
+
+	@Test
+	public void testBufferImgs() throws IOException {
+		// mapped and direct images are backed by ByteBuffers rather than
+		// primitive arrays and are counted generically
+		File arrayFile = File.createTempFile("histogram", ".raw");
+		File planarFile = File.createTempFile("histogram", ".raw");
+		try {
+			UnsignedByteType type = new UnsignedByteType();
+			List<ImgFactory<UnsignedByteType>> factories =
+				new ArrayList<ImgFactory<UnsignedByteType>>();
+			factories.add(new MappedArrayImgFactory<UnsignedByteType>(arrayFile));
+			factories.add(new MappedPlanarImgFactory<UnsignedByteType>(planarFile));
+			factories.add(new DirectCellImgFactory<UnsignedByteType>(37));
+			for (ImgFactory<UnsignedByteType> factory : factories) {
+				Img<UnsignedByteType> img = random(factory, type, 0, 255);
+				checkInteger(img, 0, 256, false);
+				checkInteger(img, 20, 100, true);
+			}
+		}
+		finally {
+			arrayFile.delete();
+			planarFile.delete();
+		}
+	}
+
+	@Test
+	public void testParallelRealCounting() {
+		FloatType type = new FloatType();
+		Img<FloatType> img =
+			random(new ArrayImgFactory<FloatType>(), type, -10, 10);
+		Real1dBinMapper<FloatType> mapper =
+			new Real1dBinMapper<FloatType>(-5, 5, 40, true);
+		Histogram1d<FloatType> expected =
+			new Histogram1d<FloatType>(copyOf(img), mapper);
+		Histogram1d<FloatType> hist = new Histogram1d<FloatType>(mapper);
+		hist.countData(img, service, 4);
+		assertSame(expected, hist);
+	}
+
+	@Test
+	public void testIncrementalCounting() {
+		UnsignedShortType type = new UnsignedShortType();
+		Img<UnsignedShortType> img =
+			random(new ArrayImgFactory<UnsignedShortType>(), type, 0, 999);
+		Integer1dBinMapper<UnsignedShortType> mapper =
+			new Integer1dBinMapper<UnsignedShortType>(100, 500, true);
+
+		// slide a window by 100 lines: drop the top rows, add the next ones
+		Histogram1d<UnsignedShortType> hist =
+			new Histogram1d<UnsignedShortType>(mapper);
+		hist.countData(Views.iterable(Views.interval(img, new long[] { 0, 0 },
+			new long[] { 300, 149 })), service, 4);
+		hist.subtractData(Views.iterable(Views.interval(img, new long[] { 0, 0 },
+			new long[] { 300, 99 })), service, 4);
+		hist.addData(Views.iterable(Views.interval(img, new long[] { 0, 150 },
+			new long[] { 300, 249 })), service, 4);
+
+		Histogram1d<UnsignedShortType> expected =
+			new Histogram1d<UnsignedShortType>(copyOf(Views.iterable(
+				Views.interval(img, new long[] { 0, 100 },
+					new long[] { 300, 249 }))), mapper);
+		assertSame(expected, hist);
+	}
+
+	@Test
+	public void testDistributionArithmetic() {
+		DiscreteFrequencyDistribution a =
+			new DiscreteFrequencyDistribution(new long[] { 4 });
+		DiscreteFrequencyDistribution b =
+			new DiscreteFrequencyDistribution(new long[] { 4 });
+		a.addFrequencies(new long[] { 1, 2, 3, 4 });
+		b.addFrequencies(new long[] { 0, 1, 0, 2 });
+		assertEquals(10, a.totalValues());
+		a.add(b);
+		assertEquals(13, a.totalValues());
+		assertEquals(3, a.frequency(new long[] { 1 }));
+		assertEquals(6, a.frequency(new long[] { 3 }));
+		a.subtract(b);
+		a.subtract(b);
+		assertEquals(7, a.totalValues());
+		assertEquals(1, a.frequency(new long[] { 1 }));
+		assertEquals(2, a.frequency(new long[] { 3 }));
+	}
+
+	@Test
+	public void testParallelNdCounting() {
+		UnsignedByteType type = new UnsignedByteType();
+		ArrayImgFactory<UnsignedByteType> factory =
+			new ArrayImgFactory<UnsignedByteType>();
+		Img<UnsignedByteType> img1 = random(factory, type, 0, 255);
+		Img<UnsignedByteType> img2 = random(factory, type, 0, 255);
+		List<BinMapper1d<UnsignedByteType>> mappers =
+			new ArrayList<BinMapper1d<UnsignedByteType>>();
+		mappers.add(new Integer1dBinMapper<UnsignedByteType>(0, 256, false));
+		mappers.add(new Integer1dBinMapper<UnsignedByteType>(50, 20, true));
+
+		List<Iterable<UnsignedByteType>> sequential =
+			new ArrayList<Iterable<UnsignedByteType>>();
+		sequential.add(copyOf(img1));
+		sequential.add(copyOf(img2));
+		HistogramNd<UnsignedByteType> expected =
+			new HistogramNd<UnsignedByteType>(sequential, mappers);
+
+		List<Iterable<UnsignedByteType>> data =
+			new ArrayList<Iterable<UnsignedByteType>>();
+		data.add(img1);
+		data.add(img2);
+		HistogramNd<UnsignedByteType> hist =
+			new HistogramNd<UnsignedByteType>(mappers);
+		hist.countData(data, service, 4);
+
+		assertEquals(expected.distributionCount(), hist.distributionCount());
+		assertEquals(expected.ignoredCount(), hist.ignoredCount());
+		assertEquals(expected.totalCount(), hist.totalCount());
+		assertDistributionsEqual(expected.dfd(), hist.dfd());
+
+		HistogramNd<UnsignedByteType> copy =
+			new HistogramNd<UnsignedByteType>(hist);
+		assertEquals(0, copy.totalCount());
+		copy.countData(sequential);
+		assertDistributionsEqual(hist.dfd(), copy.dfd());
+
+		hist.subtractData(data, service, 4);
+		assertEquals(0, hist.distributionCount());
+	}
+
+	// -- helpers --
+
+	private <T extends IntegerType<T>> void checkInteger(Img<T> img, long min,
+		long bins, boolean tails)
+	{
+		Integer1dBinMapper<T> mapper = new Integer1dBinMapper<T>(min, bins, tails);
+		Histogram1d<T> expected = new Histogram1d<T>(copyOf(img), mapper);
+		Histogram1d<T> hist = new Histogram1d<T>(mapper);
+		hist.countData(img, service, 4);
+		assertSame(expected, hist);
+		// the single threaded default path must agree as well
+		assertSame(expected, new Histogram1d<T>(img, mapper));
+	}
+
+	private <T extends RealType<T>> void assertSame(Histogram1d<T> expected,
+		Histogram1d<T> actual)
+	{
+		assertEquals(expected.distributionCount(), actual.distributionCount());
+		assertEquals(expected.ignoredCount(), actual.ignoredCount());
+		assertEquals(expected.lowerTailCount(), actual.lowerTailCount());
+		assertEquals(expected.upperTailCount(), actual.upperTailCount());
+		assertEquals(expected.totalCount(), actual.totalCount());
+		assertEquals(Arrays.toString(expected.toLongArray()), Arrays
+			.toString(actual.toLongArray()));
+	}
+
+	private void assertDistributionsEqual(DiscreteFrequencyDistribution a,
+		DiscreteFrequencyDistribution b)
+	{
+		assertEquals(a.totalValues(), b.totalValues());
+		Cursor<?> ca = a.localizingCursor();
+		long[] pos = new long[a.numDimensions()];
+		while (ca.hasNext()) {
+			ca.fwd();
+			ca.localize(pos);
+			assertEquals(a.frequency(pos), b.frequency(pos));
+		}
+	}
+
+	private <T extends NativeType<T>> List<ImgFactory<T>> factories(T type) {
+		List<ImgFactory<T>> factories = new ArrayList<ImgFactory<T>>();
+		factories.add(new ArrayImgFactory<T>());
+		factories.add(new PlanarImgFactory<T>());
+		factories.add(new CellImgFactory<T>(37));
+		return factories;
+	}
+
+	private <T extends RealType<T>> Img<T> random(ImgFactory<T> factory,
+		T type, double min, double max)
+	{
+		return random(factory.create(DIMS, type), min, max);
+	}
+
+	private <T extends RealType<T>> Img<T> random(Img<T> img, double min,
+		double max)
+	{
+		Random rnd = new Random(1234);
+		for (T t : img) {
+			t.setReal(min + rnd.nextDouble() * (max - min));
+		}
+		return img;
+	}
+
+	private <T extends RealType<T>> List<T> copyOf(Iterable<T> data) {
+		List<T> list = new ArrayList<T>();
+		for (T t : data) {
+			list.add(t.copy());
+		}
+		return list;
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.StorageBlock.BlockOperation;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.DefaultCell;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.multithreading.TaskExecutors;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link StorageBlock}.
+ *
+ * @author ImgLib2 developers
+ */
+public class StorageBlockTest
+{
+	final long[] dimensions = new long[] { 10, 7, 5, 3 };
+
+	/**
+	 * Writes a value computed from the position into every pixel of a block
+	 * and counts the pixels.
+	 */
+	static class WritePosition implements BlockOperation< FloatType, FloatArray >
+	{
+		final AtomicLong count = new AtomicLong();
+
+		@Override
+		public void apply( final StorageBlock< FloatType, FloatArray > block )
+		{
+			final Cursor< FloatType > c = block.cursor();
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				c.get().setReal( valueAt( c ) );
+				count.incrementAndGet();
+			}
+		}
+	}
+
+	static float valueAt( final Cursor< ? > c )
+	{
+		float v = 0;
+		for ( int d = c.numDimensions() - 1; d >= 0; --d )
+			v = v * 16 + c.getLongPosition( d );
+		return v;
+	}
+
+	static void assertValues( final Img< FloatType > img )
+	{
+		final Cursor< FloatType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			assertEquals( valueAt( c ), c.get().get(), 0 );
+		}
+	}
+
+	@SuppressWarnings( "unchecked" )
+	CellImg< FloatType, FloatArray, DefaultCell< FloatArray > > createCellImg()
+	{
+		return ( CellImg< FloatType, FloatArray, DefaultCell< FloatArray > > ) new CellImgFactory< FloatType >( 4 ).create( dimensions, new FloatType() );
+	}
+
+	@Test
+	public void testForEachCell()
+	{
+		final CellImg< FloatType, FloatArray, DefaultCell< FloatArray > > img = createCellImg();
+		assertEquals( 3 * 2 * 2 * 1, img.numCells() );
+
+		final WritePosition op = new WritePosition();
+		img.forEachCell( op, TaskExecutors.getDefault(), 4 );
+		assertEquals( Intervals.numElements( img ), op.count.get() );
+		assertValues( img );
+
+		final StorageBlock< FloatType, FloatArray > block = img.getCellBlock( 5 );
+		assertEquals( 8, block.min( 0 ) );
+		assertEquals( 9, block.max( 0 ) );
+		assertEquals( 4, block.min( 1 ) );
+		assertEquals( 6, block.max( 1 ) );
+		assertEquals( 0, block.min( 2 ) );
+		assertEquals( 2 * 3 * 4 * 3, block.size() );
+
+		final RandomAccess< DefaultCell< FloatArray > > cells = img.getCells().randomAccess();
+		cells.setPosition( new long[] { 2, 1, 0, 0 } );
+		assertSame( cells.get().getData(), block.getData() );
+	}
+
+	@Test
+	public void testForEachPlane()
+	{
+		final PlanarImg< FloatType, ? > img = new PlanarImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final WritePosition op = new WritePosition();
+		@SuppressWarnings( "unchecked" )
+		final PlanarImg< FloatType, FloatArray > planar = ( PlanarImg< FloatType, FloatArray > ) img;
+		planar.forEachPlane( op, TaskExecutors.getDefault(), 4 );
+		assertEquals( Intervals.numElements( img ), op.count.get() );
+		assertValues( img );
+
+		final StorageBlock< FloatType, FloatArray > block = planar.getPlaneBlock( 7 );
+		assertEquals( 2, block.min( 2 ) );
+		assertEquals( 1, block.min( 3 ) );
+		assertEquals( 0, block.min( 0 ) );
+		assertEquals( 9, block.max( 0 ) );
+		assertEquals( 70, block.size() );
+		assertSame( planar.getPlane( 7 ), block.getData() );
+	}
+
+	@Test
+	public void testCursor()
+	{
+		final CellImg< FloatType, FloatArray, DefaultCell< FloatArray > > img = createCellImg();
+		img.forEachCell( new WritePosition() );
+
+		final StorageBlock< FloatType, FloatArray > block = img.getCellBlock( 7 );
+		final Cursor< FloatType > c = block.localizingCursor();
+		final long[] position = new long[ c.numDimensions() ];
+		c.jumpFwd( 10 );
+		c.localize( position );
+		for ( int d = 0; d < position.length; ++d )
+			assertEquals( position[ d ], c.getLongPosition( d ) );
+		assertEquals( valueAt( c ), c.get().get(), 0 );
+
+		final Cursor< FloatType > copy = c.copyCursor();
+		while ( copy.hasNext() )
+		{
+			copy.fwd();
+			assertEquals( valueAt( copy ), copy.get().get(), 0 );
+		}
+		assertEquals( block.max( 0 ), copy.getLongPosition( 0 ) );
+		assertEquals( block.max( 3 ), copy.getLongPosition( 3 ) );
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.array;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel.MapMode;
+
+import net.imglib2.Cursor;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MappedArrayImgFactory}.
+ *
+ * @author ImgLib2 developers
+ */
+public class MappedArrayImgTest
+{
+	private File file;
+
+	@Before
+	public void createFile() throws IOException
+	{
+		file = File.createTempFile( "mappedarrayimg", ".raw" );
+	}
+
+	@After
+	public void deleteFile()
+	{
+		file.delete();
+	}
+
+	@Test
+	public void testMappedArrayImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "ArrayImg vs MappedArrayImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), new MappedArrayImgFactory< FloatType >( file ) ) );
+		}
+	}
+
+	@Test
+	public void testReadRawFile() throws IOException
+	{
+		final int header = 17;
+		final long[] dimensions = new long[] { 13, 7, 5 };
+		final DataOutputStream out = new DataOutputStream( new FileOutputStream( file ) );
+		for ( int i = 0; i < header; ++i )
+			out.writeByte( 0xff );
+		for ( int i = 0; i < 13 * 7 * 5; ++i )
+			out.writeShort( 60000 - i );
+		out.close();
+
+		final ArrayImg< UnsignedShortType, ? > img = new MappedArrayImgFactory< UnsignedShortType >( file, header, ByteOrder.BIG_ENDIAN, MapMode.READ_ONLY ).create( dimensions, new UnsignedShortType() );
+		int i = 0;
+		for ( final UnsignedShortType t : img )
+			assertEquals( 60000 - i++, t.get() );
+	}
+
+	@Test
+	public void testWriteThrough()
+	{
+		final long[] dimensions = new long[] { 31, 29 };
+		final MappedArrayImgFactory< FloatType > factory = new MappedArrayImgFactory< FloatType >( file );
+		final ArrayImg< FloatType, ? > img = factory.create( dimensions, new FloatType() );
+		int i = 0;
+		for ( final FloatType t : img )
+			t.set( i++ );
+		assertEquals( 4 * 31 * 29, file.length() );
+
+		final Cursor< FloatType > c = factory.create( dimensions, new FloatType() ).cursor();
+		i = 0;
+		while ( c.hasNext() )
+			assertEquals( i++, c.next().get(), 0 );
+	}
+}
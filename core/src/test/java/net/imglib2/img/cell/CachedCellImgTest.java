@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CachedCellImg}.
+ *
+ * @author ImgLib2 developers
+ */
+public class CachedCellImgTest
+{
+	private File directory;
+
+	@Before
+	public void createDirectory() throws IOException
+	{
+		directory = File.createTempFile( "cachedcellimg", "" );
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void deleteDirectory()
+	{
+		final File[] files = directory.listFiles();
+		if ( files != null )
+			for ( final File f : files )
+				f.delete();
+		directory.delete();
+	}
+
+	@Test
+	public void testCachedCellImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			if ( dim[ i ].length > 1 )
+			{
+				deleteDirectory();
+				directory.mkdirs();
+				// room for only a few cells of 10^n floats
+				final CachedCellImgFactory< FloatType > factory = new CachedCellImgFactory< FloatType >( new FileCellLoader< FloatArray >( directory ), 4 * 3000, 10 );
+				assertTrue( "ArrayImg vs CachedCellImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+						ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), factory ) );
+			}
+		}
+	}
+
+	@Test
+	public void testCacheBound()
+	{
+		final long maxBytes = 5 * 8 * 8 * 2;
+		final CachedCellImg< UnsignedShortType, ? > img = new CachedCellImgFactory< UnsignedShortType >( new FileCellLoader< ShortArray >( directory ), maxBytes, 8 ).create( new long[] { 64, 64 }, new UnsignedShortType() );
+		final Random random = new Random( 42 );
+		final boolean[] written = new boolean[ 64 * 64 ];
+		final RandomAccess< UnsignedShortType > a = img.randomAccess();
+		for ( int i = 0; i < 10000; ++i )
+		{
+			a.setPosition( random.nextInt( 64 ), 0 );
+			a.setPosition( random.nextInt( 64 ), 1 );
+			final int value = a.getIntPosition( 0 ) + 64 * a.getIntPosition( 1 );
+			a.get().set( value );
+			written[ value ] = true;
+			assertTrue( img.getCells().getCachedBytes() <= maxBytes );
+		}
+		assertEquals( 5, img.getCells().getNumCachedCells() );
+
+		for ( final Cursor< UnsignedShortType > c = img.localizingCursor(); c.hasNext(); )
+		{
+			c.fwd();
+			final int value = c.getIntPosition( 0 ) + 64 * c.getIntPosition( 1 );
+			assertEquals( written[ value ] ? value : 0, c.get().get() );
+		}
+	}
+
+	@Test
+	public void testWriteBack()
+	{
+		final long[] dimensions = new long[] { 47, 31, 9 };
+		final CachedCellImgFactory< FloatType > factory = new CachedCellImgFactory< FloatType >( new FileCellLoader< FloatArray >( directory ), 4 * 1000, 10 );
+
+		final CachedCellImg< FloatType, ? > img = factory.create( dimensions, new FloatType() );
+		final Random random = new Random( 1 );
+		for ( final FloatType t : img )
+			t.set( random.nextFloat() );
+		img.flush();
+
+		final CachedCellImg< FloatType, ? > reopened = factory.create( dimensions, new FloatType() );
+		final Cursor< FloatType > c1 = img.cursor();
+		final Cursor< FloatType > c2 = reopened.cursor();
+		while ( c1.hasNext() )
+			assertEquals( c1.next().get(), c2.next().get(), 0 );
+	}
+
+	@Test
+	public void testWriteToEvictedCell() throws InterruptedException
+	{
+		// the cache holds a single cell
+		final CachedCellImgFactory< FloatType > factory = new CachedCellImgFactory< FloatType >( 64, 4 );
+		final CachedCellImg< FloatType, ? > img = factory.create( new long[] { 16, 16 }, new FloatType() );
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		final RandomAccess< FloatType > rb = img.randomAccess();
+
+		ra.setPosition( new long[] { 0, 0 } );
+		ra.get().set( 1 );
+		rb.setPosition( new long[] { 8, 8 } );
+		rb.get().set( 2 );
+
+		// ra still holds on to the evicted cell
+		ra.setPosition( new long[] { 1, 0 } );
+		ra.get().set( 3 );
+		ra.setPosition( new long[] { 12, 0 } );
+		ra.get().set( 4 );
+
+		for ( int i = 0; i < 3; ++i )
+		{
+			System.gc();
+			Thread.sleep( 10 );
+			rb.setPosition( new long[] { 8 * ( i % 2 ), 12 } );
+			rb.get().get();
+		}
+
+		final RandomAccess< FloatType > rc = img.randomAccess();
+		rc.setPosition( new long[] { 0, 0 } );
+		assertEquals( 1, rc.get().get(), 0 );
+		rc.setPosition( new long[] { 1, 0 } );
+		assertEquals( 3, rc.get().get(), 0 );
+		rc.setPosition( new long[] { 8, 8 } );
+		assertEquals( 2, rc.get().get(), 0 );
+		rc.setPosition( new long[] { 12, 0 } );
+		assertEquals( 4, rc.get().get(), 0 );
+	}
+}
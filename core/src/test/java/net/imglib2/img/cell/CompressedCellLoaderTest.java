@@ -0,0 +1,164 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CompressedCellLoader}.
+ *
+ * @author ImgLib2 developers
+ */
+public class CompressedCellLoaderTest
+{
+	@Test
+	public void testEncodeDecode()
+	{
+		final Random random = new Random( 1 );
+		final byte[] bytes = new byte[ 10000 ];
+		for ( int i = 0; i < bytes.length; )
+		{
+			final int length = Math.min( random.nextInt( 20 ) + 1, bytes.length - i );
+			final byte value = ( byte ) random.nextInt();
+			final boolean run = random.nextBoolean();
+			for ( int k = 0; k < length; ++k )
+				bytes[ i + k ] = run ? value : ( byte ) random.nextInt();
+			i += length;
+		}
+		final byte[] decoded = new byte[ bytes.length ];
+		CompressedCellLoader.decode( CompressedCellLoader.encode( bytes ), decoded );
+		assertArrayEquals( bytes, decoded );
+
+		final byte[] shuffled = CompressedCellLoader.shuffle( bytes, 8 );
+		assertArrayEquals( bytes, CompressedCellLoader.unshuffle( shuffled, 8 ) );
+	}
+
+	@Test
+	public void testEncodeConstant()
+	{
+		final byte[] bytes = new byte[ 1 << 20 ];
+		final byte[] encoded = CompressedCellLoader.encode( bytes );
+		assertTrue( encoded.length < 8 );
+		final byte[] decoded = new byte[ bytes.length ];
+		decoded[ 17 ] = 1;
+		CompressedCellLoader.decode( encoded, decoded );
+		assertArrayEquals( bytes, decoded );
+	}
+
+	@Test
+	public void testSaveLoad()
+	{
+		final CompressedCellLoader< FloatArray > loader = new CompressedCellLoader< FloatArray >();
+		final long[] min = new long[ 2 ];
+		final int[] dimensions = new int[] { 16, 16 };
+		final float[] values = new float[ 256 ];
+		for ( int i = 0; i < values.length; ++i )
+			values[ i ] = i < 100 ? 1.5f : -i;
+		loader.save( 3, min, dimensions, new FloatArray( values.clone() ) );
+		loader.save( 4, min, dimensions, new FloatArray( 256 ) );
+		assertEquals( 1, loader.getNumCompressedCells() );
+
+		final FloatArray data = new FloatArray( 256 );
+		loader.load( 3, min, dimensions, data );
+		assertArrayEquals( values, data.getCurrentStorageArray(), 0 );
+
+		final FloatArray zero = new FloatArray( 256 );
+		loader.load( 4, min, dimensions, zero );
+		assertArrayEquals( new float[ 256 ], zero.getCurrentStorageArray(), 0 );
+	}
+
+	@Test
+	public void testCompressedCellImg()
+	{
+		final long[] dimensions = new long[] { 100, 80, 20 };
+		final int[] cellDimensions = new int[] { 16, 16, 16 };
+		final CachedCellImgFactory< IntType > factory = new CachedCellImgFactory< IntType >( 4 * 4 * 16 * 16 * 16, cellDimensions );
+		final CachedCellImg< IntType, ? > img = factory.create( dimensions, new IntType() );
+
+		// a mostly constant label image
+		final Cursor< IntType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( c.getLongPosition( 2 ) < 10 ? 7 : ( c.getLongPosition( 0 ) == 50 ? c.getIntPosition( 1 ) : 0 ) );
+		}
+
+		@SuppressWarnings( "unchecked" )
+		final CompressedCellLoader< IntArray > loader = ( CompressedCellLoader< IntArray > ) img.getCells().getLoader();
+		assertTrue( img.getCells().getCachedBytes() <= img.getCells().getMaxCacheBytes() );
+		assertTrue( loader.getNumCompressedCells() > 0 );
+		assertTrue( loader.getCompressedBytes() < 4 * 16 * 16 * 16 );
+
+		final RandomAccess< IntType > a = img.randomAccess();
+		final Random random = new Random( 2 );
+		final long[] pos = new long[ 3 ];
+		for ( int i = 0; i < 10000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = random.nextInt( ( int ) dimensions[ d ] );
+			a.setPosition( pos );
+			final int expected = pos[ 2 ] < 10 ? 7 : ( pos[ 0 ] == 50 ? ( int ) pos[ 1 ] : 0 );
+			assertEquals( expected, a.get().get() );
+		}
+
+		// images of the same factory do not share data
+		final CachedCellImg< IntType, ? > other = factory.create( dimensions, new IntType() );
+		for ( final IntType t : other )
+			assertEquals( 0, t.get() );
+	}
+
+	@Test
+	public void testFloatType()
+	{
+		final CachedCellImg< FloatType, ? > img = new CachedCellImgFactory< FloatType >( 1, 8 ).create( new long[] { 30, 30 }, new FloatType() );
+		int i = 0;
+		for ( final FloatType t : img )
+			t.set( ( i++ % 7 ) * 0.25f );
+		i = 0;
+		for ( final FloatType t : img )
+			assertEquals( ( i++ % 7 ) * 0.25f, t.get(), 0 );
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link RandomAccessibleCellLoader} and
+ * {@link Views#cache(RandomAccessibleInterval, int[], long)}.
+ *
+ * @author ImgLib2 developers
+ */
+public class RandomAccessibleCellLoaderTest
+{
+	private final long[] dimensions = new long[] { 23, 17, 9 };
+
+	private final long[] offset = new long[] { -5, 3, 2 };
+
+	private ArrayImg< IntType, IntArray > img;
+
+	private AtomicInteger numConversions;
+
+	private RandomAccessibleInterval< IntType > source;
+
+	@Before
+	public void setUp()
+	{
+		img = ArrayImgs.ints( dimensions );
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+
+		numConversions = new AtomicInteger();
+		final Converter< IntType, IntType > converter = new Converter< IntType, IntType >()
+		{
+			@Override
+			public void convert( final IntType input, final IntType output )
+			{
+				numConversions.incrementAndGet();
+				output.set( 2 * input.get() );
+			}
+		};
+		source = Converters.convert( Views.translate( img, offset ), converter, new IntType() );
+	}
+
+	private void assertEqualsSource( final RandomAccessibleInterval< IntType > cached )
+	{
+		final Cursor< IntType > c = img.localizingCursor();
+		final RandomAccess< IntType > a = cached.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( 2 * c.get().get(), a.get().get() );
+		}
+	}
+
+	@Test
+	public void testValues()
+	{
+		final CachedCellImg< IntType, ? > cached = Views.cache( source, new int[] { 8, 5, 4 }, Long.MAX_VALUE );
+		assertEquals( 3, cached.numDimensions() );
+		for ( int d = 0; d < 3; ++d )
+			assertEquals( dimensions[ d ], cached.dimension( d ) );
+		assertEqualsSource( cached );
+	}
+
+	@Test
+	public void testComputedOnce()
+	{
+		final CachedCellImg< IntType, ? > cached = Views.cache( source, 8, Long.MAX_VALUE );
+		// obtaining the pixel type may evaluate source once
+		final int numInitialConversions = numConversions.get();
+		assertEqualsSource( cached );
+		assertEqualsSource( cached );
+		assertEquals( img.size(), numConversions.get() - numInitialConversions );
+	}
+
+	@Test
+	public void testPrefetch()
+	{
+		final CachedCellImg< IntType, ? > cached = Views.cache( source, 4, Long.MAX_VALUE );
+		final int numInitialConversions = numConversions.get();
+		cached.prefetch( cached );
+		assertEquals( cached.numCells(), cached.getCells().getNumCachedCells() );
+		assertEquals( img.size(), numConversions.get() - numInitialConversions );
+		assertEqualsSource( cached );
+		assertEquals( img.size(), numConversions.get() - numInitialConversions );
+	}
+
+	@Test
+	public void testPrefetchInterval()
+	{
+		final CachedCellImg< IntType, ? > cached = Views.cache( source, 4, Long.MAX_VALUE );
+		cached.prefetch( new FinalInterval( new long[] { 30, 0, 0 }, new long[] { 40, 3, 3 } ) );
+		assertEquals( 0, cached.getCells().getNumCachedCells() );
+		// cells 1 and 2 in dimension 0, cell 0 in dimension 1, cell 2 in
+		// dimension 2
+		cached.prefetch( new FinalInterval( new long[] { 5, -2, 8 }, new long[] { 10, 3, 8 } ) );
+		assertEquals( 2, cached.getCells().getNumCachedCells() );
+		assertEqualsSource( cached );
+	}
+
+	@Test
+	public void testInvalidate()
+	{
+		final CachedCellImg< IntType, ? > cached = Views.cache( source, 8, Long.MAX_VALUE );
+		assertEqualsSource( cached );
+
+		for ( final IntType t : img )
+			t.inc();
+
+		// cells intersecting this interval are recomputed, all other cells are stale
+		final FinalInterval interval = new FinalInterval( new long[] { 0, 0, 0 }, new long[] { 7, 7, 8 } );
+		cached.invalidate( interval );
+		final Cursor< IntType > c = img.localizingCursor();
+		final RandomAccess< IntType > a = cached.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			final boolean recomputed = c.getLongPosition( 0 ) < 8 && c.getLongPosition( 1 ) < 8;
+			assertEquals( recomputed ? 2 * c.get().get() : 2 * ( c.get().get() - 1 ), a.get().get() );
+		}
+
+		cached.invalidate();
+		assertEquals( 0, cached.getCells().getNumCachedCells() );
+		assertEqualsSource( cached );
+	}
+
+	@Test
+	public void testCacheBound()
+	{
+		final long maxBytes = 4 * 4 * 4 * 4 * 3;
+		final CachedCellImg< IntType, ? > cached = Views.cache( source, 4, maxBytes );
+		assertEqualsSource( cached );
+		assertTrue( cached.getCells().getCachedBytes() <= maxBytes );
+		assertTrue( cached.getCells().getNumCachedCells() < cached.numCells() );
+		assertEqualsSource( cached );
+	}
+}
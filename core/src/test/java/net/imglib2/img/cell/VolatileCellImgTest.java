@@ -0,0 +1,214 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.cell.VolatileCellImg.VolatileCellRandomAccess;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.type.volatiles.VolatileRealType;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link VolatileCellImg}.
+ *
+ * @author ImgLib2 developers
+ */
+public class VolatileCellImgTest
+{
+	/**
+	 * Fills every cell with its index + 1 after the gate was opened and
+	 * records the order in which cells are loaded.
+	 */
+	static class GatedLoader implements CellLoader< FloatArray >
+	{
+		final CountDownLatch started = new CountDownLatch( 1 );
+
+		final CountDownLatch gate = new CountDownLatch( 1 );
+
+		final List< Long > loaded = Collections.synchronizedList( new ArrayList< Long >() );
+
+		@Override
+		public void load( final long index, final long[] min, final int[] dimensions, final FloatArray data )
+		{
+			started.countDown();
+			try
+			{
+				gate.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				throw new RuntimeException( e );
+			}
+			final float[] array = data.getCurrentStorageArray();
+			for ( int i = 0; i < array.length; ++i )
+				array[ i ] = index + 1;
+			loaded.add( index );
+		}
+
+		@Override
+		public void save( final long index, final long[] min, final int[] dimensions, final FloatArray data )
+		{}
+	}
+
+	/**
+	 * Counts down a latch for every loaded cell.
+	 */
+	static class CountingListener implements VolatileCellImg.LoadListener
+	{
+		final CountDownLatch latch;
+
+		CountingListener( final int count )
+		{
+			latch = new CountDownLatch( count );
+		}
+
+		@Override
+		public void cellLoaded( final long index )
+		{
+			latch.countDown();
+		}
+	}
+
+	@SuppressWarnings( "unchecked" )
+	static CachedCellImg< FloatType, FloatArray > createImg( final CellLoader< FloatArray > loader )
+	{
+		return ( CachedCellImg< FloatType, FloatArray > ) new CachedCellImgFactory< FloatType >( loader, 1 << 20, 10 ).create( new long[] { 40, 30 }, new FloatType() );
+	}
+
+	@Test
+	public void testPlaceholderUntilLoaded() throws InterruptedException
+	{
+		final GatedLoader loader = new GatedLoader();
+		final VolatileCellImg< FloatType, FloatArray > img = new VolatileCellImg< FloatType, FloatArray >( createImg( loader ), 2 );
+		final CountingListener listener = new CountingListener( 1 );
+		img.addLoadListener( listener );
+
+		final VolatileCellRandomAccess access = img.randomAccess();
+		access.setPosition( new long[] { 15, 23 } );
+		VolatileRealType< FloatType > v = access.get();
+		assertFalse( v.isValid() );
+		assertEquals( 0, v.getRealDouble(), 0 );
+		assertEquals( 1, img.getNumPendingRequests() );
+
+		// requesting the same cell again does not create another request
+		access.get();
+		assertEquals( 1, img.getNumPendingRequests() );
+
+		loader.gate.countDown();
+		assertTrue( listener.latch.await( 10, TimeUnit.SECONDS ) );
+
+		v = access.get();
+		assertTrue( v.isValid() );
+		assertEquals( 2 * 4 + 1 + 1, v.getRealDouble(), 0 );
+		assertEquals( 1, loader.loaded.size() );
+		img.shutdown();
+	}
+
+	@Test
+	public void testPriorities() throws InterruptedException
+	{
+		final GatedLoader loader = new GatedLoader();
+		final VolatileCellImg< FloatType, FloatArray > img = new VolatileCellImg< FloatType, FloatArray >( createImg( loader ), 1 );
+		final CountingListener listener = new CountingListener( 5 );
+		img.addLoadListener( listener );
+
+		// occupy the loader thread
+		img.requestCell( 0, 0 );
+		assertTrue( loader.started.await( 10, TimeUnit.SECONDS ) );
+
+		img.requestCell( 1, 0 );
+		img.requestCell( 2, 5 );
+		img.requestCell( 3, 1 );
+		img.requestCell( 4, 1 );
+		// raising the priority of a pending request
+		img.requestCell( 1, 3 );
+
+		loader.gate.countDown();
+		assertTrue( listener.latch.await( 10, TimeUnit.SECONDS ) );
+		assertEquals( 5, loader.loaded.size() );
+		assertEquals( Long.valueOf( 0 ), loader.loaded.get( 0 ) );
+		assertEquals( Long.valueOf( 2 ), loader.loaded.get( 1 ) );
+		assertEquals( Long.valueOf( 1 ), loader.loaded.get( 2 ) );
+		assertEquals( Long.valueOf( 4 ), loader.loaded.get( 3 ) );
+		assertEquals( Long.valueOf( 3 ), loader.loaded.get( 4 ) );
+		img.shutdown();
+	}
+
+	@Test
+	public void testCancel() throws InterruptedException
+	{
+		final GatedLoader loader = new GatedLoader();
+		final VolatileCellImg< FloatType, FloatArray > img = new VolatileCellImg< FloatType, FloatArray >( createImg( loader ), 1 );
+		final CountingListener listener = new CountingListener( 1 );
+		img.addLoadListener( listener );
+
+		img.requestCell( 0, 0 );
+		assertTrue( loader.started.await( 10, TimeUnit.SECONDS ) );
+		img.requestCell( 1, 0 );
+		img.requestCell( 2, 0 );
+		img.cancelPendingRequests();
+
+		loader.gate.countDown();
+		assertTrue( listener.latch.await( 10, TimeUnit.SECONDS ) );
+		img.shutdown();
+		assertEquals( 1, loader.loaded.size() );
+		assertEquals( 0, img.getNumPendingRequests() );
+	}
+
+	@Test
+	public void testRequestAfterShutdown()
+	{
+		final GatedLoader loader = new GatedLoader();
+		final VolatileCellImg< FloatType, FloatArray > img = new VolatileCellImg< FloatType, FloatArray >( createImg( loader ), 2 );
+		img.shutdown();
+
+		img.requestCell( 3, 0 );
+		final VolatileCellRandomAccess access = img.randomAccess();
+		access.setPosition( new long[] { 15, 23 } );
+		assertFalse( access.get().isValid() );
+		assertEquals( 0, img.getNumPendingRequests() );
+		assertEquals( 0, loader.loaded.size() );
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.planar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.MappedArrayImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MappedPlanarImgFactory}.
+ *
+ * @author ImgLib2 developers
+ */
+public class MappedPlanarImgTest
+{
+	private File file;
+
+	@Before
+	public void createFile() throws IOException
+	{
+		file = File.createTempFile( "mappedplanarimg", ".raw" );
+	}
+
+	@After
+	public void deleteFile()
+	{
+		file.delete();
+	}
+
+	@Test
+	public void testMappedPlanarImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "ArrayImg vs MappedPlanarImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), new MappedPlanarImgFactory< FloatType >( file ) ) );
+		}
+	}
+
+	@Test
+	public void testSameLayoutAsArrayImg()
+	{
+		final long[] dimensions = new long[] { 11, 6, 4, 3 };
+		final ArrayImg< IntType, ? > array = new MappedArrayImgFactory< IntType >( file ).create( dimensions, new IntType() );
+		int i = 0;
+		for ( final IntType t : array )
+			t.set( i++ );
+
+		final PlanarImg< IntType, ? > planar = new MappedPlanarImgFactory< IntType >( file ).create( dimensions, new IntType() );
+		assertEquals( 12, planar.numSlices() );
+		final Cursor< IntType > c = planar.cursor();
+		i = 0;
+		while ( c.hasNext() )
+			assertEquals( i++, c.next().get() );
+	}
+
+	@Test
+	public void testManyPlanes()
+	{
+		// planes are sliced from shared mappings, writes must go to the file
+		final long[] dimensions = new long[] { 5, 3, 1000 };
+		final PlanarImg< IntType, ? > planar = new MappedPlanarImgFactory< IntType >( file ).create( dimensions, new IntType() );
+		int i = 0;
+		for ( final IntType t : planar )
+			t.set( i++ );
+
+		final ArrayImg< IntType, ? > array = new MappedArrayImgFactory< IntType >( file ).create( dimensions, new IntType() );
+		i = 0;
+		for ( final IntType t : array )
+			assertEquals( i++, t.get() );
+	}
+
+	@Test( expected = NotSerializableException.class )
+	public void testNotSerializable() throws IOException
+	{
+		final PlanarImg< IntType, ? > planar = new MappedPlanarImgFactory< IntType >( file ).create( new long[] { 5, 3, 2 }, new IntType() );
+		new ObjectOutputStream( new ByteArrayOutputStream() ).writeObject( planar.getPlane( 0 ) );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testPlaneTooLarge()
+	{
+		new MappedPlanarImgFactory< FloatType >( file ).create( new long[] { 1 << 16, 1 << 16, 2 }, new FloatType() );
+	}
+}
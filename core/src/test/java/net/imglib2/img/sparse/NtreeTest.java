@@ -33,9 +33,20 @@
 
 package net.imglib2.img.sparse;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.type.numeric.integer.IntType;
+
 import org.junit.Test;
 
 /**
@@ -93,4 +104,89 @@ public class NtreeTest
 
 		assertFalse( t.root.hasChildren() );
 	}
+
+	@Test
+	public void test_concurrentCreateNodeWithValue()
+	{
+		final long[] dim = new long[] { 32, 32, 32 };
+		final int size = 32 * 32 * 32;
+		final Ntree< Integer > t = new Ntree< Integer >( dim, 0 );
+
+		final int numThreads = 4;
+		final Thread[] threads = SimpleMultiThreading.newThreads( numThreads );
+		for ( int i = 0; i < numThreads; ++i )
+		{
+			final int offset = i;
+			threads[ i ] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					final long[] pos = new long[ 3 ];
+					for ( int j = offset; j < size; j += numThreads )
+					{
+						pos[ 0 ] = j % 32;
+						pos[ 1 ] = ( j / 32 ) % 32;
+						pos[ 2 ] = j / ( 32 * 32 );
+						t.createNodeWithValue( pos, ( int ) ( pos[ 0 ] / 8 ) );
+					}
+				}
+			};
+		}
+		SimpleMultiThreading.startAndJoin( threads );
+
+		final long[] pos = new long[ 3 ];
+		for ( int j = 0; j < size; ++j )
+		{
+			pos[ 0 ] = j % 32;
+			pos[ 1 ] = ( j / 32 ) % 32;
+			pos[ 2 ] = j / ( 32 * 32 );
+			assertEquals( ( int ) ( pos[ 0 ] / 8 ), t.getNode( pos ).getValue().intValue() );
+		}
+
+		// overwrite everything with a uniform value, which should merge the tree
+		for ( int i = 0; i < numThreads; ++i )
+		{
+			final int offset = i;
+			threads[ i ] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					final long[] pos = new long[ 3 ];
+					for ( int j = offset; j < size; j += numThreads )
+					{
+						pos[ 0 ] = j % 32;
+						pos[ 1 ] = ( j / 32 ) % 32;
+						pos[ 2 ] = j / ( 32 * 32 );
+						t.createNodeWithValue( pos, 7 );
+					}
+				}
+			};
+		}
+		SimpleMultiThreading.startAndJoin( threads );
+
+		assertFalse( t.root.hasChildren() );
+		assertEquals( 7, t.root.getValue().intValue() );
+	}
+
+	@Test
+	public void test_createFromIterableInterval()
+	{
+		final long[] dim = new long[] { 37, 21, 3 };
+		final ArrayImg< IntType, IntArray > source = ArrayImgs.ints( dim );
+		final Random random = new Random( 42 );
+		for ( final IntType t : source )
+			t.set( random.nextInt( 3 ) );
+
+		final NtreeImg< IntType, ? > img = new NtreeImgFactory< IntType >().create( source, 3 );
+		final Cursor< IntType > c = source.localizingCursor();
+		final RandomAccess< IntType > a = img.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( c.get().get(), a.get().get() );
+		}
+	}
 }
@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * @author ImgLib2 developers
+ */
+public class SeparableKernelInterpolatorTest
+{
+	final long[] dimensions = new long[] { 17, 13, 9 };
+
+	final Random random = new Random( 1234 );
+
+	private RandomAccessible< DoubleType > createSource()
+	{
+		final Img< DoubleType > img = new ArrayImgFactory< DoubleType >().create( dimensions, new DoubleType() );
+		for ( final DoubleType t : img )
+			t.set( random.nextDouble() * 100 );
+		return Views.extendMirrorSingle( img );
+	}
+
+	/**
+	 * Interpolate by evaluating the kernel for every sample.
+	 */
+	private static double interpolateDirectly( final RandomAccessible< DoubleType > source, final InterpolationKernel kernel, final double[] position )
+	{
+		final int n = position.length;
+		final int r = kernel.getRadius();
+		final int taps = 2 * r;
+		final double[][] weights = new double[ n ][ taps ];
+		final long[] first = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			final long floor = ( long ) Math.floor( position[ d ] );
+			first[ d ] = floor - r + 1;
+			double sum = 0;
+			for ( int j = 0; j < taps; ++j )
+				sum += weights[ d ][ j ] = kernel.weight( position[ d ] - ( first[ d ] + j ) );
+			for ( int j = 0; j < taps; ++j )
+				weights[ d ][ j ] /= sum;
+		}
+		final RandomAccess< DoubleType > a = source.randomAccess();
+		final int[] j = new int[ n ];
+		double value = 0;
+		int size = 1;
+		for ( int d = 0; d < n; ++d )
+			size *= taps;
+		for ( int i = 0; i < size; ++i )
+		{
+			int k = i;
+			double w = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				j[ d ] = k % taps;
+				k /= taps;
+				a.setPosition( first[ d ] + j[ d ], d );
+				w *= weights[ d ][ j[ d ] ];
+			}
+			value += w * a.get().get();
+		}
+		return value;
+	}
+
+	private void testKernel( final InterpolationKernel kernel )
+	{
+		final RandomAccessible< DoubleType > source = createSource();
+		final SeparableKernelInterpolator< DoubleType > interpolator = new SeparableKernelInterpolatorFactory< DoubleType >( kernel, false ).create( source );
+		final double[] position = new double[ dimensions.length ];
+		for ( int i = 0; i < 200; ++i )
+		{
+			for ( int d = 0; d < position.length; ++d )
+				position[ d ] = ( random.nextDouble() * 1.4 - 0.2 ) * dimensions[ d ];
+			if ( i == 0 )
+				position[ 0 ] = -1; // negative integer coordinate
+			interpolator.setPosition( position );
+			assertEquals( interpolateDirectly( source, kernel, position ), interpolator.get().get(), 1e-3 );
+		}
+	}
+
+	@Test
+	public void testLanczos()
+	{
+		testKernel( new LanczosKernel( 3 ) );
+		testKernel( new LanczosKernel( 2 ) );
+	}
+
+	@Test
+	public void testCubic()
+	{
+		testKernel( CubicKernel.catmullRom() );
+		testKernel( CubicKernel.bSpline() );
+	}
+
+	@Test
+	public void testInterpolatingAtIntegerPositions()
+	{
+		final RandomAccessible< DoubleType > source = createSource();
+		final RandomAccess< DoubleType > a = source.randomAccess();
+		final SeparableKernelInterpolator< DoubleType > lanczos = new SeparableLanczosInterpolatorFactory< DoubleType >( 3, false ).create( source );
+		final SeparableKernelInterpolator< DoubleType > catmullRom = new CubicInterpolatorFactory< DoubleType >( CubicInterpolatorFactory.Kernel.CATMULL_ROM, false ).create( source );
+		final long[] position = new long[] { 3, 0, 8 };
+		a.setPosition( position );
+		lanczos.setPosition( position );
+		catmullRom.setPosition( position );
+		assertEquals( a.get().get(), lanczos.get().get(), 1e-6 );
+		assertEquals( a.get().get(), catmullRom.get().get(), 1e-6 );
+	}
+
+	@Test
+	public void testClipping()
+	{
+		final SeparableKernelInterpolator< DoubleType > interpolator = new SeparableLanczosInterpolatorFactory< DoubleType >( 3, 10, 20 ).create( createSource() );
+		for ( int i = 0; i < 50; ++i )
+		{
+			interpolator.setPosition( new double[] { random.nextDouble() * 16, random.nextDouble() * 12, random.nextDouble() * 8 } );
+			final double v = interpolator.get().get();
+			assertEquals( true, v >= 10 && v <= 20 );
+		}
+	}
+
+	@Test
+	public void testGetLine()
+	{
+		final RandomAccessible< DoubleType > source = createSource();
+		final SeparableKernelInterpolator< DoubleType > interpolator = new SeparableLanczosInterpolatorFactory< DoubleType >( 3, false ).create( source );
+		final SeparableKernelInterpolator< DoubleType > reference = interpolator.copy();
+		final double[] start = new double[] { -2.3, 4.6, 3.1 };
+		final double[] steps = new double[] { 0.37, -0.5, 1, 2.5, 11.0 };
+		final double[] values = new double[ 25 ];
+		for ( int d = 0; d < start.length; ++d )
+		{
+			for ( final double step : steps )
+			{
+				interpolator.setPosition( start );
+				interpolator.getLine( values, d, step );
+				for ( int e = 0; e < start.length; ++e )
+					assertEquals( start[ e ], interpolator.getDoublePosition( e ), 0 );
+				for ( int k = 0; k < values.length; ++k )
+				{
+					reference.setPosition( start );
+					reference.move( k * step, d );
+					assertEquals( reference.get().get(), values[ k ], 1e-9 );
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,289 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.multithreading;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.Unsigned12BitType;
+import net.imglib2.type.numeric.integer.Unsigned2BitType;
+import net.imglib2.type.numeric.integer.Unsigned4BitType;
+import net.imglib2.type.numeric.integer.UnsignedVariableBitLengthType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link IntervalSplitter}.
+ *
+ * @author ImgLib2 developers
+ */
+public class IntervalSplitterTest
+{
+	/**
+	 * Check that parts are disjoint, cover interval, and are in flat iteration
+	 * order.
+	 */
+	private static void checkPartition( final Interval interval, final List< Interval > parts )
+	{
+		final long[] dim = new long[ interval.numDimensions() ];
+		interval.dimensions( dim );
+		final Img< IntType > count = new ArrayImgFactory< IntType >().create( dim, new IntType() );
+		final long[] offset = new long[ interval.numDimensions() ];
+		interval.min( offset );
+		long numElements = 0;
+		long lastMax = Long.MIN_VALUE;
+		for ( final Interval part : parts )
+		{
+			for ( final IntType t : Views.iterable( Views.interval( Views.translate( count, offset ), part ) ) )
+				t.inc();
+			numElements += Intervals.numElements( part );
+			final int last = interval.numDimensions() - 1;
+			assertTrue( part.max( last ) >= lastMax );
+			lastMax = part.max( last );
+		}
+		assertEquals( Intervals.numElements( interval ), numElements );
+		for ( final IntType t : count )
+			assertEquals( 1, t.get() );
+	}
+
+	/**
+	 * Check that part is a contiguous range of interval in flat iteration
+	 * order, i.e., it spans interval in all dimensions below the outermost
+	 * dimension in which it is larger than one.
+	 */
+	private static void checkContiguous( final Interval interval, final Interval part )
+	{
+		int d = interval.numDimensions() - 1;
+		while ( d > 0 && part.dimension( d ) == 1 )
+			--d;
+		for ( --d; d >= 0; --d )
+		{
+			assertEquals( interval.min( d ), part.min( d ) );
+			assertEquals( interval.max( d ), part.max( d ) );
+		}
+	}
+
+	@Test
+	public void testSplit()
+	{
+		final Interval interval = new FinalInterval( new long[] { -3, 2, 5 }, new long[] { 20, 7, 6 } );
+		for ( int numParts = 1; numParts < 40; ++numParts )
+		{
+			final List< Interval > parts = IntervalSplitter.split( interval, numParts );
+			assertTrue( parts.size() <= numParts );
+			checkPartition( interval, parts );
+			for ( final Interval part : parts )
+				checkContiguous( interval, part );
+		}
+		assertEquals( 8, IntervalSplitter.split( interval, 8 ).size() );
+	}
+
+	@Test
+	public void testSplitAligned()
+	{
+		final Interval interval = new FinalInterval( 100, 70, 30 );
+		final int[] blockSize = new int[] { 16, 16, 16 };
+		final List< Interval > parts = IntervalSplitter.split( interval, 8, blockSize );
+		checkPartition( interval, parts );
+		for ( final Interval part : parts )
+			for ( int d = 0; d < 3; ++d )
+				assertEquals( 0, part.min( d ) % blockSize[ d ] );
+	}
+
+	@Test
+	public void testBlockSize()
+	{
+		final long[] dim = new long[] { 30, 20, 10 };
+		final int[] cellBlock = IntervalSplitter.getBlockSize( new CellImgFactory< IntType >( 8 ).create( dim, new IntType() ) );
+		assertEquals( 8, cellBlock[ 0 ] );
+		assertEquals( 8, cellBlock[ 2 ] );
+		final int[] planarBlock = IntervalSplitter.getBlockSize( new PlanarImgFactory< IntType >().create( dim, new IntType() ) );
+		assertEquals( 30, planarBlock[ 0 ] );
+		assertEquals( 1, planarBlock[ 1 ] );
+		assertEquals( null, IntervalSplitter.getBlockSize( new ArrayImgFactory< IntType >().create( dim, new IntType() ) ) );
+	}
+
+	private static void checkForEach( final Img< IntType > img )
+	{
+		final IntervalSplitter.ElementOperation< IntType > inc = new IntervalSplitter.ElementOperation< IntType >()
+		{
+			@Override
+			public void apply( final IntType element )
+			{
+				element.inc();
+			}
+		};
+		IntervalSplitter.forEach( img, inc, TaskExecutors.getDefault(), 4 );
+		IntervalSplitter.forEach( img, inc );
+		for ( final IntType t : img )
+			assertEquals( 2, t.get() );
+	}
+
+	@Test
+	public void testForEach()
+	{
+		final long[] dim = new long[] { 37, 21, 13 };
+		checkForEach( new ArrayImgFactory< IntType >().create( dim, new IntType() ) );
+		checkForEach( new CellImgFactory< IntType >( 5 ).create( dim, new IntType() ) );
+		checkForEach( new PlanarImgFactory< IntType >().create( dim, new IntType() ) );
+		checkForEach( new ListImgFactory< IntType >().create( dim, new IntType() ) );
+	}
+
+	/**
+	 * Check that the parts of a packed image never share a storage word,
+	 * where the first numStorageDimensions dimensions are stored in one
+	 * array.
+	 */
+	private static < T extends NativeType< T > & RealType< T > > void checkWordAligned( final Img< T > img, final int numStorageDimensions, final int bitsPerWord )
+	{
+		final List< Interval > parts = Collections.synchronizedList( new ArrayList< Interval >() );
+		IntervalSplitter.forEachPart( img, new IntervalSplitter.IntervalOperation()
+		{
+			@Override
+			public void apply( final Interval part )
+			{
+				parts.add( part );
+			}
+		}, TaskExecutors.getDefault(), 4 );
+		checkPartition( img, parts );
+
+		final int bitsPerPixel = img.firstElement().getBitsPerPixel();
+		final int n = img.numDimensions();
+		final Map< String, Interval > owner = new HashMap< String, Interval >();
+		for ( final Interval part : parts )
+		{
+			final Cursor< T > c = Views.iterable( Views.interval( img, part ) ).localizingCursor();
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				long index = 0;
+				long stride = 1;
+				for ( int d = 0; d < Math.min( n, numStorageDimensions ); ++d )
+				{
+					index += c.getLongPosition( d ) * stride;
+					stride *= img.dimension( d );
+				}
+				long array = 0;
+				for ( int d = n - 1; d >= numStorageDimensions; --d )
+					array = array * img.dimension( d ) + c.getLongPosition( d );
+				for ( long bit = index * bitsPerPixel; bit < ( index + 1 ) * bitsPerPixel; bit += bitsPerWord )
+				{
+					final String word = array + ":" + bit / bitsPerWord;
+					final Interval previous = owner.put( word, part );
+					assertTrue( previous == null || previous == part );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPackedTypesAreSplitAtWords()
+	{
+		final long[][] dims = new long[][] { { 40, 21, 13 }, { 37, 21, 13 }, { 1000, 7 }, { 333 } };
+		for ( final long[] dim : dims )
+		{
+			checkWordAligned( new ArrayImgFactory< Unsigned2BitType >().create( dim, new Unsigned2BitType() ), dim.length, 64 );
+			checkWordAligned( new ArrayImgFactory< Unsigned4BitType >().create( dim, new Unsigned4BitType() ), dim.length, 64 );
+			checkWordAligned( new ArrayImgFactory< UnsignedVariableBitLengthType >().create( dim, new UnsignedVariableBitLengthType( 5 ) ), dim.length, 64 );
+			checkWordAligned( new ArrayImgFactory< BitType >().create( dim, new BitType() ), dim.length, 32 );
+			checkWordAligned( new ArrayImgFactory< Unsigned12BitType >().create( dim, new Unsigned12BitType() ), dim.length, 32 );
+			checkWordAligned( new PlanarImgFactory< Unsigned2BitType >().create( dim, new Unsigned2BitType() ), 2, 64 );
+			checkWordAligned( new PlanarImgFactory< UnsignedVariableBitLengthType >().create( dim, new UnsignedVariableBitLengthType( 7 ) ), 2, 64 );
+		}
+		// still split into several parts if the layout allows it
+		final int[] blockSize = IntervalSplitter.getBlockSize( new ArrayImgFactory< Unsigned2BitType >().create( dims[ 0 ], new Unsigned2BitType() ) );
+		assertEquals( 40, blockSize[ 0 ] );
+		assertEquals( 21, blockSize[ 1 ] );
+		assertEquals( 4, blockSize[ 2 ] );
+	}
+
+	private static < T extends NativeType< T > & IntegerType< T > > void checkConcurrentWrites( final ImgFactory< T > factory, final T type )
+	{
+		final Img< T > img = factory.create( new long[] { 61, 17, 9 }, type );
+		final IntervalSplitter.ElementOperation< T > inc = new IntervalSplitter.ElementOperation< T >()
+		{
+			@Override
+			public void apply( final T element )
+			{
+				element.setInteger( ( element.getIntegerLong() + 1 ) & 1 );
+			}
+		};
+		final ExecutorService service = TaskExecutors.newThreadPool( 4 );
+		try
+		{
+			for ( int i = 0; i < 21; ++i )
+				IntervalSplitter.forEach( img, inc, service, 4 );
+			// a view is not split, as its storage is unknown
+			IntervalSplitter.forEach( Views.iterable( Views.interval( img, img ) ), inc, service, 4 );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+		for ( final T t : img )
+			assertEquals( 0, t.getIntegerLong() );
+	}
+
+	@Test
+	public void testConcurrentWritesToPackedTypes()
+	{
+		checkConcurrentWrites( new ArrayImgFactory< Unsigned2BitType >(), new Unsigned2BitType() );
+		checkConcurrentWrites( new ArrayImgFactory< UnsignedVariableBitLengthType >(), new UnsignedVariableBitLengthType( 3 ) );
+		checkConcurrentWrites( new PlanarImgFactory< Unsigned4BitType >(), new Unsigned4BitType() );
+		checkConcurrentWrites( new CellImgFactory< Unsigned2BitType >( 5 ), new Unsigned2BitType() );
+		checkConcurrentWrites( new ArrayImgFactory< BitType >(), new BitType() );
+	}
+}
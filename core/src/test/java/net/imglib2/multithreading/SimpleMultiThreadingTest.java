@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.multithreading;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link SimpleMultiThreading}.
+ *
+ * @author ImgLib2 developers
+ */
+public class SimpleMultiThreadingTest
+{
+	private Thread[] newThreads( final int numThreads, final Runnable run )
+	{
+		final Thread[] threads = SimpleMultiThreading.newThreads( numThreads );
+		for ( int i = 0; i < threads.length; ++i )
+			threads[ i ] = new Thread( run );
+		return threads;
+	}
+
+	@Test( timeout = 10000 )
+	public void testStartAndJoinWithBarrier()
+	{
+		// more threads than processors that all wait for each other
+		final int numThreads = 2 * Runtime.getRuntime().availableProcessors() + 2;
+		final CyclicBarrier barrier = new CyclicBarrier( numThreads );
+		final AtomicInteger count = new AtomicInteger();
+		SimpleMultiThreading.startAndJoin( newThreads( numThreads, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					barrier.await();
+				}
+				catch ( final Exception e )
+				{
+					throw new RuntimeException( e );
+				}
+				count.incrementAndGet();
+			}
+		} ) );
+		assertEquals( numThreads, count.get() );
+	}
+
+	@Test
+	public void testRunAndJoin()
+	{
+		final AtomicInteger count = new AtomicInteger();
+		final Thread[] threads = newThreads( 10, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				count.incrementAndGet();
+			}
+		} );
+		SimpleMultiThreading.runAndJoin( threads );
+		assertEquals( 10, count.get() );
+		for ( final Thread thread : threads )
+			assertEquals( Thread.State.NEW, thread.getState() );
+	}
+}
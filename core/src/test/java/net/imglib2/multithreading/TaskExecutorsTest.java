@@ -0,0 +1,179 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.multithreading;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TaskExecutors}.
+ *
+ * @author ImgLib2 developers
+ */
+public class TaskExecutorsTest
+{
+	@Test
+	public void testRunAll()
+	{
+		final AtomicInteger count = new AtomicInteger();
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( int i = 0; i < 100; ++i )
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					count.incrementAndGet();
+				}
+			} );
+		TaskExecutors.run( TaskExecutors.getDefault(), tasks, 4 );
+		assertEquals( 100, count.get() );
+	}
+
+	@Test
+	public void testBoundedParallelism()
+	{
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( int i = 0; i < 20; ++i )
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final int r = running.incrementAndGet();
+					synchronized ( maxRunning )
+					{
+						maxRunning.set( Math.max( maxRunning.get(), r ) );
+					}
+					SimpleMultiThreading.threadWait( 5 );
+					running.decrementAndGet();
+				}
+			} );
+		final ExecutorService service = TaskExecutors.newThreadPool( 8 );
+		TaskExecutors.run( service, tasks, 2 );
+		service.shutdown();
+		assertTrue( maxRunning.get() <= 2 );
+	}
+
+	@Test
+	public void testNested()
+	{
+		// more nested groups than pool threads must not deadlock
+		final ExecutorService service = TaskExecutors.newThreadPool( 2 );
+		final AtomicInteger count = new AtomicInteger();
+		final ArrayList< Runnable > outer = new ArrayList< Runnable >();
+		for ( int i = 0; i < 8; ++i )
+			outer.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final ArrayList< Runnable > inner = new ArrayList< Runnable >();
+					for ( int j = 0; j < 8; ++j )
+						inner.add( new Runnable()
+						{
+							@Override
+							public void run()
+							{
+								SimpleMultiThreading.threadWait( 1 );
+								count.incrementAndGet();
+							}
+						} );
+					TaskExecutors.run( service, inner, 4 );
+				}
+			} );
+		TaskExecutors.run( service, outer, 4 );
+		service.shutdown();
+		assertEquals( 64, count.get() );
+	}
+
+	@Test
+	public void testInvokeAll()
+	{
+		final ArrayList< Callable< Integer > > tasks = new ArrayList< Callable< Integer > >();
+		for ( int i = 0; i < 10; ++i )
+		{
+			final int value = i;
+			tasks.add( new Callable< Integer >()
+			{
+				@Override
+				public Integer call()
+				{
+					return value * value;
+				}
+			} );
+		}
+		final List< Integer > results = TaskExecutors.invokeAll( TaskExecutors.getDefault(), tasks, 3 );
+		for ( int i = 0; i < 10; ++i )
+			assertEquals( i * i, results.get( i ).intValue() );
+	}
+
+	@Test
+	public void testException()
+	{
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( int i = 0; i < 10; ++i )
+		{
+			final int taskNum = i;
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if ( taskNum == 5 )
+						throw new IllegalStateException( "task 5" );
+				}
+			} );
+		}
+		try
+		{
+			TaskExecutors.run( TaskExecutors.getDefault(), tasks, 4 );
+			fail( "exception expected" );
+		}
+		catch ( final IllegalStateException e )
+		{
+			assertEquals( "task 5", e.getMessage() );
+		}
+	}
+}
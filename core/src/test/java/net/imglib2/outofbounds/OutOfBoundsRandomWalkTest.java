@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.outofbounds;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+/**
+ * Moves {@link OutOfBounds} accesses by random steps that mostly stay inside
+ * the image and checks them against accesses that are positioned absolutely.
+ *
+ * @author ImgLib2 developers
+ */
+public class OutOfBoundsRandomWalkTest
+{
+	final long[] dim = new long[] { 6, 5, 4 };
+
+	private void walk( final OutOfBoundsFactory< IntType, Img< IntType > > factory )
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( dim, new IntType() );
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+
+		final OutOfBounds< IntType > moving = factory.create( img );
+		final OutOfBounds< IntType > positioned = factory.create( img );
+		final long[] position = new long[ dim.length ];
+		final Random random = new Random( 123 );
+		for ( int step = 0; step < 10000; ++step )
+		{
+			final int d = random.nextInt( dim.length );
+			final int r = random.nextInt( 5 );
+			if ( r == 0 )
+			{
+				moving.fwd( d );
+				++position[ d ];
+			}
+			else if ( r == 1 )
+			{
+				moving.bck( d );
+				--position[ d ];
+			}
+			else
+			{
+				final long distance = random.nextInt( 7 ) - 3;
+				moving.move( distance, d );
+				position[ d ] += distance;
+			}
+			// drift back towards the image
+			if ( position[ d ] < -2 * dim[ d ] || position[ d ] > 3 * dim[ d ] )
+			{
+				position[ d ] = random.nextInt( ( int ) dim[ d ] );
+				moving.setPosition( position[ d ], d );
+			}
+			positioned.setPosition( position );
+			for ( int k = 0; k < dim.length; ++k )
+				assertEquals( position[ k ], moving.getLongPosition( k ) );
+			assertEquals( positioned.isOutOfBounds(), moving.isOutOfBounds() );
+			assertEquals( positioned.get().get(), moving.get().get() );
+		}
+	}
+
+	@Test
+	public void testMirrorSingleBoundary()
+	{
+		walk( new OutOfBoundsMirrorFactory< IntType, Img< IntType > >( Boundary.SINGLE ) );
+	}
+
+	@Test
+	public void testMirrorDoubleBoundary()
+	{
+		walk( new OutOfBoundsMirrorFactory< IntType, Img< IntType > >( Boundary.DOUBLE ) );
+	}
+
+	@Test
+	public void testPeriodic()
+	{
+		walk( new OutOfBoundsPeriodicFactory< IntType, Img< IntType > >() );
+	}
+
+	@Test
+	public void testBorder()
+	{
+		walk( new OutOfBoundsBorderFactory< IntType, Img< IntType > >() );
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.type.numeric.integer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.MappedArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.buffer.LongBufferAccess;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.DirectCellImgFactory;
+import net.imglib2.img.planar.MappedPlanarImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link AbstractBit64Type} and its subclasses.
+ *
+ * @author ImgLib2 developers
+ */
+public class AbstractBit64TypeTest
+{
+	final long[] dimensions = new long[] { 37, 11, 5 };
+
+	private < T extends AbstractBit64Type< T > > void testWriteRead( final ImgFactory< T > factory, final T type )
+	{
+		final Img< T > img = factory.create( dimensions, type );
+		final Random random = new Random( 42 );
+		for ( final T t : img )
+			t.setInteger( random.nextLong() );
+
+		final Random expected = new Random( 42 );
+		final long mask = ( 1l << type.getBitsPerPixel() ) - 1;
+		final Cursor< T > c = img.cursor();
+		while ( c.hasNext() )
+			assertEquals( expected.nextLong() & mask, c.next().getIntegerLong() );
+	}
+
+	private < T extends AbstractBit64Type< T > > void testAllFactories( final T type )
+	{
+		testWriteRead( new ArrayImgFactory< T >(), type );
+		testWriteRead( new PlanarImgFactory< T >(), type );
+		testWriteRead( new CellImgFactory< T >( 7 ), type );
+	}
+
+	@Test
+	public void testUnsigned2Bit()
+	{
+		testAllFactories( new Unsigned2BitType() );
+	}
+
+	@Test
+	public void testUnsigned4Bit()
+	{
+		testAllFactories( new Unsigned4BitType() );
+	}
+
+	@Test
+	public void testVariableBitLength()
+	{
+		for ( int nBits = 1; nBits < 64; ++nBits )
+			testAllFactories( new UnsignedVariableBitLengthType( nBits ) );
+	}
+
+	@Test
+	public void testPackedStorageSize()
+	{
+		final long numPixels = dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ];
+		for ( final int nBits : new int[] { 2, 4, 10 } )
+		{
+			@SuppressWarnings( "unchecked" )
+			final ArrayImg< UnsignedVariableBitLengthType, LongArray > img = ( ArrayImg< UnsignedVariableBitLengthType, LongArray > ) new ArrayImgFactory< UnsignedVariableBitLengthType >().create( dimensions, new UnsignedVariableBitLengthType( nBits ) );
+			assertEquals( ( numPixels * nBits + 63 ) / 64, img.update( null ).getCurrentStorageArray().length );
+		}
+	}
+
+	@Test
+	public void testBufferFactories() throws IOException
+	{
+		final long numPixels = dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ];
+		final File arrayFile = File.createTempFile( "bit64", ".raw" );
+		final File planarFile = File.createTempFile( "bit64", ".raw" );
+		try
+		{
+			for ( final int nBits : new int[] { 2, 4, 10 } )
+			{
+				final UnsignedVariableBitLengthType type = new UnsignedVariableBitLengthType( nBits );
+				testWriteRead( new MappedArrayImgFactory< UnsignedVariableBitLengthType >( arrayFile ), type );
+				testWriteRead( new MappedPlanarImgFactory< UnsignedVariableBitLengthType >( planarFile ), type );
+				testWriteRead( new DirectCellImgFactory< UnsignedVariableBitLengthType >( 7 ), type );
+				@SuppressWarnings( "unchecked" )
+				final ArrayImg< UnsignedVariableBitLengthType, LongBufferAccess > img = ( ArrayImg< UnsignedVariableBitLengthType, LongBufferAccess > ) new MappedArrayImgFactory< UnsignedVariableBitLengthType >( arrayFile ).create( dimensions, type );
+				assertEquals( ( numPixels * nBits + 63 ) / 64, img.update( null ).getNumEntities() );
+			}
+		}
+		finally
+		{
+			arrayFile.delete();
+			planarFile.delete();
+		}
+	}
+
+	@Test
+	public void testNeighborsUnaffected()
+	{
+		final Img< UnsignedVariableBitLengthType > img = new ArrayImgFactory< UnsignedVariableBitLengthType >().create( new long[] { 100 }, new UnsignedVariableBitLengthType( 10 ) );
+		final Cursor< UnsignedVariableBitLengthType > c = img.cursor();
+		c.jumpFwd( 7 ); // bits 60 to 69 straddle two longs
+		c.get().set( 1023 );
+		long sum = 0;
+		for ( final UnsignedVariableBitLengthType t : img )
+			sum += t.get();
+		assertEquals( 1023, sum );
+		c.get().set( 0 );
+		for ( final UnsignedVariableBitLengthType t : img )
+			assertEquals( 0, t.get() );
+	}
+}
@@ -35,13 +35,27 @@ package net.imglib2.util;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.PackedLongArray;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
 import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.integer.Unsigned4BitType;
+import net.imglib2.type.numeric.integer.UnsignedVariableBitLengthType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
 
 import org.junit.Test;
 
@@ -299,4 +313,117 @@ public class ImgUtilTest {
 		}
 	}
 
+
+	private static final long[] dims = { 13, 7, 5 };
+
+	private static float valueAt(final long[] position) {
+		return position[0] + 16 * position[1] + 256 * position[2];
+	}
+
+	private static <T extends ComplexFloatType> void fill(final Img<T> img) {
+		final Cursor<T> c = img.localizingCursor();
+		final long[] position = new long[img.numDimensions()];
+		while (c.hasNext()) {
+			c.fwd();
+			c.localize(position);
+			c.get().set(valueAt(position), -valueAt(position));
+		}
+	}
+
+	private static void assertCopied(final RandomAccessible<ComplexFloatType> source, final RandomAccessibleInterval<ComplexFloatType> target) {
+		final Cursor<ComplexFloatType> c = Views.iterable(target).localizingCursor();
+		final RandomAccess<ComplexFloatType> s = source.randomAccess();
+		while (c.hasNext()) {
+			c.fwd();
+			s.setPosition(c);
+			assertEquals(s.get().getRealFloat(), c.get().getRealFloat(), 0);
+			assertEquals(s.get().getImaginaryFloat(), c.get().getImaginaryFloat(), 0);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ImgFactory<ComplexFloatType>[] factories() {
+		return new ImgFactory[] {
+				new ArrayImgFactory<ComplexFloatType>(),
+				new PlanarImgFactory<ComplexFloatType>(),
+				new CellImgFactory<ComplexFloatType>(4),
+				new CellImgFactory<ComplexFloatType>(new int[] {5, 3, 2}) };
+	}
+
+	@Test
+	public void testCopyImgToImg() {
+		for (final ImgFactory<ComplexFloatType> sourceFactory : factories()) {
+			final Img<ComplexFloatType> source = sourceFactory.create(dims, new ComplexFloatType());
+			fill(source);
+			for (final ImgFactory<ComplexFloatType> targetFactory : factories()) {
+				final Img<ComplexFloatType> target = targetFactory.create(dims, new ComplexFloatType());
+				ImgUtil.copy(source, target);
+				assertCopied(source, target);
+			}
+		}
+	}
+
+	@Test
+	public void testCopyInterval() {
+		final FinalInterval interval = new FinalInterval(new long[] {3, 1, 2}, new long[] {11, 5, 3});
+		for (final ImgFactory<ComplexFloatType> sourceFactory : factories()) {
+			final Img<ComplexFloatType> source = sourceFactory.create(dims, new ComplexFloatType());
+			fill(source);
+			for (final ImgFactory<ComplexFloatType> targetFactory : factories()) {
+				final Img<ComplexFloatType> target = targetFactory.create(dims, new ComplexFloatType());
+				ImgUtil.copyInterval(source, target, interval);
+				assertCopied(source, Views.interval(target, interval));
+				assertEquals(0, target.firstElement().getRealFloat(), 0);
+
+				// copy a translated interval of source to the origin of target
+				final Img<ComplexFloatType> shifted = targetFactory.create(dims, new ComplexFloatType());
+				final RandomAccessibleInterval<ComplexFloatType> view = Views.offsetInterval(source, interval);
+				ImgUtil.copy(view, Views.interval(shifted, view));
+				assertCopied(view, Views.interval(shifted, view));
+			}
+		}
+	}
+
+	@Test
+	public void testCopyFallback() {
+		final Img<ComplexFloatType> source = new CellImgFactory<ComplexFloatType>(4).create(dims, new ComplexFloatType());
+		fill(source);
+		final RandomAccessible<ComplexFloatType> extended = Views.extendMirrorSingle(source);
+		final Img<ComplexFloatType> target = new ArrayImgFactory<ComplexFloatType>().create(dims, new ComplexFloatType());
+		ImgUtil.copy(Views.translate(extended, 2, -3, 1), target);
+		assertCopied(Views.translate(extended, 2, -3, 1), target);
+
+		final Img<UnsignedVariableBitLengthType> bits = new ArrayImgFactory<UnsignedVariableBitLengthType>().create(dims, new UnsignedVariableBitLengthType(10));
+		long i = 0;
+		for (final UnsignedVariableBitLengthType t : bits)
+			t.set(i++);
+		final Img<UnsignedVariableBitLengthType> bitsCopy = new CellImgFactory<UnsignedVariableBitLengthType>(4).create(dims, new UnsignedVariableBitLengthType(10));
+		ImgUtil.copy(bits, bitsCopy);
+		final Cursor<UnsignedVariableBitLengthType> c = Views.flatIterable(bitsCopy).cursor();
+		i = 0;
+		while (c.hasNext())
+			assertEquals(i++ & 1023, c.next().get());
+	}
+
+	private static ArrayImg<Unsigned4BitType, LongArray> nibbles(final long[] dimensions) {
+		// packed storage in a plain LongArray, as created by factories
+		// without a packed storage creator
+		final ArrayImg<Unsigned4BitType, LongArray> img = new ArrayImg<Unsigned4BitType, LongArray>(new LongArray(PackedLongArray.numLongs(Intervals.numElements(new FinalInterval(dimensions)) * 4)), dimensions, 1);
+		img.setLinkedType(new Unsigned4BitType(img));
+		return img;
+	}
+
+	@Test
+	public void testCopyPackedInLongArray() {
+		final ArrayImg<Unsigned4BitType, LongArray> source = nibbles(dims);
+		long i = 0;
+		for (final Unsigned4BitType t : source)
+			t.set(i++);
+		final ArrayImg<Unsigned4BitType, LongArray> target = nibbles(dims);
+		ImgUtil.copy(source, target);
+		final Cursor<Unsigned4BitType> c = target.cursor();
+		i = 0;
+		while (c.hasNext())
+			assertEquals(i++ & 15, c.next().get());
+	}
 }
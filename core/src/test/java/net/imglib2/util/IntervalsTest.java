@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+
+import org.junit.Test;
+
+/**
+ * @author ImgLib2 developers
+ */
+public class IntervalsTest
+{
+	final FinalInterval bounds = Intervals.createMinMax( 0, 0, 0, 19, 14, 9 );
+
+	final FinalInterval span = Intervals.createMinMax( -1, -2, -1, 1, 2, 3 );
+
+	@Test
+	public void testExtendBySpan()
+	{
+		final FinalInterval e = Intervals.extendBySpan( bounds, span );
+		assertTrue( Intervals.equals( e, Intervals.createMinMax( -1, -2, -1, 20, 16, 12 ) ) );
+	}
+
+	@Test
+	public void testInterior()
+	{
+		final FinalInterval interior = Intervals.interior( bounds, bounds, span );
+		assertTrue( Intervals.equals( interior, Intervals.createMinMax( 1, 2, 1, 18, 12, 6 ) ) );
+		assertTrue( Intervals.contains( bounds, Intervals.extendBySpan( interior, span ) ) );
+
+		// restricted to the input interval
+		final FinalInterval part = Intervals.createMinMax( 5, 0, 0, 30, 14, 9 );
+		assertTrue( Intervals.equals( Intervals.interior( part, bounds, span ), Intervals.createMinMax( 5, 2, 1, 18, 12, 6 ) ) );
+
+		// neighborhood larger than bounds
+		assertTrue( Intervals.isEmpty( Intervals.interior( bounds, bounds, Intervals.createMinMax( -20, 0, 0, 20, 0, 0 ) ) ) );
+	}
+
+	private static void assertPartition( final Interval interval, final List< FinalInterval > parts )
+	{
+		long total = 0;
+		for ( int i = 0; i < parts.size(); ++i )
+		{
+			final FinalInterval a = parts.get( i );
+			assertFalse( Intervals.isEmpty( a ) );
+			assertTrue( Intervals.contains( interval, a ) );
+			total += Intervals.numElements( a );
+			for ( int j = i + 1; j < parts.size(); ++j )
+				assertTrue( Intervals.isEmpty( Intervals.intersect( a, parts.get( j ) ) ) );
+		}
+		assertEquals( Intervals.numElements( interval ), total );
+	}
+
+	@Test
+	public void testSplitInteriorAndShell()
+	{
+		final List< FinalInterval > parts = Intervals.splitInteriorAndShell( bounds, bounds, span );
+		assertPartition( bounds, parts );
+		assertEquals( 7, parts.size() );
+		assertTrue( Intervals.equals( parts.get( 0 ), Intervals.interior( bounds, bounds, span ) ) );
+		for ( int i = 1; i < parts.size(); ++i )
+			assertFalse( Intervals.contains( bounds, Intervals.extendBySpan( parts.get( i ), span ) ) );
+
+		// interior touches the interval in dimension 0
+		final FinalInterval part = Intervals.createMinMax( 5, 0, 0, 12, 14, 9 );
+		final List< FinalInterval > partParts = Intervals.splitInteriorAndShell( part, bounds, span );
+		assertPartition( part, partParts );
+		assertEquals( 5, partParts.size() );
+
+		// no interior
+		final FinalInterval thin = Intervals.createMinMax( 0, 0, 0, 19, 0, 9 );
+		final List< FinalInterval > thinParts = Intervals.splitInteriorAndShell( thin, bounds, span );
+		assertEquals( 1, thinParts.size() );
+		assertTrue( Intervals.equals( thin, thinParts.get( 0 ) ) );
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Random;
+
+import net.imglib2.IterableInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.MappedArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.DirectCellImgFactory;
+import net.imglib2.img.planar.MappedPlanarImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link RealStatistics} to a straightforward computation.
+ *
+ * @author ImgLib2 developers
+ */
+public class RealStatisticsTest
+{
+	// more than one chunk per plane
+	final long[] dimensions = new long[] { 301, 257, 3 };
+
+	private < T extends RealType< T > > void check( final IterableInterval< T > interval )
+	{
+		double sum = 0;
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for ( final T t : interval )
+		{
+			final double x = t.getRealDouble();
+			sum += x;
+			min = Math.min( min, x );
+			max = Math.max( max, x );
+		}
+		final double mean = sum / interval.size();
+		double m2 = 0;
+		for ( final T t : interval )
+		{
+			final double d = t.getRealDouble() - mean;
+			m2 += d * d;
+		}
+
+		final RealStatistics statistics = RealStatistics.compute( interval );
+		assertEquals( interval.size(), statistics.getCount() );
+		assertEquals( sum, statistics.getSum(), Math.abs( sum ) * 1e-12 );
+		assertEquals( min, statistics.getMin(), 0 );
+		assertEquals( max, statistics.getMax(), 0 );
+		assertEquals( mean, statistics.getMean(), Math.abs( mean ) * 1e-12 );
+		assertEquals( m2 / ( interval.size() - 1 ), statistics.getVariance(), m2 * 1e-12 );
+		assertEquals( Math.sqrt( m2 / ( interval.size() - 1 ) ), statistics.getStdDev(), Math.sqrt( m2 ) * 1e-12 );
+	}
+
+	private < T extends NativeType< T > & RealType< T > > void checkImgs( final T type, final double range, final double offset )
+	{
+		@SuppressWarnings( "unchecked" )
+		final ImgFactory< T >[] factories = new ImgFactory[] { new ArrayImgFactory< T >(), new PlanarImgFactory< T >(), new CellImgFactory< T >( 50 ) };
+		for ( final ImgFactory< T > factory : factories )
+		{
+			final Img< T > img = factory.create( dimensions, type );
+			final Random random = new Random( 42 );
+			for ( final T t : img )
+				t.setReal( offset + random.nextDouble() * range );
+			assertTrue( RealStatistics.isPrimitive( img ) );
+			check( img );
+			check( Views.iterable( Views.interval( img, new long[] { 3, 5, 0 }, new long[] { 200, 250, 2 } ) ) );
+		}
+	}
+
+	@Test
+	public void testIntegerTypes()
+	{
+		checkImgs( new ByteType(), 255, -128 );
+		checkImgs( new UnsignedByteType(), 255, 0 );
+		checkImgs( new ShortType(), 65535, -32768 );
+		checkImgs( new UnsignedShortType(), 65535, 0 );
+		checkImgs( new IntType(), 4e9, -2e9 );
+		checkImgs( new UnsignedIntType(), 4e9, 0 );
+	}
+
+	@Test
+	public void testRealTypes()
+	{
+		checkImgs( new FloatType(), 1000, -300 );
+		checkImgs( new DoubleType(), 1e6, -3e5 );
+	}
+
+	private < T extends NativeType< T > & RealType< T > > void checkBufferImgs( final T type, final double range, final double offset ) throws IOException
+	{
+		final File arrayFile = File.createTempFile( "realstatistics", ".raw" );
+		final File planarFile = File.createTempFile( "realstatistics", ".raw" );
+		try
+		{
+			@SuppressWarnings( "unchecked" )
+			final ImgFactory< T >[] factories = new ImgFactory[] { new MappedArrayImgFactory< T >( arrayFile ), new MappedPlanarImgFactory< T >( planarFile ), new DirectCellImgFactory< T >( 50 ) };
+			for ( final ImgFactory< T > factory : factories )
+			{
+				final Img< T > img = factory.create( dimensions, type );
+				final Random random = new Random( 42 );
+				for ( final T t : img )
+					t.setReal( offset + random.nextDouble() * range );
+				assertFalse( RealStatistics.isPrimitive( img ) );
+				check( img );
+			}
+		}
+		finally
+		{
+			arrayFile.delete();
+			planarFile.delete();
+		}
+	}
+
+	@Test
+	public void testBufferImgs() throws IOException
+	{
+		// mapped and direct images are backed by ByteBuffers rather than
+		// primitive arrays and must be read through cursors
+		checkBufferImgs( new UnsignedByteType(), 255, 0 );
+		checkBufferImgs( new ShortType(), 65535, -32768 );
+		checkBufferImgs( new FloatType(), 1000, -300 );
+	}
+
+	@Test
+	public void testViewIsNotPrimitive()
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		assertFalse( RealStatistics.isPrimitive( Views.iterable( Views.interval( img, img ) ) ) );
+	}
+
+	@Test
+	public void testEmptyImgs()
+	{
+		@SuppressWarnings( "unchecked" )
+		final ImgFactory< FloatType >[] factories = new ImgFactory[] { new ArrayImgFactory< FloatType >(), new PlanarImgFactory< FloatType >() };
+		for ( final ImgFactory< FloatType > factory : factories )
+		{
+			final Img< FloatType > img = factory.create( new long[] { 4, 0, 3 }, new FloatType() );
+			assertFalse( RealStatistics.isPrimitive( img ) );
+			assertEquals( 0, RealStatistics.compute( img ).getCount() );
+		}
+	}
+
+	@Test
+	public void testLargeOffset()
+	{
+		// small variance on top of a large mean, which cancels in a naive
+		// sum of squares
+		final Img< DoubleType > img = new ArrayImgFactory< DoubleType >().create( new long[] { 1000, 1000 }, new DoubleType() );
+		final Random random = new Random( 12345 );
+		BigDecimal referenceSum = new BigDecimal( 0.0 );
+		for ( final DoubleType t : img )
+		{
+			t.set( 1e9 + random.nextDouble() );
+			referenceSum = referenceSum.add( new BigDecimal( t.get() ) );
+		}
+		final RealStatistics statistics = RealStatistics.compute( img );
+		assertEquals( referenceSum.doubleValue(), statistics.getSum(), 1 );
+		assertEquals( 1.0 / 12, statistics.getVariance(), 1e-3 );
+	}
+
+	@Test
+	public void testCombine()
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( new long[] { 10 }, new FloatType() );
+		int i = 0;
+		for ( final FloatType t : img )
+			t.set( i++ );
+		final RealStatistics a = RealStatistics.compute( Views.iterable( Views.interval( img, new long[] { 0 }, new long[] { 3 } ) ) );
+		final RealStatistics b = RealStatistics.compute( Views.iterable( Views.interval( img, new long[] { 4 }, new long[] { 9 } ) ) );
+		final RealStatistics ab = a.combine( b );
+		assertEquals( 10, ab.getCount() );
+		assertEquals( 45, ab.getSum(), 0 );
+		assertEquals( 4.5, ab.getMean(), 1e-15 );
+		assertEquals( 55.0 / 6, ab.getVariance(), 1e-14 );
+		assertEquals( 0, ab.getMin(), 0 );
+		assertEquals( 9, ab.getMax(), 0 );
+		assertEquals( 0, RealStatistics.empty().combine( RealStatistics.empty() ).getCount() );
+	}
+}
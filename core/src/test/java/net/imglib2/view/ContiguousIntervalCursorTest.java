@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link IterableRandomAccessibleInterval} iterates contiguous
+ * intervals of flat-iterable images with a {@link ContiguousIntervalCursor},
+ * and that it visits the same positions and values as a
+ * {@link RandomAccessibleIntervalCursor}.
+ *
+ * @author ImgLib2 developers
+ */
+public class ContiguousIntervalCursorTest
+{
+	final long[] dimensions = new long[] { 11, 7, 6, 5 };
+
+	private static void fill( final Img< IntType > img )
+	{
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+	}
+
+	private static void assertSameIteration( final RandomAccessibleInterval< IntType > interval, final boolean contiguous )
+	{
+		final IterableRandomAccessibleInterval< IntType > iterable = new IterableRandomAccessibleInterval< IntType >( interval );
+		for ( final Cursor< IntType > c : new Cursor[] { iterable.cursor(), iterable.localizingCursor() } )
+		{
+			assertEquals( contiguous, c instanceof ContiguousIntervalCursor );
+			final Cursor< IntType > expected = new RandomAccessibleIntervalCursor< IntType >( interval );
+			final long[] p = new long[ interval.numDimensions() ];
+			final long[] q = new long[ interval.numDimensions() ];
+			long count = 0;
+			while ( expected.hasNext() )
+			{
+				assertTrue( c.hasNext() );
+				expected.fwd();
+				c.fwd();
+				++count;
+				expected.localize( p );
+				c.localize( q );
+				for ( int d = 0; d < p.length; ++d )
+				{
+					assertEquals( p[ d ], q[ d ] );
+					assertEquals( p[ d ], c.getLongPosition( d ) );
+				}
+				assertEquals( expected.get().get(), c.get().get() );
+			}
+			assertFalse( c.hasNext() );
+			assertEquals( iterable.size(), count );
+
+			c.reset();
+			expected.reset();
+			c.jumpFwd( 17 );
+			expected.jumpFwd( 17 );
+			final Cursor< IntType > copy = c.copyCursor();
+			assertEquals( expected.get().get(), copy.get().get() );
+			assertEquals( expected.getLongPosition( 0 ), copy.getLongPosition( 0 ) );
+		}
+	}
+
+	@Test
+	public void testArrayImg()
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		fill( img );
+		testViews( img );
+	}
+
+	@Test
+	public void testPlanarImg()
+	{
+		final Img< IntType > img = new PlanarImgFactory< IntType >().create( dimensions, new IntType() );
+		fill( img );
+		testViews( img );
+	}
+
+	private void testViews( final Img< IntType > img )
+	{
+		assertSameIteration( img, true );
+
+		// partial in the last dimension only
+		final FinalInterval lastPartial = new FinalInterval( new long[] { 0, 0, 0, 1 }, new long[] { 10, 6, 5, 3 } );
+		assertSameIteration( Views.interval( img, lastPartial ), true );
+		assertSameIteration( Views.offsetInterval( img, lastPartial ), true );
+		assertSameIteration( Views.interval( Views.translate( img, 3, -2, 7, 1 ), Views.translate( Views.interval( img, lastPartial ), 3, -2, 7, 1 ) ), true );
+
+		// a single plane of a 2D slice
+		assertSameIteration( Views.interval( img, new long[] { 0, 0, 2, 4 }, new long[] { 10, 6, 2, 4 } ), true );
+
+		// not contiguous
+		assertSameIteration( Views.interval( img, new long[] { 1, 0, 0, 0 }, new long[] { 10, 6, 5, 4 } ), false );
+		assertSameIteration( Views.interval( img, new long[] { 0, 0, 1, 1 }, new long[] { 10, 6, 4, 3 } ), false );
+		assertSameIteration( Views.zeroMin( Views.invertAxis( img, 0 ) ), false );
+	}
+}
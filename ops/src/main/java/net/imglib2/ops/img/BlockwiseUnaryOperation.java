@@ -0,0 +1,232 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.ops.img;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.BitArray;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.cell.CachedCellImg;
+import net.imglib2.img.cell.CachedCellImgFactory;
+import net.imglib2.img.cell.CellLoader;
+import net.imglib2.ops.operation.UnaryOperation;
+import net.imglib2.type.NativeType;
+import net.imglib2.view.Views;
+
+/**
+ * Evaluates a {@link UnaryOperation} lazily, block by block. The result is a
+ * {@link CachedCellImg} whose cells are computed only when they are accessed
+ * for the first time, so that chains of operations on huge images only
+ * compute the region that is actually needed downstream.
+ *
+ * For each cell, the operation is applied to the source restricted to the
+ * cell, expanded by a halo, and writes into an output interval located at the
+ * cell. Input and output share the coordinates of the source, so the halo
+ * must be large enough for the operation to compute the whole cell from its
+ * input (e.g., the radius of a neighborhood). The result image itself is
+ * zero-min, its pixel 0 corresponds to the min of the computed interval.
+ *
+ * Every cell is computed by a {@link UnaryOperation#copy() copy} of the
+ * operation, so cells can be computed concurrently (see
+ * {@link CachedCellImg#prefetch(Interval)}).
+ *
+ * @author ImgLib2 developers
+ */
+public class BlockwiseUnaryOperation< T, V extends NativeType< V >, A extends ArrayDataAccess< A > > implements CellLoader< A >
+{
+	private final UnaryOperation< RandomAccessibleInterval< T >, RandomAccessibleInterval< V > > op;
+
+	private final RandomAccessible< T > source;
+
+	private final long[] offset;
+
+	private final long[] halo;
+
+	private final V type;
+
+	protected BlockwiseUnaryOperation( final UnaryOperation< RandomAccessibleInterval< T >, RandomAccessibleInterval< V > > op, final RandomAccessible< T > source, final Interval interval, final V type, final long[] halo )
+	{
+		this.op = op;
+		this.source = source;
+		this.type = type.createVariable();
+		this.halo = halo.clone();
+		offset = new long[ interval.numDimensions() ];
+		interval.min( offset );
+	}
+
+	/**
+	 * Create an image that lazily computes op on interval.
+	 *
+	 * @param op
+	 *            the operation computing a block of the output from a block of
+	 *            the input.
+	 * @param source
+	 *            the input, which must be defined on interval expanded by the
+	 *            halo (e.g., an extended {@link RandomAccessibleInterval}).
+	 * @param interval
+	 *            the interval on which the output is computed.
+	 * @param type
+	 *            the output type.
+	 * @param cellDimensions
+	 *            dimensions of the blocks that are computed at once.
+	 * @param halo
+	 *            number of pixels by which the input of each block is expanded
+	 *            in each dimension.
+	 * @param maxCacheBytes
+	 *            maximum total size in bytes of the computed blocks kept in
+	 *            memory.
+	 * @return the lazily computed output.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public static < T, V extends NativeType< V > > CachedCellImg< V, ? > create( final UnaryOperation< RandomAccessibleInterval< T >, RandomAccessibleInterval< V > > op, final RandomAccessible< T > source, final Interval interval, final V type, final int[] cellDimensions, final long[] halo, final long maxCacheBytes )
+	{
+		final long[] dimensions = new long[ interval.numDimensions() ];
+		interval.dimensions( dimensions );
+		final BlockwiseUnaryOperation loader = new BlockwiseUnaryOperation( op, source, interval, type, halo );
+		return new CachedCellImgFactory< V >( loader, maxCacheBytes, cellDimensions ).create( dimensions, type.createVariable() );
+	}
+
+	@Override
+	public void load( final long index, final long[] min, final int[] dimensions, final A data )
+	{
+		final int n = min.length;
+		final long[] outMin = new long[ n ];
+		final long[] inMin = new long[ n ];
+		final long[] inMax = new long[ n ];
+		final long[] outDims = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			outMin[ d ] = min[ d ] + offset[ d ];
+			outDims[ d ] = dimensions[ d ];
+			inMin[ d ] = outMin[ d ] - halo[ d ];
+			inMax[ d ] = outMin[ d ] + dimensions[ d ] - 1 + halo[ d ];
+		}
+		final RandomAccessibleInterval< T > input = Views.interval( source, new FinalInterval( inMin, inMax ) );
+		final ArrayImg< V, ? > block = new WrappingArrayImgFactory< V >( data ).create( outDims, type );
+		op.copy().compute( input, Views.translate( block, outMin ) );
+	}
+
+	/**
+	 * Computed blocks need not be stored, they are recomputed when needed.
+	 */
+	@Override
+	public void save( final long index, final long[] min, final int[] dimensions, final A data )
+	{}
+
+	/**
+	 * Creates an {@link ArrayImg} on an existing data array, so that the
+	 * operation writes directly into the cell.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private static final class WrappingArrayImgFactory< V extends NativeType< V > > extends ArrayImgFactory< V >
+	{
+		private final ArrayDataAccess< ? > data;
+
+		WrappingArrayImgFactory( final ArrayDataAccess< ? > data )
+		{
+			this.data = data;
+		}
+
+		private NativeImg wrap( final long[] dimensions, final int entitiesPerPixel )
+		{
+			return new ArrayImg( data, dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< V, BitArray > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+		{
+			return ( ArrayImg< V, BitArray > ) wrap( dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< V, ByteArray > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+		{
+			return ( ArrayImg< V, ByteArray > ) wrap( dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< V, CharArray > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+		{
+			return ( ArrayImg< V, CharArray > ) wrap( dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< V, ShortArray > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+		{
+			return ( ArrayImg< V, ShortArray > ) wrap( dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< V, IntArray > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+		{
+			return ( ArrayImg< V, IntArray > ) wrap( dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< V, LongArray > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+		{
+			return ( ArrayImg< V, LongArray > ) wrap( dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< V, LongArray > createPackedLongInstance( final long[] dimensions, final int bitsPerPixel )
+		{
+			return ( ArrayImg< V, LongArray > ) wrap( dimensions, bitsPerPixel );
+		}
+
+		@Override
+		public ArrayImg< V, FloatArray > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+		{
+			return ( ArrayImg< V, FloatArray > ) wrap( dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< V, DoubleArray > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+		{
+			return ( ArrayImg< V, DoubleArray > ) wrap( dimensions, entitiesPerPixel );
+		}
+	}
+}
@@ -36,10 +36,10 @@ package net.imglib2.ops.img;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.multithreading.TaskExecutors;
 import net.imglib2.ops.condition.Condition;
 import net.imglib2.ops.function.Function;
 import net.imglib2.ops.input.InputIterator;
@@ -82,6 +82,7 @@ public class ImageAssignment
 
 	private ExecutorService executor;
 	private boolean assigning;
+	private volatile boolean aborted;
 	private List<Runnable> tasks;
 	
 	// -- constructor --
@@ -113,6 +114,7 @@ public class ImageAssignment
 		InputIteratorFactory<INPUT> factory)
 	{
 		this.assigning = false;
+		this.aborted = false;
 		this.executor = null;
 		this.tasks = null;
 		setupTasks(interval, origin, span, function, condition, factory);
@@ -120,6 +122,14 @@ public class ImageAssignment
 		
 	// -- public interface --
 
+	/**
+	 * Sets the {@link ExecutorService} on which the assignment runs. If not
+	 * set, the shared default service of {@link TaskExecutors} is used.
+	 */
+	public void setExecutorService(ExecutorService executor) {
+		this.executor = executor;
+	}
+
 	/**
 	 * Assign pixels using input variables specified in constructor. Can be
 	 * aborted using abort().
@@ -127,52 +137,35 @@ public class ImageAssignment
 	public void assign() {
 		synchronized(this) {
 			assigning = true;
-			executor = Executors.newFixedThreadPool(tasks.size());
-			for (Runnable task : tasks)
-				executor.submit(task);
+			aborted = false;
 		}
-		boolean terminated = true;
-		synchronized (this) {
-			// TODO - does this shutdown() call return immediately or wait until
-			// everything is complete. If it waits then this synchronized block will
-			// keep abort() from being able to work.
-			executor.shutdown();
-			terminated = executor.isTerminated();
-			if (terminated) executor = null;
+		try {
+			ExecutorService service =
+				(executor == null) ? TaskExecutors.getDefault() : executor;
+			TaskExecutors.run(service, tasks, tasks.size());
 		}
-		while (!terminated) {
-			try { Thread.sleep(100); } catch (Exception e) { /* do nothing */ }
+		finally {
 			synchronized (this) {
-				terminated = executor.isTerminated();
-				if (terminated) executor = null;
+				assigning = false;
+				notifyAll();
 			}
 		}
-		synchronized (this) {
-			assigning = false;
-		}
 	}
 
 	/**
-	 * Aborts an in progress assignment. Has no effect if not currently
-	 * running an assign() operation.
+	 * Aborts an in progress assignment and waits until it has stopped. Has no
+	 * effect if not currently running an assign() operation.
 	 */
 	public void abort() {
-		// TODO - this method maybe ineffective. See TODO note in assign().
-		boolean terminated = true;
 		synchronized (this) {
 			if (!assigning) return;
-			if (executor != null) {
-				executor.shutdownNow();
-				terminated = executor.isTerminated();
-			}
-		}
-		while (!terminated) {
-			try { Thread.sleep(100); } catch (Exception e) { /* do nothing */ }
-			synchronized (this) {
-				if (executor == null)
-					terminated = true;
-				else
-					terminated = executor.isTerminated();
+			aborted = true;
+			while (assigning) {
+				try { wait(); }
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
 			}
 		}
 	}
@@ -316,7 +309,7 @@ RandomAccessibleInterval<U> interval,
 			final RandomAccess<U> accessor = interval.randomAccess();
 			final V output = function.createOutput();
 			INPUT input = null;
-			while (iter.hasNext()) {
+			while (!aborted && iter.hasNext()) {
 				input = iter.next(input);
 				boolean proceed = (condition == null) || (condition.isTrue(input));
 				if (proceed) {
@@ -0,0 +1,769 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.ops.operation.randomaccessibleinterval.unary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.multithreading.TaskExecutors;
+import net.imglib2.ops.operation.UnaryOperation;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Rank filter (median, minimum, maximum or any other quantile) over
+ * rectangular neighborhoods, i.e. the neighborhoods of a
+ * {@code RectangleShape} with the same span that includes the center.
+ * 
+ * <p>
+ * Integer images whose values fall into at most {@link #MAX_BINS} bins are
+ * filtered with sliding histograms, so the cost per pixel does not grow with
+ * the number of pixels in a neighborhood. The image is processed in lines
+ * along dimension 0. The values of each input column (the pixels of the
+ * neighborhood that share one coordinate in dimension 0) are kept in a ring
+ * buffer that is updated incrementally as the line advances along dimension 1.
+ * Along dimension 0 the window histogram is then updated either pixel by pixel
+ * (Huang et al.) or, for large neighborhoods and small value ranges, by adding
+ * and removing per-column histograms (Perreault and H&eacute;bert). Both use
+ * two-level histograms, so finding the rank does not require a scan over all
+ * bins.
+ * </p>
+ * 
+ * <p>
+ * Other images are filtered by sorting the values of each neighborhood.
+ * </p>
+ * 
+ * <p>
+ * Lines are distributed over several threads. Output pixels are computed at
+ * the same coordinates in the input, which is extended with the given
+ * {@link OutOfBoundsFactory}.
+ * </p>
+ * 
+ * @author ImgLib2 developers
+ */
+public class RankFilter< T extends RealType< T > > implements UnaryOperation< RandomAccessibleInterval< T >, RandomAccessibleInterval< T > >
+{
+	/**
+	 * Maximum number of histogram bins, i.e. maximum range of integer values
+	 * that is filtered with sliding histograms.
+	 */
+	public static final long MAX_BINS = 1 << 16;
+
+	/**
+	 * Per-column histograms are only used if they take at most this many
+	 * bytes per thread.
+	 */
+	private static final long MAX_COLUMN_HISTOGRAM_BYTES = 1 << 25;
+
+	private final long[] m_span;
+
+	private final double m_quantile;
+
+	private final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > m_factory;
+
+	private final ExecutorService m_service;
+
+	private final int m_numThreads;
+
+	/**
+	 * Create a rank filter with the same span in all dimensions. The input is
+	 * mirrored at its border and the default {@link TaskExecutors} service is
+	 * used.
+	 * 
+	 * @param span
+	 *            the neighborhood spans from -span to +span in every
+	 *            dimension.
+	 * @param quantile
+	 *            the rank to compute, from 0 (minimum) over 0.5 (median) to 1
+	 *            (maximum).
+	 */
+	public RankFilter( final int span, final double quantile )
+	{
+		this( new long[] { span }, quantile, new OutOfBoundsMirrorFactory< T, RandomAccessibleInterval< T > >( Boundary.SINGLE ), TaskExecutors.getDefault(), TaskExecutors.getParallelism( TaskExecutors.getDefault() ) );
+	}
+
+	/**
+	 * Create a rank filter.
+	 * 
+	 * @param span
+	 *            the neighborhood spans from -span[d] to +span[d] in dimension
+	 *            d. An array of length 1 applies to all dimensions, otherwise
+	 *            its length must be the number of dimensions of the images.
+	 * @param quantile
+	 *            the rank to compute, from 0 (minimum) over 0.5 (median) to 1
+	 *            (maximum).
+	 * @param factory
+	 *            out-of-bounds strategy for the input.
+	 * @param service
+	 *            service on which lines are processed.
+	 * @param numThreads
+	 *            number of lines that are processed concurrently.
+	 */
+	public RankFilter( final long[] span, final double quantile, final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > factory, final ExecutorService service, final int numThreads )
+	{
+		if ( quantile < 0 || quantile > 1 )
+			throw new IllegalArgumentException( "quantile must be in [0, 1]" );
+		if ( span.length == 0 )
+			throw new IllegalArgumentException( "span must not be empty" );
+		for ( final long s : span )
+			if ( s < 0 )
+				throw new IllegalArgumentException( "span must not be negative" );
+		m_span = span.clone();
+		m_quantile = quantile;
+		m_factory = factory;
+		m_service = service;
+		m_numThreads = Math.max( 1, numThreads );
+	}
+
+	/**
+	 * Create a median filter with the same span in all dimensions.
+	 * 
+	 * @param span
+	 *            the neighborhood spans from -span to +span in every
+	 *            dimension.
+	 */
+	public static < T extends RealType< T > > RankFilter< T > median( final int span )
+	{
+		return new RankFilter< T >( span, 0.5 );
+	}
+
+	@Override
+	public RandomAccessibleInterval< T > compute( final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< T > output )
+	{
+		final int n = input.numDimensions();
+		if ( output.numDimensions() != n )
+			throw new IllegalArgumentException( "input and output must have the same number of dimensions" );
+		if ( m_span.length != 1 && m_span.length != n )
+			throw new IllegalArgumentException( "span must have length 1 or " + n + ", but has length " + m_span.length );
+		final long[] span = new long[ Math.max( n, 2 ) ];
+		for ( int d = 0; d < n; ++d )
+			span[ d ] = m_span.length == 1 ? m_span[ 0 ] : m_span[ d ];
+		if ( n == 1 )
+			process( Views.addDimension( input, 0, 0 ), Views.addDimension( output, 0, 0 ), span );
+		else
+			process( input, output, span );
+		return output;
+	}
+
+	@Override
+	public RankFilter< T > copy()
+	{
+		return new RankFilter< T >( m_span, m_quantile, m_factory, m_service, m_numThreads );
+	}
+
+	private void process( final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< T > output, final long[] span )
+	{
+		final int n = output.numDimensions();
+		final RandomAccessible< T > extended = Views.extend( input, m_factory );
+
+		// the input region that is read
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = output.min( d ) - span[ d ];
+			max[ d ] = output.max( d ) + span[ d ];
+		}
+		final Interval region = new FinalInterval( min, max );
+
+		long windowSize = 1;
+		for ( int d = 0; d < n; ++d )
+			windowSize *= 2 * span[ d ] + 1;
+		final int rank = ( int ) Math.round( m_quantile * ( windowSize - 1 ) );
+
+		final long[] range = integerRange( extended, region );
+
+		final long numRows = Intervals.numElements( output ) / output.dimension( 0 );
+		final int numTasks = ( int ) Math.min( m_numThreads, numRows );
+		final List< Runnable > tasks = new ArrayList< Runnable >();
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final long firstRow = t * numRows / numTasks;
+			final long lastRow = ( t + 1 ) * numRows / numTasks - 1;
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if ( range == null )
+						new SortingWorker( extended, output, span, rank ).process( firstRow, lastRow );
+					else
+						new HistogramWorker( extended, output, span, rank, range[ 0 ], ( int ) ( range[ 1 ] - range[ 0 ] + 1 ) ).process( firstRow, lastRow );
+				}
+			} );
+		}
+		TaskExecutors.run( m_service, tasks, m_numThreads );
+	}
+
+	/**
+	 * Get the range of values of an integer image in the given region, or
+	 * {@code null} if the type is not integer or the range is too large to be
+	 * binned.
+	 */
+	private static < T extends RealType< T > > long[] integerRange( final RandomAccessible< T > extended, final Interval region )
+	{
+		final T type = extended.randomAccess().get();
+		if ( !( type instanceof IntegerType ) )
+			return null;
+
+		// types with a small range need no scan
+		if ( type.getMaxValue() - type.getMinValue() < MAX_BINS )
+			return new long[] { ( long ) type.getMinValue(), ( long ) type.getMaxValue() };
+
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		final Cursor< T > c = Views.flatIterable( Views.interval( extended, region ) ).cursor();
+		while ( c.hasNext() )
+		{
+			final long v = ( ( IntegerType< ? > ) c.next() ).getIntegerLong();
+			min = Math.min( min, v );
+			max = Math.max( max, v );
+			if ( max - min >= MAX_BINS || max - min < 0 )
+				return null;
+		}
+		return new long[] { min, max };
+	}
+
+	/**
+	 * Iterates the rows (lines along dimension 0) of the output. Rows are
+	 * numbered with dimension 1 running fastest.
+	 */
+	private abstract class Worker
+	{
+		final RandomAccessible< T > extended;
+
+		final RandomAccessibleInterval< T > output;
+
+		final long[] span;
+
+		final int rank;
+
+		final int n;
+
+		final int width;
+
+		final long height;
+
+		final long[] position;
+
+		Worker( final RandomAccessible< T > extended, final RandomAccessibleInterval< T > output, final long[] span, final int rank )
+		{
+			this.extended = extended;
+			this.output = output;
+			this.span = span;
+			this.rank = rank;
+			n = output.numDimensions();
+			width = ( int ) output.dimension( 0 );
+			height = output.dimension( 1 );
+			position = new long[ n ];
+		}
+
+		void process( final long firstRow, final long lastRow )
+		{
+			final RandomAccess< T > out = output.randomAccess();
+			boolean continued = false;
+			for ( long row = firstRow; row <= lastRow; ++row )
+			{
+				// position of the first pixel of the row
+				long index = row;
+				position[ 0 ] = output.min( 0 );
+				position[ 1 ] = output.min( 1 ) + index % height;
+				index /= height;
+				for ( int d = 2; d < n; ++d )
+				{
+					position[ d ] = output.min( d ) + index % output.dimension( d );
+					index /= output.dimension( d );
+				}
+				continued = continued && position[ 1 ] != output.min( 1 );
+				out.setPosition( position );
+				processRow( out, continued );
+				continued = true;
+			}
+		}
+
+		/**
+		 * Compute one row of the output, starting at {@link #position}.
+		 * 
+		 * @param continued
+		 *            whether the previous row of this worker was the one
+		 *            before in dimension 1.
+		 */
+		abstract void processRow( RandomAccess< T > out, boolean continued );
+	}
+
+	/**
+	 * Selects the rank from the sorted values of each neighborhood.
+	 */
+	private final class SortingWorker extends Worker
+	{
+		final long[][] offsets;
+
+		final double[] values;
+
+		final RandomAccess< T > in;
+
+		final long[] pos;
+
+		SortingWorker( final RandomAccessible< T > extended, final RandomAccessibleInterval< T > output, final long[] span, final int rank )
+		{
+			super( extended, output, span, rank );
+			final long[] min = new long[ n ];
+			final long[] max = new long[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				min[ d ] = -span[ d ];
+				max[ d ] = span[ d ];
+			}
+			offsets = boxOffsets( min, max );
+			values = new double[ offsets.length ];
+			in = extended.randomAccess();
+			pos = new long[ n ];
+		}
+
+		@Override
+		void processRow( final RandomAccess< T > out, final boolean continued )
+		{
+			System.arraycopy( position, 0, pos, 0, n );
+			for ( int x = 0; x < width; ++x )
+			{
+				for ( int i = 0; i < offsets.length; ++i )
+				{
+					for ( int d = 0; d < n; ++d )
+						in.setPosition( pos[ d ] + offsets[ i ][ d ], d );
+					values[ i ] = in.get().getRealDouble();
+				}
+				Arrays.sort( values );
+				out.get().setReal( values[ rank ] );
+				out.fwd( 0 );
+				++pos[ 0 ];
+			}
+		}
+	}
+
+	/**
+	 * Computes the rank from sliding histograms over integer values.
+	 */
+	private final class HistogramWorker extends Worker
+	{
+		final long minValue;
+
+		final int numBins;
+
+		final int blockBits;
+
+		final int numBlocks;
+
+		/** number of columns in a row, including the border */
+		final int numColumns;
+
+		/** number of rows (in dimension 1) in a neighborhood */
+		final int rowsPerColumn;
+
+		/** offsets in dimensions 2 and higher */
+		final long[][] outerOffsets;
+
+		/**
+		 * Ring buffer of the input rows of the current neighborhoods. Slot
+		 * (y mod rowsPerColumn) * outerOffsets.length + o holds the bins of
+		 * input row y at outer offset o.
+		 */
+		final int[][] rows;
+
+		final RandomAccess< T > in;
+
+		final long[] pos;
+
+		/** histogram of the current window, updated value by value */
+		final RankHistogram window;
+
+		/** whether column histograms are used */
+		final boolean useColumns;
+
+		/** coarse and fine histograms of the columns */
+		final int[] columnCoarse;
+
+		final int[] columnFine;
+
+		/** coarse and lazily updated fine histogram of the window */
+		final int[] windowCoarse;
+
+		final int[] windowFine;
+
+		/** position at which a block of windowFine was last updated */
+		final int[] blockPosition;
+
+		HistogramWorker( final RandomAccessible< T > extended, final RandomAccessibleInterval< T > output, final long[] span, final int rank, final long minValue, final int numBins )
+		{
+			super( extended, output, span, rank );
+			this.minValue = minValue;
+			this.numBins = numBins;
+			int bits = 0;
+			while ( ( 1 << bits ) < numBins )
+				++bits;
+			blockBits = bits / 2;
+			numBlocks = ( ( numBins - 1 ) >> blockBits ) + 1;
+
+			numColumns = ( int ) ( width + 2 * span[ 0 ] );
+			rowsPerColumn = ( int ) ( 2 * span[ 1 ] + 1 );
+			final long[] min = new long[ n - 2 ];
+			final long[] max = new long[ n - 2 ];
+			for ( int d = 2; d < n; ++d )
+			{
+				min[ d - 2 ] = -span[ d ];
+				max[ d - 2 ] = span[ d ];
+			}
+			outerOffsets = boxOffsets( min, max );
+			rows = new int[ rowsPerColumn * outerOffsets.length ][ numColumns ];
+			in = extended.randomAccess();
+			pos = new long[ n ];
+
+			// Column histograms cost O(numBlocks + blockSize) per pixel,
+			// sliding value by value costs O(values per column).
+			final long valuesPerColumn = rows.length;
+			final long columnBytes = 4l * numColumns * ( numBins + numBlocks );
+			useColumns = valuesPerColumn > numBlocks + ( 1 << blockBits ) / 2 && columnBytes <= MAX_COLUMN_HISTOGRAM_BYTES;
+			if ( useColumns )
+			{
+				window = null;
+				columnCoarse = new int[ numColumns * numBlocks ];
+				columnFine = new int[ numColumns * numBins ];
+				windowCoarse = new int[ numBlocks ];
+				windowFine = new int[ numBins ];
+				blockPosition = new int[ numBlocks ];
+			}
+			else
+			{
+				window = new RankHistogram( numBins, blockBits );
+				columnCoarse = null;
+				columnFine = null;
+				windowCoarse = null;
+				windowFine = null;
+				blockPosition = null;
+			}
+		}
+
+		@Override
+		void processRow( final RandomAccess< T > out, final boolean continued )
+		{
+			final long y = position[ 1 ];
+			if ( continued )
+			{
+				// replace the input rows that left the neighborhood
+				for ( int o = 0; o < outerOffsets.length; ++o )
+				{
+					final int[] slot = rows[ slot( y + span[ 1 ], o ) ];
+					if ( useColumns )
+						updateColumns( slot, -1 );
+					readRow( y + span[ 1 ], o, slot );
+					if ( useColumns )
+						updateColumns( slot, 1 );
+				}
+			}
+			else
+			{
+				if ( useColumns )
+				{
+					Arrays.fill( columnCoarse, 0 );
+					Arrays.fill( columnFine, 0 );
+				}
+				for ( long yy = y - span[ 1 ]; yy <= y + span[ 1 ]; ++yy )
+				{
+					for ( int o = 0; o < outerOffsets.length; ++o )
+					{
+						final int[] slot = rows[ slot( yy, o ) ];
+						readRow( yy, o, slot );
+						if ( useColumns )
+							updateColumns( slot, 1 );
+					}
+				}
+			}
+
+			if ( useColumns )
+				slideColumns( out );
+			else
+				slideValues( out );
+		}
+
+		private int slot( final long y, final int o )
+		{
+			final int r = ( int ) ( y % rowsPerColumn );
+			return ( r < 0 ? r + rowsPerColumn : r ) * outerOffsets.length + o;
+		}
+
+		/**
+		 * Read the bins of input row y at outer offset o.
+		 */
+		private void readRow( final long y, final int o, final int[] slot )
+		{
+			pos[ 0 ] = position[ 0 ] - span[ 0 ];
+			pos[ 1 ] = y;
+			for ( int d = 2; d < n; ++d )
+				pos[ d ] = position[ d ] + outerOffsets[ o ][ d - 2 ];
+			in.setPosition( pos );
+			for ( int i = 0; i < numColumns; ++i )
+			{
+				slot[ i ] = ( int ) ( ( ( IntegerType< ? > ) in.get() ).getIntegerLong() - minValue );
+				in.fwd( 0 );
+			}
+		}
+
+		private void updateColumns( final int[] slot, final int delta )
+		{
+			for ( int i = 0; i < numColumns; ++i )
+			{
+				final int bin = slot[ i ];
+				columnFine[ i * numBins + bin ] += delta;
+				columnCoarse[ i * numBlocks + ( bin >> blockBits ) ] += delta;
+			}
+		}
+
+		private void setOutput( final RandomAccess< T > out, final int bin )
+		{
+			( ( IntegerType< ? > ) out.get() ).setInteger( minValue + bin );
+			out.fwd( 0 );
+		}
+
+		/**
+		 * Slide along the row, adding and removing the values of one column
+		 * at a time.
+		 */
+		private void slideValues( final RandomAccess< T > out )
+		{
+			final int windowWidth = ( int ) ( 2 * span[ 0 ] + 1 );
+			window.clear();
+			for ( final int[] slot : rows )
+				for ( int i = 0; i < windowWidth; ++i )
+					window.add( slot[ i ] );
+			setOutput( out, window.select( rank ) );
+			for ( int x = 1; x < width; ++x )
+			{
+				for ( final int[] slot : rows )
+				{
+					window.remove( slot[ x - 1 ] );
+					window.add( slot[ x - 1 + windowWidth ] );
+				}
+				setOutput( out, window.select( rank ) );
+			}
+		}
+
+		/**
+		 * Slide along the row, adding and removing column histograms. Only
+		 * the coarse window histogram is kept up to date, blocks of the fine
+		 * histogram are updated when they are needed.
+		 */
+		private void slideColumns( final RandomAccess< T > out )
+		{
+			final int windowWidth = ( int ) ( 2 * span[ 0 ] + 1 );
+			Arrays.fill( windowCoarse, 0 );
+			for ( int i = 0; i < windowWidth; ++i )
+				addColumn( windowCoarse, 0, columnCoarse, i * numBlocks, numBlocks, 1 );
+			Arrays.fill( blockPosition, -1 );
+			for ( int x = 0; x < width; ++x )
+			{
+				if ( x > 0 )
+				{
+					addColumn( windowCoarse, 0, columnCoarse, ( x - 1 ) * numBlocks, numBlocks, -1 );
+					addColumn( windowCoarse, 0, columnCoarse, ( x - 1 + windowWidth ) * numBlocks, numBlocks, 1 );
+				}
+
+				int count = 0;
+				int block = 0;
+				while ( count + windowCoarse[ block ] <= rank )
+					count += windowCoarse[ block++ ];
+				updateBlock( block, x, windowWidth );
+				int bin = block << blockBits;
+				while ( count + windowFine[ bin ] <= rank )
+					count += windowFine[ bin++ ];
+				setOutput( out, bin );
+			}
+		}
+
+		/**
+		 * Bring a block of the fine window histogram up to date for the
+		 * window starting at column x.
+		 */
+		private void updateBlock( final int block, final int x, final int windowWidth )
+		{
+			final int last = blockPosition[ block ];
+			if ( last == x )
+				return;
+			final int start = block << blockBits;
+			final int length = Math.min( 1 << blockBits, numBins - start );
+			if ( last < 0 || 2 * ( x - last ) >= windowWidth )
+			{
+				Arrays.fill( windowFine, start, start + length, 0 );
+				for ( int i = x; i < x + windowWidth; ++i )
+					addColumn( windowFine, start, columnFine, i * numBins + start, length, 1 );
+			}
+			else
+			{
+				for ( int i = last; i < x; ++i )
+				{
+					addColumn( windowFine, start, columnFine, i * numBins + start, length, -1 );
+					addColumn( windowFine, start, columnFine, ( i + windowWidth ) * numBins + start, length, 1 );
+				}
+			}
+			blockPosition[ block ] = x;
+		}
+	}
+
+	private static void addColumn( final int[] target, final int targetOffset, final int[] source, final int sourceOffset, final int length, final int sign )
+	{
+		if ( sign > 0 )
+			for ( int i = 0; i < length; ++i )
+				target[ targetOffset + i ] += source[ sourceOffset + i ];
+		else
+			for ( int i = 0; i < length; ++i )
+				target[ targetOffset + i ] -= source[ sourceOffset + i ];
+	}
+
+	/**
+	 * Two-level histogram that keeps track of the last selected bin, so that
+	 * selecting a rank after a few updates only needs to move a short way.
+	 */
+	private static final class RankHistogram
+	{
+		final int[] fine;
+
+		final int[] coarse;
+
+		final int blockBits;
+
+		/** last selected bin */
+		int bin;
+
+		/** number of values in bins below {@link #bin} */
+		int below;
+
+		RankHistogram( final int numBins, final int blockBits )
+		{
+			this.blockBits = blockBits;
+			fine = new int[ numBins ];
+			coarse = new int[ ( ( numBins - 1 ) >> blockBits ) + 1 ];
+		}
+
+		void clear()
+		{
+			Arrays.fill( fine, 0 );
+			Arrays.fill( coarse, 0 );
+			bin = 0;
+			below = 0;
+		}
+
+		void add( final int value )
+		{
+			++fine[ value ];
+			++coarse[ value >> blockBits ];
+			if ( value < bin )
+				++below;
+		}
+
+		void remove( final int value )
+		{
+			--fine[ value ];
+			--coarse[ value >> blockBits ];
+			if ( value < bin )
+				--below;
+		}
+
+		/**
+		 * Get the bin that contains the value of the given rank (counting
+		 * from 0).
+		 */
+		int select( final int rank )
+		{
+			final int blockMask = ( 1 << blockBits ) - 1;
+			// move down until less than rank values are below
+			while ( below > rank )
+			{
+				if ( ( bin & blockMask ) == 0 && below - coarse[ ( bin >> blockBits ) - 1 ] > rank )
+				{
+					below -= coarse[ ( bin >> blockBits ) - 1 ];
+					bin -= 1 << blockBits;
+				}
+				else
+					below -= fine[ --bin ];
+			}
+			// move up until the bin contains the rank
+			while ( below + fine[ bin ] <= rank )
+			{
+				if ( ( bin & blockMask ) == 0 && below + coarse[ bin >> blockBits ] <= rank )
+				{
+					below += coarse[ bin >> blockBits ];
+					bin += 1 << blockBits;
+				}
+				else
+					below += fine[ bin++ ];
+			}
+			return bin;
+		}
+	}
+
+	/**
+	 * Get all integer positions in the box from min to max.
+	 */
+	private static long[][] boxOffsets( final long[] min, final long[] max )
+	{
+		final int n = min.length;
+		int size = 1;
+		for ( int d = 0; d < n; ++d )
+			size *= ( int ) ( max[ d ] - min[ d ] + 1 );
+		final long[][] offsets = new long[ size ][ n ];
+		final long[] p = min.clone();
+		for ( int i = 0; i < size; ++i )
+		{
+			System.arraycopy( p, 0, offsets[ i ], 0, n );
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( ++p[ d ] <= max[ d ] )
+					break;
+				p[ d ] = min[ d ];
+			}
+		}
+		return offsets;
+	}
+}
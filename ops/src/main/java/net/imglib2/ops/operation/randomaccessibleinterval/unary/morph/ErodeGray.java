@@ -33,10 +33,13 @@
 package net.imglib2.ops.operation.randomaccessibleinterval.unary.morph;
 
 import net.imglib2.Cursor;
+import net.imglib2.ExtendedRandomAccessibleInterval;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.ops.operation.UnaryOperation;
 import net.imglib2.outofbounds.OutOfBoundsFactory;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 
 /**
@@ -66,21 +69,29 @@ public class ErodeGray< T extends RealType< T >> implements UnaryOperation< Rand
 	@Override
 	public RandomAccessibleInterval< T > compute( final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< T > output )
 	{
-		final StructuringElementCursor< T > inStructure = new StructuringElementCursor< T >( Views.extend( input, m_factory ).randomAccess(), m_struc );
-		final Cursor< T > out = Views.iterable( output ).localizingCursor();
-		double m;
-		while ( out.hasNext() )
+		// The interior, where the structuring element stays inside the input,
+		// is processed with a plain access to the input. Out-of-bounds
+		// handling is only needed on the shell around it.
+		final ExtendedRandomAccessibleInterval< T, RandomAccessibleInterval< T > > extended = Views.extend( input, m_factory );
+		final Interval span = StructuringElementCursor.createSpan( m_struc, input.numDimensions() );
+		for ( final Interval part : Intervals.splitInteriorAndShell( output, input, span ) )
 		{
-			out.next();
-			inStructure.relocate( out );
-			inStructure.next();
-			m = inStructure.get().getRealDouble();
-			while ( inStructure.hasNext() )
+			final StructuringElementCursor< T > inStructure = new StructuringElementCursor< T >( extended.randomAccess( Intervals.extendBySpan( part, span ) ), m_struc );
+			final Cursor< T > out = Views.iterable( Views.interval( output, part ) ).localizingCursor();
+			double m;
+			while ( out.hasNext() )
 			{
+				out.next();
+				inStructure.relocate( out );
 				inStructure.next();
-				m = Math.min( m, inStructure.get().getRealDouble() );
+				m = inStructure.get().getRealDouble();
+				while ( inStructure.hasNext() )
+				{
+					inStructure.next();
+					m = Math.min( m, inStructure.get().getRealDouble() );
+				}
+				out.get().setReal( m );
 			}
-			out.get().setReal( m );
 		}
 		return output;
 	}
@@ -37,6 +37,7 @@ import java.util.ArrayList;
 
 import net.imglib2.AbstractCursor;
 import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
 import net.imglib2.Localizable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
@@ -104,6 +105,32 @@ public class StructuringElementCursor< T extends Type< T >> extends AbstractCurs
 		return struc;
 	}
 
+	/**
+	 * Computes the bounding box of a structuring element, including its
+	 * origin, as offsets relative to the origin.
+	 * 
+	 * @param struct
+	 *            the structuring element
+	 * @param numDimensions
+	 *            the number of dimensions of the image it is applied to. It
+	 *            may have more dimensions than the structuring element.
+	 * @return the bounding box
+	 */
+	public static FinalInterval createSpan( long[][] struct, int numDimensions )
+	{
+		final long[] min = new long[ numDimensions ];
+		final long[] max = new long[ numDimensions ];
+		for ( int i = 0; i < struct.length; i++ )
+		{
+			for ( int d = 0; d < struct[ i ].length; d++ )
+			{
+				min[ d ] = Math.min( min[ d ], struct[ i ][ d ] );
+				max[ d ] = Math.max( max[ d ], struct[ i ][ d ] );
+			}
+		}
+		return new FinalInterval( min, max );
+	}
+
 	public static boolean is4Connected( long[][] struct )
 	{
 		for ( int i = 0; i < struct.length; i++ )
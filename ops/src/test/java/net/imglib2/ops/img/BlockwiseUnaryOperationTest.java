@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.ops.img;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CachedCellImg;
+import net.imglib2.ops.operation.UnaryOperation;
+import net.imglib2.ops.operation.randomaccessibleinterval.unary.morph.ErodeGray;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link BlockwiseUnaryOperation} to eager evaluation of the same
+ * operation.
+ *
+ * @author ImgLib2 developers
+ */
+public class BlockwiseUnaryOperationTest
+{
+	final long[][] struc = new long[][] { { -2, 0 }, { -1, -1 }, { 0, 1 }, { 1, 1 }, { 1, 2 } };
+
+	private Img< IntType > createInput()
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( new long[] { 37, 29 }, new IntType() );
+		final Random random = new Random( 42 );
+		for ( final IntType t : img )
+			t.set( random.nextInt( 1000 ) );
+		return img;
+	}
+
+	@Test
+	public void testErodeWithHalo()
+	{
+		final Img< IntType > input = createInput();
+		final ErodeGray< IntType > erode = new ErodeGray< IntType >( struc, new OutOfBoundsMirrorFactory< IntType, RandomAccessibleInterval< IntType > >( Boundary.SINGLE ) );
+
+		final Img< IntType > expected = input.factory().create( input, new IntType() );
+		erode.compute( input, expected );
+
+		final CachedCellImg< IntType, ? > lazy = BlockwiseUnaryOperation.create( erode, Views.extendMirrorSingle( input ), input, new IntType(), new int[] { 8, 6 }, new long[] { 2, 2 }, Long.MAX_VALUE );
+		assertEquals( 0, lazy.getCells().getNumCachedCells() );
+
+		final Cursor< IntType > c = expected.localizingCursor();
+		final RandomAccess< IntType > a = lazy.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( c.get().get(), a.get().get() );
+		}
+	}
+
+	@Test
+	public void testOnlyTouchedBlocksAreComputed()
+	{
+		final Img< IntType > input = createInput();
+		final int[] numBlocks = new int[ 1 ];
+		final UnaryOperation< RandomAccessibleInterval< IntType >, RandomAccessibleInterval< IntType > > negate = new UnaryOperation< RandomAccessibleInterval< IntType >, RandomAccessibleInterval< IntType > >()
+		{
+			@Override
+			public RandomAccessibleInterval< IntType > compute( final RandomAccessibleInterval< IntType > in, final RandomAccessibleInterval< IntType > out )
+			{
+				++numBlocks[ 0 ];
+				final RandomAccess< IntType > a = in.randomAccess();
+				final Cursor< IntType > c = Views.iterable( out ).localizingCursor();
+				while ( c.hasNext() )
+				{
+					c.fwd();
+					a.setPosition( c );
+					c.get().set( -a.get().get() );
+				}
+				return out;
+			}
+
+			@Override
+			public UnaryOperation< RandomAccessibleInterval< IntType >, RandomAccessibleInterval< IntType > > copy()
+			{
+				return this;
+			}
+		};
+
+		// compute on a shifted interval of the input
+		final FinalInterval interval = new FinalInterval( new long[] { 5, 3 }, new long[] { 36, 28 } );
+		final CachedCellImg< IntType, ? > lazy = BlockwiseUnaryOperation.create( negate, input, interval, new IntType(), new int[] { 10, 10 }, new long[] { 0, 0 }, Long.MAX_VALUE );
+		assertEquals( 32, lazy.dimension( 0 ) );
+		assertEquals( 26, lazy.dimension( 1 ) );
+
+		final RandomAccess< IntType > in = input.randomAccess();
+		final Cursor< IntType > c = Views.iterable( Views.interval( lazy, new long[] { 12, 12 }, new long[] { 18, 15 } ) ).localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			in.setPosition( c.getLongPosition( 0 ) + 5, 0 );
+			in.setPosition( c.getLongPosition( 1 ) + 3, 1 );
+			assertEquals( -in.get().get(), c.get().get() );
+		}
+		// the touched block, and the first block in which every accessor on
+		// the cells starts
+		assertEquals( 2, numBlocks[ 0 ] );
+	}
+}
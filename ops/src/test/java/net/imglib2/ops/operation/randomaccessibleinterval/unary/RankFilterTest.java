@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.ops.operation.randomaccessibleinterval.unary;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.multithreading.TaskExecutors;
+import net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link RankFilter} to sorting the values of each neighborhood in
+ * the extended input.
+ * 
+ * @author ImgLib2 developers
+ */
+public class RankFilterTest
+{
+	private < T extends RealType< T > & NativeType< T > > Img< T > createInput( final long[] dims, final T type, final int maxValue )
+	{
+		final Img< T > img = new ArrayImgFactory< T >().create( dims, type );
+		final Random random = new Random( 42 );
+		for ( final T t : img )
+			t.setReal( random.nextInt( maxValue ) );
+		return img;
+	}
+
+	private < T extends RealType< T > & NativeType< T > > void check( final Img< T > input, final long[] span, final double quantile, final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > oob, final int numThreads )
+	{
+		final Img< T > output = input.factory().create( input, input.firstElement() );
+		final ExecutorService service = TaskExecutors.newThreadPool( 2 );
+		new RankFilter< T >( span, quantile, oob, service, numThreads ).compute( input, output );
+		service.shutdown();
+
+		final int n = input.numDimensions();
+		int size = 1;
+		for ( int d = 0; d < n; ++d )
+			size *= 2 * span[ span.length == 1 ? 0 : d ] + 1;
+		final double[] values = new double[ size ];
+		final int rank = ( int ) Math.round( quantile * ( size - 1 ) );
+
+		final RandomAccess< T > in = Views.extend( ( RandomAccessibleInterval< T > ) input, oob ).randomAccess();
+		final Cursor< T > c = output.localizingCursor();
+		final long[] pos = new long[ n ];
+		final long[] offset = new long[ n ];
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( pos );
+			for ( int d = 0; d < n; ++d )
+				offset[ d ] = -span[ span.length == 1 ? 0 : d ];
+			for ( int i = 0; i < size; ++i )
+			{
+				for ( int d = 0; d < n; ++d )
+					in.setPosition( pos[ d ] + offset[ d ], d );
+				values[ i ] = in.get().getRealDouble();
+				for ( int d = 0; d < n; ++d )
+				{
+					final long s = span[ span.length == 1 ? 0 : d ];
+					if ( ++offset[ d ] <= s )
+						break;
+					offset[ d ] = -s;
+				}
+			}
+			Arrays.sort( values );
+			assertEquals( values[ rank ], c.get().getRealDouble(), 0 );
+		}
+	}
+
+	private < T extends RealType< T > > OutOfBoundsFactory< T, RandomAccessibleInterval< T > > mirror()
+	{
+		return new OutOfBoundsMirrorFactory< T, RandomAccessibleInterval< T > >( Boundary.SINGLE );
+	}
+
+	@Test
+	public void testMedian16Bit()
+	{
+		final Img< UnsignedShortType > img = createInput( new long[] { 47, 31 }, new UnsignedShortType(), 65536 );
+		check( img, new long[] { 3 }, 0.5, this.< UnsignedShortType >mirror(), 1 );
+		check( img, new long[] { 7 }, 0.5, this.< UnsignedShortType >mirror(), 3 );
+		check( img, new long[] { 2, 5 }, 0.2, this.< UnsignedShortType >mirror(), 4 );
+	}
+
+	@Test
+	public void testColumnHistograms()
+	{
+		// large neighborhoods of 8 bit values use column histograms
+		final Img< UnsignedByteType > img = createInput( new long[] { 40, 35 }, new UnsignedByteType(), 256 );
+		check( img, new long[] { 13 }, 0.5, this.< UnsignedByteType >mirror(), 1 );
+		check( img, new long[] { 1, 15 }, 0.9, this.< UnsignedByteType >mirror(), 3 );
+		final Img< UnsignedByteType > narrow = createInput( new long[] { 40, 35 }, new UnsignedByteType(), 4 );
+		check( narrow, new long[] { 13 }, 0.5, this.< UnsignedByteType >mirror(), 2 );
+	}
+
+	@Test
+	public void test3D()
+	{
+		final Img< UnsignedByteType > img = createInput( new long[] { 17, 13, 9 }, new UnsignedByteType(), 256 );
+		check( img, new long[] { 3 }, 0.5, this.< UnsignedByteType >mirror(), 3 );
+		final Img< UnsignedShortType > img16 = createInput( new long[] { 17, 13, 9 }, new UnsignedShortType(), 4000 );
+		check( img16, new long[] { 1, 2, 1 }, 0.5, this.< UnsignedShortType >mirror(), 2 );
+	}
+
+	@Test
+	public void testMinMax()
+	{
+		final Img< IntType > img = createInput( new long[] { 23, 19 }, new IntType(), 1000 );
+		final OutOfBoundsFactory< IntType, RandomAccessibleInterval< IntType > > zero = new OutOfBoundsConstantValueFactory< IntType, RandomAccessibleInterval< IntType > >( new IntType( -5 ) );
+		check( img, new long[] { 2 }, 0, zero, 2 );
+		check( img, new long[] { 2 }, 1, zero, 2 );
+	}
+
+	@Test
+	public void testWideRange()
+	{
+		// sorted per neighborhood
+		final Img< IntType > img = createInput( new long[] { 23, 19 }, new IntType(), 1 << 30 );
+		check( img, new long[] { 2 }, 0.5, this.< IntType >mirror(), 2 );
+		final Img< FloatType > f = createInput( new long[] { 23, 19 }, new FloatType(), 1000 );
+		check( f, new long[] { 1 }, 0.5, this.< FloatType >mirror(), 2 );
+	}
+
+	@Test
+	public void test1D()
+	{
+		final Img< UnsignedShortType > img = createInput( new long[] { 101 }, new UnsignedShortType(), 500 );
+		check( img, new long[] { 4 }, 0.5, this.< UnsignedShortType >mirror(), 2 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testSpanTooShort()
+	{
+		final Img< UnsignedByteType > img = createInput( new long[] { 17, 13, 9 }, new UnsignedByteType(), 256 );
+		new RankFilter< UnsignedByteType >( new long[] { 1, 2 }, 0.5, this.< UnsignedByteType >mirror(), TaskExecutors.getDefault(), 1 ).compute( img, img.copy() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testSpanTooLong()
+	{
+		final Img< UnsignedByteType > img = createInput( new long[] { 17, 13 }, new UnsignedByteType(), 256 );
+		new RankFilter< UnsignedByteType >( new long[] { 1, 2, 3 }, 0.5, this.< UnsignedByteType >mirror(), TaskExecutors.getDefault(), 1 ).compute( img, img.copy() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testEmptySpan()
+	{
+		new RankFilter< UnsignedByteType >( new long[ 0 ], 0.5, this.< UnsignedByteType >mirror(), TaskExecutors.getDefault(), 1 );
+	}
+}
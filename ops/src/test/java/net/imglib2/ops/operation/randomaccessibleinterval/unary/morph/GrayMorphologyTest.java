@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.ops.operation.randomaccessibleinterval.unary.morph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link ErodeGray} and {@link DilateGray} to a direct computation
+ * on the extended input.
+ * 
+ * @author ImgLib2 developers
+ */
+public class GrayMorphologyTest
+{
+	// asymmetric, does not contain the origin
+	final long[][] struc = new long[][] { { -2, 0 }, { -1, -1 }, { 0, 1 }, { 1, 1 }, { 1, 2 } };
+
+	final OutOfBoundsFactory< IntType, RandomAccessibleInterval< IntType > > oob = new OutOfBoundsMirrorFactory< IntType, RandomAccessibleInterval< IntType > >( Boundary.SINGLE );
+
+	private Img< IntType > createInput()
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( new long[] { 13, 9, 3 }, new IntType() );
+		final Random random = new Random( 42 );
+		for ( final IntType t : img )
+			t.set( random.nextInt( 1000 ) );
+		return img;
+	}
+
+	private void check( final Img< IntType > input, final Img< IntType > output, final boolean erode )
+	{
+		final RandomAccess< IntType > in = Views.extend( ( RandomAccessibleInterval< IntType > ) input, oob ).randomAccess();
+		final Cursor< IntType > c = output.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			int m = erode ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+			for ( final long[] offset : struc )
+			{
+				in.setPosition( c );
+				for ( int d = 0; d < offset.length; ++d )
+					in.move( offset[ d ], d );
+				m = erode ? Math.min( m, in.get().get() ) : Math.max( m, in.get().get() );
+			}
+			assertEquals( m, c.get().get() );
+		}
+	}
+
+	@Test
+	public void testErodeGray()
+	{
+		final Img< IntType > input = createInput();
+		final Img< IntType > output = input.factory().create( input, new IntType() );
+		new ErodeGray< IntType >( struc, oob ).compute( input, output );
+		check( input, output, true );
+	}
+
+	@Test
+	public void testDilateGray()
+	{
+		final Img< IntType > input = createInput();
+		final Img< IntType > output = input.factory().create( input, new IntType() );
+		new DilateGray< IntType >( struc, oob ).compute( input, output );
+		check( input, output, false );
+	}
+}
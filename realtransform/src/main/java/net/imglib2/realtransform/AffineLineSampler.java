@@ -0,0 +1,182 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.interpolation.Interpolant;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NLinearLineInterpolator;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * Samples a {@link RealRandomAccessible} along lines of a target raster that
+ * is mapped into the source by an {@link AffineGet affine transformation}.
+ * Along a line in target dimension d, the source position advances by the
+ * constant vector {@link AffineGet#d(int)}, so the transformation is applied
+ * only once per line.
+ *
+ * If the source is an n-linear {@link Interpolant} (see
+ * {@link NLinearInterpolatorFactory}) of a {@link RandomAccessible}, lines are
+ * interpolated by a {@link NLinearLineInterpolator}. Otherwise, a
+ * {@link RealRandomAccess} on the source is moved by the constant vector from
+ * sample to sample.
+ *
+ * Like the {@link RealTransform} in {@link AffineRandomAccessible}, the
+ * transformation maps target coordinates to source coordinates, i.e., it is
+ * the inverse of the transformation passed to
+ * {@link RealViews#affine(RealRandomAccessible, AffineGet)}.
+ *
+ * @author ImgLib2 developers
+ */
+public class AffineLineSampler< T extends RealType< T > >
+{
+	final protected int n;
+
+	final protected AffineGet transform;
+
+	final protected RealRandomAccess< T > sourceAccess;
+
+	final protected NLinearLineInterpolator< T > lineInterpolator;
+
+	final protected double[] targetPosition;
+
+	final protected double[] start;
+
+	final protected double[] step;
+
+	/**
+	 * @param source
+	 *            the {@link RealRandomAccessible} to be sampled
+	 * @param transformToSource
+	 *            maps target coordinates to source coordinates. It is copied,
+	 *            later changes do not affect the sampler.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public AffineLineSampler( final RealRandomAccessible< T > source, final AffineGet transformToSource )
+	{
+		n = transformToSource.numSourceDimensions();
+		transform = ( AffineGet ) transformToSource.copy();
+		targetPosition = new double[ n ];
+		start = new double[ transform.numTargetDimensions() ];
+		step = new double[ start.length ];
+
+		if ( source instanceof Interpolant && ( ( Interpolant< T, ? > ) source ).getInterpolatorFactory() instanceof NLinearInterpolatorFactory && ( ( Interpolant< T, ? > ) source ).getSource() instanceof RandomAccessible )
+		{
+			lineInterpolator = new NLinearLineInterpolator< T >( ( RandomAccessible< T > ) ( ( Interpolant< T, ? > ) source ).getSource() );
+			sourceAccess = null;
+		}
+		else
+		{
+			lineInterpolator = null;
+			sourceAccess = source.realRandomAccess();
+		}
+	}
+
+	/**
+	 * Sample values.length pixels of the target raster, starting at
+	 * targetStart and advancing along dimension d.
+	 *
+	 * @param targetStart
+	 *            target coordinates of the first pixel
+	 * @param d
+	 *            target dimension along which the line runs
+	 * @param values
+	 *            receives the sampled values
+	 */
+	public void sampleLine( final long[] targetStart, final int d, final double[] values )
+	{
+		for ( int i = 0; i < n; ++i )
+			targetPosition[ i ] = targetStart[ i ];
+		transform.apply( targetPosition, start );
+		final RealLocalizable dd = transform.d( d );
+		for ( int i = 0; i < step.length; ++i )
+			step[ i ] = dd.getDoublePosition( i );
+
+		if ( lineInterpolator != null )
+			lineInterpolator.interpolate( start, step, values );
+		else
+		{
+			sourceAccess.setPosition( start );
+			for ( int k = 0; k < values.length; ++k )
+			{
+				values[ k ] = sourceAccess.get().getRealDouble();
+				sourceAccess.move( step );
+			}
+		}
+	}
+
+	/**
+	 * Fill a target image by sampling it line by line along dimension 0.
+	 *
+	 * @param target
+	 *            the target image
+	 */
+	public < S extends RealType< S > > void resample( final RandomAccessibleInterval< S > target )
+	{
+		final int length = ( int ) target.dimension( 0 );
+		final double[] values = new double[ length ];
+		final long[] position = new long[ n ];
+		final RandomAccess< S > out = target.randomAccess();
+
+		// iterate over the start of all lines
+		final long[] lineMin = new long[ n ];
+		final long[] lineMax = new long[ n ];
+		target.min( lineMin );
+		target.max( lineMax );
+		lineMax[ 0 ] = lineMin[ 0 ];
+		final Interval lineStarts = new FinalInterval( lineMin, lineMax );
+		final Cursor< S > cursor = Views.flatIterable( Views.interval( target, lineStarts ) ).localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			cursor.localize( position );
+			sampleLine( position, 0, values );
+			out.setPosition( position );
+			for ( int k = 0; k < length; ++k )
+			{
+				out.get().setReal( values[ k ] );
+				out.fwd( 0 );
+			}
+		}
+	}
+}
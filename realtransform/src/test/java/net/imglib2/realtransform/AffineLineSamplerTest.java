@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2014 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests {@link AffineLineSampler} against
+ * {@link RealViews#affine(RealRandomAccessible, AffineGet)}.
+ *
+ * @author ImgLib2 developers
+ */
+public class AffineLineSamplerTest
+{
+	static private ArrayImg< FloatType, FloatArray > img;
+
+	static private AffineTransform3D affine;
+
+	@BeforeClass
+	public static void setUpBeforeClass()
+	{
+		img = ArrayImgs.floats( 20, 17, 13 );
+		final Random rnd = new Random( 0 );
+		for ( final FloatType t : img )
+			t.set( rnd.nextFloat() );
+
+		affine = new AffineTransform3D();
+		affine.set(
+				0.9, 0.2, -0.1, 1.5,
+				-0.3, 1.1, 0.05, -2.25,
+				0.1, 0.15, 0.8, 0.7 );
+	}
+
+	private void compare( final RealRandomAccessible< FloatType > interpolant )
+	{
+		final ArrayImg< FloatType, FloatArray > target = ArrayImgs.floats( 25, 11, 7 );
+		new AffineLineSampler< FloatType >( interpolant, affine.inverse() ).resample( target );
+
+		final RandomAccess< FloatType > expected = RealViews.affine( interpolant, affine ).randomAccess();
+		final Cursor< FloatType > c = target.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			expected.setPosition( c );
+			assertEquals( expected.get().get(), c.get().get(), 1e-4 );
+		}
+	}
+
+	@Test
+	public void testNLinearLines()
+	{
+		compare( Views.interpolate( Views.extendMirrorSingle( img ), new NLinearInterpolatorFactory< FloatType >() ) );
+	}
+
+	@Test
+	public void testGenericLines()
+	{
+		compare( Views.interpolate( Views.extendZero( img ), new NearestNeighborInterpolatorFactory< FloatType >() ) );
+	}
+
+	@Test
+	public void testSampleLineAlongHigherDimension()
+	{
+		final RealRandomAccessible< FloatType > interpolant = Views.interpolate( Views.extendBorder( img ), new NLinearInterpolatorFactory< FloatType >() );
+		final double[] values = new double[ 9 ];
+		final long[] start = new long[] { 3, 4, 1 };
+		new AffineLineSampler< FloatType >( interpolant, affine.inverse() ).sampleLine( start, 2, values );
+
+		final RandomAccess< FloatType > expected = RealViews.affine( interpolant, affine ).randomAccess();
+		expected.setPosition( start );
+		for ( int k = 0; k < values.length; ++k )
+		{
+			assertEquals( expected.get().get(), values[ k ], 1e-4 );
+			expected.fwd( 2 );
+		}
+	}
+}